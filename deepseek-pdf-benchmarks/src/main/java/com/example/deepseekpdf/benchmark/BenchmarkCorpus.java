@@ -0,0 +1,40 @@
+package com.example.deepseekpdf.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Synthetic PDF corpus shared by the benchmarks.
+ * Files are generated on first use into {@code benchmark.corpus.dir} ({@code benchmark-corpus} by
+ * default) and reused by later runs, so generation time never counts towards a measurement.
+ */
+public final class BenchmarkCorpus {
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Returns the corpus file of a size, generating it if it does not exist yet.
+     *
+     * @param size A size such as {@code 10KB} or {@code 100MB}
+     * @return The path of the PDF file
+     */
+    public static synchronized Path file(String size) {
+        try {
+            Path directory = Paths.get(System.getProperty("benchmark.corpus.dir", "benchmark-corpus"));
+            Files.createDirectories(directory);
+            Path file = directory.resolve(SyntheticPdfGenerator.fileName(size)).toAbsolutePath();
+            if (!Files.exists(file)) {
+                Path partial = Files.createTempFile(directory, "synthetic", ".tmp");
+                SyntheticPdfGenerator.generate(partial, SyntheticPdfGenerator.parseSize(size));
+                Files.move(partial, file);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prepare corpus file of size " + size, e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.deepseekpdf.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs the JMH benchmarks and writes the results as JSON to {@code benchmark.results.dir}
+ * ({@code benchmark-results} by default), one timestamped file per run, so that runs can be
+ * compared over time. All regular JMH command line options are accepted.
+ */
+public final class BenchmarkRunner {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path resultDirectory = Paths.get(System.getProperty("benchmark.results.dir", "benchmark-results"));
+        Files.createDirectories(resultDirectory);
+        Path resultFile = resultDirectory.resolve("jmh-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".json");
+
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile.toString())
+                .build();
+        new Runner(options).run();
+
+        System.out.println("Benchmark results written to " + resultFile.toAbsolutePath());
+    }
+}
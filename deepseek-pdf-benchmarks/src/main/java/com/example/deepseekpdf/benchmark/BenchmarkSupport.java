@@ -0,0 +1,23 @@
+package com.example.deepseekpdf.benchmark;
+
+import com.example.deepseekpdf.service.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Creates the collaborators of the components under benchmark without a Spring context.
+ */
+public final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * @return Pipeline metrics backed by an in-memory registry
+     */
+    public static PipelineMetrics pipelineMetrics() {
+        PipelineMetrics pipelineMetrics = new PipelineMetrics();
+        ReflectionTestUtils.setField(pipelineMetrics, "meterRegistry", new SimpleMeterRegistry());
+        return pipelineMetrics;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.deepseekpdf.benchmark;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates synthetic PDF files of a given size with PDFBox.
+ * <p>
+ * Every page carries a text layer of random words, so that metadata and text extraction have
+ * real work to do. Small files consist of text pages only; larger files add an image of random
+ * noise to every page, which does not compress and therefore determines the file size. Files
+ * are generated from a fixed seed, so the same size always yields the same file.
+ * <p>
+ * Usage: {@code SyntheticPdfGenerator <directory> <size>...}, e.g. {@code corpus 10KB 1MB 100MB}.
+ */
+public final class SyntheticPdfGenerator {
+
+    private static final long TEXT_ONLY_LIMIT = 512 * 1024;
+    private static final int NOISE_BYTES_PER_PAGE = 1024 * 1024;
+    private static final int LINES_PER_PAGE = 45;
+    private static final int WORDS_PER_LINE = 12;
+    private static final String[] WORDS = {
+        "analysis", "report", "revenue", "quarter", "growth", "customer", "market", "product", "risk",
+        "strategy", "forecast", "segment", "operating", "margin", "results", "investment", "capital",
+        "research", "development", "regional", "annual", "summary", "findings", "conclusion", "data"
+    };
+
+    private SyntheticPdfGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticPdfGenerator <directory> <size>...  (e.g. corpus 10KB 1MB 100MB)");
+            System.exit(1);
+        }
+        Path directory = Paths.get(args[0]);
+        Files.createDirectories(directory);
+        for (int i = 1; i < args.length; i++) {
+            Path file = directory.resolve(fileName(args[i]));
+            generate(file, parseSize(args[i]));
+            System.out.printf("Generated %s (%d bytes)%n", file, Files.size(file));
+        }
+    }
+
+    /**
+     * @param size A size such as {@code 10KB}
+     * @return The corpus file name for that size
+     */
+    public static String fileName(String size) {
+        return "synthetic-" + size.toUpperCase(Locale.ROOT) + ".pdf";
+    }
+
+    /**
+     * Parses a size with an optional {@code KB}, {@code MB} or {@code GB} suffix.
+     *
+     * @param size The size, e.g. {@code 10KB} or {@code 100MB}
+     * @return The size in bytes
+     */
+    public static long parseSize(String size) {
+        String value = size.trim().toUpperCase(Locale.ROOT);
+        long multiplier = 1;
+        if (value.endsWith("KB")) {
+            multiplier = 1024;
+        } else if (value.endsWith("MB")) {
+            multiplier = 1024 * 1024;
+        } else if (value.endsWith("GB")) {
+            multiplier = 1024L * 1024 * 1024;
+        }
+        String digits = multiplier == 1 ? value.replaceAll("B$", "") : value.substring(0, value.length() - 2);
+        return Long.parseLong(digits.trim()) * multiplier;
+    }
+
+    /**
+     * Generates a PDF file of approximately the target size.
+     *
+     * @param target The file to write
+     * @param targetBytes The approximate size of the file
+     * @throws IOException If the file cannot be written
+     */
+    public static void generate(Path target, long targetBytes) throws IOException {
+        Random random = new Random(targetBytes);
+
+        // Keep image data in temporary files so that generating large files does not need a large heap
+        try (PDDocument document = new PDDocument(MemoryUsageSetting.setupTempFileOnly())) {
+            PDDocumentInformation info = document.getDocumentInformation();
+            info.setTitle("Synthetic benchmark document of " + targetBytes + " bytes");
+            info.setAuthor("deepseek-pdf-benchmarks");
+
+            if (targetBytes <= TEXT_ONLY_LIMIT) {
+                // Add text pages until the saved size reaches the target
+                do {
+                    addPage(document, random, 0);
+                } while (savedSize(document) < targetBytes);
+            } else {
+                int pages = (int) Math.max(1, targetBytes / NOISE_BYTES_PER_PAGE);
+                int noiseBytes = (int) Math.min(Integer.MAX_VALUE, targetBytes / pages);
+                for (int i = 0; i < pages; i++) {
+                    addPage(document, random, noiseBytes);
+                }
+            }
+
+            document.save(target.toFile());
+        }
+    }
+
+    private static void addPage(PDDocument document, Random random, int noiseBytes) throws IOException {
+        PDPage page = new PDPage(PDRectangle.A4);
+        document.addPage(page);
+
+        PDImageXObject noise = noiseBytes > 0 ? noiseImage(document, random, noiseBytes) : null;
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            if (noise != null) {
+                content.drawImage(noise, 50, 50, 100, 100);
+            }
+
+            content.beginText();
+            content.setFont(PDType1Font.HELVETICA, 10);
+            content.setLeading(14);
+            content.newLineAtOffset(50, PDRectangle.A4.getHeight() - 50);
+            for (int line = 0; line < LINES_PER_PAGE; line++) {
+                StringBuilder text = new StringBuilder();
+                for (int word = 0; word < WORDS_PER_LINE; word++) {
+                    text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+                content.showText(text.toString().trim());
+                content.newLine();
+            }
+            content.endText();
+        }
+    }
+
+    private static PDImageXObject noiseImage(PDDocument document, Random random, int bytes) throws IOException {
+        int side = Math.max(1, (int) Math.sqrt(bytes / 3.0));
+        BufferedImage image = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return LosslessFactory.createFromImage(document, image);
+    }
+
+    private static long savedSize(PDDocument document) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        document.save(out);
+        return out.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.benchmark.BenchmarkCorpus;
+import com.example.deepseekpdf.benchmark.BenchmarkSupport;
+import com.example.deepseekpdf.model.PdfDocument;
+import com.example.deepseekpdf.service.PdfMemoryBudget;
+import com.example.deepseekpdf.service.PdfPackingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link PdfItemReader#read()} over a partition that lists the same corpus file many times.
+ * {@code read} only measures what the reader itself does; {@code readAndLoadContent} also loads
+ * the bytes of the document, which is what the reader used to do for every item.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PdfItemReaderBenchmark {
+
+    private static final int FILES_PER_PARTITION = 1024;
+
+    @Param({"10KB", "1MB", "10MB", "100MB"})
+    private String size;
+
+    private PdfItemReader reader;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> files = Collections.nCopies(FILES_PER_PARTITION, BenchmarkCorpus.file(size).toString());
+
+        reader = new PdfItemReader();
+        ReflectionTestUtils.setField(reader, "partitionFiles", files);
+        ReflectionTestUtils.setField(reader, "processingMode", "blocking");
+        ReflectionTestUtils.setField(reader, "pdfMemoryBudget", new PdfMemoryBudget());
+        ReflectionTestUtils.setField(reader, "pdfPackingService", new PdfPackingService());
+        ReflectionTestUtils.setField(reader, "pipelineMetrics", BenchmarkSupport.pipelineMetrics());
+        reader.open(new ExecutionContext());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        reader.close();
+    }
+
+    @Benchmark
+    public PdfDocument read() throws Exception {
+        return nextDocument();
+    }
+
+    @Benchmark
+    public byte[] readAndLoadContent() throws Exception {
+        return nextDocument().getContent().toByteArray();
+    }
+
+    private PdfDocument nextDocument() throws Exception {
+        PdfDocument document = reader.read();
+        if (document == null) {
+            // Start the partition over once all files have been read
+            reader.close();
+            reader.open(new ExecutionContext());
+            document = reader.read();
+        }
+        return document;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.benchmark.BenchmarkSupport;
+import com.example.deepseekpdf.model.PdfDocument;
+import com.example.deepseekpdf.service.DeadLetterStore;
+import com.example.deepseekpdf.service.PdfMemoryBudget;
+import com.example.deepseekpdf.service.PdfResultPublisher;
+import com.example.deepseekpdf.service.ProcessedFileManifest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link PdfItemWriter#write} for one chunk of results, in both output modes:
+ * one pretty-printed file per document, and JSON Lines segments with one fsync per chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfItemWriterBenchmark {
+
+    @Param({"files", "jsonl"})
+    private String outputMode;
+
+    @Param({"10"})
+    private int chunkSize;
+
+    @Param({"4096"})
+    private int responseChars;
+
+    private Path outputDirectory;
+    private JsonlSegmentSink jsonlSegmentSink;
+    private PdfItemWriter writer;
+    private Chunk<PdfDocument> chunk;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        outputDirectory = Files.createTempDirectory("writer-benchmark");
+
+        jsonlSegmentSink = new JsonlSegmentSink();
+        ReflectionTestUtils.setField(jsonlSegmentSink, "segmentDirectory", outputDirectory.resolve("jsonl").toString());
+
+        writer = new PdfItemWriter();
+        ReflectionTestUtils.setField(writer, "outputDirectory", outputDirectory.resolve("json").toString());
+        ReflectionTestUtils.setField(writer, "outputMode", outputMode);
+        ReflectionTestUtils.setField(writer, "processedFileManifest", new ProcessedFileManifest());
+        ReflectionTestUtils.setField(writer, "pdfMemoryBudget", new PdfMemoryBudget());
+        ReflectionTestUtils.setField(writer, "deadLetterStore", new DeadLetterStore());
+        ReflectionTestUtils.setField(writer, "pdfResultPublisher", new PdfResultPublisher());
+        ReflectionTestUtils.setField(writer, "jsonlSegmentSink", jsonlSegmentSink);
+        ReflectionTestUtils.setField(writer, "pipelineMetrics", BenchmarkSupport.pipelineMetrics());
+
+        String response = "x".repeat(responseChars);
+        List<PdfDocument> documents = new ArrayList<>(chunkSize);
+        for (int i = 0; i < chunkSize; i++) {
+            documents.add(PdfDocument.builder()
+                    .id("document-" + i)
+                    .fileName("document-" + i + ".pdf")
+                    .filePath("/input/document-" + i + ".pdf")
+                    .contentType("application/pdf")
+                    .fileSize(1024 * 1024)
+                    .status("COMPLETED")
+                    .pageCount(12)
+                    .title("Benchmark document " + i)
+                    .processingStartTime("2024-01-01T00:00:00")
+                    .processingEndTime("2024-01-01T00:00:05")
+                    .deepseekResponse(response)
+                    .build());
+        }
+        chunk = new Chunk<>(documents);
+        writer.open(new ExecutionContext());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writer.close();
+        FileSystemUtils.deleteRecursively(outputDirectory);
+    }
+
+    @Benchmark
+    public void write() throws Exception {
+        writer.write(chunk);
+    }
+}
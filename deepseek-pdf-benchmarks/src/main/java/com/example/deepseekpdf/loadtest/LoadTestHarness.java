@@ -0,0 +1,378 @@
+package com.example.deepseekpdf.loadtest;
+
+import com.example.deepseekpdf.DeepseekPdfProcessorApplication;
+import com.example.deepseekpdf.benchmark.BenchmarkCorpus;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Runs {@code pdfProcessingJob} end to end against a {@link DeepseekStubServer} and reports the
+ * throughput, the per-document latency and the peak heap of the run.
+ * <p>
+ * The harness copies (or hard-links) a synthetic PDF of the requested size {@code documents} times
+ * into a fresh input directory, starts the stub server and the application in this JVM, launches the
+ * job once and reads the per-document processing times back from the job output. The report is
+ * printed and written as JSON to {@code benchmark.results.dir} ({@code benchmark-results} by default).
+ * <p>
+ * Options without a dot configure the harness and the stub server; options with a dot, such as
+ * {@code --deepseek.batch.processing-mode=reactive}, are passed to the application as properties.
+ * <p>
+ * With {@code --processing-modes=blocking,reactive} the job runs once per processing mode on the
+ * same input, each run with a fresh stub server and application, and the report compares them.
+ */
+public final class LoadTestHarness {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final List<String> PROCESSING_MODES = List.of("blocking", "reactive");
+    private static final String COMPLETED = BatchStatus.COMPLETED.toString();
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: LoadTestHarness [options] [--<application.property>=<value>...]",
+            "  --documents=<n>                number of PDFs to process (default 100)",
+            "  --size=<size>                  size of each PDF, e.g. 10KB or 10MB (default 1MB)",
+            "  --work-dir=<dir>               directory of the input and output of each run (default loadtest-work)",
+            "  --processing-modes=<modes>     run once per processing mode and compare them, e.g. blocking,reactive",
+            StubSettings.USAGE);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private LoadTestHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineArguments arguments;
+        StubSettings stubSettings;
+        List<String> processingModes;
+        try {
+            arguments = CommandLineArguments.parse(args);
+            stubSettings = StubSettings.fromArguments(arguments, 0);
+            processingModes = processingModes(arguments);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+
+        boolean completed = new LoadTestHarness().run(arguments, stubSettings, processingModes);
+        System.exit(completed ? 0 : 1);
+    }
+
+    /**
+     * @return The processing modes to compare, or an empty list for a single run in the configured mode
+     */
+    private static List<String> processingModes(CommandLineArguments arguments) {
+        String modes = arguments.get("processing-modes", "");
+        List<String> processingModes = new ArrayList<>();
+        for (String mode : modes.split(",")) {
+            mode = mode.trim().toLowerCase(Locale.ROOT);
+            if (mode.isEmpty()) {
+                continue;
+            }
+            if (!PROCESSING_MODES.contains(mode)) {
+                throw new IllegalArgumentException("Unknown processing mode: " + mode);
+            }
+            processingModes.add(mode);
+        }
+        return processingModes;
+    }
+
+    private boolean run(CommandLineArguments arguments, StubSettings stubSettings, List<String> processingModes)
+            throws Exception {
+        int documents = arguments.getInt("documents", 100);
+        String size = arguments.get("size", "1MB");
+        String timestamp = LocalDateTime.now().format(FILE_TIMESTAMP);
+        Path workDirectory = Paths.get(arguments.get("work-dir", "loadtest-work"), "run-" + timestamp).toAbsolutePath();
+
+        Path inputDirectory = prepareInput(workDirectory.resolve("input"), size, documents);
+
+        if (processingModes.isEmpty()) {
+            Map<String, Object> report = run(arguments, stubSettings, workDirectory, inputDirectory,
+                    documents, size, null);
+            writeReport(report, timestamp);
+            return COMPLETED.equals(report.get("jobStatus"));
+        }
+
+        // The same input for every mode; outputs, stub counters and job repositories are kept apart
+        List<Map<String, Object>> runs = new ArrayList<>();
+        for (String processingMode : processingModes) {
+            System.out.printf("Running %s mode%n", processingMode);
+            runs.add(run(arguments, stubSettings, workDirectory.resolve(processingMode), inputDirectory,
+                    documents, size, processingMode));
+        }
+        writeReport(compare(runs), timestamp);
+        return runs.stream().allMatch(run -> COMPLETED.equals(run.get("jobStatus")));
+    }
+
+    /**
+     * Runs the job once with a fresh stub server and application.
+     *
+     * @param processingMode The processing mode to run in, or null for the configured one
+     * @return The report of the run
+     */
+    private Map<String, Object> run(CommandLineArguments arguments, StubSettings stubSettings, Path workDirectory,
+                                    Path inputDirectory, int documents, String size, String processingMode)
+            throws Exception {
+        try (DeepseekStubServer stub = DeepseekStubServer.start(stubSettings)) {
+            Map<String, String> properties = defaultProperties(workDirectory, inputDirectory, stub);
+            properties.putAll(arguments.getProperties());
+            if (processingMode != null) {
+                properties.put("deepseek.batch.processing-mode", processingMode);
+                properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest-" + processingMode + ";DB_CLOSE_DELAY=-1");
+            }
+
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DeepseekPdfProcessorApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run(toArgs(properties))) {
+                JobLauncher jobLauncher = context.getBean(JobLauncher.class);
+                Job job = context.getBean("pdfProcessingJob", Job.class);
+
+                System.gc();
+                JobExecution execution;
+                long elapsedNanos;
+                PeakHeapSampler heap = new PeakHeapSampler();
+                try {
+                    long start = System.nanoTime();
+                    execution = jobLauncher.run(job, new JobParametersBuilder()
+                            .addLong("loadtest.time", System.currentTimeMillis())
+                            .toJobParameters());
+                    elapsedNanos = System.nanoTime() - start;
+                } finally {
+                    heap.close();
+                }
+
+                List<DocumentResult> results = readResults(context.getEnvironment());
+                return report(context.getEnvironment(), execution, documents, size,
+                        elapsedNanos, results, heap, stub, stubSettings);
+            }
+        }
+    }
+
+    /**
+     * Creates the input directory with {@code documents} links to (or copies of) the corpus file.
+     */
+    private static Path prepareInput(Path inputDirectory, String size, int documents) throws IOException {
+        Path source = BenchmarkCorpus.file(size);
+        Files.createDirectories(inputDirectory);
+        for (int i = 1; i <= documents; i++) {
+            Path target = inputDirectory.resolve(String.format("doc-%05d.pdf", i));
+            try {
+                Files.createLink(target, source);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(source, target);
+            }
+        }
+        System.out.printf("Prepared %d PDFs of %s in %s%n", documents, size, inputDirectory);
+        return inputDirectory;
+    }
+
+    /**
+     * Points the application at the stub and at the run directory, and switches off everything
+     * that would let later runs skip work or that would throttle the stub: the response cache,
+     * the processed file manifest and the client-side rate limits.
+     */
+    private static Map<String, String> defaultProperties(Path workDirectory, Path inputDirectory,
+                                                         DeepseekStubServer stub) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("deepseek.base-url", stub.getBaseUrl().toString());
+        properties.put("deepseek.api-key", "stub-api-key");
+        properties.put("deepseek.api.prompt", "Please analyze this PDF and provide a detailed summary.");
+        properties.put("deepseek.pdf.input-directory", inputDirectory.toString());
+        properties.put("deepseek.pdf.output-directory", workDirectory.resolve("output/json").toString());
+        properties.put("deepseek.pdf.jsonl-directory", workDirectory.resolve("output/jsonl").toString());
+        properties.put("deepseek.cache.enabled", "false");
+        properties.put("deepseek.manifest.enabled", "false");
+        properties.put("deepseek.watch.enabled", "false");
+        properties.put("deepseek.batch.restart-interrupted", "false");
+        properties.put("deepseek.rate-limit.requests-per-minute", "1000000");
+        properties.put("deepseek.rate-limit.tokens-per-minute", "1000000000000");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+        properties.put("logging.level.com.example.deepseekpdf", "WARN");
+        properties.put("logging.level.com.example.deepseekpdf.service.DeepseekApiService", "WARN");
+        properties.put("logging.level.io.github.pigmesh.ai.deepseek", "WARN");
+        properties.put("logging.level.org.springframework.batch", "WARN");
+        return properties;
+    }
+
+    private static String[] toArgs(Map<String, String> properties) {
+        return properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Reads the status and processing times of every written document, from the result files
+     * or the JSON Lines segments depending on the output mode.
+     */
+    private List<DocumentResult> readResults(Environment environment) throws IOException {
+        boolean jsonl = "jsonl".equalsIgnoreCase(environment.getProperty("deepseek.pdf.output-mode", "files"));
+        Path directory = Paths.get(jsonl
+                ? environment.getProperty("deepseek.pdf.jsonl-directory", "output/jsonl")
+                : environment.getProperty("deepseek.pdf.output-directory", "output/json"));
+
+        List<DocumentResult> results = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return results;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                String name = file.getFileName().toString();
+                if (jsonl && name.matches("results-\\d+\\.jsonl")) {
+                    try (BufferedReader reader = Files.newBufferedReader(file)) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            if (!line.isBlank()) {
+                                results.add(DocumentResult.of(objectMapper.readTree(line)));
+                            }
+                        }
+                    }
+                } else if (!jsonl && name.endsWith("_result.json")) {
+                    results.add(DocumentResult.of(objectMapper.readTree(file.toFile())));
+                }
+            }
+        }
+        return results;
+    }
+
+    private static Map<String, Object> report(Environment environment, JobExecution execution, int documents,
+                                              String size, long elapsedNanos, List<DocumentResult> results,
+                                              PeakHeapSampler heap, DeepseekStubServer stub,
+                                              StubSettings stubSettings) {
+        double elapsedSeconds = elapsedNanos / 1e9;
+        long[] latencies = results.stream()
+                .filter(result -> result.latencyMillis() >= 0)
+                .mapToLong(DocumentResult::latencyMillis)
+                .sorted()
+                .toArray();
+        Map<String, Long> statuses = new TreeMap<>();
+        results.forEach(result -> statuses.merge(String.valueOf(result.status()), 1L, Long::sum));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("jobStatus", execution.getStatus().toString());
+        report.put("processingMode", environment.getProperty("deepseek.batch.processing-mode", "blocking"));
+        report.put("inputMode", environment.getProperty("deepseek.pdf.input-mode", "attachment"));
+        report.put("outputMode", environment.getProperty("deepseek.pdf.output-mode", "files"));
+        report.put("documents", documents);
+        report.put("documentSize", size);
+        report.put("written", results.size());
+        report.put("statuses", statuses);
+        report.put("elapsedSeconds", round(elapsedSeconds));
+        report.put("docsPerSecond", round(results.size() / Math.max(elapsedSeconds, 1e-9)));
+        report.put("latencyP50Millis", percentile(latencies, 0.50));
+        report.put("latencyP99Millis", percentile(latencies, 0.99));
+        report.put("latencyMaxMillis", latencies.length > 0 ? latencies[latencies.length - 1] : 0);
+        report.put("peakHeapBytes", heap.getPeakBytes());
+        report.put("maxHeapBytes", heap.getMaxBytes());
+
+        Map<String, Object> stubReport = new LinkedHashMap<>();
+        stubReport.put("settings", stubSettings.toString());
+        stubReport.put("requests", stub.getRequests());
+        stubReport.put("streamingRequests", stub.getStreamingRequests());
+        stubReport.put("throttled", stub.getThrottledResponses());
+        stubReport.put("serverErrors", stub.getErrorResponses());
+        stubReport.put("requestBytes", stub.getRequestBytes());
+        report.put("stub", stubReport);
+        return report;
+    }
+
+    /**
+     * Puts the reports of runs in different processing modes side by side, with the throughput of
+     * every mode relative to the first one.
+     */
+    private static Map<String, Object> compare(List<Map<String, Object>> runs) {
+        double baseline = (double) runs.get(0).get("docsPerSecond");
+        Map<String, Object> docsPerSecond = new LinkedHashMap<>();
+        Map<String, Object> relativeThroughput = new LinkedHashMap<>();
+        Map<String, Object> latencyP99Millis = new LinkedHashMap<>();
+        Map<String, Object> peakHeapBytes = new LinkedHashMap<>();
+        for (Map<String, Object> run : runs) {
+            String mode = (String) run.get("processingMode");
+            docsPerSecond.put(mode, run.get("docsPerSecond"));
+            relativeThroughput.put(mode, round((double) run.get("docsPerSecond") / Math.max(baseline, 1e-9)));
+            latencyP99Millis.put(mode, run.get("latencyP99Millis"));
+            peakHeapBytes.put(mode, run.get("peakHeapBytes"));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("docsPerSecond", docsPerSecond);
+        report.put("relativeThroughput", relativeThroughput);
+        report.put("latencyP99Millis", latencyP99Millis);
+        report.put("peakHeapBytes", peakHeapBytes);
+        report.put("runs", runs);
+        return report;
+    }
+
+    private void writeReport(Map<String, Object> report, String timestamp) throws IOException {
+        System.out.println();
+        System.out.println("Load test results");
+        // The runs of a comparison are only written to the file
+        report.forEach((key, value) -> {
+            if (!"runs".equals(key)) {
+                System.out.printf("  %-18s %s%n", key, value);
+            }
+        });
+
+        Path resultDirectory = Paths.get(System.getProperty("benchmark.results.dir", "benchmark-results"));
+        Files.createDirectories(resultDirectory);
+        Path resultFile = resultDirectory.resolve("loadtest-" + timestamp + ".json");
+        objectMapper.writeValue(resultFile.toFile(), report);
+        System.out.println("Load test results written to " + resultFile.toAbsolutePath());
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values.
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    /**
+     * Status and processing latency of a written document; the latency is -1 when the document
+     * carries no processing times.
+     */
+    private record DocumentResult(String status, long latencyMillis) {
+
+        static DocumentResult of(JsonNode document) {
+            String start = document.path("processingStartTime").asText(null);
+            String end = document.path("processingEndTime").asText(null);
+            long latency = start != null && end != null
+                    ? Duration.between(LocalDateTime.parse(start), LocalDateTime.parse(end)).toMillis()
+                    : -1;
+            return new DocumentResult(document.path("status").asText(null), latency);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.deepseekpdf.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Samples the used heap on a daemon thread and keeps the highest value seen.
+ */
+final class PeakHeapSampler implements AutoCloseable {
+
+    private static final long INTERVAL_MILLIS = 10;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final Thread thread;
+    private volatile long peakBytes;
+    private volatile boolean running = true;
+
+    PeakHeapSampler() {
+        thread = Thread.ofPlatform().daemon().name("peak-heap-sampler").start(this::sample);
+    }
+
+    long getPeakBytes() {
+        return Math.max(peakBytes, memory.getHeapMemoryUsage().getUsed());
+    }
+
+    long getMaxBytes() {
+        return memory.getHeapMemoryUsage().getMax();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        thread.join();
+    }
+
+    private void sample() {
+        while (running) {
+            peakBytes = Math.max(peakBytes, memory.getHeapMemoryUsage().getUsed());
+            try {
+                Thread.sleep(INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.benchmark.BenchmarkCorpus;
+import com.example.deepseekpdf.model.PdfContent;
+import com.example.deepseekpdf.model.PdfDocument;
+import io.github.pigmesh.ai.deepseek.chat.ChatMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building the attachment of a request: {@code createChatMessage} Base64-encodes the whole
+ * document into a string and builds the attachment map, while {@code streamingEncode} runs the
+ * encoder used by the streaming upload over the same file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ChatMessageBenchmark {
+
+    private static final String PROMPT = "Please analyze this PDF and provide a detailed summary.";
+
+    @Param({"10KB", "1MB", "10MB", "100MB"})
+    private String size;
+
+    private DeepseekApiService deepseekApiService;
+    private PdfDocument pdfDocument;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path file = BenchmarkCorpus.file(size);
+
+        deepseekApiService = new DeepseekApiService();
+        pdfDocument = PdfDocument.builder()
+                .id("benchmark")
+                .fileName(file.getFileName().toString())
+                .content(PdfContent.ofFile(file, Files.size(file)))
+                .build();
+    }
+
+    @Benchmark
+    public ChatMessage createChatMessage() {
+        return deepseekApiService.createChatMessage(pdfDocument, PROMPT);
+    }
+
+    @Benchmark
+    public long streamingEncode() throws IOException {
+        try (InputStream encoded = new Base64EncodingInputStream(pdfDocument.getContent().openChannel())) {
+            return encoded.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.benchmark.BenchmarkCorpus;
+import com.example.deepseekpdf.benchmark.BenchmarkSupport;
+import com.example.deepseekpdf.model.PdfContent;
+import com.example.deepseekpdf.model.PdfDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link PdfProcessingService#extractPdfMetadata(PdfDocument)}, which parses every
+ * document before it is sent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PdfMetadataBenchmark {
+
+    @Param({"10KB", "1MB", "10MB", "100MB"})
+    private String size;
+
+    private PdfProcessingService pdfProcessingService;
+    private PdfDocument pdfDocument;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path file = BenchmarkCorpus.file(size);
+
+        pdfProcessingService = new PdfProcessingService();
+        ReflectionTestUtils.setField(pdfProcessingService, "pipelineMetrics", BenchmarkSupport.pipelineMetrics());
+
+        pdfDocument = PdfDocument.builder()
+                .id("benchmark")
+                .fileName(file.getFileName().toString())
+                .content(PdfContent.ofFile(file, Files.size(file)))
+                .build();
+    }
+
+    @Benchmark
+    public int extractPdfMetadata() throws IOException {
+        pdfProcessingService.extractPdfMetadata(pdfDocument);
+        return pdfDocument.getPageCount();
+    }
+}
@@ -2,7 +2,6 @@ package com.example.deepseekpdf;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 
 /**
  * Main application class for the Deepseek PDF Processor.
@@ -10,7 +9,6 @@ import org.springframework.batch.core.configuration.annotation.EnableBatchProces
  * using the Deepseek API.
  */
 @SpringBootApplication
-@EnableBatchProcessing
 public class DeepseekPdfProcessorApplication {
 
     public static void main(String[] args) {
@@ -1,19 +1,33 @@
 package com.example.deepseekpdf.config;
 
+import com.example.deepseekpdf.job.ClusterPartitionHandler;
+import com.example.deepseekpdf.job.DeadLetterItemReader;
+import com.example.deepseekpdf.job.DeadLetterSkipListener;
+import com.example.deepseekpdf.job.PdfFailureClassifier;
+import com.example.deepseekpdf.job.PdfFilePartitioner;
 import com.example.deepseekpdf.job.PdfItemProcessor;
 import com.example.deepseekpdf.job.PdfItemReader;
 import com.example.deepseekpdf.job.PdfItemWriter;
+import com.example.deepseekpdf.job.ReactivePdfProcessingTasklet;
+import com.example.deepseekpdf.job.ThroughputLoggingListener;
 import com.example.deepseekpdf.model.PdfDocument;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.FaultTolerantStepBuilder;
+import org.springframework.batch.core.step.builder.PartitionStepBuilder;
 import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemReader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.retry.backoff.ExponentialBackOffPolicy;
 import org.springframework.transaction.PlatformTransactionManager;
 
 /**
@@ -32,44 +46,196 @@ public class BatchConfig {
     @Value("${deepseek.batch.chunk-size:10}")
     private int chunkSize;
     
+    @Value("${deepseek.batch.grid-size:4}")
+    private int gridSize;
+    
+    @Value("${deepseek.batch.processing-mode:blocking}")
+    private String processingMode;
+    
+    @Value("${deepseek.batch.retry-backoff-ms:2000}")
+    private long retryBackoffMillis;
+    
+    @Autowired
+    private PdfFailureClassifier pdfFailureClassifier;
+    
+    @Autowired
+    private DeadLetterSkipListener deadLetterSkipListener;
+    
+    @Autowired
+    private ClusterPartitionHandler clusterPartitionHandler;
+    
+    /**
+     * Configures the PDF processing job. The {@code deepseek.batch.processing-mode} property
+     * selects between the partitioned blocking step and the reactive step.
+     * 
+     * @param pdfProcessingStep The partitioned PDF processing step
+     * @param reactivePdfProcessingStep The reactive PDF processing step
+     * @return The configured job
+     */
+    @Bean
+    public Job pdfProcessingJob(Step pdfProcessingStep, Step reactivePdfProcessingStep) {
+        log.info("Configuring PDF processing job in {} mode", processingMode);
+        
+        Step step = "reactive".equalsIgnoreCase(processingMode) ? reactivePdfProcessingStep : pdfProcessingStep;
+        JobBuilder builder = new JobBuilder("pdfProcessingJob", jobRepository);
+        if (clusterPartitionHandler.isEnabled()) {
+            builder.listener(clusterPartitionHandler);
+        }
+        return builder
+                .start(step)
+                .build();
+    }
+    
     /**
-     * Configures the PDF processing job.
+     * Configures the PDF processing step as a manager step that splits the input
+     * directory into partitions and runs a worker step for each of them. In cluster mode
+     * the partitions are run by the cluster workers of all processes instead of local threads.
+     * 
+     * @param pdfWorkerStep The step executed for each partition
+     * @param pdfFilePartitioner The partitioner splitting the input directory
+     * @param partitionTaskExecutor The executor running the worker steps
+     * @return The configured step
+     */
+    @Bean
+    public Step pdfProcessingStep(Step pdfWorkerStep,
+                                 PdfFilePartitioner pdfFilePartitioner,
+                                 TaskExecutor partitionTaskExecutor,
+                                 ThroughputLoggingListener throughputLoggingListener) {
+        log.info("Configuring partitioned PDF processing step with grid size: {} (cluster mode: {})",
+                gridSize, clusterPartitionHandler.isEnabled());
+        
+        PartitionStepBuilder builder = new StepBuilder("pdfProcessingStep", jobRepository)
+                .partitioner("pdfWorkerStep", pdfFilePartitioner);
+        if (clusterPartitionHandler.isEnabled()) {
+            builder.partitionHandler(clusterPartitionHandler);
+        } else {
+            builder.step(pdfWorkerStep)
+                    .gridSize(gridSize)
+                    .taskExecutor(partitionTaskExecutor);
+        }
+        return builder
+                .listener(throughputLoggingListener)
+                .build();
+    }
+    
+    /**
+     * Configures the worker step that processes the PDF files of a single partition.
+     * Failed documents are retried or skipped as classified by {@link PdfFailureClassifier},
+     * and skipped documents are moved to the dead-letter directory.
      * 
      * @param pdfItemReader The reader for PDF items
      * @param pdfItemProcessor The processor for PDF items
      * @param pdfItemWriter The writer for processed PDF items
-     * @return The configured job
+     * @return The configured step
      */
     @Bean
-    public Job pdfProcessingJob(PdfItemReader pdfItemReader, 
-                               PdfItemProcessor pdfItemProcessor,
-                               PdfItemWriter pdfItemWriter) {
-        log.info("Configuring PDF processing job");
+    public Step pdfWorkerStep(PdfItemReader pdfItemReader,
+                              PdfItemProcessor pdfItemProcessor,
+                              PdfItemWriter pdfItemWriter) {
+        log.info("Configuring PDF worker step with chunk size: {}", chunkSize);
         
-        return new JobBuilder("pdfProcessingJob", jobRepository)
-                .start(pdfProcessingStep(pdfItemReader, pdfItemProcessor, pdfItemWriter))
+        return faultTolerantChunk("pdfWorkerStep", pdfItemReader, pdfItemProcessor, pdfItemWriter)
                 .build();
     }
     
     /**
-     * Configures the PDF processing step.
+     * Configures the job that processes the pending documents of the dead-letter directory
+     * again, with the same retry and skip rules as the regular job.
      * 
-     * @param pdfItemReader The reader for PDF items
+     * @param pdfReplayStep The step replaying dead-lettered documents
+     * @return The configured job
+     */
+    @Bean
+    public Job pdfReplayJob(Step pdfReplayStep) {
+        return new JobBuilder("pdfReplayJob", jobRepository)
+                .incrementer(new RunIdIncrementer())
+                .start(pdfReplayStep)
+                .build();
+    }
+    
+    /**
+     * Configures the step replaying dead-lettered documents.
+     * 
+     * @param deadLetterItemReader The reader for pending dead-letter entries
      * @param pdfItemProcessor The processor for PDF items
      * @param pdfItemWriter The writer for processed PDF items
+     * @param throughputLoggingListener The listener reporting the step throughput
      * @return The configured step
      */
     @Bean
-    public Step pdfProcessingStep(PdfItemReader pdfItemReader,
-                                 PdfItemProcessor pdfItemProcessor,
-                                 PdfItemWriter pdfItemWriter) {
-        log.info("Configuring PDF processing step with chunk size: {}", chunkSize);
+    public Step pdfReplayStep(DeadLetterItemReader deadLetterItemReader,
+                              PdfItemProcessor pdfItemProcessor,
+                              PdfItemWriter pdfItemWriter,
+                              ThroughputLoggingListener throughputLoggingListener) {
+        return faultTolerantChunk("pdfReplayStep", deadLetterItemReader, pdfItemProcessor, pdfItemWriter)
+                .listener(throughputLoggingListener)
+                .build();
+    }
+    
+    /**
+     * Configures the reactive PDF processing step, which keeps many API requests in flight
+     * over a single Reactor pipeline instead of parking one thread per request.
+     * 
+     * @param reactivePdfProcessingTasklet The tasklet running the reactive pipeline
+     * @param pdfItemReader The reader for PDF items, registered as a stream of the step
+     * @param pdfItemWriter The writer for processed PDF items, registered as a stream of the step
+     * @param throughputLoggingListener The listener reporting the step throughput
+     * @return The configured step
+     */
+    @Bean
+    public Step reactivePdfProcessingStep(ReactivePdfProcessingTasklet reactivePdfProcessingTasklet,
+                                          PdfItemReader pdfItemReader,
+                                          PdfItemWriter pdfItemWriter,
+                                          ThroughputLoggingListener throughputLoggingListener) {
+        log.info("Configuring reactive PDF processing step");
         
-        return new StepBuilder("pdfProcessingStep", jobRepository)
-                .<PdfDocument, PdfDocument>chunk(chunkSize, transactionManager)
-                .reader(pdfItemReader)
-                .processor(pdfItemProcessor)
-                .writer(pdfItemWriter)
+        return new StepBuilder("reactivePdfProcessingStep", jobRepository)
+                .tasklet(reactivePdfProcessingTasklet, transactionManager)
+                .stream(pdfItemReader)
+                .stream(pdfItemWriter)
+                .listener(throughputLoggingListener)
                 .build();
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Builds a chunk step that retries transient failures with an exponential backoff and skips
+     * documents that still fail. Processing is marked non-transactional so that the documents
+     * of a chunk that was already answered by the API are not sent again when the chunk is
+     * rolled back for a skip.
+     */
+    private FaultTolerantStepBuilder<PdfDocument, PdfDocument> faultTolerantChunk(String name,
+                                                                                ItemReader<PdfDocument> reader,
+                                                                                PdfItemProcessor processor,
+                                                                                PdfItemWriter writer) {
+        ExponentialBackOffPolicy backOffPolicy = new ExponentialBackOffPolicy();
+        backOffPolicy.setInitialInterval(retryBackoffMillis);
+        backOffPolicy.setMultiplier(2.0);
+        backOffPolicy.setMaxInterval(retryBackoffMillis * 8);
+        
+        return new StepBuilder(name, jobRepository)
+                .<PdfDocument, PdfDocument>chunk(chunkSize, transactionManager)
+                .reader(reader)
+                .processor(processor)
+                .writer(writer)
+                .faultTolerant()
+                .skipPolicy(pdfFailureClassifier)
+                .retryPolicy(pdfFailureClassifier.retryPolicy())
+                .backOffPolicy(backOffPolicy)
+                .processorNonTransactional()
+                .listener(deadLetterSkipListener);
+    }
+    
+    /**
+     * Runs each partition on its own virtual thread. The number of API calls in flight
+     * is bounded separately by the Deepseek concurrency limiter.
+     * 
+     * @return The task executor for partition workers
+     */
+    @Bean
+    public TaskExecutor partitionTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("pdf-partition-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(gridSize);
+        return executor;
+    }
+}
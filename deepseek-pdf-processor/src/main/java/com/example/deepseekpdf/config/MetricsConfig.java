@@ -0,0 +1,79 @@
+package com.example.deepseekpdf.config;
+
+import com.example.deepseekpdf.job.StreamingPdfDiscovery;
+import com.example.deepseekpdf.service.DeepseekCircuitBreaker;
+import com.example.deepseekpdf.service.DeepseekRateLimiter;
+import com.example.deepseekpdf.service.DeepseekResponseCache;
+import com.example.deepseekpdf.service.PdfMemoryBudget;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Gauges of the PDF pipeline, exposed together with the stage timers of
+ * {@link com.example.deepseekpdf.service.PipelineMetrics} on the actuator Prometheus endpoint.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Binds gauges for the requests in flight and waiting, the adaptive concurrency limit,
+     * the circuit breaker state, the PDF bytes in flight and the discovered files waiting to be read.
+     *
+     * @return The meter binder
+     */
+    @Bean
+    public MeterBinder pipelineGauges(DeepseekRateLimiter rateLimiter,
+                                      DeepseekCircuitBreaker circuitBreaker,
+                                      PdfMemoryBudget pdfMemoryBudget,
+                                      StreamingPdfDiscovery streamingPdfDiscovery) {
+        return registry -> {
+            Gauge.builder("deepseek.api.in_flight", rateLimiter, DeepseekRateLimiter::getInFlight)
+                    .description("Deepseek API requests in flight")
+                    .register(registry);
+            Gauge.builder("deepseek.api.waiting", rateLimiter, DeepseekRateLimiter::getWaiting)
+                    .description("Deepseek API requests waiting for the rate limiter")
+                    .register(registry);
+            Gauge.builder("deepseek.api.concurrency_limit", rateLimiter, DeepseekRateLimiter::getConcurrencyLimit)
+                    .description("Current adaptive concurrency limit of the rate limiter")
+                    .register(registry);
+            Gauge.builder("deepseek.api.circuit_state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                    .description("Circuit breaker state: 0 closed, 1 half-open, 2 open")
+                    .register(registry);
+            Gauge.builder("deepseek.pdf.in_flight_bytes", pdfMemoryBudget, PdfMemoryBudget::getInFlightBytes)
+                    .description("Bytes of PDF documents between reader and writer")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("deepseek.pdf.discovery.queued", streamingPdfDiscovery, StreamingPdfDiscovery::getQueuedFiles)
+                    .description("Discovered PDF files waiting to be read")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Binds the lookups of the response cache by result, its evictions and its number of entries.
+     *
+     * @return The meter binder
+     */
+    @Bean
+    public MeterBinder responseCacheMetrics(DeepseekResponseCache responseCache) {
+        return registry -> {
+            FunctionCounter.builder("deepseek.cache.requests", responseCache, DeepseekResponseCache::getHits)
+                    .description("Response cache lookups")
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("deepseek.cache.requests", responseCache, DeepseekResponseCache::getMisses)
+                    .description("Response cache lookups")
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("deepseek.cache.evictions", responseCache, DeepseekResponseCache::getEvictions)
+                    .description("Response cache entries evicted because the cache was full or the entry expired")
+                    .register(registry);
+            Gauge.builder("deepseek.cache.size", responseCache, DeepseekResponseCache::size)
+                    .description("Responses stored in the cache")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.deepseekpdf.controller;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import com.example.deepseekpdf.model.JobProgress;
+import com.example.deepseekpdf.model.PdfContent;
+import com.example.deepseekpdf.model.PdfDocument;
+import com.example.deepseekpdf.service.BatchJobService;
+import com.example.deepseekpdf.service.DeepseekApiService;
+import com.example.deepseekpdf.service.PdfResultPublisher;
+import com.example.deepseekpdf.service.PdfUploadService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.JobExecutionException;
+import org.springframework.batch.core.launch.NoSuchJobException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * REST API for uploading PDFs, running batch jobs and following them.
+ * <ul>
+ *   <li>{@code PUT /api/documents/{fileName}} streams the request body into the input directory.</li>
+ *   <li>{@code GET /api/documents/{fileName}/stream} processes an uploaded PDF with the streaming API
+ *       and pushes the generated tokens as Server-Sent Events.</li>
+ *   <li>{@code POST /api/batch/start} launches a job and returns at once with its execution id.</li>
+ *   <li>{@code GET /api/batch/status[/{id}]} reports the progress of a job execution.</li>
+ *   <li>{@code GET /api/batch/{id}/events} pushes progress updates and document results as Server-Sent Events.</li>
+ * </ul>
+ */
+@RestController
+@RequestMapping("/api")
+@Slf4j
+public class PdfJobController {
+
+    @Autowired
+    private BatchJobService batchJobService;
+
+    @Autowired
+    private PdfUploadService pdfUploadService;
+
+    @Autowired
+    private PdfResultPublisher pdfResultPublisher;
+
+    @Autowired
+    private DeepseekApiService deepseekApiService;
+
+    @PutMapping(value = "/documents/{fileName}",
+            consumes = {MediaType.APPLICATION_PDF_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<Map<String, Object>> upload(@PathVariable String fileName,
+                                                      InputStream body) throws IOException {
+        Path stored = pdfUploadService.store(fileName, body);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("fileName", stored.getFileName().toString());
+        response.put("filePath", stored.toString());
+        response.put("fileSize", Files.size(stored));
+        return ResponseEntity.created(URI.create("/api/documents/" + fileName)).body(response);
+    }
+
+    @GetMapping(value = "/documents/{fileName}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> stream(@PathVariable String fileName,
+                                                @RequestParam(required = false) String prompt) throws IOException {
+        Path file = pdfUploadService.resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            throw new DeepseekApiException(
+                ErrorCode.PDF_PROCESSING_ERROR,
+                "PDF file not found",
+                "File name: " + fileName
+            );
+        }
+
+        long fileSize = Files.size(file);
+        PdfDocument document = PdfDocument.builder()
+                .id(UUID.randomUUID().toString())
+                .fileName(fileName)
+                .filePath(file.toString())
+                .content(PdfContent.ofFile(file, fileSize))
+                .fileSize(fileSize)
+                .contentType(MediaType.APPLICATION_PDF_VALUE)
+                .status("PROCESSING")
+                .build();
+
+        // The stream emits deltas; the answer is assembled once for the final event
+        StringBuilder content = new StringBuilder();
+        return deepseekApiService.processPdfStream(document, prompt)
+                .map(response -> {
+                    content.append(response.getRawResponse());
+                    return event("token", response.getRawResponse());
+                })
+                .concatWith(Mono.fromSupplier(() -> event("done", Map.of(
+                        "fileName", fileName,
+                        "content", content.toString()))))
+                .onErrorResume(DeepseekApiException.class, e -> Mono.just(event("error", errorBody(e))));
+    }
+
+    @PostMapping("/batch/start")
+    public ResponseEntity<JobProgress> start(@RequestParam(defaultValue = "pdfProcessingJob") String job,
+                                             @RequestParam(required = false) String inputMode)
+            throws JobExecutionException {
+        JobProgress progress = batchJobService.start(job, inputMode);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/batch/status/" + progress.getJobExecutionId()))
+                .body(progress);
+    }
+
+    @GetMapping("/batch/status")
+    public ResponseEntity<JobProgress> latestStatus(@RequestParam(defaultValue = "pdfProcessingJob") String job) {
+        return ResponseEntity.ofNullable(batchJobService.latestProgress(job));
+    }
+
+    @GetMapping("/batch/status/{jobExecutionId}")
+    public ResponseEntity<JobProgress> status(@PathVariable long jobExecutionId) {
+        return ResponseEntity.ofNullable(batchJobService.progress(jobExecutionId));
+    }
+
+    @GetMapping(value = "/batch/{jobExecutionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<Object>>> events(@PathVariable long jobExecutionId) {
+        if (batchJobService.progress(jobExecutionId) == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // Subscribe to the results first, so that none are missed between the two subscriptions
+        Flux<JobProgress> progress = batchJobService.progressUpdates(jobExecutionId).cache();
+        Flux<ServerSentEvent<Object>> results = pdfResultPublisher.results(jobExecutionId)
+                .map(result -> event("result", result))
+                .takeUntilOther(progress.then());
+        return ResponseEntity.ok(Flux.merge(results, progress.map(update -> event("progress", update))));
+    }
+
+    @ExceptionHandler(DeepseekApiException.class)
+    public ResponseEntity<Map<String, Object>> handleApiException(DeepseekApiException e) {
+        HttpStatus status = switch (e.getErrorCode()) {
+            case PDF_PROCESSING_ERROR, CONFIGURATION_ERROR -> HttpStatus.BAD_REQUEST;
+            case RATE_LIMITED, CIRCUIT_OPEN -> HttpStatus.SERVICE_UNAVAILABLE;
+            default -> HttpStatus.INTERNAL_SERVER_ERROR;
+        };
+        return ResponseEntity.status(status).body(errorBody(e));
+    }
+
+    @ExceptionHandler(JobExecutionException.class)
+    public ResponseEntity<Map<String, Object>> handleJobExecutionException(JobExecutionException e) {
+        HttpStatus status = e instanceof NoSuchJobException ? HttpStatus.NOT_FOUND : HttpStatus.CONFLICT;
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("message", e.getMessage());
+        return ResponseEntity.status(status).body(body);
+    }
+
+    private static ServerSentEvent<Object> event(String name, Object data) {
+        return ServerSentEvent.builder(data).event(name).build();
+    }
+
+    private static Map<String, Object> errorBody(DeepseekApiException e) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("errorCode", e.getErrorCode().getCode());
+        body.put("message", e.getMessage());
+        body.put("details", e.getDetails());
+        return body;
+    }
+}
@@ -34,7 +34,10 @@ public class DeepseekApiException extends RuntimeException {
         API_COMMUNICATION_ERROR("DEEP_003", "Error communicating with Deepseek API"),
         INVALID_RESPONSE("DEEP_004", "Invalid response from Deepseek API"),
         STREAM_PROCESSING_ERROR("DEEP_005", "Error during stream processing"),
-        CONFIGURATION_ERROR("DEEP_006", "Invalid configuration");
+        CONFIGURATION_ERROR("DEEP_006", "Invalid configuration"),
+        RATE_LIMITED("DEEP_007", "Request rejected because of rate limiting"),
+        CIRCUIT_OPEN("DEEP_008", "Requests suspended after repeated Deepseek API failures"),
+        DOCUMENT_TOO_LARGE("DEEP_009", "Document rejected by the pre-flight token estimate");
         
         @Getter
         private final String code;
@@ -0,0 +1,20 @@
+package com.example.deepseekpdf.exception;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Exception for PDF files that cannot be read from the input directory.
+ */
+@Getter
+public class UnreadablePdfException extends IOException {
+    
+    private final Path path;
+    
+    public UnreadablePdfException(Path path, IOException cause) {
+        super("Failed to read PDF file " + path + ": " + cause.getMessage(), cause);
+        this.path = path;
+    }
+}
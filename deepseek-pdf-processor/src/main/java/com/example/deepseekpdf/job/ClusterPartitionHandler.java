@@ -0,0 +1,202 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.JobInterruptedException;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.StepExecutionSplitter;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Manager side of cluster mode. Instead of running the partitions of {@code pdfProcessingStep} on local
+ * threads, the manager stores them in the shared job repository and waits until
+ * {@link ClusterPartitionWorker}s, in this or any other process, have claimed and finished all of them.
+ * <p>
+ * While a job runs, its manager holds the job's claim in {@link PartitionClaims}, so that other processes
+ * can tell a running execution from one whose manager has died.
+ * <p>
+ * The manager stops waiting for partitions that no worker has claimed when the job is stopped, marking
+ * them as stopped, or after {@code deepseek.cluster.claim-timeout-ms}, marking them as failed. Either way
+ * a restart of the job runs them again. Claimed partitions see a stopped job at their next chunk.
+ */
+@Component
+@Slf4j
+public class ClusterPartitionHandler implements PartitionHandler, JobExecutionListener {
+
+    @Autowired
+    private JobExplorer jobExplorer;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private PartitionClaims partitionClaims;
+
+    @Value("${deepseek.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${deepseek.batch.grid-size:4}")
+    private int gridSize;
+
+    @Value("${deepseek.cluster.poll-interval-ms:2000}")
+    private long pollIntervalMillis;
+
+    @Value("${deepseek.cluster.claim-timeout-ms:600000}")
+    private long claimTimeoutMillis;
+
+    @Value("${deepseek.pdf.discovery.mode:eager}")
+    private String discoveryMode;
+
+    private final Map<Long, PartitionClaims.Claim> jobClaims = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (enabled && "streaming".equalsIgnoreCase(discoveryMode)) {
+            // Every process would run its own scan of the whole tree
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Cluster mode requires eager discovery",
+                "deepseek.pdf.discovery.mode: " + discoveryMode
+            );
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        try {
+            PartitionClaims.Claim claim = partitionClaims.tryClaim(PartitionClaims.jobClaim(jobExecution.getId()));
+            if (claim != null) {
+                jobClaims.put(jobExecution.getId(), claim);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to claim job execution {}: {}", jobExecution.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+            partitionClaims.delete(PartitionClaims.partitionClaim(stepExecution.getId()));
+        }
+        PartitionClaims.Claim claim = jobClaims.remove(jobExecution.getId());
+        if (claim != null) {
+            claim.close();
+            partitionClaims.delete(PartitionClaims.jobClaim(jobExecution.getId()));
+        }
+    }
+
+    @Override
+    public Collection<StepExecution> handle(StepExecutionSplitter stepSplitter,
+                                            StepExecution managerStepExecution) throws Exception {
+        Set<StepExecution> partitions = stepSplitter.split(managerStepExecution, gridSize);
+        Long jobExecutionId = managerStepExecution.getJobExecutionId();
+        log.info("Published {} partitions of job execution {} to cluster workers", partitions.size(), jobExecutionId);
+
+        long claimDeadline = System.currentTimeMillis() + claimTimeoutMillis;
+        boolean stopped = false;
+        int lastPending = -1;
+        while (true) {
+            if (!stopped && isStopping(managerStepExecution)) {
+                log.info("Job execution {} is stopping, stopping its unclaimed partitions", jobExecutionId);
+                endUnclaimed(partitions, jobExecutionId, BatchStatus.STOPPED, ExitStatus.STOPPED);
+                stopped = true;
+            } else if (!stopped && claimTimeoutMillis > 0 && System.currentTimeMillis() > claimDeadline) {
+                if (endUnclaimed(partitions, jobExecutionId, BatchStatus.FAILED, ExitStatus.FAILED.addExitDescription(
+                        "Not claimed by a cluster worker within " + claimTimeoutMillis + " ms")) > 0) {
+                    log.warn("Failed the partitions of job execution {} that no cluster worker claimed within {} ms",
+                            jobExecutionId, claimTimeoutMillis);
+                }
+                claimDeadline = Long.MAX_VALUE;
+            }
+
+            List<StepExecution> current = new ArrayList<>(partitions.size());
+            int pending = 0;
+            for (StepExecution partition : partitions) {
+                StepExecution stepExecution = jobExplorer.getStepExecution(jobExecutionId, partition.getId());
+                current.add(stepExecution);
+                if (stepExecution.getStatus().isRunning()) {
+                    pending++;
+                }
+            }
+            if (pending == 0) {
+                if (stopped) {
+                    throw new JobInterruptedException("Job execution " + jobExecutionId + " was stopped",
+                            BatchStatus.STOPPED);
+                }
+                log.info("All {} partitions of job execution {} finished", partitions.size(), jobExecutionId);
+                return current;
+            }
+            if (pending != lastPending) {
+                log.info("Waiting for {} of {} partitions of job execution {}", pending, partitions.size(), jobExecutionId);
+                lastPending = pending;
+            }
+            Thread.sleep(pollIntervalMillis);
+        }
+    }
+
+    private boolean isStopping(StepExecution managerStepExecution) {
+        if (managerStepExecution.isTerminateOnly()) {
+            return true;
+        }
+        JobExecution jobExecution = jobExplorer.getJobExecution(managerStepExecution.getJobExecutionId());
+        return jobExecution != null && jobExecution.getStatus() == BatchStatus.STOPPING;
+    }
+
+    /**
+     * Ends the partitions that no worker has started. Each one is claimed first, so that no worker
+     * starts it in the meantime; a worker that claims it afterwards finds it ended and leaves it.
+     *
+     * @return The number of partitions ended
+     */
+    private int endUnclaimed(Set<StepExecution> partitions, Long jobExecutionId, BatchStatus status,
+                             ExitStatus exitStatus) {
+        int ended = 0;
+        for (StepExecution partition : partitions) {
+            String name = PartitionClaims.partitionClaim(partition.getId());
+            try (PartitionClaims.Claim claim = partitionClaims.tryClaim(name)) {
+                if (claim == null) {
+                    continue;
+                }
+                StepExecution stepExecution = jobExplorer.getStepExecution(jobExecutionId, partition.getId());
+                if (stepExecution == null || stepExecution.getStatus() != BatchStatus.STARTING) {
+                    continue;
+                }
+                stepExecution.setStatus(status);
+                stepExecution.setExitStatus(exitStatus);
+                stepExecution.setEndTime(LocalDateTime.now());
+                jobRepository.update(stepExecution);
+                log.info("Partition {} of job execution {} ended as {} before any worker claimed it",
+                        stepExecution.getStepName(), jobExecutionId, status);
+                ended++;
+            } catch (IOException e) {
+                log.warn("Failed to claim partition {} of job execution {}: {}",
+                        partition.getStepName(), jobExecutionId, e.getMessage());
+            }
+        }
+        return ended;
+    }
+}
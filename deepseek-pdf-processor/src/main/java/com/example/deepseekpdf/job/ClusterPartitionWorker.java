@@ -0,0 +1,169 @@
+package com.example.deepseekpdf.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Worker side of cluster mode. Every process with {@code deepseek.cluster.enabled=true} polls the shared
+ * job repository for partitions of running {@code pdfProcessingJob} executions and claims them through
+ * {@link PartitionClaims}. A claimed partition runs {@code pdfWorkerStep} on a virtual thread, up to
+ * {@code deepseek.cluster.worker-threads} at a time.
+ * <p>
+ * A partition that is still marked as started but whose claim is free belongs to a worker that died.
+ * It is claimed like a new one and resumes from the position saved with its last committed chunk.
+ */
+@Component
+@Slf4j
+public class ClusterPartitionWorker {
+
+    @Autowired
+    private JobExplorer jobExplorer;
+
+    @Autowired
+    private PartitionClaims partitionClaims;
+
+    @Autowired
+    private Job pdfProcessingJob;
+
+    @Autowired
+    private Step pdfWorkerStep;
+
+    @Value("${deepseek.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${deepseek.cluster.worker-threads:${deepseek.batch.grid-size:4}}")
+    private int workerThreads;
+
+    @Value("${deepseek.cluster.poll-interval-ms:2000}")
+    private long pollIntervalMillis;
+
+    private Semaphore slots;
+    private Thread pollThread;
+
+    /**
+     * Starts polling before interrupted executions are recovered, since a recovered execution
+     * waits for workers to run its partitions.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void start() {
+        if (!enabled || workerThreads <= 0) {
+            return;
+        }
+        slots = new Semaphore(workerThreads);
+        pollThread = Thread.ofVirtual().name("cluster-partition-worker").start(this::poll);
+        log.info("Cluster worker started with {} partition slots", workerThreads);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pollThread != null) {
+            pollThread.interrupt();
+        }
+    }
+
+    private void poll() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    claimPartitions();
+                } catch (Exception e) {
+                    log.warn("Failed to poll for partitions: {}", e.getMessage());
+                }
+                Thread.sleep(pollIntervalMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Cluster worker stopped");
+    }
+
+    private void claimPartitions() throws IOException {
+        String prefix = pdfWorkerStep.getName() + ":";
+        for (JobExecution jobExecution : jobExplorer.findRunningJobExecutions(pdfProcessingJob.getName())) {
+            for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+                if (!stepExecution.getStepName().startsWith(prefix) || !stepExecution.getStatus().isRunning()) {
+                    continue;
+                }
+                if (!slots.tryAcquire()) {
+                    return;
+                }
+                // The slot passes to the partition's thread only once it has started
+                boolean started = false;
+                try {
+                    started = claim(jobExecution.getId(), stepExecution.getId());
+                } finally {
+                    if (!started) {
+                        slots.release();
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean claim(Long jobExecutionId, Long stepExecutionId) throws IOException {
+        PartitionClaims.Claim claim = partitionClaims.tryClaim(PartitionClaims.partitionClaim(stepExecutionId));
+        if (claim == null) {
+            return false;
+        }
+
+        boolean started = false;
+        try {
+            started = start(claim, jobExecutionId, stepExecutionId);
+        } finally {
+            if (!started) {
+                claim.close();
+            }
+        }
+        return started;
+    }
+
+    /**
+     * Runs a claimed partition on its own thread, which releases the claim and the slot when done.
+     *
+     * @return Whether the partition was started; otherwise the caller still owns the claim and the slot
+     */
+    private boolean start(PartitionClaims.Claim claim, Long jobExecutionId, Long stepExecutionId) {
+        // Read the partition again now that it is claimed; its previous owner may have just finished it
+        StepExecution stepExecution = jobExplorer.getStepExecution(jobExecutionId, stepExecutionId);
+        if (stepExecution == null || !stepExecution.getStatus().isRunning()) {
+            return false;
+        }
+        if (stepExecution.getStatus() == BatchStatus.STARTED) {
+            log.warn("Reassigning partition {} of job execution {} from a failed worker",
+                    stepExecution.getStepName(), jobExecutionId);
+        } else {
+            log.info("Claimed partition {} of job execution {}", stepExecution.getStepName(), jobExecutionId);
+        }
+
+        Thread.ofVirtual().name("cluster-" + stepExecution.getStepName()).start(() -> {
+            try (claim) {
+                pdfWorkerStep.execute(stepExecution);
+                log.info("Partition {} of job execution {} finished with status {}",
+                        stepExecution.getStepName(), jobExecutionId, stepExecution.getStatus());
+            } catch (Exception e) {
+                log.error("Partition {} of job execution {} failed: {}",
+                        stepExecution.getStepName(), jobExecutionId, e.getMessage(), e);
+            } finally {
+                slots.release();
+            }
+        });
+        return true;
+    }
+}
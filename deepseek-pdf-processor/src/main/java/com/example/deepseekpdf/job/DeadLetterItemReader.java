@@ -0,0 +1,69 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.model.DeadLetterEntry;
+import com.example.deepseekpdf.model.PdfContent;
+import com.example.deepseekpdf.model.PdfDocument;
+import com.example.deepseekpdf.service.DeadLetterStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads the pending entries of the dead-letter directory for {@code pdfReplayJob}.
+ * Documents keep their original path, so that a successful replay is recorded in the processed
+ * file manifest and resolves the dead-letter entry; the content is read from the dead-letter copy
+ * when there is one.
+ */
+@Component
+@StepScope
+@Slf4j
+public class DeadLetterItemReader implements ItemReader<PdfDocument> {
+
+    @Autowired
+    private DeadLetterStore deadLetterStore;
+
+    private Iterator<DeadLetterEntry> pending;
+
+    @Override
+    public PdfDocument read() throws Exception {
+        if (pending == null) {
+            List<DeadLetterEntry> entries = deadLetterStore.pending();
+            log.info("Replaying {} dead-letter entries", entries.size());
+            pending = entries.iterator();
+        }
+        if (!pending.hasNext()) {
+            return null;
+        }
+
+        DeadLetterEntry entry = pending.next();
+        Path source = entry.getDeadLetterPath() != null && Files.exists(Paths.get(entry.getDeadLetterPath()))
+                ? Paths.get(entry.getDeadLetterPath())
+                : Paths.get(entry.getOriginalPath());
+        if (!Files.exists(source)) {
+            throw new IOException("Neither the dead-letter copy nor the original of " + entry.getFileName() + " exists");
+        }
+
+        long fileSize = Files.size(source);
+        log.info("Replaying PDF {} after {} failed attempt(s) ({})",
+                entry.getFileName(), entry.getAttempts(), entry.getErrorCode());
+        return PdfDocument.builder()
+                .id(UUID.randomUUID().toString())
+                .fileName(entry.getFileName())
+                .filePath(entry.getOriginalPath())
+                .content(PdfContent.ofFile(source.toAbsolutePath(), fileSize))
+                .fileSize(fileSize)
+                .contentType("application/pdf")
+                .status("PENDING")
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.UnreadablePdfException;
+import com.example.deepseekpdf.model.PdfDocument;
+import com.example.deepseekpdf.service.DeadLetterStore;
+import com.example.deepseekpdf.service.PdfMemoryBudget;
+import com.example.deepseekpdf.service.PdfPackingService;
+import com.example.deepseekpdf.service.PdfResultPublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.Chunk;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves documents skipped by the fault-tolerant PDF steps to the dead-letter directory and
+ * releases their share of the in-flight byte budget, which the writer never sees for them.
+ * Files that could not be read are recorded as well, so that they can be replayed.
+ * <p>
+ * A pack of small documents that failed in processing may hold members that an earlier packed
+ * request completed; their results are written as usual and only the other members are moved. A pack
+ * that failed in writing moves all its members, since none of their results are written. Every moved
+ * member counts as a skip towards {@code deepseek.batch.skip-limit}, not just the pack.
+ */
+@Component
+@Slf4j
+public class DeadLetterSkipListener implements SkipListener<PdfDocument, PdfDocument> {
+
+    @Autowired
+    private DeadLetterStore deadLetterStore;
+
+    @Autowired
+    private PdfMemoryBudget pdfMemoryBudget;
+
+    @Autowired
+    private PdfResultPublisher pdfResultPublisher;
+
+    @Autowired
+    private PdfItemWriter pdfItemWriter;
+
+    @Override
+    public void onSkipInRead(Throwable error) {
+        log.warn("Skipped unreadable PDF: {}", error.getMessage());
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnreadablePdfException unreadable) {
+                Path path = unreadable.getPath();
+                deadLetter(PdfDocument.builder()
+                        .fileName(path.getFileName().toString())
+                        .filePath(path.toString())
+                        .contentType("application/pdf")
+                        .build(), error);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onSkipInProcess(PdfDocument item, Throwable error) {
+        List<PdfDocument> completed = new ArrayList<>();
+        List<PdfDocument> failed = new ArrayList<>();
+        for (PdfDocument document : PdfPackingService.unpack(List.of(item))) {
+            (item.getPackedDocuments() != null && "COMPLETED".equals(document.getStatus()) ? completed : failed)
+                    .add(document);
+        }
+
+        if (!completed.isEmpty()) {
+            log.info("Writing {} completed members of a failed pack", completed.size());
+            try {
+                pdfItemWriter.write(new Chunk<>(completed));
+            } catch (Exception e) {
+                log.error("Failed to write completed members of a failed pack: {}", e.getMessage(), e);
+                failed.addAll(completed);
+            }
+        }
+        failed.forEach(document -> deadLetter(document, error));
+        countMemberSkips(failed.size());
+    }
+
+    @Override
+    public void onSkipInWrite(PdfDocument item, Throwable error) {
+        List<PdfDocument> documents = PdfPackingService.unpack(List.of(item));
+        documents.forEach(document -> deadLetter(document, error));
+        countMemberSkips(documents.size());
+    }
+
+    /**
+     * Counts the members of a skipped pack beyond the one skip the step counted for the pack itself.
+     */
+    private void countMemberSkips(int skipped) {
+        StepContext stepContext = StepSynchronizationManager.getContext();
+        if (skipped > 1 && stepContext != null) {
+            StepExecution stepExecution = stepContext.getStepExecution();
+            stepExecution.setProcessSkipCount(stepExecution.getProcessSkipCount() + skipped - 1);
+        }
+    }
+
+    private void deadLetter(PdfDocument item, Throwable error) {
+        try {
+            if (item.getErrorCode() == null) {
+                item.setStatus("ERROR");
+                item.setErrorCode(error instanceof DeepseekApiException apiException && apiException.getErrorCode() != null
+                        ? apiException.getErrorCode().name()
+                        : error.getClass().getSimpleName());
+                item.setErrorMessage(error.getMessage());
+            }
+            deadLetterStore.record(item);
+
+            // Skip callbacks run on the thread of the step
+            StepContext stepContext = StepSynchronizationManager.getContext();
+            pdfResultPublisher.publish(stepContext != null ? stepContext.getStepExecution().getJobExecutionId() : null, item);
+        } finally {
+            pdfMemoryBudget.release(item.getId());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.deepseekpdf.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Resumes job executions that were interrupted by a crash or redeploy.
+ * <p>
+ * An execution that was running when the JVM stopped is still marked as started in the
+ * file-backed job repository. On startup such executions are marked as failed and, unless
+ * disabled, restarted with their original parameters. Spring Batch then skips completed
+ * partitions, and {@link PdfItemReader} resumes the others after their last committed chunk.
+ * Recovery runs on its own thread, so that startup and the REST API are not held up by the rerun.
+ * <p>
+ * Without cluster mode this assumes that only one application instance uses the job repository.
+ * In cluster mode other processes may be running jobs, so only executions whose manager no longer
+ * holds their claim in {@link PartitionClaims} are treated as interrupted. Partitions of such an
+ * execution may still be run by live workers; recovery waits until it can claim them itself, so
+ * that it neither fails them under the worker nor runs them again, and holds the claims until the
+ * execution is marked as failed.
+ */
+@Component
+@Slf4j
+public class InterruptedJobRecovery {
+
+    @Autowired
+    private JobExplorer jobExplorer;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private JobLauncher jobLauncher;
+
+    @Autowired
+    private Job pdfProcessingJob;
+
+    @Autowired
+    private ClusterPartitionHandler clusterPartitionHandler;
+
+    @Autowired
+    private PartitionClaims partitionClaims;
+
+    @Value("${deepseek.batch.restart-interrupted:true}")
+    private boolean restartInterrupted;
+
+    @Value("${deepseek.cluster.poll-interval-ms:2000}")
+    private long pollIntervalMillis;
+
+    private final CountDownLatch recovered = new CountDownLatch(1);
+
+    /**
+     * Starts the recovery after the cluster worker has started, so that a recovered cluster
+     * execution finds a worker.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void start() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("interrupted-job-recovery-");
+        executor.setVirtualThreads(true);
+        executor.execute(() -> {
+            try {
+                recover();
+            } finally {
+                recovered.countDown();
+            }
+        });
+    }
+
+    /**
+     * Waits until interrupted executions have been restarted and finished, so that the watch mode
+     * does not launch a run over the same files next to them.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public void awaitRecovery() throws InterruptedException {
+        recovered.await();
+    }
+
+    private void recover() {
+        Set<JobExecution> interrupted = jobExplorer.findRunningJobExecutions(pdfProcessingJob.getName());
+        if (clusterPartitionHandler.isEnabled()) {
+            interrupted.removeIf(this::isManagedElsewhere);
+        }
+        if (interrupted.isEmpty()) {
+            return;
+        }
+
+        for (JobExecution execution : interrupted) {
+            log.warn("Found interrupted execution {} of job {}", execution.getId(), pdfProcessingJob.getName());
+            JobExecution jobExecution = execution;
+            if (clusterPartitionHandler.isEnabled()) {
+                List<PartitionClaims.Claim> claims;
+                try {
+                    claims = claimPartitions(jobExecution);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (claims == null) {
+                    continue;
+                }
+                try {
+                    // Workers have updated their step executions in the meantime
+                    jobExecution = jobExplorer.getJobExecution(execution.getId());
+                    markFailed(jobExecution);
+                } finally {
+                    claims.forEach(PartitionClaims.Claim::close);
+                }
+            } else {
+                markFailed(jobExecution);
+            }
+
+            if (!restartInterrupted) {
+                continue;
+            }
+            try {
+                log.info("Restarting job {} with parameters {}", pdfProcessingJob.getName(),
+                        jobExecution.getJobParameters());
+                jobLauncher.run(pdfProcessingJob, jobExecution.getJobParameters());
+            } catch (Exception e) {
+                log.error("Failed to restart interrupted execution {}: {}", jobExecution.getId(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean isManagedElsewhere(JobExecution jobExecution) {
+        try {
+            boolean claimed = partitionClaims.isClaimed(PartitionClaims.jobClaim(jobExecution.getId()));
+            if (claimed) {
+                log.info("Execution {} of job {} is managed by another process", jobExecution.getId(),
+                        pdfProcessingJob.getName());
+            }
+            return claimed;
+        } catch (IOException e) {
+            log.warn("Failed to check the claim of execution {}: {}", jobExecution.getId(), e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Claims every running partition of an execution, waiting while a live worker still runs it.
+     *
+     * @return The claims, or null if they cannot be taken, in which case the execution is left alone
+     */
+    private List<PartitionClaims.Claim> claimPartitions(JobExecution jobExecution) throws InterruptedException {
+        List<PartitionClaims.Claim> claims = new ArrayList<>();
+        for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+            if (!stepExecution.getStatus().isRunning()) {
+                continue;
+            }
+            String name = PartitionClaims.partitionClaim(stepExecution.getId());
+            try {
+                PartitionClaims.Claim claim = partitionClaims.tryClaim(name);
+                if (claim == null) {
+                    log.info("Waiting for a worker to finish partition {} of execution {}",
+                            stepExecution.getStepName(), jobExecution.getId());
+                }
+                while (claim == null) {
+                    Thread.sleep(pollIntervalMillis);
+                    claim = partitionClaims.tryClaim(name);
+                }
+                claims.add(claim);
+            } catch (InterruptedException e) {
+                claims.forEach(PartitionClaims.Claim::close);
+                throw e;
+            } catch (IOException e) {
+                log.warn("Failed to claim partition {} of execution {}: {}",
+                        stepExecution.getStepName(), jobExecution.getId(), e.getMessage());
+                claims.forEach(PartitionClaims.Claim::close);
+                return null;
+            }
+        }
+        return claims;
+    }
+
+    private void markFailed(JobExecution jobExecution) {
+        LocalDateTime now = LocalDateTime.now();
+        for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+            if (stepExecution.getStatus().isRunning()) {
+                stepExecution.setStatus(BatchStatus.FAILED);
+                stepExecution.setExitStatus(ExitStatus.FAILED.addExitDescription("Interrupted by application shutdown"));
+                stepExecution.setEndTime(now);
+                jobRepository.update(stepExecution);
+            }
+        }
+        jobExecution.setStatus(BatchStatus.FAILED);
+        jobExecution.setExitStatus(ExitStatus.FAILED.addExitDescription("Interrupted by application shutdown"));
+        jobExecution.setEndTime(now);
+        jobRepository.update(jobExecution);
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.model.PdfDocument;
+import com.example.deepseekpdf.model.SegmentIndexEntry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Result sink that appends compact JSON Lines to rolling, size-capped segment files.
+ * <p>
+ * Each chunk is serialized into one buffer and appended to the current segment with a single
+ * channel write, followed by one fsync of the segment and one of its index. The index of a
+ * segment maps every document id to the byte offset and length of its record. A chunk is never
+ * split across segments; a new segment is started before a chunk that would exceed the size cap.
+ * <p>
+ * Every step execution appends to segments of its own. The segment and the sizes of it and its
+ * index are saved in the step execution context with every chunk commit. Bytes of a chunk whose
+ * transaction rolls back are truncated away, and a restarted step truncates its segment back to
+ * the last commit, so only committed records are ever indexed.
+ */
+@Component
+@StepScope
+@Slf4j
+public class JsonlSegmentSink implements ItemStream {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("results-(\\d+)\\.jsonl");
+    private static final String SEGMENT_KEY = "jsonlSegmentSink.segment";
+    private static final String SEGMENT_SIZE_KEY = "jsonlSegmentSink.segmentSize";
+    private static final String INDEX_SIZE_KEY = "jsonlSegmentSink.indexSize";
+
+    @Value("${deepseek.pdf.jsonl-directory:output/jsonl}")
+    private String segmentDirectory;
+
+    @Value("${deepseek.pdf.jsonl-segment-max-bytes:268435456}")
+    private long segmentMaxBytes;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Path segmentPath;
+    private String segmentName;
+    private FileChannel segmentChannel;
+    private FileChannel indexChannel;
+    private long segmentSize;
+    private long indexSize;
+
+    // Position of the last committed chunk, which a rolled back chunk is truncated back to
+    private String committedSegment;
+    private long committedSegmentSize;
+    private long committedIndexSize;
+
+    /**
+     * Reopens the segment of a restarted step and truncates what was written after its last commit.
+     *
+     * @param executionContext The step execution context
+     */
+    @Override
+    public synchronized void open(ExecutionContext executionContext) throws ItemStreamException {
+        segmentPath = Paths.get(segmentDirectory);
+        try {
+            Files.createDirectories(segmentPath);
+            if (executionContext.containsKey(SEGMENT_KEY)) {
+                committedSegment = executionContext.getString(SEGMENT_KEY);
+                committedSegmentSize = executionContext.getLong(SEGMENT_SIZE_KEY);
+                committedIndexSize = executionContext.getLong(INDEX_SIZE_KEY);
+                reopenCommitted();
+                log.info("Restarting result segment {} at {} bytes", segmentName, segmentSize);
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to open result segments in " + segmentDirectory, e);
+        }
+    }
+
+    /**
+     * Saves the current segment and sizes; called by the step before every chunk commit.
+     *
+     * @param executionContext The step execution context
+     */
+    @Override
+    public synchronized void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (segmentName != null) {
+            executionContext.putString(SEGMENT_KEY, segmentName);
+            executionContext.putLong(SEGMENT_SIZE_KEY, segmentSize);
+            executionContext.putLong(INDEX_SIZE_KEY, indexSize);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws ItemStreamException {
+        try {
+            closeChannels();
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to close result segment " + segmentName, e);
+        }
+    }
+
+    /**
+     * Appends the documents of a chunk and forces them to disk. Inside a chunk transaction the
+     * records count as committed once the transaction commits, otherwise right away.
+     *
+     * @param documents The processed documents, with their content already removed
+     * @throws IOException If the segment or its index cannot be written
+     */
+    public synchronized void write(List<? extends PdfDocument> documents) throws IOException {
+        if (documents.isEmpty()) {
+            return;
+        }
+        if (segmentPath == null) {
+            throw new IllegalStateException("Result segments are not open");
+        }
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        int[] lengths = new int[documents.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            byte[] record = objectMapper.writeValueAsBytes(documents.get(i));
+            lengths[i] = record.length;
+            records.write(record);
+            records.write('\n');
+        }
+        byte[] chunk = records.toByteArray();
+
+        // Roll over before a chunk that would exceed the cap; a single oversized chunk gets its own segment
+        if (segmentChannel == null || (segmentSize > 0 && segmentSize + chunk.length > segmentMaxBytes)) {
+            rollOver();
+        }
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        long offset = segmentSize;
+        for (int i = 0; i < lengths.length; i++) {
+            PdfDocument document = documents.get(i);
+            SegmentIndexEntry entry = SegmentIndexEntry.builder()
+                    .id(document.getId())
+                    .fileName(document.getFileName())
+                    .segment(segmentName)
+                    .offset(offset)
+                    .length(lengths[i])
+                    .build();
+            index.write(objectMapper.writeValueAsBytes(entry));
+            index.write('\n');
+            offset += lengths[i] + 1;
+        }
+
+        try {
+            // The segment is forced before the index, so the index never points at data that is not on disk
+            writeFully(segmentChannel, chunk);
+            segmentChannel.force(false);
+            writeFully(indexChannel, index.toByteArray());
+            indexChannel.force(false);
+        } catch (IOException e) {
+            try {
+                truncate(segmentSize, indexSize);
+            } catch (IOException truncateError) {
+                e.addSuppressed(truncateError);
+                abandonSegment();
+            }
+            throw e;
+        }
+        segmentSize += chunk.length;
+        indexSize += index.size();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        markCommitted();
+                    } else {
+                        rollBack();
+                    }
+                }
+            });
+        } else {
+            markCommitted();
+        }
+
+        log.info("Appended {} results to segment {}", documents.size(), segmentName);
+    }
+
+    private synchronized void markCommitted() {
+        committedSegment = segmentName;
+        committedSegmentSize = segmentSize;
+        committedIndexSize = indexSize;
+    }
+
+    /**
+     * Removes the records of a rolled back chunk, including a segment that was started for it.
+     */
+    private synchronized void rollBack() {
+        if (segmentName == null || (segmentName.equals(committedSegment) && segmentSize == committedSegmentSize)) {
+            return;
+        }
+        String rolledBack = segmentName;
+        try {
+            if (rolledBack.equals(committedSegment)) {
+                truncate(committedSegmentSize, committedIndexSize);
+            } else {
+                closeChannels();
+                Files.deleteIfExists(segmentPath.resolve(indexName(rolledBack)));
+                Files.deleteIfExists(segmentPath.resolve(rolledBack));
+                segmentName = null;
+                if (committedSegment != null) {
+                    reopenCommitted();
+                }
+            }
+            log.info("Removed the results of a rolled back chunk from segment {}", rolledBack);
+        } catch (IOException e) {
+            log.error("Failed to remove the results of a rolled back chunk from segment {}", rolledBack, e);
+            abandonSegment();
+        }
+    }
+
+    /**
+     * Stops appending to a segment that could not be truncated, so that no record is appended after
+     * uncommitted ones. A restarted step still truncates the segment of its last commit.
+     */
+    private void abandonSegment() {
+        try {
+            closeChannels();
+        } catch (IOException e) {
+            log.warn("Failed to close result segment {}: {}", segmentName, e.getMessage());
+        }
+        segmentName = null;
+    }
+
+    private void reopenCommitted() throws IOException {
+        segmentName = committedSegment;
+        Path segment = segmentPath.resolve(segmentName);
+        if (!Files.exists(segment)) {
+            log.warn("Result segment {} of the last commit is missing, starting a new one", segmentName);
+            segmentName = null;
+            return;
+        }
+        segmentChannel = FileChannel.open(segment, StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(segmentPath.resolve(indexName(segmentName)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segmentSize = committedSegmentSize;
+        indexSize = committedIndexSize;
+        truncate(segmentSize, indexSize);
+    }
+
+    /**
+     * Starts the next segment. The segment file is created exclusively, so steps in other threads
+     * or processes writing to the same directory never share a segment.
+     */
+    private void rollOver() throws IOException {
+        closeChannels();
+
+        int number;
+        try (Stream<Path> files = Files.list(segmentPath)) {
+            number = files
+                    .map(path -> SEGMENT_NAME.matcher(path.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .mapToInt(matcher -> Integer.parseInt(matcher.group(1)))
+                    .max()
+                    .orElse(0);
+        }
+        while (segmentChannel == null) {
+            number++;
+            String name = String.format("results-%05d.jsonl", number);
+            try {
+                segmentChannel = FileChannel.open(segmentPath.resolve(name),
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                segmentName = name;
+            } catch (FileAlreadyExistsException e) {
+                // Taken by another step in the meantime
+            }
+        }
+        indexChannel = FileChannel.open(segmentPath.resolve(indexName(segmentName)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentSize = 0;
+        indexSize = 0;
+        log.info("Started result segment {}", segmentName);
+    }
+
+    private void truncate(long segmentBytes, long indexBytes) throws IOException {
+        segmentChannel.truncate(segmentBytes);
+        segmentChannel.position(segmentBytes);
+        segmentChannel.force(false);
+        indexChannel.truncate(indexBytes);
+        indexChannel.position(indexBytes);
+        indexChannel.force(false);
+        segmentSize = segmentBytes;
+        indexSize = indexBytes;
+    }
+
+    private void closeChannels() throws IOException {
+        try {
+            if (segmentChannel != null) {
+                segmentChannel.close();
+            }
+        } finally {
+            segmentChannel = null;
+            if (indexChannel != null) {
+                indexChannel.close();
+                indexChannel = null;
+            }
+        }
+    }
+
+    /**
+     * @return The index file of a segment, e.g. {@code index-00001.jsonl} for {@code results-00001.jsonl}
+     */
+    static String indexName(String segmentName) {
+        return "index-" + segmentName.substring("results-".length());
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.deepseekpdf.job;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * File source backed by a list of files that is known up front.
+ */
+public class ListPdfFileSource implements PdfFileSource {
+
+    private final List<Path> files;
+    private int nextIndex;
+
+    public ListPdfFileSource(List<Path> files) {
+        this.files = files;
+    }
+
+    @Override
+    public Path next() {
+        return nextIndex < files.size() ? files.get(nextIndex++) : null;
+    }
+
+    @Override
+    public long getPosition() {
+        return nextIndex;
+    }
+
+    /**
+     * Skips to a position, for example the one saved by a previous execution.
+     *
+     * @param position The number of files to skip from the start of the list
+     */
+    public void skipTo(long position) {
+        nextIndex = (int) Math.min(position, files.size());
+    }
+
+    /**
+     * @return The total number of files in the list
+     */
+    public int size() {
+        return files.size();
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.deepseekpdf.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Claims on job and partition executions shared by all processes of a cluster, as exclusive locks on
+ * files in {@code deepseek.cluster.lock-directory}.
+ * <p>
+ * The operating system releases a lock when the process holding it dies, so a claim that can be taken
+ * on an execution that is still marked as running in the job repository means its owner has failed.
+ * The directory must be shared by all processes and support file locks, such as a local directory for
+ * processes on one machine.
+ */
+@Component
+@Slf4j
+public class PartitionClaims {
+
+    @Value("${deepseek.cluster.lock-directory:data/cluster}")
+    private String lockDirectory;
+
+    /**
+     * A claim held by this process until it is closed.
+     */
+    public static final class Claim implements AutoCloseable {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final FileLock lock;
+
+        private Claim(Path path, FileChannel channel, FileLock lock) {
+            this.path = path;
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        @Override
+        public void close() {
+            try {
+                lock.release();
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to release claim {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Takes a claim without waiting.
+     *
+     * @param name The name of the claim
+     * @return The claim, or null if another process or thread holds it
+     * @throws IOException If the lock file cannot be opened
+     */
+    public Claim tryClaim(String name) throws IOException {
+        Path path = resolve(name);
+        Files.createDirectories(path.getParent());
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return new Claim(path, channel, lock);
+            }
+        } catch (OverlappingFileLockException e) {
+            // Held by another thread of this process
+        }
+        channel.close();
+        return null;
+    }
+
+    /**
+     * @param name The name of the claim
+     * @return True if a live process holds the claim
+     * @throws IOException If the lock file cannot be opened
+     */
+    public boolean isClaimed(String name) throws IOException {
+        Claim claim = tryClaim(name);
+        if (claim == null) {
+            return true;
+        }
+        claim.close();
+        return false;
+    }
+
+    /**
+     * Removes the lock file of a claim that is no longer needed.
+     *
+     * @param name The name of the claim
+     */
+    public void delete(String name) {
+        try {
+            Files.deleteIfExists(resolve(name));
+        } catch (IOException e) {
+            log.debug("Failed to delete lock file of claim {}: {}", name, e.getMessage());
+        }
+    }
+
+    static String jobClaim(long jobExecutionId) {
+        return "job-" + jobExecutionId;
+    }
+
+    static String partitionClaim(long stepExecutionId) {
+        return "partition-" + stepExecutionId;
+    }
+
+    private Path resolve(String name) {
+        return Paths.get(lockDirectory).toAbsolutePath().resolve(name + ".lock");
+    }
+}
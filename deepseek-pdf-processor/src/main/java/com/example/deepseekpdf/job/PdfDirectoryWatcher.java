@@ -0,0 +1,185 @@
+package com.example.deepseekpdf.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running watch mode that feeds newly arrived PDFs into the pipeline.
+ * The input tree is watched with a {@link WatchService}; once new or modified PDFs have been seen
+ * and the tree has been quiet for the configured period (so that copies in progress can finish),
+ * {@code pdfProcessingJob} is launched. A steady feed of files never goes quiet, so the job is also
+ * launched once the first pending file has waited for the configured maximum delay.
+ * The processed file manifest makes every launch incremental.
+ */
+@Component
+@Slf4j
+public class PdfDirectoryWatcher {
+
+    @Autowired
+    private JobLauncher jobLauncher;
+
+    @Autowired
+    private Job pdfProcessingJob;
+
+    @Autowired
+    private InterruptedJobRecovery interruptedJobRecovery;
+
+    @Value("${deepseek.watch.enabled:false}")
+    private boolean enabled;
+
+    @Value("${deepseek.pdf.input-directory}")
+    private String inputDirectory;
+
+    @Value("${deepseek.watch.quiet-period-ms:5000}")
+    private long quietPeriodMillis;
+
+    @Value("${deepseek.watch.max-delay-ms:60000}")
+    private long maxDelayMillis;
+
+    private volatile WatchService watchService;
+    private Thread watchThread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        Path inputPath = Paths.get(inputDirectory);
+        Files.createDirectories(inputPath);
+        watchService = FileSystems.getDefault().newWatchService();
+        registerTree(inputPath);
+
+        watchThread = new Thread(this::watch, "pdf-directory-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        log.info("Watching input directory {} for new PDF files", inputDirectory);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void watch() {
+        // Pick up files that arrived while the application was not running
+        boolean pending = true;
+        long pendingSinceMillis = System.currentTimeMillis();
+        long lastEventMillis = 0;
+
+        try {
+            // Let an interrupted run finish first
+            interruptedJobRecovery.awaitRecovery();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                long timeout = quietPeriodMillis;
+                if (pending) {
+                    timeout = Math.max(1, Math.min(timeout, pendingSinceMillis + maxDelayMillis - System.currentTimeMillis()));
+                }
+                WatchKey key = watchService.poll(timeout, TimeUnit.MILLISECONDS);
+                long now = System.currentTimeMillis();
+                if (key != null) {
+                    if (handleEvents(key) && !pending) {
+                        pending = true;
+                        pendingSinceMillis = now;
+                    }
+                    lastEventMillis = now;
+                }
+
+                if (pending && (now - lastEventMillis >= quietPeriodMillis || now - pendingSinceMillis >= maxDelayMillis)) {
+                    pending = false;
+                    launchJob();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Watch service closed");
+        }
+        log.info("Stopped watching input directory {}", inputDirectory);
+    }
+
+    /**
+     * Handles the events of a watch key, registering new directories.
+     *
+     * @return True if a PDF file was created or modified
+     */
+    private boolean handleEvents(WatchKey key) {
+        boolean pdfChanged = false;
+        Path directory = (Path) key.watchable();
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                log.warn("Watch events were lost, rescanning input directory");
+                pdfChanged = true;
+                continue;
+            }
+
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    registerTree(path);
+                } catch (IOException e) {
+                    log.warn("Failed to watch new directory {}: {}", path, e.getMessage());
+                }
+                pdfChanged = true;
+            } else if (path.toString().toLowerCase().endsWith(".pdf")) {
+                log.debug("Detected {} for PDF file: {}", event.kind().name(), path);
+                pdfChanged = true;
+            }
+        }
+
+        key.reset();
+        return pdfChanged;
+    }
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void launchJob() {
+        try {
+            JobParameters parameters = new JobParametersBuilder()
+                    .addLong("watch.time", System.currentTimeMillis())
+                    .toJobParameters();
+            log.info("Launching PDF processing job for newly arrived files");
+            jobLauncher.run(pdfProcessingJob, parameters);
+        } catch (Exception e) {
+            log.error("Failed to launch PDF processing job: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import com.example.deepseekpdf.model.PdfDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.step.skip.SkipLimitExceededException;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.retry.RetryPolicy;
+import org.springframework.retry.policy.ExceptionClassifierRetryPolicy;
+import org.springframework.retry.policy.NeverRetryPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Classifies failures of the fault-tolerant PDF steps by {@link ErrorCode}:
+ * <ul>
+ *   <li>retryable: the API broke off a stream after its first chunk; the document is processed again
+ *       up to {@code deepseek.batch.retry-limit} times and skipped when it still fails,</li>
+ *   <li>skippable: the PDF cannot be read or the API cannot process it; the document is skipped and
+ *       moved to the dead-letter directory,</li>
+ *   <li>fatal: the configuration or prompt is invalid, or the API is down or throttling: the circuit
+ *       breaker is open, or a call is still rate limited or cannot reach the API after the API client
+ *       retried it. Such failures would fail every following document as well, so the step fails and
+ *       can be restarted once the API is back. Skipping would only move healthy documents to the
+ *       dead-letter directory until the skip limit is exhausted.</li>
+ * </ul>
+ * At most {@code deepseek.batch.skip-limit} documents are skipped per step before the step fails.
+ */
+@Component
+@Slf4j
+public class PdfFailureClassifier implements SkipPolicy {
+
+    private static final Set<ErrorCode> RETRYABLE = EnumSet.of(ErrorCode.STREAM_PROCESSING_ERROR);
+
+    private static final Set<ErrorCode> FATAL = EnumSet.of(
+            ErrorCode.CONFIGURATION_ERROR,
+            ErrorCode.PROMPT_NOT_FOUND,
+            ErrorCode.CIRCUIT_OPEN,
+            ErrorCode.RATE_LIMITED,
+            ErrorCode.API_COMMUNICATION_ERROR);
+
+    @Value("${deepseek.batch.skip-limit:100}")
+    private long skipLimit;
+
+    @Value("${deepseek.batch.retry-limit:2}")
+    private int retryLimit;
+
+    /**
+     * @param error The failure of a document
+     * @return True if processing the document again may succeed
+     */
+    public boolean isRetryable(Throwable error) {
+        ErrorCode errorCode = errorCode(error);
+        return errorCode != null && RETRYABLE.contains(errorCode);
+    }
+
+    /**
+     * @param error The failure of a document
+     * @return True if the document can be skipped without failing the step
+     */
+    public boolean isSkippable(Throwable error) {
+        ErrorCode errorCode = errorCode(error);
+        if (errorCode != null) {
+            return !FATAL.contains(errorCode);
+        }
+        return error instanceof IOException;
+    }
+
+    /**
+     * @param pdfDocument A document whose failure was recorded on it rather than thrown
+     * @return The failure as an exception, to be classified like a thrown one
+     */
+    public DeepseekApiException failureOf(PdfDocument pdfDocument) {
+        ErrorCode errorCode = pdfDocument.getErrorCode() != null
+                ? ErrorCode.valueOf(pdfDocument.getErrorCode())
+                : ErrorCode.PDF_PROCESSING_ERROR;
+        return new DeepseekApiException(errorCode, pdfDocument.getErrorMessage(), pdfDocument.getFileName());
+    }
+
+    @Override
+    public boolean shouldSkip(Throwable error, long skipCount) throws SkipLimitExceededException {
+        if (!isSkippable(error)) {
+            return false;
+        }
+        if (skipCount >= skipLimit) {
+            throw new SkipLimitExceededException(skipLimit, error);
+        }
+        return true;
+    }
+
+    /**
+     * @return The retry policy of the fault-tolerant steps: {@code deepseek.batch.retry-limit} retries
+     *         for retryable failures, none for all others
+     */
+    public RetryPolicy retryPolicy() {
+        SimpleRetryPolicy retryable = new SimpleRetryPolicy(retryLimit + 1);
+        NeverRetryPolicy never = new NeverRetryPolicy();
+        ExceptionClassifierRetryPolicy policy = new ExceptionClassifierRetryPolicy();
+        policy.setExceptionClassifier(error -> isRetryable(error) ? retryable : never);
+        return policy;
+    }
+
+    private static ErrorCode errorCode(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeepseekApiException apiException) {
+                return apiException.getErrorCode();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.job.PdfFileScheduler.ScheduledFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the PDF files of the input directory into one list per partition.
+ * Each partition's {@link ExecutionContext} carries the absolute paths of the files it owns,
+ * in the order of the {@link PdfFileScheduler}. With the {@code path} policy the partitions get
+ * contiguous ranges of the sorted files. Otherwise each file, in scheduling order, goes to the
+ * partition with the fewest bytes so far, which balances the partitions by size; with
+ * {@code largest-first} this is the longest-processing-time-first rule for the shortest makespan.
+ * In streaming discovery mode the directory is not listed up front; the partitions instead
+ * pull files from the scan shared through {@link StreamingPdfDiscovery}.
+ */
+@Component
+@Slf4j
+public class PdfFilePartitioner implements Partitioner {
+
+    public static final String FILES_KEY = "pdfFiles";
+    public static final String PARTITION_PREFIX = "partition";
+
+    @Autowired
+    private PdfFileScanner pdfFileScanner;
+
+    @Autowired
+    private PdfFileScheduler pdfFileScheduler;
+
+    @Value("${deepseek.pdf.discovery.mode:eager}")
+    private String discoveryMode;
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        if ("streaming".equalsIgnoreCase(discoveryMode)) {
+            Map<String, ExecutionContext> result = new HashMap<>();
+            for (int i = 0; i < gridSize; i++) {
+                result.put(PARTITION_PREFIX + i, new ExecutionContext());
+            }
+            log.info("Created {} partitions sharing a streaming discovery", gridSize);
+            return result;
+        }
+
+        List<Path> pdfFiles;
+        try {
+            pdfFiles = pdfFileScanner.scan();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to scan input directory", e);
+        }
+
+        int partitions = Math.max(1, Math.min(gridSize, pdfFiles.size()));
+        if (pdfFileScheduler.getPolicy() != PdfFileScheduler.Policy.PATH) {
+            return balanceBySize(pdfFileScheduler.schedule(pdfFiles), partitions);
+        }
+
+        int rangeSize = pdfFiles.size() / partitions;
+        int remainder = pdfFiles.size() % partitions;
+
+        Map<String, ExecutionContext> result = new HashMap<>();
+        int from = 0;
+        for (int i = 0; i < partitions; i++) {
+            int to = from + rangeSize + (i < remainder ? 1 : 0);
+
+            ArrayList<String> files = new ArrayList<>(to - from);
+            for (Path path : pdfFiles.subList(from, to)) {
+                files.add(path.toString());
+            }
+
+            ExecutionContext context = new ExecutionContext();
+            context.put(FILES_KEY, files);
+            result.put(PARTITION_PREFIX + i, context);
+
+            log.debug("Partition {} covers files {} to {}", i, from, to - 1);
+            from = to;
+        }
+
+        log.info("Split {} PDF files into {} partitions", pdfFiles.size(), partitions);
+        return result;
+    }
+
+    private Map<String, ExecutionContext> balanceBySize(List<ScheduledFile> scheduled, int partitions) {
+        List<ArrayList<String>> files = new ArrayList<>(partitions);
+        long[] bytes = new long[partitions];
+        for (int i = 0; i < partitions; i++) {
+            files.add(new ArrayList<>());
+        }
+
+        for (ScheduledFile file : scheduled) {
+            int lightest = 0;
+            for (int i = 1; i < partitions; i++) {
+                if (bytes[i] < bytes[lightest]) {
+                    lightest = i;
+                }
+            }
+            files.get(lightest).add(file.path().toString());
+            bytes[lightest] += file.size();
+        }
+
+        Map<String, ExecutionContext> result = new HashMap<>();
+        for (int i = 0; i < partitions; i++) {
+            ExecutionContext context = new ExecutionContext();
+            context.put(FILES_KEY, files.get(i));
+            result.put(PARTITION_PREFIX + i, context);
+            log.debug("Partition {} covers {} files, {} bytes", i, files.get(i).size(), bytes[i]);
+        }
+
+        log.info("Split {} PDF files into {} partitions balanced by size ({})",
+                scheduled.size(), partitions, pdfFileScheduler.getPolicy());
+        return result;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.service.ProcessedFileManifest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Scans the configured input directory for PDF files.
+ */
+@Component
+@Slf4j
+public class PdfFileScanner {
+
+    @Value("${deepseek.pdf.input-directory}")
+    private String inputDirectory;
+
+    @Autowired
+    private ProcessedFileManifest processedFileManifest;
+
+    /**
+     * Lists the PDF files below the input directory that have not been processed yet, creating the
+     * directory if it does not exist. Files recorded unchanged in the processed file manifest are skipped.
+     * The result is sorted by path so that repeated scans of an unchanged tree yield the same order.
+     *
+     * @return The sorted list of PDF files
+     * @throws IOException If the directory cannot be created or walked
+     */
+    public List<Path> scan() throws IOException {
+        Path inputPath = Paths.get(inputDirectory);
+        if (!Files.exists(inputPath)) {
+            log.warn("Input directory does not exist: {}", inputDirectory);
+            Files.createDirectories(inputPath);
+            log.info("Created input directory: {}", inputDirectory);
+        }
+
+        List<Path> pdfFiles;
+        try (Stream<Path> paths = Files.walk(inputPath)) {
+            pdfFiles = paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.toString().toLowerCase().endsWith(".pdf"))
+                    .filter(path -> !processedFileManifest.isProcessed(path))
+                    .map(Path::toAbsolutePath)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        log.info("Found {} new or changed PDF files in directory: {}", pdfFiles.size(), inputDirectory);
+        return pdfFiles;
+    }
+}
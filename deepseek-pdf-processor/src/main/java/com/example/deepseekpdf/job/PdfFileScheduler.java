@@ -0,0 +1,182 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Decides the order in which discovered PDF files are processed.
+ * <p>
+ * Files matching one of {@code deepseek.pdf.scheduling.priority-patterns} come first, in the order of
+ * the patterns. The patterns are globs matched against the path below the input directory, so they can
+ * select directories ({@code urgent/**}) as well as tags in file names ({@code **.priority.pdf}).
+ * Within a priority class {@code deepseek.pdf.scheduling.policy} orders the files:
+ * <ul>
+ *   <li>{@code largest-first}: biggest files first, so that no large file starts at the end of a run
+ *       and stretches its makespan,</li>
+ *   <li>{@code shortest-first}: smallest files first, for the lowest average latency per document,</li>
+ *   <li>{@code path}: by path, the order of earlier versions.</li>
+ * </ul>
+ * File size stands in for the processing cost, since pages and tokens are not known before a file is read.
+ */
+@Component
+@Slf4j
+public class PdfFileScheduler {
+
+    /**
+     * Ordering of the files within a priority class.
+     */
+    public enum Policy {
+        PATH, SHORTEST_FIRST, LARGEST_FIRST;
+
+        static Policy fromString(String value) {
+            for (Policy policy : values()) {
+                if (policy.name().replace('_', '-').equalsIgnoreCase(value)) {
+                    return policy;
+                }
+            }
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Invalid scheduling policy",
+                "deepseek.pdf.scheduling.policy: " + value
+            );
+        }
+    }
+
+    /**
+     * A file with the attributes it is scheduled by.
+     *
+     * @param path The absolute path of the file
+     * @param size The size of the file in bytes
+     * @param priority The index of the first matching priority pattern, lower is more urgent
+     */
+    public record ScheduledFile(Path path, long size, int priority) {
+    }
+
+    @Value("${deepseek.pdf.input-directory}")
+    private String inputDirectory;
+
+    @Value("${deepseek.pdf.scheduling.policy:largest-first}")
+    private String policyName;
+
+    @Value("${deepseek.pdf.scheduling.priority-patterns:}")
+    private String[] priorityPatterns;
+
+    private Policy policy;
+    private PathMatcher[] priorityMatchers;
+    private Comparator<ScheduledFile> comparator;
+
+    @PostConstruct
+    public void init() {
+        policy = Policy.fromString(policyName);
+        priorityMatchers = Arrays.stream(priorityPatterns)
+                .map(String::trim)
+                .filter(pattern -> !pattern.isEmpty())
+                .map(pattern -> FileSystems.getDefault().getPathMatcher("glob:" + pattern))
+                .toArray(PathMatcher[]::new);
+
+        Comparator<ScheduledFile> byPolicy = switch (policy) {
+            case SHORTEST_FIRST -> Comparator.comparingLong(ScheduledFile::size);
+            case LARGEST_FIRST -> Comparator.comparingLong(ScheduledFile::size).reversed();
+            case PATH -> Comparator.comparing(ScheduledFile::path);
+        };
+        comparator = Comparator.comparingInt(ScheduledFile::priority)
+                .thenComparing(byPolicy)
+                .thenComparing(ScheduledFile::path);
+        log.info("Scheduling PDF files {} with {} priority patterns", policy, priorityMatchers.length);
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return The order in which scheduled files should be processed
+     */
+    public Comparator<ScheduledFile> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Describes a file for scheduling. Files that cannot be read are scheduled with size 0; the
+     * reader reports the error when it gets to them.
+     *
+     * @param path The absolute path of the file
+     * @return The scheduled file
+     */
+    public ScheduledFile describe(Path path) {
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (IOException e) {
+            size = 0;
+        }
+        return describe(path, size);
+    }
+
+    /**
+     * Describes a file of known size for scheduling.
+     *
+     * @param path The absolute path of the file
+     * @param size The size of the file in bytes
+     * @return The scheduled file
+     */
+    public ScheduledFile describe(Path path, long size) {
+        return new ScheduledFile(path, size, priority(path));
+    }
+
+    /**
+     * Sorts files into processing order.
+     *
+     * @param files The files to schedule
+     * @return The files with their attributes, in processing order
+     */
+    public List<ScheduledFile> schedule(List<Path> files) {
+        List<ScheduledFile> scheduled = new ArrayList<>(files.size());
+        for (Path file : files) {
+            scheduled.add(describe(file));
+        }
+        scheduled.sort(comparator);
+        return scheduled;
+    }
+
+    /**
+     * Sorts files into processing order.
+     *
+     * @param files The files to schedule
+     * @return The paths of the files, in processing order
+     */
+    public List<Path> order(List<Path> files) {
+        return schedule(files).stream()
+                .map(ScheduledFile::path)
+                .toList();
+    }
+
+    private int priority(Path path) {
+        if (priorityMatchers.length == 0) {
+            return 0;
+        }
+        Path root = Paths.get(inputDirectory).toAbsolutePath();
+        Path relative = path.startsWith(root) ? root.relativize(path) : path;
+        for (int i = 0; i < priorityMatchers.length; i++) {
+            if (priorityMatchers[i].matches(relative)) {
+                return i;
+            }
+        }
+        return priorityMatchers.length;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.deepseekpdf.job;
+
+import java.nio.file.Path;
+
+/**
+ * Supplies the PDF files read by {@link PdfItemReader}.
+ */
+public interface PdfFileSource extends AutoCloseable {
+
+    /**
+     * Returns the next PDF file, blocking if discovery has not caught up yet.
+     *
+     * @return The next file, or null when there are no more files
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    Path next() throws InterruptedException;
+
+    /**
+     * @return The number of files returned so far. Only a list source returns the same files in the
+     *         same order again, so only its position can be used to resume.
+     */
+    long getPosition();
+
+    /**
+     * Releases the resources held by the source.
+     */
+    @Override
+    void close();
+}
@@ -1,5 +1,6 @@
 package com.example.deepseekpdf.job;
 
+import com.example.deepseekpdf.model.InputMode;
 import com.example.deepseekpdf.model.PdfDocument;
 import com.example.deepseekpdf.service.PdfProcessingService;
 import lombok.extern.slf4j.Slf4j;
@@ -23,6 +24,9 @@ public class PdfItemProcessor implements ItemProcessor<PdfDocument, PdfDocument>
     @Value("${deepseek.api.prompt}")
     private String defaultPrompt;
     
+    @Value("#{jobParameters['inputMode'] ?: '${deepseek.pdf.input-mode:attachment}'}")
+    private String inputMode;
+    
     @Override
     public PdfDocument process(PdfDocument pdfDocument) throws Exception {
         log.info("Processing PDF: {}", pdfDocument.getFileName());
@@ -30,9 +34,9 @@ public class PdfItemProcessor implements ItemProcessor<PdfDocument, PdfDocument>
         try {
             // Use the default prompt from configuration
             return pdfProcessingService.processPdf(
-                    pdfDocument.getFileName(),
-                    pdfDocument.getContent(),
-                    defaultPrompt
+                    pdfDocument,
+                    defaultPrompt,
+                    InputMode.fromString(inputMode, InputMode.ATTACHMENT)
             );
         } catch (Exception e) {
             log.error("Error processing PDF: {}", pdfDocument.getFileName(), e);
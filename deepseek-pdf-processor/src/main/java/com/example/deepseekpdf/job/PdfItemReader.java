@@ -1,94 +1,281 @@
 package com.example.deepseekpdf.job;
 
+import com.example.deepseekpdf.exception.UnreadablePdfException;
+import com.example.deepseekpdf.model.PdfContent;
 import com.example.deepseekpdf.model.PdfDocument;
+import com.example.deepseekpdf.service.PdfMemoryBudget;
+import com.example.deepseekpdf.service.PdfPackingService;
+import com.example.deepseekpdf.service.PipelineMetrics;
+import com.example.deepseekpdf.service.ProcessedFileManifest;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.configuration.annotation.StepScope;
-import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Spring Batch ItemReader for reading PDF files from a directory.
+ * When running inside a partition the reader only reads the files assigned to it by
+ * {@link PdfFilePartitioner}. Otherwise it either scans the whole input directory up front or,
+ * in streaming discovery mode, reads files from {@link StreamingPdfDiscovery} as they are found.
+ * Documents only reference their file; the reader reserves their size in the {@link PdfMemoryBudget}
+ * and blocks while too many bytes are in flight.
+ * <p>
+ * The number of files read is saved in the step execution context with every chunk. A restarted
+ * partition gets back its original file list and skips the files of committed chunks, so at most
+ * one chunk is processed again. Lists that are scanned again on restart, and streaming discovery,
+ * already leave out completed files through the processed file manifest. Streaming discovery hands
+ * out files in a different order on every scan, so no position is saved for it.
+ * <p>
+ * With {@code deepseek.batch.work-stealing} enabled, partition readers take files from the other
+ * partitions once their own are done (see {@link WorkStealingPdfFiles}). Positions then no longer
+ * identify the files read, so a restarted partition instead takes back its own and its stolen
+ * files and leaves out those recorded in the processed file manifest.
+ * <p>
+ * With {@code deepseek.packing.enabled}, consecutive small files are returned together as one pack
+ * item (see {@link PdfPackingService}). The file read ahead of a full pack is not counted as read
+ * until it is returned.
  */
 @Component
 @StepScope
 @Slf4j
-public class PdfItemReader implements ItemReader<PdfDocument> {
+public class PdfItemReader implements ItemStreamReader<PdfDocument> {
 
     @Value("${deepseek.pdf.input-directory}")
     private String inputDirectory;
-    
-    private List<File> pdfFiles;
-    private AtomicInteger nextFileIndex;
-    
+
+    @Value("${deepseek.pdf.discovery.mode:eager}")
+    private String discoveryMode;
+
+    @Value("#{stepExecutionContext['" + PdfFilePartitioner.FILES_KEY + "']}")
+    private List<String> partitionFiles;
+
+    @Value("#{stepExecution.jobExecution.id}")
+    private Long jobExecutionId;
+
+    @Autowired
+    private PdfFileScanner pdfFileScanner;
+
+    @Autowired
+    private StreamingPdfDiscovery streamingPdfDiscovery;
+
+    @Autowired
+    private PdfFileScheduler pdfFileScheduler;
+
+    @Autowired
+    private WorkStealingPdfFiles workStealingPdfFiles;
+
+    @Autowired
+    private ProcessedFileManifest processedFileManifest;
+
+    @Autowired
+    private PdfMemoryBudget pdfMemoryBudget;
+
+    @Autowired
+    private PdfPackingService pdfPackingService;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Value("${deepseek.batch.processing-mode:blocking}")
+    private String processingMode;
+
+    @Value("${deepseek.batch.work-stealing:true}")
+    private boolean workStealing;
+
+    private static final String POSITION_KEY = "pdfItemReader.position";
+    private static final String STOLEN_KEY = "pdfItemReader.stolen";
+
+    private PdfFileSource pdfFiles;
+
+    // File read ahead of a pack it did not fit into, and a failure met while filling a pack
+    private PdfDocument lookahead;
+    private Exception pendingFailure;
+
+    // Documents of this reader that may still hold a reservation, by id, released when the step ends
+    private final Map<String, Long> reservedDocuments = new ConcurrentHashMap<>();
+
     /**
-     * Initializes the reader by scanning the input directory for PDF files.
-     * 
-     * @throws Exception If an error occurs during initialization
+     * Initializes the reader by resolving the files of the current partition, by scanning the
+     * input directory, or by joining the streaming discovery of the current job execution.
+     *
+     * @param executionContext The step execution context
      */
-    public void init() throws Exception {
-        log.info("Initializing PDF item reader with input directory: {}", inputDirectory);
-        
-        Path inputPath = Paths.get(inputDirectory);
-        if (!Files.exists(inputPath)) {
-            log.warn("Input directory does not exist: {}", inputDirectory);
-            Files.createDirectories(inputPath);
-            log.info("Created input directory: {}", inputDirectory);
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        try {
+            if (partitionFiles != null && workStealing) {
+                pdfFiles = openWorkStealing(executionContext);
+            } else if (partitionFiles != null) {
+                log.info("Initializing PDF item reader with {} partition files", partitionFiles.size());
+                ListPdfFileSource listSource = new ListPdfFileSource(partitionFiles.stream()
+                        .map(Paths::get)
+                        .collect(Collectors.toList()));
+                if (executionContext.containsKey(POSITION_KEY)) {
+                    long position = executionContext.getLong(POSITION_KEY);
+                    log.info("Restarting partition after {} of {} files", position, listSource.size());
+                    listSource.skipTo(position);
+                }
+                pdfFiles = listSource;
+            } else if (isStreamingDiscovery()) {
+                log.info("Initializing PDF item reader with streaming discovery of: {}", inputDirectory);
+                pdfFiles = streamingPdfDiscovery.open(jobExecutionId);
+            } else {
+                log.info("Initializing PDF item reader with input directory: {}", inputDirectory);
+                pdfFiles = new ListPdfFileSource(pdfFileScheduler.order(pdfFileScanner.scan()));
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to scan input directory: " + inputDirectory, e);
         }
-        
-        try (Stream<Path> paths = Files.walk(inputPath)) {
-            pdfFiles = paths
-                    .filter(Files::isRegularFile)
-                    .filter(path -> path.toString().toLowerCase().endsWith(".pdf"))
-                    .map(Path::toFile)
-                    .collect(Collectors.toList());
+    }
+
+    /**
+     * Saves the number of files read; called by the step before every chunk commit.
+     *
+     * @param executionContext The step execution context
+     */
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (pdfFiles instanceof ListPdfFileSource) {
+            boolean readAhead = lookahead != null || pendingFailure != null;
+            executionContext.putLong(POSITION_KEY, pdfFiles.getPosition() - (readAhead ? 1 : 0));
+        }
+        if (pdfFiles instanceof WorkStealingPdfFiles.Source stealingSource) {
+            executionContext.put(STOLEN_KEY, stealingSource.getStolenFiles());
         }
-        
-        log.info("Found {} PDF files in directory: {}", pdfFiles.size(), inputDirectory);
-        nextFileIndex = new AtomicInteger(0);
     }
-    
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (pdfFiles != null) {
+            pdfFiles.close();
+        }
+        // Release what failed items never handed to the writer
+        reservedDocuments.keySet().forEach(pdfMemoryBudget::release);
+        reservedDocuments.clear();
+    }
+
     @Override
     public PdfDocument read() throws Exception {
-        if (pdfFiles == null) {
-            init();
+        if (pendingFailure != null) {
+            Exception failure = pendingFailure;
+            pendingFailure = null;
+            throw failure;
         }
-        
-        int index = nextFileIndex.getAndIncrement();
-        if (index < pdfFiles.size()) {
-            File pdfFile = pdfFiles.get(index);
-            log.info("Reading PDF file {}/{}: {}", index + 1, pdfFiles.size(), pdfFile.getName());
-            
+
+        PdfDocument document = lookahead != null ? lookahead : readDocument();
+        lookahead = null;
+        if (document == null || !pdfPackingService.isPackable(document)) {
+            return document;
+        }
+
+        List<PdfDocument> members = new ArrayList<>();
+        members.add(document);
+        while (true) {
+            PdfDocument next;
             try {
-                byte[] content = Files.readAllBytes(pdfFile.toPath());
-                
-                return PdfDocument.builder()
-                        .id(UUID.randomUUID().toString())
-                        .fileName(pdfFile.getName())
-                        .filePath(pdfFile.getAbsolutePath())
-                        .content(content)
-                        .fileSize(content.length)
-                        .contentType("application/pdf")
-                        .status("PENDING")
-                        .build();
-            } catch (IOException e) {
-                log.error("Error reading PDF file: {}", pdfFile.getName(), e);
-                throw e;
+                next = readDocument();
+            } catch (Exception e) {
+                // Return the pack first, the failure is reported by the next read
+                pendingFailure = e;
+                break;
+            }
+            if (next == null) {
+                break;
+            }
+            if (!pdfPackingService.fits(members, next)) {
+                lookahead = next;
+                break;
+            }
+            members.add(next);
+        }
+        return pdfPackingService.pack(members);
+    }
+
+    private PdfDocument readDocument() throws Exception {
+        // Waiting for discovery and for the memory budget are stages of their own, not part of reading
+        Timer.Sample discoveryWait = pipelineMetrics.start();
+        Path pdfFile = pdfFiles.next();
+        if (pdfFile == null) {
+            return null; // No more items
+        }
+        pipelineMetrics.stop(discoveryWait, PipelineMetrics.STAGE_DISCOVERY_WAIT);
+
+        if (pdfFiles instanceof ListPdfFileSource listSource) {
+            log.info("Reading PDF file {}/{}: {}", pdfFiles.getPosition(), listSource.size(), pdfFile.getFileName());
+        } else {
+            log.info("Reading PDF file #{}: {}", pdfFiles.getPosition(), pdfFile.getFileName());
+        }
+
+        long fileSize;
+        Timer.Sample read = pipelineMetrics.start();
+        try {
+            fileSize = Files.size(pdfFile);
+        } catch (IOException e) {
+            log.error("Error reading PDF file: {}", pdfFile.getFileName(), e);
+            throw new UnreadablePdfException(pdfFile.toAbsolutePath(), e);
+        } finally {
+            pipelineMetrics.stop(read, PipelineMetrics.STAGE_READ);
+        }
+        String id = UUID.randomUUID().toString();
+
+        if (pdfMemoryBudget.isEnabled()) {
+            Timer.Sample budgetWait = pipelineMetrics.start();
+            reservedDocuments.keySet().removeIf(documentId -> !pdfMemoryBudget.isReserved(documentId));
+            // In a chunk step the unwritten items of the current chunk are released by this thread only
+            long heldByCaller = "reactive".equalsIgnoreCase(processingMode) ? 0
+                    : reservedDocuments.values().stream().mapToLong(Long::longValue).sum();
+            pdfMemoryBudget.acquire(id, fileSize, heldByCaller);
+            reservedDocuments.put(id, Math.min(fileSize, pdfMemoryBudget.getMaxInFlightBytes()));
+            pipelineMetrics.stop(budgetWait, PipelineMetrics.STAGE_MEMORY_BUDGET_WAIT);
+        }
+
+        return PdfDocument.builder()
+                .id(id)
+                .fileName(pdfFile.getFileName().toString())
+                .filePath(pdfFile.toAbsolutePath().toString())
+                .content(PdfContent.ofFile(pdfFile.toAbsolutePath(), fileSize))
+                .fileSize(fileSize)
+                .contentType("application/pdf")
+                .status("PENDING")
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private PdfFileSource openWorkStealing(ExecutionContext executionContext) {
+        LinkedHashSet<Path> files = new LinkedHashSet<>();
+        partitionFiles.forEach(file -> files.add(Paths.get(file)));
+
+        if (executionContext.containsKey(STOLEN_KEY)) {
+            ((List<String>) executionContext.get(STOLEN_KEY)).forEach(file -> files.add(Paths.get(file)));
+            if (!processedFileManifest.isEnabled()) {
+                log.warn("Restarting partition without a processed file manifest; completed files are processed again");
             }
+            files.removeIf(processedFileManifest::isProcessed);
+            log.info("Restarting partition with {} unprocessed own and stolen files", files.size());
+        } else {
+            log.info("Initializing PDF item reader with {} partition files and work stealing", files.size());
         }
-        
-        return null; // No more items
+        return workStealingPdfFiles.open(jobExecutionId, pdfFileScheduler.schedule(new ArrayList<>(files)));
+    }
+
+    private boolean isStreamingDiscovery() {
+        return "streaming".equalsIgnoreCase(discoveryMode);
     }
-} 
\ No newline at end of file
+}
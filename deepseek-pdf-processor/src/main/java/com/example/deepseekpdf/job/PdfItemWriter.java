@@ -1,53 +1,227 @@
 package com.example.deepseekpdf.job;
 
 import com.example.deepseekpdf.model.PdfDocument;
+import com.example.deepseekpdf.service.DeadLetterStore;
+import com.example.deepseekpdf.service.PdfMemoryBudget;
+import com.example.deepseekpdf.service.PdfPackingService;
+import com.example.deepseekpdf.service.PdfResultPublisher;
+import com.example.deepseekpdf.service.PipelineMetrics;
+import com.example.deepseekpdf.service.ProcessedFileManifest;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.configuration.annotation.StepScope;
-import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Spring Batch ItemWriter for writing processed PDF results to JSON files.
+ * Spring Batch ItemWriter for writing processed PDF results.
+ * By default every result is written to its own pretty-printed JSON file. With
+ * {@code deepseek.pdf.output-mode=jsonl} the results of a chunk are appended to a
+ * JSON Lines segment through {@link JsonlSegmentSink} instead, whose position is saved
+ * in the step execution context.
+ * Completed documents are recorded in the processed file manifest and resolve their
+ * dead-letter entry, if they had failed before, once their results are on disk and the chunk
+ * has committed. Every written document is published to the
+ * clients following the job through {@link PdfResultPublisher}.
+ * <p>
+ * Packs of small documents are written as their members. Members that failed on their own are
+ * moved to the dead-letter directory instead of being written.
  */
 @Component
 @StepScope
 @Slf4j
-public class PdfItemWriter implements ItemWriter<PdfDocument> {
+public class PdfItemWriter implements ItemStreamWriter<PdfDocument> {
 
     @Value("${deepseek.pdf.output-directory}")
     private String outputDirectory;
     
+    @Value("${deepseek.pdf.output-mode:files}")
+    private String outputMode;
+    
+    @Value("#{stepExecution.jobExecutionId}")
+    private Long jobExecutionId;
+    
+    @Autowired
+    private ProcessedFileManifest processedFileManifest;
+    
+    @Autowired
+    private PdfMemoryBudget pdfMemoryBudget;
+    
+    @Autowired
+    private DeadLetterStore deadLetterStore;
+    
+    @Autowired
+    private JsonlSegmentSink jsonlSegmentSink;
+    
+    @Autowired
+    private PdfResultPublisher pdfResultPublisher;
+    
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+    
     private final ObjectMapper objectMapper = new ObjectMapper();
     
     @Override
-    public void write(List<? extends PdfDocument> items) throws Exception {
-        log.info("Writing {} processed PDF results", items.size());
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        if (isJsonl()) {
+            jsonlSegmentSink.open(executionContext);
+        }
+    }
+    
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (isJsonl()) {
+            jsonlSegmentSink.update(executionContext);
+        }
+    }
+    
+    @Override
+    public void close() throws ItemStreamException {
+        if (isJsonl()) {
+            jsonlSegmentSink.close();
+        }
+    }
+    
+    @Override
+    public void write(Chunk<? extends PdfDocument> chunk) throws Exception {
+        List<PdfDocument> documents = unpack(chunk.getItems());
+        log.info("Writing {} processed PDF results", documents.size());
         
+        Timer.Sample sample = pipelineMetrics.start();
+        try {
+            if (documents.isEmpty()) {
+                return;
+            }
+            if (isJsonl()) {
+                writeSegment(documents);
+            } else {
+                writeFiles(documents);
+            }
+        } finally {
+            pipelineMetrics.stop(sample, PipelineMetrics.STAGE_WRITE);
+        }
+    }
+    
+    private boolean isJsonl() {
+        return "jsonl".equalsIgnoreCase(outputMode);
+    }
+    
+    /**
+     * Replaces packs by their members, moving failed members to the dead-letter directory.
+     */
+    private List<PdfDocument> unpack(List<? extends PdfDocument> items) {
+        if (items.stream().allMatch(item -> item.getPackedDocuments() == null)) {
+            return new ArrayList<>(items);
+        }
+        List<PdfDocument> documents = new ArrayList<>();
+        for (PdfDocument document : PdfPackingService.unpack(items)) {
+            if (!"ERROR".equals(document.getStatus())) {
+                documents.add(document);
+                continue;
+            }
+            try {
+                deadLetterStore.record(document);
+                pdfResultPublisher.publish(jobExecutionId, document);
+            } finally {
+                pdfMemoryBudget.release(document.getId());
+            }
+        }
+        return documents;
+    }
+    
+    private void writeFiles(List<? extends PdfDocument> items) throws Exception {
         Path outputPath = Paths.get(outputDirectory);
         if (!Files.exists(outputPath)) {
             log.info("Creating output directory: {}", outputDirectory);
             Files.createDirectories(outputPath);
         }
         
+        List<PdfDocument> completed = new ArrayList<>(items.size());
         for (PdfDocument document : items) {
             String outputFileName = document.getFileName().replaceAll("\\.pdf$", "") + "_result.json";
             Path outputFile = outputPath.resolve(outputFileName);
             
             // Remove content to avoid storing large binary data
             document.setContent(null);
+            document.setExtractedText(null);
+            
+            try {
+                // Write result to JSON file
+                objectMapper.writerWithDefaultPrettyPrinter()
+                        .writeValue(outputFile.toFile(), document);
+            } finally {
+                pdfMemoryBudget.release(document.getId());
+            }
             
-            // Write result to JSON file
-            objectMapper.writerWithDefaultPrettyPrinter()
-                    .writeValue(outputFile.toFile(), document);
+            if ("COMPLETED".equals(document.getStatus())) {
+                completed.add(document);
+            }
+            pdfResultPublisher.publish(jobExecutionId, document);
             
             log.info("Wrote result for PDF {} to {}", document.getFileName(), outputFile);
         }
+        recordProcessed(completed);
+    }
+    
+    private void writeSegment(List<? extends PdfDocument> items) throws Exception {
+        for (PdfDocument document : items) {
+            document.setContent(null);
+            document.setExtractedText(null);
+        }
+        
+        try {
+            jsonlSegmentSink.write(items);
+        } finally {
+            items.forEach(document -> pdfMemoryBudget.release(document.getId()));
+        }
+        
+        List<PdfDocument> completed = new ArrayList<>(items.size());
+        for (PdfDocument document : items) {
+            if ("COMPLETED".equals(document.getStatus())) {
+                completed.add(document);
+            }
+            pdfResultPublisher.publish(jobExecutionId, document);
+        }
+        recordProcessed(completed);
+    }
+    
+    /**
+     * Records completed documents in the manifest and resolves their dead-letter entries.
+     * Only files whose results are on disk get here, and inside a chunk transaction the records
+     * wait for the commit, so that a failed write or a rolled back chunk never marks a file as
+     * processed and reruns pick it up again.
+     */
+    private void recordProcessed(List<PdfDocument> completed) {
+        if (completed.isEmpty()) {
+            return;
+        }
+        Runnable record = () -> completed.forEach(document -> {
+            processedFileManifest.record(document);
+            deadLetterStore.resolve(document);
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record.run();
+                }
+            });
+        } else {
+            record.run();
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.model.InputMode;
+import com.example.deepseekpdf.model.PdfDocument;
+import com.example.deepseekpdf.service.DeadLetterStore;
+import com.example.deepseekpdf.service.PdfMemoryBudget;
+import com.example.deepseekpdf.service.PdfPackingService;
+import com.example.deepseekpdf.service.PdfProcessingService;
+import com.example.deepseekpdf.service.PdfResultPublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Tasklet that runs the whole reader-processor-writer pipeline as a single Reactor flow.
+ * Documents are pulled from {@link PdfItemReader} only as fast as API slots free up,
+ * up to {@code deepseek.reactive.max-in-flight} concurrent requests, and are collected into
+ * windows of {@code deepseek.batch.chunk-size} documents. Each call of the tasklet writes one
+ * window with {@link PdfItemWriter} and returns, so every window is committed in its own
+ * transaction while the pipeline keeps processing the next documents. Failed documents are
+ * skipped and moved to the dead-letter directory, like in the fault-tolerant blocking step, up to
+ * {@code deepseek.batch.skip-limit} documents per step. Failures that {@link PdfFailureClassifier}
+ * treats as fatal, and the skip after the limit, fail the step.
+ * <p>
+ * The reader saves no position in this mode, so a restarted step scans the input directory again
+ * and leaves out the documents of committed windows through the processed file manifest.
+ */
+@Component
+@StepScope
+@Slf4j
+public class ReactivePdfProcessingTasklet implements Tasklet {
+
+    @Autowired
+    private PdfItemReader pdfItemReader;
+
+    @Autowired
+    private PdfItemWriter pdfItemWriter;
+
+    @Autowired
+    private PdfProcessingService pdfProcessingService;
+
+    @Autowired
+    private DeadLetterStore deadLetterStore;
+
+    @Autowired
+    private PdfMemoryBudget pdfMemoryBudget;
+
+    @Autowired
+    private PdfResultPublisher pdfResultPublisher;
+
+    @Autowired
+    private PdfFailureClassifier pdfFailureClassifier;
+
+    @Value("${deepseek.api.prompt:}")
+    private String defaultPrompt;
+
+    @Value("${deepseek.batch.chunk-size:10}")
+    private int chunkSize;
+
+    @Value("${deepseek.reactive.max-in-flight:256}")
+    private int maxInFlight;
+
+    @Value("#{jobParameters['inputMode'] ?: '${deepseek.pdf.input-mode:attachment}'}")
+    private String inputMode;
+
+    @Value("#{stepExecution.jobExecutionId}")
+    private Long jobExecutionId;
+
+    // Windows of processed documents, opened by the first call of the step execution
+    private Stream<List<PdfDocument>> pipeline;
+    private Iterator<List<PdfDocument>> windows;
+    private long written;
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        if (windows == null) {
+            open();
+        }
+
+        try {
+            if (!windows.hasNext()) {
+                log.info("Reactive PDF processing finished, wrote {} results", written);
+                close();
+                return RepeatStatus.FINISHED;
+            }
+            write(windows.next(), contribution);
+            return RepeatStatus.CONTINUABLE;
+        } catch (Exception e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels the pipeline if the step ends before it completed, e.g. because it was stopped.
+     */
+    @PreDestroy
+    public void close() {
+        if (pipeline != null) {
+            pipeline.close();
+            pipeline = null;
+        }
+    }
+
+    private void open() {
+        String prompt = defaultPrompt.isEmpty() ? null : defaultPrompt;
+        InputMode mode = InputMode.fromString(inputMode, InputMode.ATTACHMENT);
+        log.info("Starting reactive PDF processing with up to {} requests in flight", maxInFlight);
+
+        pipeline = Flux.<PdfDocument>generate(sink -> {
+                    try {
+                        PdfDocument document = pdfItemReader.read();
+                        if (document == null) {
+                            sink.complete();
+                        } else {
+                            sink.next(document);
+                        }
+                    } catch (Exception e) {
+                        sink.error(e);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(document -> pdfProcessingService.processPdfReactive(document, prompt, mode), maxInFlight)
+                .buffer(chunkSize)
+                // Hold at most one window besides the one being written
+                .toStream(1);
+        windows = pipeline.iterator();
+    }
+
+    private void write(List<PdfDocument> window, StepContribution contribution) throws Exception {
+        // Every processed item was read once, packs included
+        for (int i = 0; i < window.size(); i++) {
+            contribution.incrementReadCount();
+        }
+
+        List<PdfDocument> completed = new ArrayList<>(window.size());
+        for (PdfDocument document : PdfPackingService.unpack(window)) {
+            if ("ERROR".equals(document.getStatus())) {
+                // Fails the step on fatal failures and once the skip limit is reached
+                DeepseekApiException error = pdfFailureClassifier.failureOf(document);
+                if (!pdfFailureClassifier.shouldSkip(error, contribution.getStepSkipCount())) {
+                    throw error;
+                }
+                skip(document);
+                contribution.incrementProcessSkipCount();
+            } else {
+                completed.add(document);
+            }
+        }
+        if (!completed.isEmpty()) {
+            pdfItemWriter.write(new Chunk<>(completed));
+            contribution.incrementWriteCount(completed.size());
+            written += completed.size();
+        }
+    }
+
+    private void skip(PdfDocument document) {
+        try {
+            deadLetterStore.record(document);
+            pdfResultPublisher.publish(jobExecutionId, document);
+        } finally {
+            pdfMemoryBudget.release(document.getId());
+        }
+    }
+}
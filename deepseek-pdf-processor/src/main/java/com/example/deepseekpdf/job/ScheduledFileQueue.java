@@ -0,0 +1,90 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.job.PdfFileScheduler.ScheduledFile;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded blocking queue of discovered files that hands out the most urgent file first.
+ * Producers block while the queue is full. Once the queue is closed and drained, consumers get null.
+ */
+class ScheduledFileQueue {
+
+    private final PriorityQueue<ScheduledFile> files;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private boolean closed;
+
+    ScheduledFileQueue(int capacity, Comparator<ScheduledFile> comparator) {
+        this.capacity = Math.max(1, capacity);
+        this.files = new PriorityQueue<>(comparator);
+    }
+
+    /**
+     * Adds a file, blocking while the queue is full.
+     *
+     * @param file The file to add
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    void put(ScheduledFile file) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (files.size() >= capacity) {
+                notFull.await();
+            }
+            files.add(file);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the most urgent file, blocking while the queue is empty and still open.
+     *
+     * @return The file, or null once the queue is closed and empty
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    ScheduledFile take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (files.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            ScheduledFile file = files.poll();
+            if (file != null) {
+                notFull.signal();
+            }
+            return file;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the end of the input; consumers drain the remaining files and then get null.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return files.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
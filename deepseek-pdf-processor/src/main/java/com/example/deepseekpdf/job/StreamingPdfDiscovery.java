@@ -0,0 +1,232 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.job.PdfFileScheduler.ScheduledFile;
+import com.example.deepseekpdf.service.ProcessedFileManifest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lazy discovery of PDF files for input trees that are too large to list up front.
+ * <p>
+ * A small pool of scanner threads walks sibling directories in parallel and hands PDF files to a
+ * bounded queue as soon as they are found, so processing starts immediately and memory stays flat
+ * regardless of the size of the tree. Directories are expanded depth first to keep the number of
+ * pending directories small. All partitions of a job execution share one scan and pull from the
+ * same queue, which also balances work between them. The queue hands out the queued files in the
+ * order of the {@link PdfFileScheduler}, so the scheduling policy applies within the window of
+ * files discovered but not yet read.
+ * <p>
+ * Like {@link PdfFileScanner}, the scan does not descend into symbolic links to directories, so a
+ * link cycle cannot make it loop, while links to PDF files are read. Because the scanner threads
+ * race each other, the order of the files differs between scans; a restarted run does not resume
+ * at a position but relies on the processed file manifest to leave out completed files.
+ */
+@Component
+@Slf4j
+public class StreamingPdfDiscovery {
+
+    @Autowired
+    private ProcessedFileManifest processedFileManifest;
+
+    @Autowired
+    private PdfFileScheduler pdfFileScheduler;
+
+    @Value("${deepseek.pdf.input-directory}")
+    private String inputDirectory;
+
+    @Value("${deepseek.pdf.discovery.parallelism:4}")
+    private int parallelism;
+
+    @Value("${deepseek.pdf.discovery.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private final Map<Long, Scan> scans = new HashMap<>();
+
+    /**
+     * Opens a file source backed by the shared scan of a job execution, starting the scan
+     * for the first caller.
+     *
+     * @param jobExecutionId The id of the job execution
+     * @return The file source
+     * @throws IOException If the input directory cannot be created
+     */
+    public synchronized PdfFileSource open(Long jobExecutionId) throws IOException {
+        Scan scan = scans.get(jobExecutionId);
+        if (scan == null) {
+            Path inputPath = Paths.get(inputDirectory);
+            Files.createDirectories(inputPath);
+            scan = new Scan(jobExecutionId, inputPath);
+            scans.put(jobExecutionId, scan);
+            scan.start();
+        }
+        scan.references++;
+        return new ScanSource(scan);
+    }
+
+    /**
+     * @return The number of discovered files waiting to be read, over all running scans
+     */
+    public synchronized int getQueuedFiles() {
+        return scans.values().stream()
+                .mapToInt(scan -> scan.files.size())
+                .sum();
+    }
+
+    private synchronized void release(Scan scan) {
+        scan.references--;
+        if (scan.references == 0) {
+            scans.remove(scan.jobExecutionId);
+            scan.stop();
+        }
+    }
+
+    /**
+     * Parallel scan of the input tree for one job execution.
+     */
+    private class Scan {
+
+        private final Long jobExecutionId;
+        private final Path root;
+        private final ScheduledFileQueue files = new ScheduledFileQueue(queueCapacity, pdfFileScheduler.comparator());
+        private final LinkedBlockingDeque<Path> directories = new LinkedBlockingDeque<>();
+        private final AtomicInteger pendingDirectories = new AtomicInteger();
+        private final AtomicLong discovered = new AtomicLong();
+        private final Thread[] scanners = new Thread[Math.max(1, parallelism)];
+        private int references;
+        private volatile boolean stopped;
+
+        Scan(Long jobExecutionId, Path root) {
+            this.jobExecutionId = jobExecutionId;
+            this.root = root;
+        }
+
+        void start() {
+            log.info("Starting streaming discovery of {} with {} scanner threads", root, scanners.length);
+            pendingDirectories.incrementAndGet();
+            directories.push(root);
+            for (int i = 0; i < scanners.length; i++) {
+                scanners[i] = Thread.ofVirtual().name("pdf-discovery-" + jobExecutionId + "-" + i).start(this::scan);
+            }
+        }
+
+        void stop() {
+            stopped = true;
+            for (Thread scanner : scanners) {
+                scanner.interrupt();
+            }
+        }
+
+        private void scan() {
+            try {
+                while (!stopped) {
+                    Path directory = directories.pollFirst(100, TimeUnit.MILLISECONDS);
+                    if (directory == null) {
+                        if (pendingDirectories.get() == 0) {
+                            return;
+                        }
+                        continue;
+                    }
+
+                    try {
+                        scanDirectory(directory);
+                    } finally {
+                        if (pendingDirectories.decrementAndGet() == 0) {
+                            log.info("Streaming discovery of {} finished, found {} PDF files", root, discovered.get());
+                            files.close();
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void scanDirectory(Path directory) throws InterruptedException {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (stopped) {
+                        return;
+                    }
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        if (attributes.isSymbolicLink()) {
+                            attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                            if (attributes.isDirectory()) {
+                                log.debug("Not following symbolic link to directory {}", entry);
+                                continue;
+                            }
+                        }
+                    } catch (IOException e) {
+                        log.debug("Skipping unreadable entry {}: {}", entry, e.getMessage());
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        pendingDirectories.incrementAndGet();
+                        directories.push(entry);
+                    } else if (entry.toString().toLowerCase().endsWith(".pdf")
+                            && attributes.isRegularFile()
+                            && !processedFileManifest.isProcessed(entry)) {
+                        files.put(pdfFileScheduler.describe(entry.toAbsolutePath(), attributes.size()));
+                        discovered.incrementAndGet();
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Failed to scan directory {}: {}", directory, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Handle of one reader on a shared scan.
+     */
+    private class ScanSource implements PdfFileSource {
+
+        private final Scan scan;
+        private long position;
+        private boolean closed;
+
+        ScanSource(Scan scan) {
+            this.scan = scan;
+        }
+
+        @Override
+        public Path next() throws InterruptedException {
+            ScheduledFile file = scan.files.take();
+            if (file == null) {
+                return null;
+            }
+            position++;
+            return file.path();
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(scan);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.deepseekpdf.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Logs the document throughput of a step once it finishes. The load test harness of the
+ * benchmarks module compares the blocking and reactive processing modes under controlled API latency.
+ */
+@Component
+@Slf4j
+public class ThroughputLoggingListener implements StepExecutionListener {
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        LocalDateTime start = stepExecution.getStartTime();
+        LocalDateTime end = stepExecution.getEndTime() != null ? stepExecution.getEndTime() : LocalDateTime.now();
+        if (start == null) {
+            return stepExecution.getExitStatus();
+        }
+
+        long elapsedMillis = Math.max(1, Duration.between(start, end).toMillis());
+        long written = stepExecution.getWriteCount();
+        double docsPerSecond = written * 1000.0 / elapsedMillis;
+
+        log.info("Step {} wrote {} documents in {} ms ({} docs/sec)",
+                stepExecution.getStepName(), written, elapsedMillis, String.format("%.2f", docsPerSecond));
+        return stepExecution.getExitStatus();
+    }
+}
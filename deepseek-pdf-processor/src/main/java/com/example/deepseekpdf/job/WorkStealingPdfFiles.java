@@ -0,0 +1,164 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.job.PdfFileScheduler.ScheduledFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Work stealing between the partitions of a job execution.
+ * <p>
+ * Every partition reader registers the files assigned to it by {@link PdfFilePartitioner} and takes
+ * them in order. A reader that runs out of files steals the next file of the partition with the most
+ * bytes left, so no worker thread, and none of the API slots it could use, sits idle while another
+ * partition still has a backlog. Stealing from the front of the victim keeps the scheduling order.
+ * <p>
+ * Each reader remembers the files it stole, so that a restarted partition picks them up again.
+ * Files registered by an earlier reader of the same job execution are not handed out twice.
+ */
+@Component
+@Slf4j
+public class WorkStealingPdfFiles {
+
+    private final Map<Long, Pool> pools = new HashMap<>();
+
+    /**
+     * Registers the files of a partition with the pool of its job execution.
+     *
+     * @param jobExecutionId The id of the job execution
+     * @param files The files of the partition, in processing order
+     * @return The file source of the partition
+     */
+    public synchronized Source open(Long jobExecutionId, List<ScheduledFile> files) {
+        Pool pool = pools.computeIfAbsent(jobExecutionId, Pool::new);
+        pool.references++;
+        return new Source(pool, pool.register(files));
+    }
+
+    private synchronized void release(Pool pool) {
+        pool.references--;
+        if (pool.references == 0) {
+            pools.remove(pool.jobExecutionId);
+            log.info("Work stealing pool of job execution {} closed after {} steals", pool.jobExecutionId, pool.steals);
+        }
+    }
+
+    /**
+     * The queues of all partitions of one job execution.
+     */
+    private static class Pool {
+
+        private final Long jobExecutionId;
+        private final List<Queue> queues = new ArrayList<>();
+        private final Set<Path> registered = new HashSet<>();
+        private int references;
+        private long steals;
+
+        Pool(Long jobExecutionId) {
+            this.jobExecutionId = jobExecutionId;
+        }
+
+        synchronized Queue register(List<ScheduledFile> files) {
+            Queue queue = new Queue();
+            for (ScheduledFile file : files) {
+                if (registered.add(file.path())) {
+                    queue.files.add(file);
+                    queue.bytes += file.size();
+                }
+            }
+            queues.add(queue);
+            return queue;
+        }
+
+        synchronized ScheduledFile take(Queue own, List<String> stolenFiles) {
+            if (!own.files.isEmpty()) {
+                return own.poll();
+            }
+
+            Queue victim = null;
+            for (Queue queue : queues) {
+                if (!queue.files.isEmpty() && (victim == null || queue.bytes > victim.bytes)) {
+                    victim = queue;
+                }
+            }
+            if (victim == null) {
+                return null;
+            }
+            steals++;
+            ScheduledFile file = victim.poll();
+            stolenFiles.add(file.path().toString());
+            log.debug("Stole PDF file {} from another partition", file.path().getFileName());
+            return file;
+        }
+    }
+
+    /**
+     * The remaining files of one partition.
+     */
+    private static class Queue {
+
+        private final ArrayDeque<ScheduledFile> files = new ArrayDeque<>();
+        private long bytes;
+
+        ScheduledFile poll() {
+            ScheduledFile file = files.pollFirst();
+            bytes -= file.size();
+            return file;
+        }
+    }
+
+    /**
+     * File source of one partition reader.
+     */
+    public class Source implements PdfFileSource {
+
+        private final Pool pool;
+        private final Queue queue;
+        private final ArrayList<String> stolenFiles = new ArrayList<>();
+        private long position;
+        private boolean closed;
+
+        private Source(Pool pool, Queue queue) {
+            this.pool = pool;
+            this.queue = queue;
+        }
+
+        @Override
+        public Path next() {
+            ScheduledFile file = pool.take(queue, stolenFiles);
+            if (file == null) {
+                return null;
+            }
+            position++;
+            return file.path();
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * @return The paths of the files this reader took from other partitions
+         */
+        public ArrayList<String> getStolenFiles() {
+            return new ArrayList<>(stolenFiles);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(pool);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.deepseekpdf.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Records a PDF file that was skipped because processing it failed, together with its error.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterEntry {
+    
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_REPLAYED = "REPLAYED";
+    
+    private String id;
+    private String originalPath;
+    // Copy of the file in the dead-letter directory, null if the file could not be copied
+    private String deadLetterPath;
+    private String fileName;
+    private long fileSize;
+    private String errorCode;
+    private String errorMessage;
+    private int attempts;
+    private String status;
+    private String failedAt;
+    private String resolvedAt;
+}
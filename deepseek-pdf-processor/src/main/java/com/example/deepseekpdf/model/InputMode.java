@@ -0,0 +1,45 @@
+package com.example.deepseekpdf.model;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+
+import java.util.Arrays;
+
+/**
+ * How a PDF document is sent to the Deepseek API.
+ */
+public enum InputMode {
+
+    /**
+     * The whole PDF is Base64 encoded and sent as a file attachment.
+     */
+    ATTACHMENT,
+
+    /**
+     * The text layer is extracted locally with PDFBox and only the text is sent.
+     */
+    TEXT;
+
+    /**
+     * Parses an input mode name, ignoring case.
+     *
+     * @param value The mode name, may be null or blank
+     * @param defaultMode The mode to use when no value is given
+     * @return The parsed input mode
+     * @throws DeepseekApiException With {@link ErrorCode#CONFIGURATION_ERROR} if the value names no input mode
+     */
+    public static InputMode fromString(String value, InputMode defaultMode) {
+        if (value == null || value.isBlank()) {
+            return defaultMode;
+        }
+        try {
+            return InputMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Invalid input mode: " + value,
+                "Expected one of " + Arrays.toString(values()).toLowerCase()
+            );
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.deepseekpdf.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of a batch job execution as reported by the REST API.
+ * Counts are summed over the worker steps and reflect the chunks committed so far.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobProgress {
+
+    private Long jobExecutionId;
+    private String jobName;
+    private String status;
+    private String exitCode;
+    private boolean running;
+    private String startTime;
+    private String endTime;
+
+    private long readCount;
+    private long writeCount;
+    private long skipCount;
+    private long filterCount;
+}
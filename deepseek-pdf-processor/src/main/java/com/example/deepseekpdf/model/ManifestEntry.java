@@ -0,0 +1,22 @@
+package com.example.deepseekpdf.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Records a PDF file that has been processed successfully.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ManifestEntry {
+    
+    private String path;
+    private long size;
+    private long lastModified;
+    private String sha256;
+    private String processedAt;
+}
@@ -0,0 +1,25 @@
+package com.example.deepseekpdf.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Records the MinHash signature and result of a processed PDF, so that near-duplicates of it
+ * can reuse the result.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearDuplicateEntry {
+    
+    private String path;
+    private String fileName;
+    private String promptHash;
+    private int[] signature;
+    private long[] pageHashes;
+    private String response;
+    private String indexedAt;
+}
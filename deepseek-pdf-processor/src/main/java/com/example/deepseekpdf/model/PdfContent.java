@@ -0,0 +1,115 @@
+package com.example.deepseekpdf.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lazy reference to the bytes of a PDF document.
+ * Documents read from the input directory only keep the path of their file, so the bytes are
+ * streamed or memory-mapped when they are actually needed instead of being held on the heap for
+ * the whole time the document is in flight. Uploaded documents wrap their bytes directly.
+ */
+public final class PdfContent {
+
+    private final Path path;
+    private final byte[] bytes;
+    private final long size;
+
+    private PdfContent(Path path, byte[] bytes, long size) {
+        this.path = path;
+        this.bytes = bytes;
+        this.size = size;
+    }
+
+    /**
+     * Creates a reference to the content of a file.
+     *
+     * @param path The PDF file
+     * @param size The size of the file in bytes
+     * @return The content reference
+     */
+    public static PdfContent ofFile(Path path, long size) {
+        return new PdfContent(path, null, size);
+    }
+
+    /**
+     * Wraps content that is already in memory.
+     *
+     * @param bytes The PDF bytes
+     * @return The content reference
+     */
+    public static PdfContent ofBytes(byte[] bytes) {
+        return new PdfContent(null, bytes, bytes.length);
+    }
+
+    /**
+     * @return The file holding the content, or null if the content is held in memory
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Opens a stream over the content.
+     *
+     * @return A new input stream that the caller must close
+     * @throws IOException If the file cannot be opened
+     */
+    public InputStream openStream() throws IOException {
+        return path != null ? Files.newInputStream(path) : new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * Opens a channel over the content. File content is read directly from a {@link FileChannel}.
+     *
+     * @return A new channel that the caller must close
+     * @throws IOException If the file cannot be opened
+     */
+    public ReadableByteChannel openChannel() throws IOException {
+        if (path != null) {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        }
+        return Channels.newChannel(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Returns the content as a read-only buffer. File content is memory-mapped, so the bytes
+     * stay in the page cache instead of the Java heap; the mapping is released once the
+     * returned buffer becomes unreachable.
+     *
+     * @return A read-only buffer positioned at the start of the content
+     * @throws IOException If the file cannot be mapped
+     */
+    public ByteBuffer asByteBuffer() throws IOException {
+        if (path == null) {
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Returns the content as a byte array, reading the file if necessary.
+     * Prefer {@link #openStream()} or {@link #asByteBuffer()}, which do not copy the content
+     * onto the heap.
+     *
+     * @return The PDF bytes
+     * @throws IOException If the file cannot be read
+     */
+    public byte[] toByteArray() throws IOException {
+        return path != null ? Files.readAllBytes(path) : bytes;
+    }
+}
@@ -1,10 +1,13 @@
 package com.example.deepseekpdf.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * Represents a PDF document to be processed by the Deepseek API.
  */
@@ -17,7 +20,9 @@ public class PdfDocument {
     private String id;
     private String fileName;
     private String filePath;
-    private byte[] content;
+    // Referenced lazily so that documents in flight do not hold their bytes on the heap
+    @JsonIgnore
+    private PdfContent content;
     private String contentType;
     private long fileSize;
     private String status;
@@ -31,4 +36,24 @@ public class PdfDocument {
     private String processingStartTime;
     private String processingEndTime;
     private String deepseekResponse;
-} 
\ No newline at end of file
+    
+    // Failure of the last processing attempt, by DeepseekApiException.ErrorCode
+    private String errorCode;
+    private String errorMessage;
+    
+    // Text layer extracted locally when the document is sent in text mode
+    private String extractedText;
+    
+    // Pre-flight estimate of the input tokens, and the max-tokens chosen for its request (0 for the default)
+    private long estimatedTokens;
+    private int maxOutputTokens;
+    
+    // Slimmed copy sent as the attachment instead of the content, and the bytes it saves; null and 0 if not slimmed
+    @JsonIgnore
+    private PdfContent uploadContent;
+    private long slimmedBytesSaved;
+    
+    // Members of a pack of small documents sent together; null for a single document
+    @JsonIgnore
+    private List<PdfDocument> packedDocuments;
+}
\ No newline at end of file
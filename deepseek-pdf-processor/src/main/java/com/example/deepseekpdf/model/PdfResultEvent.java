@@ -0,0 +1,27 @@
+package com.example.deepseekpdf.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a single document of a batch job, pushed to clients following the job.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PdfResultEvent {
+
+    private Long jobExecutionId;
+    private String documentId;
+    private String fileName;
+    private String status;
+    private String processingEndTime;
+    private String deepseekResponse;
+
+    // Set for skipped documents, by DeepseekApiException.ErrorCode
+    private String errorCode;
+    private String errorMessage;
+}
@@ -0,0 +1,22 @@
+package com.example.deepseekpdf.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Index entry locating the result of a document in a JSON Lines result segment.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SegmentIndexEntry {
+
+    private String id;
+    private String fileName;
+    private String segment;
+    private long offset;
+    private int length;
+}
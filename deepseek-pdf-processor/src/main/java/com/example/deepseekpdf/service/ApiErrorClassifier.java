@@ -0,0 +1,118 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import io.github.pigmesh.ai.deepseek.core.OpenAiHttpException;
+import org.springframework.stereotype.Component;
+
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.TimeoutException;
+import java.util.Set;
+
+/**
+ * Classifies failures of Deepseek API calls by inspecting the exception and its causes.
+ * Rate limiting and server errors are recognized by the status code carried by the SDK's
+ * exceptions, never by numbers that happen to occur in a message.
+ */
+@Component
+public class ApiErrorClassifier {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final Set<Integer> SERVER_ERROR_STATUS = Set.of(500, 502, 503, 504);
+
+    /**
+     * @param error The failure of an API call
+     * @return True if the API rejected the request because a rate limit was exceeded (HTTP 429)
+     */
+    public boolean isRateLimited(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeepseekApiException apiException
+                    && apiException.getErrorCode() == ErrorCode.RATE_LIMITED) {
+                return true;
+            }
+            if (httpStatus(cause) == TOO_MANY_REQUESTS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param error The failure of an API call
+     * @return True if the call failed because it timed out
+     */
+    public boolean isTimeout(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException
+                    || cause instanceof HttpTimeoutException
+                    || cause instanceof TimeoutException) {
+                return true;
+            }
+            String message = cause.getMessage();
+            if (message != null && message.toLowerCase().contains("timed out")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param error The failure of an API call
+     * @return True if the failure indicates that requests should be sent more slowly. Only rate
+     *         limiting does; a timeout says the API is slow or down, which is the circuit breaker's concern.
+     */
+    public boolean isThrottled(Throwable error) {
+        return isRateLimited(error);
+    }
+
+    /**
+     * @param error The failure of an API call
+     * @return True if the API answered with a server error (HTTP 500, 502, 503 or 504) or could not be reached
+     */
+    public boolean isServerError(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof SocketException) {
+                return true;
+            }
+            if (SERVER_ERROR_STATUS.contains(httpStatus(cause))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param error The failure of an API call
+     * @return True if the same request may succeed when it is sent again
+     */
+    public boolean isRetryable(Throwable error) {
+        if (isCircuitOpen(error)) {
+            return false;
+        }
+        return isRateLimited(error) || isTimeout(error) || isServerError(error);
+    }
+
+    /**
+     * @param error The failure of an API call
+     * @return True if the failure indicates that the API is unavailable, as opposed to busy or
+     *         rejecting the request itself
+     */
+    public boolean isUnavailable(Throwable error) {
+        return !isCircuitOpen(error) && (isTimeout(error) || isServerError(error));
+    }
+
+    /**
+     * @return The HTTP status of a failed response, or 0 if the exception does not carry one
+     */
+    private static int httpStatus(Throwable error) {
+        return error instanceof OpenAiHttpException httpException ? httpException.code() : 0;
+    }
+
+    private boolean isCircuitOpen(Throwable error) {
+        return error instanceof DeepseekApiException apiException
+                && apiException.getErrorCode() == ErrorCode.CIRCUIT_OPEN;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.deepseekpdf.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Input stream that Base64-encodes a channel on the fly.
+ * The channel is read in blocks whose size is a multiple of three, so every block except the last
+ * one encodes without padding and only one raw and one encoded block are held at any time.
+ */
+final class Base64EncodingInputStream extends InputStream {
+
+    private static final int RAW_BLOCK_SIZE = 3 * 16 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final Base64.Encoder encoder = Base64.getEncoder();
+    private final ByteBuffer raw = ByteBuffer.allocate(RAW_BLOCK_SIZE);
+    private final byte[] encoded = new byte[RAW_BLOCK_SIZE / 3 * 4];
+
+    private int position;
+    private int limit;
+    private boolean endOfChannel;
+
+    Base64EncodingInputStream(ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @param rawLength The number of bytes to encode
+     * @return The length of the padded Base64 encoding
+     */
+    static long encodedLength(long rawLength) {
+        return (rawLength + 2) / 3 * 4;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return encoded[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        int count = Math.min(length, limit - position);
+        System.arraycopy(encoded, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads and encodes the next block of the channel.
+     *
+     * @return False if the channel is exhausted
+     */
+    private boolean fill() throws IOException {
+        if (endOfChannel) {
+            return false;
+        }
+
+        raw.clear();
+        while (raw.hasRemaining()) {
+            if (channel.read(raw) < 0) {
+                endOfChannel = true;
+                break;
+            }
+        }
+        if (raw.position() == 0) {
+            return false;
+        }
+
+        byte[] block = raw.position() == RAW_BLOCK_SIZE ? raw.array() : Arrays.copyOf(raw.array(), raw.position());
+        limit = encoder.encode(block, encoded);
+        position = 0;
+        return true;
+    }
+}
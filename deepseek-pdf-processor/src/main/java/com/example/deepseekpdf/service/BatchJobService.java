@@ -0,0 +1,169 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import com.example.deepseekpdf.model.InputMode;
+import com.example.deepseekpdf.model.JobProgress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionException;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.NoSuchJobException;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Launches batch jobs for the REST API and reports their progress.
+ * <p>
+ * Jobs are launched on their own virtual thread, so a request returns as soon as the job execution
+ * is created. The launcher used by the command line, the watch mode and the recovery of interrupted
+ * runs stays synchronous; the latter two call it from their own threads.
+ */
+@Service
+@Slf4j
+public class BatchJobService {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private JobExplorer jobExplorer;
+
+    @Autowired
+    private Map<String, Job> jobs;
+
+    @Value("${deepseek.rest.progress-interval-ms:1000}")
+    private long progressIntervalMillis;
+
+    private TaskExecutorJobLauncher asyncJobLauncher;
+
+    @PostConstruct
+    public void init() throws Exception {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("pdf-job-");
+        executor.setVirtualThreads(true);
+
+        asyncJobLauncher = new TaskExecutorJobLauncher();
+        asyncJobLauncher.setJobRepository(jobRepository);
+        asyncJobLauncher.setTaskExecutor(executor);
+        asyncJobLauncher.afterPropertiesSet();
+        log.info("Initialized asynchronous job launcher for jobs {}", jobs.keySet());
+    }
+
+    /**
+     * Launches a job without waiting for it to finish.
+     *
+     * @param jobName The name of the job, {@code pdfProcessingJob} or {@code pdfReplayJob}
+     * @param inputMode Optional input mode overriding {@code deepseek.pdf.input-mode}
+     * @return The progress of the new job execution
+     * @throws NoSuchJobException If there is no job with that name
+     * @throws JobExecutionException If the job cannot be launched, for example because it is already running
+     * @throws DeepseekApiException With {@link ErrorCode#CONFIGURATION_ERROR} if the input mode is invalid
+     */
+    public JobProgress start(String jobName, String inputMode) throws JobExecutionException {
+        Job job = jobs.get(jobName);
+        if (job == null) {
+            throw new NoSuchJobException("No job named " + jobName);
+        }
+
+        JobParametersBuilder parameters = new JobParametersBuilder()
+                .addLong("launch.time", System.currentTimeMillis());
+        if (inputMode != null && !inputMode.isBlank()) {
+            InputMode.fromString(inputMode, null);
+            parameters.addString("inputMode", inputMode);
+        }
+
+        JobExecution jobExecution = asyncJobLauncher.run(job, parameters.toJobParameters());
+        log.info("Launched job {} as execution {}", jobName, jobExecution.getId());
+        return toProgress(jobExecution);
+    }
+
+    /**
+     * @param jobExecutionId The job execution
+     * @return The progress of the job execution, or null if it does not exist
+     */
+    public JobProgress progress(long jobExecutionId) {
+        JobExecution jobExecution = jobExplorer.getJobExecution(jobExecutionId);
+        return jobExecution != null ? toProgress(jobExecution) : null;
+    }
+
+    /**
+     * @param jobName The name of the job
+     * @return The progress of the latest execution of the job, or null if it never ran
+     */
+    public JobProgress latestProgress(String jobName) {
+        List<JobInstance> instances = jobExplorer.getJobInstances(jobName, 0, 1);
+        if (instances.isEmpty()) {
+            return null;
+        }
+        JobExecution jobExecution = jobExplorer.getLastJobExecution(instances.get(0));
+        return jobExecution != null ? toProgress(jobExecution) : null;
+    }
+
+    /**
+     * Polls the progress of a job execution every {@code deepseek.rest.progress-interval-ms}
+     * until it has finished.
+     *
+     * @param jobExecutionId The job execution
+     * @return The progress updates, ending with the final state of the job execution
+     */
+    public Flux<JobProgress> progressUpdates(long jobExecutionId) {
+        return Flux.interval(Duration.ZERO, Duration.ofMillis(progressIntervalMillis))
+                .concatMap(tick -> Mono.justOrEmpty(progress(jobExecutionId)))
+                .distinctUntilChanged()
+                .takeUntil(progress -> !progress.isRunning());
+    }
+
+    private JobProgress toProgress(JobExecution jobExecution) {
+        // Partition managers only aggregate the counts of their workers once they finish
+        Set<String> managers = jobExecution.getStepExecutions().stream()
+                .map(StepExecution::getStepName)
+                .filter(name -> name.contains(":"))
+                .map(name -> name.substring(0, name.indexOf(':')))
+                .collect(Collectors.toSet());
+
+        JobProgress progress = JobProgress.builder()
+                .jobExecutionId(jobExecution.getId())
+                .jobName(jobExecution.getJobInstance().getJobName())
+                .status(jobExecution.getStatus().name())
+                .exitCode(jobExecution.getExitStatus().getExitCode())
+                .running(jobExecution.isRunning())
+                .startTime(format(jobExecution.getStartTime()))
+                .endTime(format(jobExecution.getEndTime()))
+                .build();
+        for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+            if (managers.contains(stepExecution.getStepName())) {
+                continue;
+            }
+            progress.setReadCount(progress.getReadCount() + stepExecution.getReadCount());
+            progress.setWriteCount(progress.getWriteCount() + stepExecution.getWriteCount());
+            progress.setSkipCount(progress.getSkipCount() + stepExecution.getSkipCount());
+            progress.setFilterCount(progress.getFilterCount() + stepExecution.getFilterCount());
+        }
+        return progress;
+    }
+
+    private static String format(LocalDateTime time) {
+        return time != null ? time.format(DATE_FORMATTER) : null;
+    }
+}
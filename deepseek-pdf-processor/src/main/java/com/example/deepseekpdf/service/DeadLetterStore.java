@@ -0,0 +1,220 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.model.DeadLetterEntry;
+import com.example.deepseekpdf.model.PdfDocument;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Dead-letter directory for PDF files that were skipped because processing them failed.
+ * <p>
+ * Each skipped file is copied to {@code <directory>/pdf} and recorded with its error in
+ * {@code <directory>/dead-letter.jsonl}. Like the processed file manifest, entries are appended,
+ * the latest entry for an original path wins, and the file is compacted on startup. Entries stay
+ * pending until the file is processed successfully, by {@code pdfReplayJob} or by a later run of
+ * {@code pdfProcessingJob}.
+ */
+@Service
+@Slf4j
+public class DeadLetterStore {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final String MANIFEST_FILE = "dead-letter.jsonl";
+    private static final String PDF_DIRECTORY = "pdf";
+
+    @Value("${deepseek.dead-letter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${deepseek.dead-letter.directory:output/dead-letter}")
+    private String directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, DeadLetterEntry> entries = new ConcurrentHashMap<>();
+
+    private Path pdfDirectory;
+    private BufferedWriter writer;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            log.info("Dead-letter directory is disabled");
+            return;
+        }
+
+        Path directoryPath = Paths.get(directory);
+        pdfDirectory = directoryPath.resolve(PDF_DIRECTORY);
+        Files.createDirectories(pdfDirectory);
+        Path manifestPath = directoryPath.resolve(MANIFEST_FILE);
+
+        int lines = 0;
+        if (Files.exists(manifestPath)) {
+            for (String line : Files.readAllLines(manifestPath, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    DeadLetterEntry entry = objectMapper.readValue(line, DeadLetterEntry.class);
+                    entries.put(entry.getOriginalPath(), entry);
+                    lines++;
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable dead-letter line: {}", e.getMessage());
+                }
+            }
+        }
+
+        // Compact the manifest when it holds superseded entries
+        if (lines > entries.size()) {
+            Path compacted = Files.createTempFile(directoryPath.toAbsolutePath(), "dead-letter", ".tmp");
+            try (BufferedWriter compactWriter = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+                for (DeadLetterEntry entry : entries.values()) {
+                    compactWriter.write(objectMapper.writeValueAsString(entry));
+                    compactWriter.newLine();
+                }
+            }
+            Files.move(compacted, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Compacted dead-letter manifest from {} to {} entries", lines, entries.size());
+        }
+
+        writer = Files.newBufferedWriter(manifestPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        log.info("Loaded dead-letter directory {} with {} pending entries", directory, pending().size());
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Moves a failed document to the dead-letter directory. A document that failed before keeps
+     * its existing copy and has its attempts counted up.
+     *
+     * @param pdfDocument The failed document, with its error code and message set
+     */
+    public void record(PdfDocument pdfDocument) {
+        if (pdfDocument.getFilePath() == null) {
+            log.warn("Cannot dead-letter PDF {} without a file path", pdfDocument.getFileName());
+            return;
+        }
+        if (!enabled) {
+            log.warn("Skipped PDF {} ({}): {}", pdfDocument.getFileName(),
+                    pdfDocument.getErrorCode(), pdfDocument.getErrorMessage());
+            return;
+        }
+
+        Path originalPath = Paths.get(pdfDocument.getFilePath()).toAbsolutePath();
+        DeadLetterEntry previous = entries.get(originalPath.toString());
+        String id = previous != null ? previous.getId() : UUID.randomUUID().toString();
+
+        String deadLetterPath = previous != null ? previous.getDeadLetterPath() : null;
+        if (deadLetterPath == null || !Files.exists(Paths.get(deadLetterPath))) {
+            deadLetterPath = copy(originalPath, id, pdfDocument.getFileName());
+        }
+
+        DeadLetterEntry entry = DeadLetterEntry.builder()
+                .id(id)
+                .originalPath(originalPath.toString())
+                .deadLetterPath(deadLetterPath)
+                .fileName(pdfDocument.getFileName())
+                .fileSize(pdfDocument.getFileSize())
+                .errorCode(pdfDocument.getErrorCode())
+                .errorMessage(pdfDocument.getErrorMessage())
+                .attempts(previous != null && DeadLetterEntry.STATUS_PENDING.equals(previous.getStatus())
+                        ? previous.getAttempts() + 1 : 1)
+                .status(DeadLetterEntry.STATUS_PENDING)
+                .failedAt(LocalDateTime.now().format(DATE_FORMATTER))
+                .build();
+        append(entry);
+        log.warn("Moved PDF {} to the dead-letter directory after {} failed attempt(s) ({}): {}",
+                pdfDocument.getFileName(), entry.getAttempts(), entry.getErrorCode(), entry.getErrorMessage());
+    }
+
+    /**
+     * Marks the pending entry of a successfully processed document as replayed and removes its copy.
+     *
+     * @param pdfDocument The processed document
+     */
+    public void resolve(PdfDocument pdfDocument) {
+        if (!enabled || pdfDocument.getFilePath() == null) {
+            return;
+        }
+        DeadLetterEntry entry = entries.get(Paths.get(pdfDocument.getFilePath()).toAbsolutePath().toString());
+        if (entry == null || !DeadLetterEntry.STATUS_PENDING.equals(entry.getStatus())) {
+            return;
+        }
+
+        append(entry.toBuilder()
+                .status(DeadLetterEntry.STATUS_REPLAYED)
+                .resolvedAt(LocalDateTime.now().format(DATE_FORMATTER))
+                .build());
+        if (entry.getDeadLetterPath() != null) {
+            try {
+                Files.deleteIfExists(Paths.get(entry.getDeadLetterPath()));
+            } catch (IOException e) {
+                log.warn("Failed to delete dead-letter copy {}: {}", entry.getDeadLetterPath(), e.getMessage());
+            }
+        }
+        log.info("Resolved dead-letter entry for PDF {}", entry.getFileName());
+    }
+
+    /**
+     * @return The pending entries, oldest failure first
+     */
+    public List<DeadLetterEntry> pending() {
+        return entries.values().stream()
+                .filter(entry -> DeadLetterEntry.STATUS_PENDING.equals(entry.getStatus()))
+                .sorted(Comparator.comparing(DeadLetterEntry::getFailedAt))
+                .collect(Collectors.toList());
+    }
+
+    private String copy(Path originalPath, String id, String fileName) {
+        Path target = pdfDirectory.resolve(id + "-" + fileName).toAbsolutePath();
+        try {
+            Files.copy(originalPath, target, StandardCopyOption.REPLACE_EXISTING);
+            return target.toString();
+        } catch (IOException e) {
+            log.warn("Failed to copy {} to the dead-letter directory: {}", originalPath, e.getMessage());
+            return null;
+        }
+    }
+
+    private void append(DeadLetterEntry entry) {
+        try {
+            synchronized (this) {
+                writer.write(objectMapper.writeValueAsString(entry));
+                writer.newLine();
+                writer.flush();
+            }
+            entries.put(entry.getOriginalPath(), entry);
+        } catch (IOException e) {
+            log.warn("Failed to record {} in the dead-letter manifest: {}", entry.getOriginalPath(), e.getMessage());
+        }
+    }
+}
@@ -3,11 +3,14 @@ package com.example.deepseekpdf.service;
 import com.example.deepseekpdf.exception.DeepseekApiException;
 import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
 import com.example.deepseekpdf.model.DeepseekApiResponse;
+import com.example.deepseekpdf.model.InputMode;
+import com.example.deepseekpdf.model.PdfContent;
 import com.example.deepseekpdf.model.PdfDocument;
 import io.github.pigmesh.ai.deepseek.DeepSeekClient;
 import io.github.pigmesh.ai.deepseek.chat.ChatCompletionRequest;
 import io.github.pigmesh.ai.deepseek.chat.ChatCompletionResponse;
 import io.github.pigmesh.ai.deepseek.chat.ChatMessage;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,14 +18,28 @@ import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StreamUtils;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import javax.annotation.PostConstruct;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Service for interacting with the Deepseek API using the official SDK.
@@ -31,9 +48,46 @@ import java.util.concurrent.atomic.AtomicReference;
 @Slf4j
 public class DeepseekApiService {
 
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MAX_INITIAL_BUFFER_CHARS = 64 * 1024;
+    
+    // Section of one document in the response to a packed request
+    private static final Pattern PACKED_SECTION = Pattern.compile(
+            "<<<DOCUMENT (\\d+)[^>]*>>>\\s*(.*?)\\s*<<<END DOCUMENT \\1>>>", Pattern.DOTALL);
+
     @Autowired
     private DeepSeekClient deepSeekClient;
     
+    @Autowired
+    private DeepseekRateLimiter rateLimiter;
+    
+    @Autowired
+    private ApiErrorClassifier errorClassifier;
+    
+    @Autowired
+    private DeepseekResponseCache responseCache;
+    
+    @Autowired
+    private StreamingAttachmentClient streamingAttachmentClient;
+    
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+    
+    @Autowired
+    private DeepseekResilience resilience;
+    
+    @Autowired
+    private PartialResultStore partialResultStore;
+    
+    @Autowired
+    private PdfTextExtractor pdfTextExtractor;
+    
+    @Value("${deepseek.streaming.stop-at-json-end:true}")
+    private boolean stopAtJsonEnd;
+    
+    @Value("${deepseek.streaming-upload.enabled:false}")
+    private boolean streamingUpload;
+    
     @Value("${deepseek.api.prompt-file:classpath:prompts/default-prompt.txt}")
     private Resource promptResource;
     
@@ -49,6 +103,9 @@ public class DeepseekApiService {
     @Value("${deepseek.max-tokens:4096}")
     private int maxTokens;
     
+    @Value("${deepseek.packing.max-output-tokens:8192}")
+    private int packedMaxTokens;
+    
     @PostConstruct
     public void init() {
         log.info("Initializing DeepseekApiService with model: {}, temperature: {}, maxTokens: {}", 
@@ -64,11 +121,11 @@ public class DeepseekApiService {
                 String.format("Current value: %f", temperature)
             );
         }
-        if (maxTokens <= 0) {
+        if (maxTokens <= 0 || packedMaxTokens <= 0) {
             throw new DeepseekApiException(
                 ErrorCode.CONFIGURATION_ERROR,
                 "Max tokens must be positive",
-                String.format("Current value: %d", maxTokens)
+                String.format("Current value: %d, for packed requests: %d", maxTokens, packedMaxTokens)
             );
         }
         log.debug("Configuration validation passed successfully");
@@ -96,10 +153,201 @@ public class DeepseekApiService {
         }
     }
     
+    /**
+     * Sends a streaming completion request once the rate limiter admits it. Waiting for admission
+     * happens on the bounded elastic scheduler so that reactive callers are never blocked, and
+     * the outcome of the stream is reported back to the limiter. The permit is the resource of
+     * {@link Flux#using}, so a subscriber that cancels at any point after admission releases it.
+     * The time to the first token and the generation rate are recorded, and with {@code stopAtJsonEnd}
+     * the stream is cancelled as soon as the JSON answer is closed. The usage arrives with the last
+     * chunk, so a stopped stream is charged to the limiter with an estimate and not counted in the
+     * token metrics. {@code admitted} runs when the stream starts, after admission.
+     */
+    private Flux<ChatCompletionResponse> rateLimitedFlux(String operationId, ChatCompletionRequest request,
+                                                         PdfDocument pdfDocument, boolean stopAtJsonEnd,
+                                                         Runnable admitted) {
+        long estimatedTokens = estimateTokens(pdfDocument);
+        long promptTokens = Math.max(0, estimatedTokens - maxTokens(pdfDocument));
+        return Flux.using(() -> acquirePermit(estimatedTokens), permit -> {
+                    AtomicReference<Map<String, Object>> usage = new AtomicReference<>();
+                    AtomicReference<Timer.Sample> call = new AtomicReference<>();
+                    StreamTiming timing = new StreamTiming();
+                    JsonEndDetector jsonEnd = stopAtJsonEnd ? new JsonEndDetector() : null;
+                    return Flux.defer(() -> {
+                                admitted.run();
+                                call.set(pipelineMetrics.start());
+                                timing.startNanos = System.nanoTime();
+                                return deepSeekClient.chatCompletionFlux(request);
+                            })
+                            .doOnNext(response -> {
+                                if (response.getUsage() != null) {
+                                    usage.set(response.getUsage());
+                                }
+                                timing.onChunk(operationId, chunkContent(response));
+                            })
+                            .takeUntil(response -> jsonEnd != null && jsonEnd.accept(chunkContent(response)))
+                            .doFinally(signal -> pipelineMetrics.stop(call.get(), PipelineMetrics.STAGE_API_CALL))
+                            .doOnComplete(() -> {
+                                boolean stopped = jsonEnd != null && jsonEnd.accept(null);
+                                if (stopped && usage.get() == null) {
+                                    // Each chunk carries about one token
+                                    permit.onStopped(promptTokens + timing.chunks);
+                                } else {
+                                    permit.onSuccess(usage.get());
+                                    pipelineMetrics.recordUsage(usage.get());
+                                }
+                                timing.onComplete(operationId, usage.get(), stopped);
+                            })
+                            .doOnError(e -> {
+                                if (errorClassifier.isThrottled(e)) {
+                                    permit.onThrottled();
+                                } else {
+                                    permit.onFailure();
+                                }
+                            });
+                }, DeepseekRateLimiter.Permit::onFailure)
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(e -> !(e instanceof DeepseekApiException) && errorClassifier.isThrottled(e),
+                        this::rateLimited);
+    }
+    
+    /**
+     * Timing of one streamed response, updated by the signals of a single subscription.
+     */
+    private final class StreamTiming {
+        
+        private long startNanos;
+        private long firstTokenNanos;
+        private long chunks;
+        
+        private void onChunk(String operationId, String content) {
+            if (content == null || content.isEmpty()) {
+                return;
+            }
+            chunks++;
+            if (firstTokenNanos == 0) {
+                firstTokenNanos = System.nanoTime();
+                pipelineMetrics.recordTimeToFirstToken(firstTokenNanos - startNanos);
+                log.debug("[{}] First token after {} ms", operationId,
+                        TimeUnit.NANOSECONDS.toMillis(firstTokenNanos - startNanos));
+            }
+        }
+        
+        private void onComplete(String operationId, Map<String, Object> usage, boolean stoppedAtJsonEnd) {
+            if (firstTokenNanos == 0) {
+                return;
+            }
+            // Each chunk carries about one token when the usage is not reported
+            long tokens = usage != null && usage.get("completion_tokens") instanceof Number number
+                    ? number.longValue() : chunks;
+            long generationNanos = System.nanoTime() - firstTokenNanos;
+            double tokensPerSecond = generationNanos > 0 ? tokens * 1e9 / generationNanos : 0;
+            if (tokens > 1 && generationNanos > 0) {
+                pipelineMetrics.recordTokensPerSecond(tokensPerSecond);
+            }
+            log.info("[{}] Streamed {} tokens, first after {} ms, {} tokens/s{}", operationId, tokens,
+                    TimeUnit.NANOSECONDS.toMillis(firstTokenNanos - startNanos), Math.round(tokensPerSecond),
+                    stoppedAtJsonEnd ? ", stopped at the end of the JSON answer" : "");
+        }
+    }
+    
+    /**
+     * Only the configured prompt asks for a JSON answer, so streams for custom prompts always run to the end.
+     */
+    private boolean stopsAtJsonEnd(String customPrompt) {
+        return stopAtJsonEnd && customPrompt == null;
+    }
+    
+    private static String chunkContent(ChatCompletionResponse response) {
+        return response.getChoices() != null ? Objects.toString(response.getChoices().get("content"), "") : "";
+    }
+    
+    /**
+     * Sends a PDF attachment with a streamed request body once the rate limiter admits it.
+     * Like {@link #rateLimitedFlux}, waiting for admission happens on the bounded elastic scheduler,
+     * the outcome is reported back to the limiter and cancellation releases the permit.
+     * {@code admitted} runs when the upload starts, after admission.
+     */
+    private Mono<DeepseekApiResponse> rateLimitedAttachment(PdfDocument pdfDocument, String prompt,
+                                                            Runnable admitted) {
+        return Mono.using(() -> acquirePermit(estimateTokens(pdfDocument)), permit -> Mono.defer(() -> {
+                            admitted.run();
+                            Timer.Sample call = pipelineMetrics.start();
+                            return Mono.fromFuture(() -> streamingAttachmentClient.sendAsync(pdfDocument, prompt,
+                                            model, temperature, maxTokens(pdfDocument)))
+                                    .doFinally(signal -> pipelineMetrics.stop(call, PipelineMetrics.STAGE_API_CALL));
+                        })
+                        .doOnSuccess(response -> {
+                            permit.onSuccess(response.getUsage());
+                            pipelineMetrics.recordUsage(response.getUsage());
+                        })
+                        .doOnError(e -> {
+                            if (errorClassifier.isThrottled(e)) {
+                                permit.onThrottled();
+                            } else {
+                                permit.onFailure();
+                            }
+                        }), DeepseekRateLimiter.Permit::onFailure)
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(e -> errorClassifier.isThrottled(e), this::rateLimited);
+    }
+    
+    /**
+     * Estimates the total tokens of a request for the rate limiter, from the pre-flight estimate or
+     * the extracted text. Without either, 0 is returned to let the limiter use its learned average.
+     */
+    private long estimateTokens(PdfDocument pdfDocument) {
+        if (pdfDocument.getEstimatedTokens() > 0) {
+            return pdfDocument.getEstimatedTokens() + maxTokens(pdfDocument);
+        }
+        if (pdfDocument.getExtractedText() == null) {
+            return 0;
+        }
+        return (long) pdfDocument.getExtractedText().length() / CHARS_PER_TOKEN + maxTokens(pdfDocument);
+    }
+    
+    /**
+     * Returns the max-tokens of a document's request: the one chosen by the pre-flight estimate,
+     * or the configured one.
+     */
+    private int maxTokens(PdfDocument pdfDocument) {
+        return pdfDocument.getMaxOutputTokens() > 0 ? pdfDocument.getMaxOutputTokens() : maxTokens;
+    }
+    
+    /**
+     * Resolves the prompt to send, falling back to the configured prompt.
+     * 
+     * @param customPrompt Optional custom prompt to override default
+     * @return The prompt text
+     */
+    public String resolvePrompt(String customPrompt) {
+        return customPrompt != null ? customPrompt : getPrompt();
+    }
+    
+    /**
+     * Returns the generated message content of a response, or the raw response when the
+     * content cannot be found in the choices.
+     * 
+     * @param apiResponse The API response
+     * @return The message content
+     */
+    public String extractContent(DeepseekApiResponse apiResponse) {
+        if (apiResponse.getChoices() != null && apiResponse.getChoices().get("content") != null) {
+            return apiResponse.getChoices().get("content").toString();
+        }
+        return apiResponse.getRawResponse();
+    }
+    
     /**
      * Creates a chat message with the PDF content and prompt.
+     * Documents carrying extracted text are sent as plain text instead of a file attachment.
+     * Package-private for the benchmarks.
      */
-    private ChatMessage createChatMessage(PdfDocument pdfDocument, String customPrompt) {
+    ChatMessage createChatMessage(PdfDocument pdfDocument, String customPrompt) {
+        if (pdfDocument != null && pdfDocument.getExtractedText() != null) {
+            return createTextChatMessage(pdfDocument, customPrompt);
+        }
+        
         try {
             if (pdfDocument == null || pdfDocument.getContent() == null) {
                 throw new DeepseekApiException(
@@ -111,15 +359,7 @@ public class DeepseekApiService {
             
             log.debug("Creating chat message for PDF: {}", pdfDocument.getFileName());
             
-            // Encode PDF content as Base64
-            String base64Content = Base64.getEncoder().encodeToString(pdfDocument.getContent());
-            
-            // Create file attachment
-            Map<String, Object> fileAttachment = new HashMap<>();
-            fileAttachment.put("type", "file_attachment");
-            fileAttachment.put("file_type", "pdf");
-            fileAttachment.put("content", base64Content);
-            fileAttachment.put("name", pdfDocument.getFileName());
+            Map<String, Object> fileAttachment = createFileAttachment(pdfDocument);
             
             String prompt = customPrompt != null ? customPrompt : getPrompt();
             log.trace("Using prompt: {}", prompt);
@@ -143,24 +383,74 @@ public class DeepseekApiService {
         }
     }
     
+    /**
+     * Creates the file attachment of a PDF document, from its slimmed copy if it has one.
+     */
+    private Map<String, Object> createFileAttachment(PdfDocument pdfDocument) throws IOException {
+        PdfContent content = pdfDocument.getUploadContent() != null
+                ? pdfDocument.getUploadContent()
+                : pdfDocument.getContent();
+        
+        // Encode PDF content as Base64 straight from the (memory-mapped) content
+        ByteBuffer encoded = Base64.getEncoder().encode(content.asByteBuffer());
+        String base64Content = new String(encoded.array(), 0, encoded.limit(), StandardCharsets.ISO_8859_1);
+        
+        Map<String, Object> fileAttachment = new HashMap<>();
+        fileAttachment.put("type", "file_attachment");
+        fileAttachment.put("file_type", "pdf");
+        fileAttachment.put("content", base64Content);
+        fileAttachment.put("name", pdfDocument.getFileName());
+        return fileAttachment;
+    }
+    
+    /**
+     * Creates a chat message with the prompt followed by the locally extracted text of the PDF.
+     */
+    private ChatMessage createTextChatMessage(PdfDocument pdfDocument, String customPrompt) {
+        log.debug("Creating text chat message for PDF: {} ({} characters)", 
+                pdfDocument.getFileName(), pdfDocument.getExtractedText().length());
+        
+        String prompt = customPrompt != null ? customPrompt : getPrompt();
+        log.trace("Using prompt: {}", prompt);
+        
+        String content = prompt
+                + "\n\nThe text of the PDF document \"" + pdfDocument.getFileName() + "\" follows.\n\n"
+                + pdfDocument.getExtractedText();
+        
+        return ChatMessage.builder()
+                .role("user")
+                .content(content)
+                .build();
+    }
+    
     /**
      * Creates a chat completion request with configured parameters.
      */
     private ChatCompletionRequest createCompletionRequest(ChatMessage message) {
+        return createCompletionRequest(message, maxTokens);
+    }
+    
+    /**
+     * Creates a chat completion request with configured parameters and the given max-tokens.
+     */
+    private ChatCompletionRequest createCompletionRequest(ChatMessage message, int requestMaxTokens) {
         log.debug("Creating completion request with model: {}, temperature: {}, maxTokens: {}", 
-                model, temperature, maxTokens);
+                model, temperature, requestMaxTokens);
                 
         return ChatCompletionRequest.builder()
                 .messages(Collections.singletonList(message))
                 .model(model)
                 .temperature(temperature)
-                .maxTokens(maxTokens)
+                .maxTokens(requestMaxTokens)
                 .stream(false)
                 .build();
     }
     
     /**
-     * Processes a PDF document through the Deepseek API with streaming support.
+     * Processes a PDF document through the Deepseek API with streaming support. Each emitted
+     * response carries only the text generated since the previous one, in its {@code rawResponse}
+     * and {@code content} choice; callers that need the whole answer append the deltas. The text
+     * received so far is kept by the {@link PartialResultStore} if the stream does not complete.
      * 
      * @param pdfDocument The PDF document to process
      * @param customPrompt Optional custom prompt to override default
@@ -171,42 +461,44 @@ public class DeepseekApiService {
         log.info("[{}] Starting streaming PDF processing for: {}", operationId, pdfDocument.getFileName());
         
         try {
-            ChatMessage message = createChatMessage(pdfDocument, customPrompt);
-            ChatCompletionRequest request = createCompletionRequest(message).toBuilder()
+            ChatMessage message = buildChatMessage(pdfDocument, customPrompt);
+            ChatCompletionRequest request = createCompletionRequest(message, maxTokens(pdfDocument)).toBuilder()
                     .stream(true)
                     .build();
             
-            AtomicReference<StringBuilder> contentBuilder = new AtomicReference<>(new StringBuilder());
-            
-            return deepSeekClient.chatCompletionFlux(request)
-                    .map(response -> {
-                        String content = response.getChoices().get("content").toString();
-                        contentBuilder.get().append(content);
-                        
-                        log.debug("[{}] Received stream chunk, current length: {}", 
-                                operationId, contentBuilder.get().length());
-                        
-                        return DeepseekApiResponse.builder()
-                                .id(response.getId())
-                                .model(response.getModel())
-                                .object(response.getObject())
-                                .created(response.getCreated())
-                                .choices(response.getChoices())
-                                .usage(response.getUsage())
-                                .rawResponse(contentBuilder.get().toString())
-                                .build();
-                    })
-                    .doOnError(e -> {
-                        log.error("[{}] Error in streaming response: {}", operationId, e.getMessage(), e);
-                        throw new DeepseekApiException(
-                            ErrorCode.STREAM_PROCESSING_ERROR,
-                            "Error during stream processing",
-                            e.getMessage(),
-                            e
-                        );
-                    })
-                    .doOnComplete(() -> log.info("[{}] Completed streaming for PDF: {}", 
-                            operationId, pdfDocument.getFileName()));
+            return Flux.defer(() -> {
+                PartialResultStore.PartialResult partial = partialResultStore.open(pdfDocument);
+                AtomicBoolean emitted = new AtomicBoolean();
+                return resilience.executeFlux(operationId, estimateTokens(pdfDocument),
+                                admitted -> rateLimitedFlux(operationId, request, pdfDocument,
+                                        stopsAtJsonEnd(customPrompt), admitted))
+                        .map(response -> {
+                            emitted.set(true);
+                            String delta = chunkContent(response);
+                            partial.append(delta);
+                            log.trace("[{}] Received stream chunk of {} characters", operationId, delta.length());
+                            
+                            return DeepseekApiResponse.builder()
+                                    .id(response.getId())
+                                    .model(response.getModel())
+                                    .object(response.getObject())
+                                    .created(response.getCreated())
+                                    .choices(response.getChoices())
+                                    .usage(response.getUsage())
+                                    .rawResponse(delta)
+                                    .build();
+                        })
+                        .doOnComplete(partial::discard)
+                        .doOnCancel(partial::keep)
+                        .doOnError(e -> {
+                            partial.keep();
+                            log.error("[{}] Error in streaming response: {}", operationId, e.getMessage(), e);
+                            pipelineMetrics.recordError(e);
+                            throw streamFailure(e, emitted.get());
+                        })
+                        .doOnComplete(() -> log.info("[{}] Completed streaming for PDF: {}", 
+                                operationId, pdfDocument.getFileName()));
+            });
             
         } catch (DeepseekApiException e) {
             log.error("[{}] DeepseekApiException during streaming: {}", operationId, e.getMessage(), e);
@@ -234,45 +526,440 @@ public class DeepseekApiService {
         log.info("[{}] Processing PDF: {}", operationId, pdfDocument.getFileName());
         
         try {
-            ChatMessage message = createChatMessage(pdfDocument, customPrompt);
-            ChatCompletionRequest request = createCompletionRequest(message);
-            
-            log.debug("[{}] Sending request to Deepseek API", operationId);
-            ChatCompletionResponse response = deepSeekClient.chatCompletion(request);
-            
-            if (response == null || response.getChoices() == null) {
-                throw new DeepseekApiException(
-                    ErrorCode.INVALID_RESPONSE,
-                    "Received null or invalid response from API",
-                    "Response or choices is null"
-                );
+            String prompt = customPrompt != null ? customPrompt : getPrompt();
+            String cacheKey = cacheKey(pdfDocument, prompt);
+            if (cacheKey != null) {
+                Optional<DeepseekApiResponse> cached = responseCache.get(cacheKey);
+                if (cached.isPresent()) {
+                    log.info("[{}] Using cached response for PDF: {}", operationId, pdfDocument.getFileName());
+                    return cached.get();
+                }
             }
             
+            DeepseekApiResponse apiResponse;
+            if (isStreamingUpload(pdfDocument)) {
+                apiResponse = sendStreamingAttachment(operationId, pdfDocument, prompt);
+            } else {
+                ChatMessage message = buildChatMessage(pdfDocument, prompt);
+                ChatCompletionRequest request = createCompletionRequest(message, maxTokens(pdfDocument));
+                apiResponse = sendRequest(operationId, request, estimateTokens(pdfDocument));
+            }
             log.info("[{}] Successfully processed PDF: {}", operationId, pdfDocument.getFileName());
-            log.debug("[{}] Response tokens used: {}", operationId, response.getUsage());
             
-            return DeepseekApiResponse.builder()
-                    .id(response.getId())
-                    .model(response.getModel())
-                    .object(response.getObject())
-                    .created(response.getCreated())
-                    .choices(response.getChoices())
-                    .usage(response.getUsage())
-                    .rawResponse(response.toString())
+            if (cacheKey != null) {
+                responseCache.put(cacheKey, apiResponse);
+            }
+            return apiResponse;
+            
+        } catch (DeepseekApiException e) {
+            log.error("[{}] DeepseekApiException: {}", operationId, e.getMessage(), e);
+            pipelineMetrics.recordError(e);
+            throw e;
+        } catch (Exception e) {
+            log.error("[{}] Unexpected error: {}", operationId, e.getMessage(), e);
+            pipelineMetrics.recordError(e);
+            throw new DeepseekApiException(
+                ErrorCode.API_COMMUNICATION_ERROR,
+                "Failed to process PDF",
+                e.getMessage(),
+                e
+            );
+        }
+    }
+    
+    /**
+     * Sends a single user message that does not refer to a PDF attachment, for example
+     * a request to merge partial analyses.
+     * 
+     * @param label A short description of the request used in logs
+     * @param content The message content
+     * @return The API response
+     */
+    public DeepseekApiResponse processMessage(String label, String content) {
+        String operationId = generateOperationId();
+        log.info("[{}] Processing message: {}", operationId, label);
+        
+        try {
+            ChatMessage message = ChatMessage.builder()
+                    .role("user")
+                    .content(content)
                     .build();
             
+            DeepseekApiResponse apiResponse = sendRequest(operationId, createCompletionRequest(message),
+                    content.length() / CHARS_PER_TOKEN + maxTokens);
+            log.info("[{}] Successfully processed message: {}", operationId, label);
+            return apiResponse;
+            
+        } catch (DeepseekApiException e) {
+            log.error("[{}] DeepseekApiException: {}", operationId, e.getMessage(), e);
+            pipelineMetrics.recordError(e);
+            throw e;
+        } catch (Exception e) {
+            log.error("[{}] Unexpected error: {}", operationId, e.getMessage(), e);
+            pipelineMetrics.recordError(e);
+            throw new DeepseekApiException(
+                ErrorCode.API_COMMUNICATION_ERROR,
+                "Failed to process message",
+                e.getMessage(),
+                e
+            );
+        }
+    }
+    
+    /**
+     * Processes several small PDF documents with a single request. Each document is sent in its
+     * own numbered section, its text inline or its attachment in a message of its own, and the model
+     * is asked to answer in matching sections. Responses are not cached, since they depend on the
+     * documents packed together.
+     * 
+     * @param pdfDocuments The documents to send together
+     * @param customPrompt Optional custom prompt to override default
+     * @return The response of each document in the order of the documents, or null for a document
+     *         whose section is missing from the response
+     */
+    public List<DeepseekApiResponse> processPacked(List<PdfDocument> pdfDocuments, String customPrompt) {
+        String operationId = generateOperationId();
+        log.info("[{}] Processing {} packed PDFs", operationId, pdfDocuments.size());
+        
+        try {
+            String prompt = resolvePrompt(customPrompt);
+            ChatCompletionRequest request;
+            Timer.Sample sample = pipelineMetrics.start();
+            try {
+                request = createPackedRequest(pdfDocuments, prompt);
+            } finally {
+                pipelineMetrics.stop(sample, PipelineMetrics.STAGE_MESSAGE_BUILD);
+            }
+            
+            long estimatedTokens = packedMaxTokens + pdfDocuments.stream()
+                    .filter(pdfDocument -> pdfDocument.getExtractedText() != null)
+                    .mapToLong(pdfDocument -> pdfDocument.getExtractedText().length() / CHARS_PER_TOKEN)
+                    .sum();
+            DeepseekApiResponse apiResponse = sendRequest(operationId, request, estimatedTokens);
+            
+            List<DeepseekApiResponse> responses = splitPackedResponse(apiResponse, pdfDocuments.size());
+            log.info("[{}] Split packed response into {} of {} document results", operationId,
+                    responses.stream().filter(Objects::nonNull).count(), pdfDocuments.size());
+            return responses;
+            
         } catch (DeepseekApiException e) {
             log.error("[{}] DeepseekApiException: {}", operationId, e.getMessage(), e);
+            pipelineMetrics.recordError(e);
             throw e;
         } catch (Exception e) {
             log.error("[{}] Unexpected error: {}", operationId, e.getMessage(), e);
+            pipelineMetrics.recordError(e);
             throw new DeepseekApiException(
                 ErrorCode.API_COMMUNICATION_ERROR,
+                "Failed to process packed PDFs",
+                e.getMessage(),
+                e
+            );
+        }
+    }
+    
+    /**
+     * Creates the request of a pack: the prompt, the answer format and the text sections in the
+     * first message, followed by one message per attachment.
+     */
+    private ChatCompletionRequest createPackedRequest(List<PdfDocument> pdfDocuments, String prompt) throws IOException {
+        StringBuilder content = new StringBuilder(prompt)
+                .append("\n\nThis request contains ").append(pdfDocuments.size())
+                .append(" separate PDF documents. Analyze each document on its own as instructed above. ")
+                .append("Answer for each document in its own section, starting with a line <<<DOCUMENT k>>> ")
+                .append("and ending with a line <<<END DOCUMENT k>>>, where k is the number of the document. ")
+                .append("Write nothing outside these sections.\n");
+        
+        List<ChatMessage> attachments = new ArrayList<>();
+        for (int i = 0; i < pdfDocuments.size(); i++) {
+            PdfDocument pdfDocument = pdfDocuments.get(i);
+            String header = "<<<DOCUMENT " + (i + 1) + ": " + pdfDocument.getFileName() + ">>>";
+            if (pdfDocument.getExtractedText() != null) {
+                content.append('\n').append(header).append('\n')
+                        .append(pdfDocument.getExtractedText())
+                        .append("\n<<<END DOCUMENT ").append(i + 1).append(">>>\n");
+            } else {
+                attachments.add(ChatMessage.builder()
+                        .role("user")
+                        .content(header + " is attached.")
+                        .fileAttachment(createFileAttachment(pdfDocument))
+                        .build());
+            }
+        }
+        List<ChatMessage> messages = new ArrayList<>(attachments.size() + 1);
+        messages.add(ChatMessage.builder()
+                .role("user")
+                .content(content.toString())
+                .build());
+        messages.addAll(attachments);
+        
+        return createCompletionRequest(messages.get(0)).toBuilder()
+                .messages(messages)
+                .maxTokens(packedMaxTokens)
+                .build();
+    }
+    
+    /**
+     * Splits the response of a pack into a response per document, sharing the metadata of the
+     * response. Sections with an unknown number and repeated sections are ignored.
+     */
+    private List<DeepseekApiResponse> splitPackedResponse(DeepseekApiResponse apiResponse, int documentCount) {
+        List<DeepseekApiResponse> responses = new ArrayList<>(Collections.nCopies(documentCount, null));
+        Matcher matcher = PACKED_SECTION.matcher(extractContent(apiResponse));
+        while (matcher.find()) {
+            int index = Integer.parseInt(matcher.group(1)) - 1;
+            if (index < 0 || index >= documentCount || responses.get(index) != null || matcher.group(2).isEmpty()) {
+                continue;
+            }
+            Map<String, Object> choices = new HashMap<>();
+            choices.put("content", matcher.group(2));
+            responses.set(index, DeepseekApiResponse.builder()
+                    .id(apiResponse.getId())
+                    .model(apiResponse.getModel())
+                    .object(apiResponse.getObject())
+                    .created(apiResponse.getCreated())
+                    .choices(choices)
+                    .usage(apiResponse.getUsage())
+                    .rawResponse(matcher.group(2))
+                    .build());
+        }
+        return responses;
+    }
+    
+    /**
+     * Sends a non-streaming completion request once the rate limiter admits it, and reports
+     * the outcome back to the limiter. Failed attempts are retried or hedged by the resilience layer.
+     */
+    private DeepseekApiResponse sendRequest(String operationId, ChatCompletionRequest request, long estimatedTokens) {
+        log.debug("[{}] Sending request to Deepseek API", operationId);
+        ChatCompletionResponse response = resilience.execute(operationId, estimatedTokens,
+                admitted -> callWithPermit(estimatedTokens, admitted,
+                        () -> deepSeekClient.chatCompletion(request),
+                        completion -> completion != null ? completion.getUsage() : null));
+        
+        if (response == null || response.getChoices() == null) {
+            throw new DeepseekApiException(
+                ErrorCode.INVALID_RESPONSE,
+                "Received null or invalid response from API",
+                "Response or choices is null"
+            );
+        }
+        
+        log.debug("[{}] Response tokens used: {}", operationId, response.getUsage());
+        
+        return DeepseekApiResponse.builder()
+                .id(response.getId())
+                .model(response.getModel())
+                .object(response.getObject())
+                .created(response.getCreated())
+                .choices(response.getChoices())
+                .usage(response.getUsage())
+                .rawResponse(response.toString())
+                .build();
+    }
+    
+    /**
+     * Sends a PDF attachment with the request body streamed from the file, once the rate limiter
+     * admits it.
+     */
+    private DeepseekApiResponse sendStreamingAttachment(String operationId, PdfDocument pdfDocument, String prompt) {
+        log.debug("[{}] Streaming PDF attachment to Deepseek API", operationId);
+        long estimatedTokens = estimateTokens(pdfDocument);
+        return resilience.execute(operationId, estimatedTokens, admitted -> callWithPermit(estimatedTokens, admitted,
+                () -> streamingAttachmentClient.send(pdfDocument, prompt, model, temperature, maxTokens(pdfDocument)),
+                DeepseekApiResponse::getUsage));
+    }
+    
+    /**
+     * Runs a blocking API call once the rate limiter admits it, and reports the outcome back to
+     * the limiter. Throttling failures are reported as {@link ErrorCode#RATE_LIMITED}. {@code admitted}
+     * runs once the permit is granted, so that the resilience layer times the call without the wait.
+     */
+    private <T> T callWithPermit(long estimatedTokens, Runnable admitted, Supplier<T> call,
+                                 Function<T, Map<String, Object>> usage) {
+        DeepseekRateLimiter.Permit permit = acquirePermit(estimatedTokens);
+        admitted.run();
+        Timer.Sample sample = pipelineMetrics.start();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            pipelineMetrics.stop(sample, PipelineMetrics.STAGE_API_CALL);
+            if (errorClassifier.isThrottled(e)) {
+                permit.onThrottled();
+                throw rateLimited(e);
+            }
+            permit.onFailure();
+            throw e;
+        }
+        pipelineMetrics.stop(sample, PipelineMetrics.STAGE_API_CALL);
+        permit.onSuccess(usage.apply(result));
+        pipelineMetrics.recordUsage(usage.apply(result));
+        return result;
+    }
+    
+    /**
+     * Waits for the rate limiter, recording the time spent waiting.
+     */
+    private DeepseekRateLimiter.Permit acquirePermit(long estimatedTokens) {
+        Timer.Sample sample = pipelineMetrics.start();
+        try {
+            return rateLimiter.acquire(estimatedTokens);
+        } finally {
+            pipelineMetrics.stop(sample, PipelineMetrics.STAGE_RATE_LIMIT_WAIT);
+        }
+    }
+    
+    /**
+     * Creates the chat message of a document, recording the time spent encoding and building it.
+     */
+    private ChatMessage buildChatMessage(PdfDocument pdfDocument, String prompt) {
+        Timer.Sample sample = pipelineMetrics.start();
+        try {
+            return createChatMessage(pdfDocument, prompt);
+        } finally {
+            pipelineMetrics.stop(sample, PipelineMetrics.STAGE_MESSAGE_BUILD);
+        }
+    }
+    
+    private DeepseekApiException rateLimited(Throwable e) {
+        if (e instanceof DeepseekApiException apiException && apiException.getErrorCode() == ErrorCode.RATE_LIMITED) {
+            return apiException;
+        }
+        return new DeepseekApiException(
+            ErrorCode.RATE_LIMITED,
+            "Deepseek API request was rate limited",
+            e.getMessage(),
+            e
+        );
+    }
+    
+    /**
+     * Returns whether a document is sent with the streamed request body instead of the SDK.
+     * Only attachments benefit from it; text requests are small.
+     */
+    private boolean isStreamingUpload(PdfDocument pdfDocument) {
+        return streamingUpload && pdfDocument.getExtractedText() == null && pdfDocument.getContent() != null;
+    }
+    
+    /**
+     * Processes a PDF document through the Deepseek API without blocking the calling thread.
+     * The streamed chunks are aggregated into a single response once the stream completes,
+     * so many documents can be in flight over the client's event loop at the same time.
+     * 
+     * @param pdfDocument The PDF document to process
+     * @param customPrompt Optional custom prompt to override default
+     * @return Mono emitting the aggregated API response
+     */
+    public Mono<DeepseekApiResponse> processPdfReactive(PdfDocument pdfDocument, String customPrompt) {
+        String operationId = generateOperationId();
+        
+        return Mono.defer(() -> {
+            log.info("[{}] Starting reactive PDF processing for: {}", operationId, pdfDocument.getFileName());
+            
+            String prompt = customPrompt != null ? customPrompt : getPrompt();
+            String cacheKey = cacheKey(pdfDocument, prompt);
+            if (cacheKey != null) {
+                Optional<DeepseekApiResponse> cached = responseCache.get(cacheKey);
+                if (cached.isPresent()) {
+                    log.info("[{}] Using cached response for PDF: {}", operationId, pdfDocument.getFileName());
+                    return Mono.just(cached.get());
+                }
+            }
+            
+            if (isStreamingUpload(pdfDocument)) {
+                return resilience.executeMono(operationId, estimateTokens(pdfDocument),
+                                admitted -> rateLimitedAttachment(pdfDocument, prompt, admitted))
+                        .doOnNext(apiResponse -> log.info("[{}] Successfully processed PDF: {}",
+                                operationId, pdfDocument.getFileName()))
+                        .flatMap(apiResponse -> cacheResponse(cacheKey, apiResponse));
+            }
+            
+            ChatMessage message = buildChatMessage(pdfDocument, prompt);
+            ChatCompletionRequest request = createCompletionRequest(message, maxTokens(pdfDocument)).toBuilder()
+                    .stream(true)
+                    .build();
+            
+            // Sized for a full answer up front, so that long answers are not copied while they grow
+            StringBuilder content = new StringBuilder(Math.min(maxTokens(pdfDocument) * CHARS_PER_TOKEN,
+                    MAX_INITIAL_BUFFER_CHARS));
+            AtomicReference<ChatCompletionResponse> lastChunk = new AtomicReference<>();
+            PartialResultStore.PartialResult partial = partialResultStore.open(pdfDocument);
+            
+            return resilience.executeFlux(operationId, estimateTokens(pdfDocument),
+                            admitted -> rateLimitedFlux(operationId, request, pdfDocument,
+                                    stopsAtJsonEnd(customPrompt), admitted))
+                    .doOnNext(response -> {
+                        String delta = chunkContent(response);
+                        content.append(delta);
+                        partial.append(delta);
+                        lastChunk.set(response);
+                    })
+                    .doOnComplete(partial::discard)
+                    .doOnError(e -> partial.keep())
+                    .doOnCancel(partial::keep)
+                    .onErrorMap(e -> !(e instanceof DeepseekApiException), e -> streamFailure(e, lastChunk.get() != null))
+                    .then(Mono.fromSupplier(() -> {
+                        ChatCompletionResponse response = lastChunk.get();
+                        if (response == null) {
+                            throw new DeepseekApiException(
+                                ErrorCode.INVALID_RESPONSE,
+                                "Received empty stream from API",
+                                "No chunks were emitted"
+                            );
+                        }
+                        
+                        log.info("[{}] Successfully processed PDF: {}", operationId, pdfDocument.getFileName());
+                        
+                        return DeepseekApiResponse.builder()
+                                .id(response.getId())
+                                .model(response.getModel())
+                                .object(response.getObject())
+                                .created(response.getCreated())
+                                .choices(response.getChoices())
+                                .usage(response.getUsage())
+                                .rawResponse(content.toString())
+                                .build();
+                    }))
+                    .flatMap(apiResponse -> cacheResponse(cacheKey, apiResponse));
+        }).onErrorMap(e -> !(e instanceof DeepseekApiException), e -> {
+            log.error("[{}] Unexpected error during reactive processing: {}", operationId, e.getMessage(), e);
+            return new DeepseekApiException(
+                ErrorCode.STREAM_PROCESSING_ERROR,
                 "Failed to process PDF",
                 e.getMessage(),
                 e
             );
+        }).doOnError(pipelineMetrics::recordError);
+    }
+    
+    /**
+     * Wraps the failure of a streamed call. Only a stream that broke off after its first chunk is a
+     * {@link ErrorCode#STREAM_PROCESSING_ERROR}, which the batch step retries: the resilience layer
+     * does not retry such a stream, while earlier failures have already used up its retries.
+     */
+    private static DeepseekApiException streamFailure(Throwable error, boolean emitted) {
+        if (error instanceof DeepseekApiException apiException) {
+            return apiException;
+        }
+        return new DeepseekApiException(
+            emitted ? ErrorCode.STREAM_PROCESSING_ERROR : ErrorCode.API_COMMUNICATION_ERROR,
+            emitted ? "Stream broke off after the first chunk" : "Deepseek API call failed",
+            error.getMessage(),
+            error
+        );
+    }
+    
+    /**
+     * Stores a response in the cache on the bounded elastic scheduler, if the request has a cache key.
+     */
+    private Mono<DeepseekApiResponse> cacheResponse(String cacheKey, DeepseekApiResponse apiResponse) {
+        if (cacheKey == null) {
+            return Mono.just(apiResponse);
         }
+        return Mono.fromRunnable(() -> responseCache.put(cacheKey, apiResponse))
+                .subscribeOn(Schedulers.boundedElastic())
+                .thenReturn(apiResponse);
     }
     
     /**
@@ -295,6 +982,26 @@ public class DeepseekApiService {
         return processPdfStream(pdfDocument, null);
     }
     
+    /**
+     * Computes the response cache key for a document and resolved prompt.
+     * 
+     * @return The cache key, or null if caching is disabled or the content cannot be read
+     */
+    private String cacheKey(PdfDocument pdfDocument, String prompt) {
+        if (!responseCache.isEnabled() || pdfDocument.getContent() == null) {
+            return null;
+        }
+        InputMode inputMode = pdfDocument.getExtractedText() != null ? InputMode.TEXT : InputMode.ATTACHMENT;
+        String extractionSettings = inputMode == InputMode.TEXT ? pdfTextExtractor.settings() : null;
+        try {
+            return responseCache.computeKey(pdfDocument.getContent(), inputMode, extractionSettings, prompt, model,
+                    temperature, maxTokens(pdfDocument));
+        } catch (IOException e) {
+            log.warn("Failed to compute cache key for PDF {}: {}", pdfDocument.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+    
     /**
      * Generates a unique operation ID for tracking requests in logs.
      */
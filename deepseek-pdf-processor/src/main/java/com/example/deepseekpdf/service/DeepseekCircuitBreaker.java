@@ -0,0 +1,200 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker shared by all Deepseek API calls.
+ * <p>
+ * While closed, the outcomes of the last {@code window-size} calls are kept. Once at least
+ * {@code minimum-calls} are recorded and the share of failures reaches {@code failure-rate-threshold},
+ * the breaker opens and calls fail immediately with {@link ErrorCode#CIRCUIT_OPEN} instead of waiting
+ * for the API to time out. After {@code open-duration-ms} it lets {@code half-open-calls} trial calls
+ * through: if they all succeed the breaker closes, and the first failure opens it again.
+ * <p>
+ * Only timeouts, server errors and connection failures count as failures. Rate limited and rejected
+ * requests show that the API is up and are handled by the rate limiter and the caller.
+ */
+@Component
+@Slf4j
+public class DeepseekCircuitBreaker {
+
+    /**
+     * State of the breaker.
+     */
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    @Value("${deepseek.circuit-breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${deepseek.circuit-breaker.window-size:20}")
+    private int windowSize;
+
+    @Value("${deepseek.circuit-breaker.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${deepseek.circuit-breaker.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${deepseek.circuit-breaker.open-duration-ms:30000}")
+    private long openDurationMillis;
+
+    @Value("${deepseek.circuit-breaker.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    private State state = State.CLOSED;
+    private boolean[] outcomes;
+    private int recorded;
+    private int failures;
+    private int next;
+    private long openedAtNanos;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    @PostConstruct
+    public void init() {
+        if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize || halfOpenCalls <= 0
+                || failureRateThreshold <= 0 || failureRateThreshold > 1 || openDurationMillis <= 0) {
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Invalid circuit breaker configuration",
+                String.format("windowSize: %d, minimumCalls: %d, failureRateThreshold: %f, openDurationMillis: %d, "
+                        + "halfOpenCalls: %d", windowSize, minimumCalls, failureRateThreshold, openDurationMillis,
+                        halfOpenCalls)
+            );
+        }
+        outcomes = new boolean[windowSize];
+        log.info("Initialized Deepseek circuit breaker (enabled: {}, window: {}, failure rate threshold: {}, open for {} ms)",
+                enabled, windowSize, failureRateThreshold, openDurationMillis);
+    }
+
+    /**
+     * Admits a call, or fails fast while the breaker is open. Every admitted call must be
+     * reported with {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+     *
+     * @throws DeepseekApiException With {@link ErrorCode#CIRCUIT_OPEN} if the call is not admitted
+     */
+    public synchronized void acquire() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.OPEN) {
+            long openForNanos = System.nanoTime() - openedAtNanos;
+            if (openForNanos < TimeUnit.MILLISECONDS.toNanos(openDurationMillis)) {
+                throw circuitOpen(openDurationMillis - TimeUnit.NANOSECONDS.toMillis(openForNanos));
+            }
+            transitionTo(State.HALF_OPEN);
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                throw circuitOpen(0);
+            }
+            halfOpenPermits--;
+        }
+    }
+
+    /**
+     * Reports a successful call.
+     */
+    public synchronized void onSuccess() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            halfOpenSuccesses++;
+            if (halfOpenSuccesses >= halfOpenCalls) {
+                resetWindow();
+                transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * Reports a call that failed because the API is unavailable.
+     */
+    public synchronized void onFailure() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Reports a call whose outcome says nothing about the availability of the API, such as a
+     * rate limited request or a cancelled hedge. A trial call of the half-open state is given back.
+     */
+    public synchronized void onIgnored() {
+        if (enabled && state == State.HALF_OPEN && halfOpenPermits < halfOpenCalls - halfOpenSuccesses) {
+            halfOpenPermits++;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == windowSize) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % windowSize;
+    }
+
+    private void open() {
+        openedAtNanos = System.nanoTime();
+        halfOpenPermits = 0;
+        transitionTo(State.OPEN);
+    }
+
+    private void resetWindow() {
+        recorded = 0;
+        failures = 0;
+        next = 0;
+    }
+
+    private void transitionTo(State newState) {
+        if (state != newState) {
+            if (newState == State.OPEN) {
+                log.warn("Deepseek circuit breaker opened; failing calls fast for {} ms", openDurationMillis);
+            } else {
+                log.info("Deepseek circuit breaker is now {}", newState);
+            }
+            state = newState;
+        }
+    }
+
+    private DeepseekApiException circuitOpen(long remainingMillis) {
+        return new DeepseekApiException(
+            ErrorCode.CIRCUIT_OPEN,
+            "Deepseek API calls are suspended after repeated failures",
+            String.format("Circuit breaker is %s, next trial in %d ms", state, Math.max(0, remainingMillis))
+        );
+    }
+}
@@ -0,0 +1,375 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive limiter shared by all Deepseek API calls.
+ * <p>
+ * A request is admitted only when all three limits allow it:
+ * <ul>
+ *   <li>a token bucket for requests per minute,</li>
+ *   <li>a token budget for tokens per minute, charged with an estimate up front and reconciled with
+ *       the {@code usage} reported in the response; the average usage per request is learned and
+ *       used as the estimate when the caller cannot provide one,</li>
+ *   <li>a concurrency limit adjusted with AIMD: it grows by one after a full window of successful
+ *       calls and is cut by {@code decrease-factor} when a call is rate limited (HTTP 429). Timeouts
+ *       and server errors are left to the circuit breaker.</li>
+ * </ul>
+ * Waiting requests are admitted one at a time, smallest token estimate first, so that the token budget
+ * serves many short requests instead of idling until a large one fits. A request that has waited
+ * {@code max-admission-wait-ms} goes first, oldest first, and the budget is then saved up for it.
+ * The order matters most in reactive mode, where up to {@code deepseek.reactive.max-in-flight} requests
+ * wait at once.
+ */
+@Component
+@Slf4j
+public class DeepseekRateLimiter {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @Value("${deepseek.rate-limit.requests-per-minute:60}")
+    private int requestsPerMinute;
+
+    @Value("${deepseek.rate-limit.tokens-per-minute:1000000}")
+    private long tokensPerMinute;
+
+    @Value("${deepseek.rate-limit.min-concurrency:1}")
+    private int minConcurrency;
+
+    @Value("${deepseek.api.max-concurrent-requests:8}")
+    private int maxConcurrency;
+
+    @Value("${deepseek.rate-limit.decrease-factor:0.5}")
+    private double decreaseFactor;
+
+    @Value("${deepseek.rate-limit.initial-tokens-per-request:4000}")
+    private long initialTokensPerRequest;
+
+    @Value("${deepseek.rate-limit.max-admission-wait-ms:30000}")
+    private long maxAdmissionWaitMillis;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition released = lock.newCondition();
+
+    private double requestBucket;
+    private double requestBucketCapacity;
+    private double tokenBudget;
+    private long lastRefillNanos;
+
+    private final List<Ticket> waiting = new ArrayList<>();
+    private long nextTicket;
+
+    private double averageTokensPerRequest;
+    private int concurrencyLimit;
+    private int successesSinceIncrease;
+    private int inFlight;
+
+    @PostConstruct
+    public void init() {
+        if (requestsPerMinute <= 0 || tokensPerMinute <= 0 || minConcurrency <= 0 || maxConcurrency < minConcurrency
+                || maxAdmissionWaitMillis < 0) {
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Invalid rate limit configuration",
+                String.format("requestsPerMinute: %d, tokensPerMinute: %d, minConcurrency: %d, maxConcurrency: %d, "
+                        + "maxAdmissionWaitMillis: %d", requestsPerMinute, tokensPerMinute, minConcurrency,
+                        maxConcurrency, maxAdmissionWaitMillis)
+            );
+        }
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Rate limit decrease factor must be between 0 and 1",
+                String.format("Current value: %f", decreaseFactor)
+            );
+        }
+
+        // Allow bursts of up to five seconds worth of requests
+        requestBucketCapacity = Math.max(1.0, requestsPerMinute / 12.0);
+        requestBucket = requestBucketCapacity;
+        tokenBudget = tokensPerMinute;
+        lastRefillNanos = System.nanoTime();
+        averageTokensPerRequest = initialTokensPerRequest;
+        concurrencyLimit = maxConcurrency;
+
+        log.info("Limiting Deepseek API to {} requests/min, {} tokens/min and {}-{} concurrent requests",
+                requestsPerMinute, tokensPerMinute, minConcurrency, maxConcurrency);
+    }
+
+    /**
+     * Blocks until a request may be sent.
+     *
+     * @param estimatedTokens The estimated total tokens of the request, or 0 to use the learned average
+     * @return The permit that must be completed once the call finishes
+     * @throws DeepseekApiException If the calling thread is interrupted while waiting
+     */
+    public Permit acquire(long estimatedTokens) {
+        lock.lock();
+        Ticket ticket = null;
+        try {
+            long tokens = estimatedTokens > 0 ? estimatedTokens : Math.round(averageTokensPerRequest);
+            ticket = new Ticket(tokens, System.nanoTime(), nextTicket++);
+            waiting.add(ticket);
+
+            while (true) {
+                refill();
+                Ticket next = nextToAdmit();
+                if (next != ticket) {
+                    // Wait for the next admission, or until this request has waited long enough to go first
+                    long agedInNanos = ticket.enqueuedNanos() + TimeUnit.MILLISECONDS.toNanos(maxAdmissionWaitMillis)
+                            - System.nanoTime();
+                    if (agedInNanos > 0) {
+                        released.awaitNanos(agedInNanos);
+                    } else {
+                        released.await();
+                    }
+                    continue;
+                }
+
+                // A request larger than the whole budget is admitted once the budget is full
+                boolean tokensAvailable = tokenBudget >= Math.min(tokens, tokensPerMinute);
+                if (inFlight < concurrencyLimit && requestBucket >= 1.0 && tokensAvailable) {
+                    requestBucket -= 1.0;
+                    tokenBudget -= tokens;
+                    inFlight++;
+                    waiting.remove(ticket);
+                    ticket = null;
+                    // Let the next waiting request check its turn
+                    released.signalAll();
+                    return new Permit(tokens);
+                }
+
+                if (inFlight >= concurrencyLimit) {
+                    released.await();
+                } else {
+                    released.awaitNanos(nanosUntilAvailable(tokens));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeepseekApiException(
+                ErrorCode.API_COMMUNICATION_ERROR,
+                "Interrupted while waiting for an API request slot",
+                e.getMessage(),
+                e
+            );
+        } finally {
+            if (ticket != null) {
+                waiting.remove(ticket);
+                released.signalAll();
+            }
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Picks the waiting request to admit next: the oldest of those that waited {@code max-admission-wait-ms},
+     * otherwise the one with the smallest token estimate.
+     */
+    private Ticket nextToAdmit() {
+        long agedBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(maxAdmissionWaitMillis);
+        Ticket next = null;
+        for (Ticket candidate : waiting) {
+            if (next == null || candidate.goesBefore(next, agedBefore)) {
+                next = candidate;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @return The number of requests currently in flight
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of requests waiting to be admitted
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The current adaptive concurrency limit
+     */
+    public int getConcurrencyLimit() {
+        lock.lock();
+        try {
+            return concurrencyLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRefillNanos;
+        lastRefillNanos = now;
+
+        requestBucket = Math.min(requestBucketCapacity,
+                requestBucket + (double) elapsed * requestsPerMinute / NANOS_PER_MINUTE);
+        tokenBudget = Math.min(tokensPerMinute,
+                tokenBudget + (double) elapsed * tokensPerMinute / NANOS_PER_MINUTE);
+    }
+
+    private long nanosUntilAvailable(long tokens) {
+        double missingRequests = Math.max(0.0, 1.0 - requestBucket);
+        double missingTokens = Math.max(0.0, Math.min(tokens, tokensPerMinute) - tokenBudget);
+        long requestWait = (long) (missingRequests * NANOS_PER_MINUTE / requestsPerMinute);
+        long tokenWait = (long) (missingTokens * NANOS_PER_MINUTE / tokensPerMinute);
+        return Math.max(TimeUnit.MILLISECONDS.toNanos(1), Math.max(requestWait, tokenWait));
+    }
+
+    private void complete(long reservedTokens, Long actualTokens, boolean reported, Outcome outcome) {
+        lock.lock();
+        try {
+            inFlight--;
+
+            if (actualTokens != null) {
+                // Reconcile the reservation with the usage, and learn the average request size from reported usage only
+                tokenBudget = Math.min(tokensPerMinute, tokenBudget + reservedTokens - actualTokens);
+                if (reported) {
+                    averageTokensPerRequest = 0.8 * averageTokensPerRequest + 0.2 * actualTokens;
+                }
+            }
+
+            if (outcome == Outcome.SUCCESS) {
+                successesSinceIncrease++;
+                if (successesSinceIncrease >= concurrencyLimit && concurrencyLimit < maxConcurrency) {
+                    concurrencyLimit++;
+                    successesSinceIncrease = 0;
+                    log.debug("Increased Deepseek API concurrency limit to {}", concurrencyLimit);
+                }
+            } else if (outcome == Outcome.THROTTLED) {
+                int previous = concurrencyLimit;
+                concurrencyLimit = Math.max(minConcurrency, (int) Math.floor(concurrencyLimit * decreaseFactor));
+                successesSinceIncrease = 0;
+                // Pause new requests until the request bucket refills
+                requestBucket = 0;
+                log.warn("Deepseek API throttled, reduced concurrency limit from {} to {}", previous, concurrencyLimit);
+            }
+
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Long totalTokens(Map<String, Object> usage) {
+        if (usage == null) {
+            return null;
+        }
+        Object total = usage.get("total_tokens");
+        if (total instanceof Number number) {
+            return number.longValue();
+        }
+        Object prompt = usage.get("prompt_tokens");
+        Object completion = usage.get("completion_tokens");
+        if (prompt instanceof Number promptTokens && completion instanceof Number completionTokens) {
+            return promptTokens.longValue() + completionTokens.longValue();
+        }
+        return null;
+    }
+
+    /**
+     * A request waiting for admission.
+     */
+    private record Ticket(long tokens, long enqueuedNanos, long sequence) {
+
+        private boolean goesBefore(Ticket other, long agedBefore) {
+            boolean aged = enqueuedNanos - agedBefore <= 0;
+            boolean otherAged = other.enqueuedNanos - agedBefore <= 0;
+            if (aged != otherAged) {
+                return aged;
+            }
+            if (!aged && tokens != other.tokens) {
+                return tokens < other.tokens;
+            }
+            return sequence < other.sequence;
+        }
+    }
+
+    private enum Outcome {
+        SUCCESS, THROTTLED, FAILED
+    }
+
+    /**
+     * Admission to send one request. Exactly one of the completion methods must be called
+     * when the call finishes; further calls are ignored.
+     */
+    public class Permit {
+
+        private final long reservedTokens;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Permit(long reservedTokens) {
+            this.reservedTokens = reservedTokens;
+        }
+
+        /**
+         * Completes a successful call.
+         *
+         * @param usage The usage map reported by the API, may be null
+         */
+        public void onSuccess(Map<String, Object> usage) {
+            if (completed.compareAndSet(false, true)) {
+                complete(reservedTokens, totalTokens(usage), true, Outcome.SUCCESS);
+            }
+        }
+
+        /**
+         * Completes a successful call whose stream was cancelled before the API reported the usage.
+         * The reservation is reconciled with the caller's estimate, which is not learned from.
+         *
+         * @param estimatedTokens The estimated tokens the call used
+         */
+        public void onStopped(long estimatedTokens) {
+            if (completed.compareAndSet(false, true)) {
+                complete(reservedTokens, estimatedTokens, false, Outcome.SUCCESS);
+            }
+        }
+
+        /**
+         * Completes a call that was rate limited.
+         */
+        public void onThrottled() {
+            if (completed.compareAndSet(false, true)) {
+                complete(reservedTokens, null, false, Outcome.THROTTLED);
+            }
+        }
+
+        /**
+         * Completes a call that failed for another reason or was cancelled.
+         */
+        public void onFailure() {
+            if (completed.compareAndSet(false, true)) {
+                complete(reservedTokens, null, false, Outcome.FAILED);
+            }
+        }
+    }
+}
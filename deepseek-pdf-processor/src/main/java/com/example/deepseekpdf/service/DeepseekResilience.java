@@ -0,0 +1,496 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Resilience layer around Deepseek API calls, for blocking, {@link Mono} and {@link Flux} calls alike.
+ * <ul>
+ *   <li><b>Retries</b>: timeouts, rate limited requests and server errors are retried up to
+ *       {@code deepseek.max-retries} times with exponential backoff and full jitter. Retries are paid
+ *       from a {@link RetryBudget}, so that they stay a bounded share of the traffic during an outage.</li>
+ *   <li><b>Hedging</b>: when an attempt has not answered within the {@code deepseek.hedge.percentile}
+ *       of recent latencies of requests of its size, a second attempt is sent and the first successful
+ *       one is used. Latencies are kept per size class of the estimated tokens, so that large PDFs are
+ *       compared with other large PDFs and not hedged merely for being large. Streams are hedged on the
+ *       time to their first chunk. Hedges are paid from the same budget.</li>
+ *   <li><b>Latency</b>: latencies and hedge delays are measured from the moment the rate limiter
+ *       admits an attempt, which the attempt signals through the callback it is given. Time spent
+ *       waiting for the limiter is queueing, not API latency, and never triggers a hedge.</li>
+ *   <li><b>Circuit breaker</b>: every attempt passes the {@link DeepseekCircuitBreaker}, which fails
+ *       fast while the API is unavailable. Open-circuit failures are never retried.</li>
+ * </ul>
+ * Each attempt goes through the rate limiter on its own, so retries and hedges are admitted like
+ * any other request.
+ */
+@Component
+@Slf4j
+public class DeepseekResilience {
+
+    private static final int LATENCY_SAMPLES = 500;
+
+    /** Requests below this estimate share the smallest size class; each further class doubles it */
+    private static final long SIZE_CLASS_BASE_TOKENS = 1024;
+
+    @Autowired
+    private ApiErrorClassifier errorClassifier;
+
+    @Autowired
+    private DeepseekCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Value("${deepseek.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${deepseek.retry.initial-backoff-ms:500}")
+    private long initialBackoffMillis;
+
+    @Value("${deepseek.retry.max-backoff-ms:30000}")
+    private long maxBackoffMillis;
+
+    @Value("${deepseek.retry.budget-ratio:0.2}")
+    private double budgetRatio;
+
+    @Value("${deepseek.retry.budget-min-retries:10}")
+    private int budgetMinRetries;
+
+    @Value("${deepseek.retry.budget-window-ms:10000}")
+    private long budgetWindowMillis;
+
+    @Value("${deepseek.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    @Value("${deepseek.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${deepseek.hedge.min-samples:20}")
+    private int hedgeMinSamples;
+
+    private RetryBudget retryBudget;
+    private final Map<Integer, LatencyTracker> responseLatency = new ConcurrentHashMap<>();
+    private final Map<Integer, LatencyTracker> firstChunkLatency = new ConcurrentHashMap<>();
+    private ExecutorService hedgeExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (maxRetries < 0 || initialBackoffMillis <= 0 || maxBackoffMillis < initialBackoffMillis
+                || budgetRatio < 0 || budgetMinRetries < 0 || budgetWindowMillis <= 0
+                || hedgePercentile <= 0 || hedgePercentile >= 1 || hedgeMinSamples <= 0) {
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Invalid retry or hedging configuration",
+                String.format("maxRetries: %d, initialBackoffMillis: %d, maxBackoffMillis: %d, budgetRatio: %f, "
+                        + "budgetMinRetries: %d, budgetWindowMillis: %d, hedgePercentile: %f, hedgeMinSamples: %d",
+                        maxRetries, initialBackoffMillis, maxBackoffMillis, budgetRatio, budgetMinRetries,
+                        budgetWindowMillis, hedgePercentile, hedgeMinSamples)
+            );
+        }
+        retryBudget = new RetryBudget(budgetRatio, budgetMinRetries, TimeUnit.MILLISECONDS.toNanos(budgetWindowMillis));
+        hedgeExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        log.info("Initialized Deepseek resilience (max retries: {}, retry budget: {} + {} per request per {} ms, "
+                + "hedging: {} at p{})", maxRetries, budgetMinRetries, budgetRatio, budgetWindowMillis,
+                hedgeEnabled, Math.round(hedgePercentile * 100));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs a blocking call with retries, hedging and the circuit breaker.
+     *
+     * @param operationId The operation id used in logs
+     * @param estimatedTokens The estimated tokens of the request, selecting the latencies it is hedged on
+     * @param call One attempt of the call, including its rate limiter permit; runs the given callback
+     *             once the permit is granted
+     * @return The result of the first successful attempt
+     */
+    public <T> T execute(String operationId, long estimatedTokens, Function<Runnable, T> call) {
+        retryBudget.onRequest();
+        LatencyTracker latencies = tracker(responseLatency, estimatedTokens);
+        for (int retry = 0; ; retry++) {
+            try {
+                return hedged(operationId, latencies, call);
+            } catch (RuntimeException e) {
+                long backoff = retryBackoff(operationId, e, retry);
+                if (backoff < 0) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a call emitting a single response with retries, hedging and the circuit breaker.
+     *
+     * @param operationId The operation id used in logs
+     * @param estimatedTokens The estimated tokens of the request, selecting the latencies it is hedged on
+     * @param call Creates one attempt of the call, including its rate limiter permit; the attempt runs
+     *             the given callback once the permit is granted
+     * @return Mono emitting the response of the first successful attempt
+     */
+    public <T> Mono<T> executeMono(String operationId, long estimatedTokens, Function<Runnable, Mono<T>> call) {
+        return Mono.defer(() -> {
+            retryBudget.onRequest();
+            return hedgedMono(operationId, tracker(responseLatency, estimatedTokens), call)
+                    .retryWhen(retrySpec(operationId, () -> false));
+        });
+    }
+
+    /**
+     * Runs a streaming call with retries, hedging and the circuit breaker. A stream is only
+     * retried if it fails before its first chunk, so subscribers never see chunks twice.
+     *
+     * @param operationId The operation id used in logs
+     * @param estimatedTokens The estimated tokens of the request, selecting the latencies it is hedged on
+     * @param call Creates one attempt of the call, including its rate limiter permit; the attempt runs
+     *             the given callback once the permit is granted
+     * @return Flux emitting the chunks of the first attempt that produces one
+     */
+    public <T> Flux<T> executeFlux(String operationId, long estimatedTokens, Function<Runnable, Flux<T>> call) {
+        return Flux.defer(() -> {
+            retryBudget.onRequest();
+            AtomicBoolean emitted = new AtomicBoolean();
+            return hedgedFlux(operationId, tracker(firstChunkLatency, estimatedTokens), call)
+                    .doOnNext(chunk -> emitted.set(true))
+                    .retryWhen(retrySpec(operationId, emitted::get));
+        });
+    }
+
+    /**
+     * Returns the backoff before the next retry of a failed call, or -1 if it must not be retried.
+     */
+    private long retryBackoff(String operationId, Throwable error, long retries) {
+        if (retries >= maxRetries || !errorClassifier.isRetryable(error)) {
+            return -1;
+        }
+        if (!retryBudget.tryAcquire()) {
+            log.warn("[{}] Retry budget exhausted, not retrying: {}", operationId, error.getMessage());
+            return -1;
+        }
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(retries, 30));
+        long backoff = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        log.warn("[{}] Attempt {} failed ({}), retrying in {} ms", operationId, retries + 1, error.getMessage(), backoff);
+        pipelineMetrics.recordResilienceEvent(PipelineMetrics.EVENT_RETRY);
+        return backoff;
+    }
+
+    private Retry retrySpec(String operationId, Supplier<Boolean> emitted) {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            Throwable error = signal.failure();
+            long backoff = emitted.get() ? -1 : retryBackoff(operationId, error, signal.totalRetries());
+            return backoff < 0 ? Mono.<Long>error(error) : Mono.delay(Duration.ofMillis(backoff));
+        }));
+    }
+
+    /**
+     * Runs a blocking call and sends a hedge on a virtual thread if the primary attempt is slow
+     * once admitted by the rate limiter. The losing attempt is interrupted.
+     */
+    private <T> T hedged(String operationId, LatencyTracker latencies, Function<Runnable, T> call) {
+        OptionalLong hedgeDelay = hedgeDelay(latencies);
+        if (hedgeDelay.isEmpty()) {
+            return new Attempt<>(latencies, call).call();
+        }
+
+        ExecutorCompletionService<T> completion = new ExecutorCompletionService<>(hedgeExecutor);
+        List<Attempt<T>> attempts = new ArrayList<>(2);
+        List<Future<T>> futures = new ArrayList<>(2);
+        try {
+            Attempt<T> primary = new Attempt<>(latencies, call);
+            attempts.add(primary);
+            futures.add(completion.submit(primary));
+
+            // The hedge delay starts once the primary is admitted; an attempt that ends before that is simply done
+            primary.admission.await();
+            Future<T> done = primary.admission.isAdmitted()
+                    ? completion.poll(primary.admission.remainingNanos(hedgeDelay.getAsLong()), TimeUnit.NANOSECONDS)
+                    : completion.take();
+            if (done == null && retryBudget.tryAcquire()) {
+                log.debug("[{}] No response after {} ms, sending a hedged request",
+                        operationId, TimeUnit.NANOSECONDS.toMillis(hedgeDelay.getAsLong()));
+                pipelineMetrics.recordResilienceEvent(PipelineMetrics.EVENT_HEDGE);
+                attempts.add(new Attempt<>(latencies, call));
+                futures.add(completion.submit(attempts.get(1)));
+            }
+
+            // The first successful attempt wins; fail with the primary's error only when all failed
+            RuntimeException failure = null;
+            for (int pending = futures.size(); pending > 0; pending--) {
+                Future<T> next = done != null ? done : completion.take();
+                done = null;
+                try {
+                    return next.get();
+                } catch (ExecutionException e) {
+                    RuntimeException error = e.getCause() instanceof RuntimeException runtime
+                            ? runtime
+                            : new DeepseekApiException(ErrorCode.API_COMMUNICATION_ERROR,
+                                    "Deepseek API call failed", e.getCause().getMessage(), e.getCause());
+                    if (failure == null || next == futures.get(0)) {
+                        failure = error;
+                    }
+                }
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeepseekApiException(
+                ErrorCode.API_COMMUNICATION_ERROR,
+                "Interrupted while waiting for the Deepseek API",
+                e.getMessage(),
+                e
+            );
+        } finally {
+            attempts.forEach(Attempt::abandon);
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Subscribes to a second attempt if the primary attempt has not emitted a value within the
+     * hedge delay, and mirrors whichever emits first. Fails with the primary's error if no attempt
+     * emits a value.
+     */
+    private <T> Mono<T> hedgedMono(String operationId, LatencyTracker latencies, Function<Runnable, Mono<T>> call) {
+        return Mono.defer(() -> {
+            OptionalLong hedgeDelay = hedgeDelay(latencies);
+            if (hedgeDelay.isEmpty()) {
+                return attemptMono(latencies, call, () -> { });
+            }
+            AtomicReference<Throwable> primaryError = new AtomicReference<>();
+            Sinks.Empty<Void> primaryAdmitted = Sinks.empty();
+            Sinks.Empty<Void> primaryFailed = Sinks.empty();
+            Mono<T> primary = attemptMono(latencies, call, primaryAdmitted::tryEmitEmpty)
+                    .doOnError(e -> {
+                        primaryError.set(e);
+                        primaryFailed.tryEmitEmpty();
+                    });
+            Mono<T> hedge = hedgeTrigger(operationId, hedgeDelay.getAsLong(), primaryAdmitted, primaryFailed)
+                    .flatMap(tick -> attemptMono(latencies, call, () -> { }));
+            return Mono.firstWithValue(primary, hedge)
+                    .onErrorMap(NoSuchElementException.class, e -> primaryError.get() != null ? primaryError.get() : e);
+        });
+    }
+
+    private <T> Flux<T> hedgedFlux(String operationId, LatencyTracker latencies, Function<Runnable, Flux<T>> call) {
+        return Flux.defer(() -> {
+            OptionalLong hedgeDelay = hedgeDelay(latencies);
+            if (hedgeDelay.isEmpty()) {
+                return attemptFlux(latencies, call, () -> { });
+            }
+            AtomicReference<Throwable> primaryError = new AtomicReference<>();
+            Sinks.Empty<Void> primaryAdmitted = Sinks.empty();
+            Sinks.Empty<Void> primaryFailed = Sinks.empty();
+            Flux<T> primary = attemptFlux(latencies, call, primaryAdmitted::tryEmitEmpty)
+                    .doOnError(e -> {
+                        primaryError.set(e);
+                        primaryFailed.tryEmitEmpty();
+                    });
+            Flux<T> hedge = hedgeTrigger(operationId, hedgeDelay.getAsLong(), primaryAdmitted, primaryFailed)
+                    .flatMapMany(tick -> attemptFlux(latencies, call, () -> { }));
+            return Flux.firstWithValue(primary, hedge)
+                    .onErrorMap(NoSuchElementException.class, e -> primaryError.get() != null ? primaryError.get() : e);
+        });
+    }
+
+    /**
+     * Emits once the hedge delay has passed since the primary attempt was admitted by the rate
+     * limiter, unless the primary attempt failed before or the retry budget is used up.
+     */
+    private Mono<Long> hedgeTrigger(String operationId, long delayNanos, Sinks.Empty<Void> primaryAdmitted,
+                                    Sinks.Empty<Void> primaryFailed) {
+        return primaryAdmitted.asMono()
+                .then(Mono.delay(Duration.ofNanos(delayNanos)))
+                .takeUntilOther(primaryFailed.asMono())
+                .filter(tick -> retryBudget.tryAcquire())
+                .doOnNext(tick -> {
+                    log.debug("[{}] No response after {} ms, sending a hedged request",
+                            operationId, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+                    pipelineMetrics.recordResilienceEvent(PipelineMetrics.EVENT_HEDGE);
+                });
+    }
+
+    private <T> Mono<T> attemptMono(LatencyTracker latencies, Function<Runnable, Mono<T>> call, Runnable admitted) {
+        return Mono.defer(() -> {
+            circuitBreaker.acquire();
+            Admission admission = new Admission(admitted);
+            return call.apply(admission)
+                    .doOnSuccess(response -> {
+                        admission.record(latencies);
+                        circuitBreaker.onSuccess();
+                    })
+                    .doOnError(this::onAttemptFailure)
+                    .doOnCancel(circuitBreaker::onIgnored);
+        });
+    }
+
+    private <T> Flux<T> attemptFlux(LatencyTracker latencies, Function<Runnable, Flux<T>> call, Runnable admitted) {
+        return Flux.defer(() -> {
+            circuitBreaker.acquire();
+            Admission admission = new Admission(admitted);
+            AtomicBoolean first = new AtomicBoolean(true);
+            return call.apply(admission)
+                    .doOnNext(chunk -> {
+                        if (first.compareAndSet(true, false)) {
+                            admission.record(latencies);
+                        }
+                    })
+                    .doOnComplete(circuitBreaker::onSuccess)
+                    .doOnError(this::onAttemptFailure)
+                    .doOnCancel(circuitBreaker::onIgnored);
+        });
+    }
+
+    private void onAttemptFailure(Throwable error) {
+        if (errorClassifier.isUnavailable(error)) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onIgnored();
+        }
+    }
+
+    private OptionalLong hedgeDelay(LatencyTracker latencies) {
+        return hedgeEnabled ? latencies.percentileNanos() : OptionalLong.empty();
+    }
+
+    /**
+     * Returns the latencies of the size class of a request: requests below
+     * {@code SIZE_CLASS_BASE_TOKENS} share class 0, and each further class covers twice the tokens.
+     */
+    private LatencyTracker tracker(Map<Integer, LatencyTracker> trackers, long estimatedTokens) {
+        int sizeClass = 64 - Long.numberOfLeadingZeros(Math.max(0, estimatedTokens) / SIZE_CLASS_BASE_TOKENS);
+        return trackers.computeIfAbsent(sizeClass,
+                key -> new LatencyTracker(LATENCY_SAMPLES, hedgePercentile, hedgeMinSamples));
+    }
+
+    /**
+     * One blocking attempt: passes the circuit breaker, runs the call and reports its outcome.
+     * An attempt abandoned because the other attempt won is reported as ignored.
+     */
+    private final class Attempt<T> implements Callable<T> {
+
+        private final LatencyTracker latencies;
+        private final Function<Runnable, T> call;
+        private final Admission admission = new Admission(() -> { });
+        private volatile boolean abandoned;
+
+        private Attempt(LatencyTracker latencies, Function<Runnable, T> call) {
+            this.latencies = latencies;
+            this.call = call;
+        }
+
+        @Override
+        public T call() {
+            T result;
+            try {
+                circuitBreaker.acquire();
+                result = call.apply(admission);
+            } catch (RuntimeException e) {
+                if (abandoned) {
+                    circuitBreaker.onIgnored();
+                } else {
+                    onAttemptFailure(e);
+                }
+                throw e;
+            } finally {
+                admission.end();
+            }
+            admission.record(latencies);
+            circuitBreaker.onSuccess();
+            return result;
+        }
+
+        private void abandon() {
+            abandoned = true;
+        }
+    }
+
+    /**
+     * Marks when the rate limiter admitted an attempt. The attempt's latency is measured from
+     * there, and a blocking hedge waits for it before its delay starts.
+     */
+    private static final class Admission implements Runnable {
+
+        private final Runnable listener;
+        private final CountDownLatch ended = new CountDownLatch(1);
+        private volatile long admittedNanos;
+        private volatile boolean admitted;
+
+        private Admission(Runnable listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            admittedNanos = System.nanoTime();
+            admitted = true;
+            ended.countDown();
+            listener.run();
+        }
+
+        /**
+         * Releases a waiting hedge when the attempt ends without being admitted.
+         */
+        private void end() {
+            ended.countDown();
+        }
+
+        private void await() throws InterruptedException {
+            ended.await();
+        }
+
+        private boolean isAdmitted() {
+            return admitted;
+        }
+
+        private long remainingNanos(long delayNanos) {
+            return admittedNanos + delayNanos - System.nanoTime();
+        }
+
+        private void record(LatencyTracker latencies) {
+            if (admitted) {
+                latencies.record(System.nanoTime() - admittedNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.model.DeepseekApiResponse;
+import com.example.deepseekpdf.model.InputMode;
+import com.example.deepseekpdf.model.PdfContent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of Deepseek API responses.
+ * Entries are keyed by the SHA-256 of the PDF bytes together with the resolved prompt and the
+ * model parameters, and are stored as one JSON file per key so they survive JVM restarts.
+ * The number of entries is bounded with least-recently-used eviction, and entries older than
+ * the configured TTL are treated as misses and removed. Hits, misses, evictions and the number of
+ * entries are exposed as metrics by {@code MetricsConfig}.
+ */
+@Component
+@Slf4j
+public class DeepseekResponseCache {
+
+    private static final String ENTRY_SUFFIX = ".json";
+
+    @Value("${deepseek.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${deepseek.cache.directory:cache/responses}")
+    private String cacheDirectory;
+
+    @Value("${deepseek.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${deepseek.cache.ttl-hours:720}")
+    private long ttlHours;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private Path cachePath;
+    private Map<String, Boolean> index;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            log.info("Deepseek response cache is disabled");
+            return;
+        }
+
+        cachePath = Paths.get(cacheDirectory);
+        Files.createDirectories(cachePath);
+
+        // Access-ordered index of the keys on disk; the eldest entry is the least recently used one
+        index = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                if (size() > maxEntries) {
+                    deleteEntry(eldest.getKey());
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        // Restore the LRU order from the last access times recorded on the entry files
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(cachePath)) {
+            entries = files
+                    .filter(path -> path.getFileName().toString().endsWith(ENTRY_SUFFIX))
+                    .sorted(Comparator.comparing(this::lastModified))
+                    .collect(Collectors.toList());
+        }
+        synchronized (this) {
+            for (Path entry : entries) {
+                String fileName = entry.getFileName().toString();
+                index.put(fileName.substring(0, fileName.length() - ENTRY_SUFFIX.length()), Boolean.TRUE);
+            }
+        }
+
+        log.info("Initialized Deepseek response cache in {} with {} entries (max: {}, ttl: {}h)",
+                cacheDirectory, index.size(), maxEntries, ttlHours);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Computes the cache key for a request.
+     *
+     * @param content The PDF content
+     * @param inputMode How the document is sent to the API
+     * @param extractionSettings The text extraction settings in text mode, null for attachments
+     * @param prompt The resolved prompt
+     * @param model The model name
+     * @param temperature The sampling temperature
+     * @param maxTokens The maximum number of completion tokens
+     * @return The hex encoded SHA-256 key
+     * @throws IOException If the content cannot be read
+     */
+    public String computeKey(PdfContent content, InputMode inputMode, String extractionSettings, String prompt,
+                             String model, double temperature, int maxTokens) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(digest(content));
+        for (String field : new String[] {inputMode.name(), String.valueOf(extractionSettings), prompt, model,
+                Double.toString(temperature), Integer.toString(maxTokens)}) {
+            updateField(digest, field);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Adds a field to the key preceded by its length, so that no two different field lists, for
+     * example a prompt ending in a line that looks like a model name, hash the same bytes.
+     */
+    private static void updateField(MessageDigest digest, String field) {
+        byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+
+    /**
+     * Looks up a cached response.
+     *
+     * @param key The cache key
+     * @return The cached response, or empty on a miss
+     */
+    public Optional<DeepseekApiResponse> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        boolean known;
+        synchronized (this) {
+            known = index.get(key) != null;
+        }
+        if (!known) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        Path entryPath = entryPath(key);
+        try {
+            CachedResponse entry = objectMapper.readValue(entryPath.toFile(), CachedResponse.class);
+            if (isExpired(entry)) {
+                log.debug("Cache entry {} expired", key);
+                remove(key);
+                evictions.incrementAndGet();
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            Files.setLastModifiedTime(entryPath, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return Optional.of(entry.getResponse());
+        } catch (IOException e) {
+            log.warn("Failed to read cache entry {}: {}", key, e.getMessage());
+            remove(key);
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores a response. Responses that carry an error are not cached.
+     *
+     * @param key The cache key
+     * @param response The API response
+     */
+    public void put(String key, DeepseekApiResponse response) {
+        if (!enabled || response == null || response.isHasError()) {
+            return;
+        }
+
+        Path entryPath = entryPath(key);
+        try {
+            Path tempPath = Files.createTempFile(cachePath, key, ".tmp");
+            objectMapper.writeValue(tempPath.toFile(), new CachedResponse(System.currentTimeMillis(), response));
+            Files.move(tempPath, entryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                index.put(key, Boolean.TRUE);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return index == null ? 0 : index.size();
+    }
+
+    private boolean isExpired(CachedResponse entry) {
+        return System.currentTimeMillis() - entry.getStoredAt() > Duration.ofHours(ttlHours).toMillis();
+    }
+
+    private void remove(String key) {
+        synchronized (this) {
+            index.remove(key);
+        }
+        deleteEntry(key);
+    }
+
+    private void deleteEntry(String key) {
+        try {
+            Files.deleteIfExists(entryPath(key));
+        } catch (IOException e) {
+            log.warn("Failed to delete cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private Path entryPath(String key) {
+        return cachePath.resolve(key + ENTRY_SUFFIX);
+    }
+
+    private FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static byte[] digest(PdfContent content) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(content.asByteBuffer());
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * On-disk representation of a cache entry.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class CachedResponse {
+        private long storedAt;
+        private DeepseekApiResponse response;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.deepseekpdf.service;
+
+/**
+ * Detects the end of a JSON object or array that an answer starts with, in text received in pieces.
+ * Only whitespace and the opening line of a Markdown code fence may come before the opening bracket;
+ * an answer that starts with anything else, such as prose mentioning {@code [Page 3]}, is never
+ * considered closed. Brackets inside strings are not counted. One detector follows one stream.
+ */
+final class JsonEndDetector {
+
+    private int depth;
+    private boolean started;
+    private boolean inFenceLine;
+    private boolean notJson;
+    private boolean inString;
+    private boolean escaped;
+    private boolean closed;
+
+    /**
+     * Scans the next piece of text.
+     *
+     * @param delta The text received since the last call, may be null
+     * @return True once the JSON structure has been closed
+     */
+    boolean accept(CharSequence delta) {
+        if (closed || notJson || delta == null) {
+            return closed;
+        }
+        for (int i = 0; i < delta.length(); i++) {
+            char c = delta.charAt(i);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (inFenceLine) {
+                inFenceLine = c != '\n';
+            } else if (!started) {
+                if (c == '{' || c == '[') {
+                    started = true;
+                    depth = 1;
+                } else if (c == '`') {
+                    inFenceLine = true;
+                } else if (!Character.isWhitespace(c)) {
+                    notJson = true;
+                    return false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && --depth == 0) {
+                closed = true;
+                return true;
+            }
+        }
+        return false;
+    }
+}
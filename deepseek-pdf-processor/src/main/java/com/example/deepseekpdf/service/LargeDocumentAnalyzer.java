@@ -0,0 +1,269 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import com.example.deepseekpdf.model.DeepseekApiResponse;
+import com.example.deepseekpdf.model.PdfDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Analyzes very large PDF documents with a map-reduce approach.
+ * The text layer is split into segments of consecutive pages that fit a token budget, the
+ * segments are analyzed concurrently ("map"), and the partial results are merged into the
+ * structure requested by the prompt ("reduce"). The reduce is a tree: consecutive partial results
+ * are merged in groups that fit the same token budget, level by level, until one remains.
+ */
+@Service
+@Slf4j
+public class LargeDocumentAnalyzer {
+
+    @Autowired
+    private DeepseekApiService deepseekApiService;
+
+    @Autowired
+    private PdfTextExtractor pdfTextExtractor;
+
+    @Value("${deepseek.large-document.enabled:true}")
+    private boolean enabled;
+
+    @Value("${deepseek.large-document.page-threshold:200}")
+    private int pageThreshold;
+
+    @Value("${deepseek.large-document.segment-tokens:24000}")
+    private int segmentTokens;
+
+    @Value("${deepseek.large-document.max-concurrent-segments:4}")
+    private int maxConcurrentSegments;
+
+    @Value("${deepseek.large-document.chars-per-token:4}")
+    private int charsPerToken;
+
+    /**
+     * Decides whether a document should be analyzed in segments.
+     *
+     * @param pdfDocument The PDF document with its metadata already extracted
+     * @return True if the document exceeds the configured page threshold
+     */
+    public boolean isLargeDocument(PdfDocument pdfDocument) {
+        return enabled && pdfDocument.getPageCount() >= pageThreshold;
+    }
+
+    /**
+     * Analyzes a large document segment by segment and merges the results.
+     *
+     * @param pdfDocument The PDF document with its metadata already extracted
+     * @param customPrompt Optional custom prompt to override default
+     * @return The merged API response
+     */
+    public DeepseekApiResponse analyze(PdfDocument pdfDocument, String customPrompt) {
+        String prompt = deepseekApiService.resolvePrompt(customPrompt);
+        List<Segment> segments = createSegments(pdfTextExtractor.extractPages(pdfDocument), prompt);
+        log.info("Analyzing large PDF {} ({} pages) in {} segments",
+                pdfDocument.getFileName(), pdfDocument.getPageCount(), segments.size());
+
+        // Map: analyze the segments concurrently, keeping the results in page order
+        List<DeepseekApiResponse> partialResponses = Flux.fromIterable(segments)
+                .flatMapSequential(segment -> Mono.fromCallable(() -> analyzeSegment(pdfDocument, segment,
+                                        segments.size(), prompt))
+                                .subscribeOn(Schedulers.boundedElastic()),
+                        maxConcurrentSegments)
+                .collectList()
+                .block();
+
+        if (partialResponses == null || partialResponses.isEmpty()) {
+            throw new DeepseekApiException(
+                ErrorCode.PDF_PROCESSING_ERROR,
+                "No text could be extracted from large PDF",
+                pdfDocument.getFileName()
+            );
+        }
+        List<Partial> partials = new ArrayList<>(partialResponses.size());
+        for (int i = 0; i < partialResponses.size(); i++) {
+            Segment segment = segments.get(i);
+            partials.add(new Partial(segment.startPage, segment.endPage,
+                    deepseekApiService.extractContent(partialResponses.get(i)), partialResponses.get(i)));
+        }
+
+        // Reduce: merge groups of consecutive partial results until a single analysis remains
+        for (int level = 1; partials.size() > 1; level++) {
+            List<List<Partial>> groups = groupForReduce(pdfDocument, partials, prompt);
+            log.info("Merging {} partial analyses of PDF {} in {} requests (level {})",
+                    partials.size(), pdfDocument.getFileName(), groups.size(), level);
+            boolean whole = groups.size() == 1;
+            partials = Flux.fromIterable(groups)
+                    .flatMapSequential(group -> Mono.fromCallable(() -> reduce(pdfDocument, group, prompt, whole))
+                                    .subscribeOn(Schedulers.boundedElastic()),
+                            maxConcurrentSegments)
+                    .collectList()
+                    .block();
+        }
+        return partials.get(0).response;
+    }
+
+    /**
+     * Groups consecutive partial results so that each merge request fits {@code segment-tokens}.
+     * A partial result that fits no group with its neighbour is carried to the next level on its own,
+     * unless no group could be formed at all; then neighbours are paired regardless of the budget,
+     * so that every level merges at least one pair.
+     */
+    private List<List<Partial>> groupForReduce(PdfDocument pdfDocument, List<Partial> partials, String prompt) {
+        int budgetTokens = segmentTokens - estimateTokens(reduceInstructions(pdfDocument, prompt, 1, 1, false));
+
+        List<List<Partial>> groups = new ArrayList<>();
+        List<Partial> group = new ArrayList<>();
+        int groupTokens = 0;
+        for (Partial partial : partials) {
+            int tokens = estimateTokens(partial.content);
+            if (!group.isEmpty() && groupTokens + tokens > budgetTokens) {
+                groups.add(group);
+                group = new ArrayList<>();
+                groupTokens = 0;
+            }
+            group.add(partial);
+            groupTokens += tokens;
+        }
+        groups.add(group);
+
+        if (groups.size() == partials.size()) {
+            groups.clear();
+            for (int i = 0; i < partials.size(); i += 2) {
+                groups.add(new ArrayList<>(partials.subList(i, Math.min(partials.size(), i + 2))));
+            }
+        }
+        return groups;
+    }
+
+    private Partial reduce(PdfDocument pdfDocument, List<Partial> group, String prompt, boolean whole) {
+        Partial first = group.get(0);
+        Partial last = group.get(group.size() - 1);
+        if (group.size() == 1) {
+            return first;
+        }
+
+        StringBuilder reducePrompt = new StringBuilder(
+                reduceInstructions(pdfDocument, prompt, first.startPage, last.endPage, whole));
+        for (int i = 0; i < group.size(); i++) {
+            Partial partial = group.get(i);
+            reducePrompt.append("\n\nPart ").append(i + 1)
+                    .append(" (pages ").append(partial.startPage).append('-').append(partial.endPage).append("):\n")
+                    .append(partial.content);
+        }
+
+        DeepseekApiResponse response = deepseekApiService.processMessage(
+                pdfDocument.getFileName() + " (reduce pages " + first.startPage + "-" + last.endPage + ")",
+                reducePrompt.toString());
+        return new Partial(first.startPage, last.endPage, deepseekApiService.extractContent(response), response);
+    }
+
+    private String reduceInstructions(PdfDocument pdfDocument, String prompt, int startPage, int endPage,
+                                      boolean whole) {
+        String scope = whole ? "the whole document" : "pages " + startPage + " to " + endPage;
+        return "The following JSON objects are partial analyses of consecutive parts of the PDF document \""
+                + pdfDocument.getFileName() + "\". Merge them into a single analysis of " + scope + ". "
+                + "Combine and deduplicate list entries and write one summary for " + scope + ". "
+                + "The original instructions, including the required response structure, were:\n\n" + prompt;
+    }
+
+    private DeepseekApiResponse analyzeSegment(PdfDocument pdfDocument, Segment segment, int segmentCount,
+                                               String prompt) {
+        PdfDocument segmentDocument = PdfDocument.builder()
+                .id(pdfDocument.getId())
+                .fileName(pdfDocument.getFileName())
+                .filePath(pdfDocument.getFilePath())
+                .content(pdfDocument.getContent())
+                .extractedText(segment.text)
+                .build();
+
+        return deepseekApiService.processPdf(segmentDocument,
+                segmentPrompt(prompt, segment, segment.index + 1, segmentCount));
+    }
+
+    private String segmentPrompt(String prompt, Segment segment, int number, int segmentCount) {
+        return prompt + "\n\nThis is part " + number + " of " + segmentCount + " of a larger document, covering pages "
+                + segment.startPage + " to " + segment.endPage + ". Analyze only this part, using the structure above.";
+    }
+
+    /**
+     * Groups consecutive pages into segments whose estimated token count fits the segment budget.
+     * Pages that exceed the budget on their own are split into several segments.
+     */
+    private List<Segment> createSegments(List<String> pages, String prompt) {
+        int budgetChars = Math.max(1, segmentTokens - estimateTokens(prompt)) * charsPerToken;
+
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        int startPage = 1;
+        for (int i = 0; i < pages.size(); i++) {
+            int pageNumber = i + 1;
+            String page = pdfTextExtractor.pageMarker(pageNumber) + pages.get(i);
+
+            if (text.length() > 0 && text.length() + page.length() > budgetChars) {
+                segments.add(new Segment(segments.size(), startPage, pageNumber - 1, text.toString()));
+                text.setLength(0);
+            }
+            if (text.length() == 0) {
+                startPage = pageNumber;
+            }
+
+            if (page.length() > budgetChars) {
+                for (int offset = 0; offset < page.length(); offset += budgetChars) {
+                    String part = page.substring(offset, Math.min(page.length(), offset + budgetChars));
+                    segments.add(new Segment(segments.size(), pageNumber, pageNumber, part));
+                }
+            } else {
+                text.append(page);
+            }
+        }
+        if (text.length() > 0) {
+            segments.add(new Segment(segments.size(), startPage, pages.size(), text.toString()));
+        }
+        return segments;
+    }
+
+    private int estimateTokens(String text) {
+        return text.length() / charsPerToken + 1;
+    }
+
+    /**
+     * The analysis of a range of consecutive pages, from a segment or from merging several.
+     */
+    private static class Partial {
+        private final int startPage;
+        private final int endPage;
+        private final String content;
+        private final DeepseekApiResponse response;
+
+        Partial(int startPage, int endPage, String content, DeepseekApiResponse response) {
+            this.startPage = startPage;
+            this.endPage = endPage;
+            this.content = content;
+            this.response = response;
+        }
+    }
+
+    /**
+     * A range of consecutive pages analyzed in a single request.
+     */
+    private static class Segment {
+        private final int index;
+        private final int startPage;
+        private final int endPage;
+        private final String text;
+
+        Segment(int index, int startPage, int endPage, String text) {
+            this.index = index;
+            this.startPage = startPage;
+            this.endPage = endPage;
+            this.text = text;
+        }
+    }
+}
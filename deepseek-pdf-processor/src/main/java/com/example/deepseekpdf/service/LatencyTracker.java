@@ -0,0 +1,53 @@
+package com.example.deepseekpdf.service;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+
+/**
+ * Keeps the most recent latencies of a kind of call and computes a percentile over them.
+ * The percentile is recomputed after every {@code RECOMPUTE_INTERVAL} samples rather than on each read.
+ */
+final class LatencyTracker {
+
+    private static final int RECOMPUTE_INTERVAL = 16;
+
+    private final long[] samples;
+    private final double percentile;
+    private final int minSamples;
+
+    private int count;
+    private int next;
+    private int sinceRecompute;
+    private long cachedPercentile = -1;
+
+    LatencyTracker(int capacity, double percentile, int minSamples) {
+        this.samples = new long[capacity];
+        this.percentile = percentile;
+        this.minSamples = Math.min(minSamples, capacity);
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        sinceRecompute++;
+    }
+
+    /**
+     * @return The percentile of the recorded latencies in nanoseconds, or empty while fewer than
+     *         {@code minSamples} have been recorded
+     */
+    synchronized OptionalLong percentileNanos() {
+        if (count < minSamples) {
+            return OptionalLong.empty();
+        }
+        if (cachedPercentile < 0 || sinceRecompute >= RECOMPUTE_INTERVAL) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile * count);
+            cachedPercentile = sorted[Math.max(0, rank - 1)];
+            sinceRecompute = 0;
+        }
+        return OptionalLong.of(cachedPercentile);
+    }
+}
@@ -0,0 +1,509 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import com.example.deepseekpdf.model.NearDuplicateEntry;
+import com.example.deepseekpdf.model.PdfDocument;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the MinHash signatures of processed PDFs, used to find near-duplicates such as
+ * re-exports of a report with a new cover page or timestamp, which an exact content hash misses.
+ * <p>
+ * The extracted text is split into words, ignoring case, punctuation and layout, and every run of
+ * {@code shingle-words} words is hashed. A signature holds the minimum of {@code num-hashes}
+ * multiply-shift hashes over all shingles; the share of equal positions in two signatures estimates
+ * the Jaccard similarity of the documents. Signatures are split into {@code bands} bands for
+ * locality-sensitive hashing, so that only documents sharing a band are compared. A hash of every
+ * page is kept as well, to find the pages in which a near-duplicate differs.
+ * <p>
+ * A document at least {@code similarity-threshold} similar to a processed one reuses its result when
+ * it is at least {@code reuse-threshold} similar, has as many pages, and differs in none of them
+ * beyond the first {@code reuse-ignored-pages} (a cover page with a date, for example). Otherwise,
+ * if it differs in at most {@code max-differing-pages} pages, only those pages are sent to update
+ * the result. A high similarity alone is not enough: a changed page of figures barely moves it.
+ * <p>
+ * Entries are appended to a JSON Lines file next to the job data; the latest entry for a path wins.
+ * At most {@code max-entries} entries are kept, evicting the least recently indexed ones, and the
+ * file is compacted on startup and whenever it holds twice as many lines as entries.
+ * Entries only match documents sent with the same prompt and model.
+ */
+@Service
+@Slf4j
+public class NearDuplicateIndex {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    // Fixed seed, so that signatures stay comparable across restarts
+    private static final long HASH_SEED = 0x5DEECE66DL;
+
+    // FNV-1a parameters for hashing words
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    @Value("${deepseek.near-duplicate.enabled:false}")
+    private boolean enabled;
+
+    @Value("${deepseek.near-duplicate.index-file:data/near-duplicates.jsonl}")
+    private String indexFile;
+
+    @Value("${deepseek.near-duplicate.shingle-words:5}")
+    private int shingleWords;
+
+    @Value("${deepseek.near-duplicate.num-hashes:128}")
+    private int numHashes;
+
+    @Value("${deepseek.near-duplicate.bands:32}")
+    private int bands;
+
+    @Value("${deepseek.near-duplicate.similarity-threshold:0.8}")
+    private double similarityThreshold;
+
+    @Value("${deepseek.near-duplicate.reuse-threshold:0.97}")
+    private double reuseThreshold;
+
+    @Value("${deepseek.near-duplicate.max-differing-pages:3}")
+    private int maxDifferingPages;
+
+    @Value("${deepseek.near-duplicate.reuse-ignored-pages:1}")
+    private int reuseIgnoredPages;
+
+    @Value("${deepseek.near-duplicate.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${deepseek.model:deepseek-coder}")
+    private String model;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, NearDuplicateEntry> entries = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> buckets = new ConcurrentHashMap<>();
+
+    // Paths in the order they were indexed; the first one is evicted when the index is full
+    private final Set<String> indexOrder = new LinkedHashSet<>();
+
+    private long[] multipliers;
+    private long[] increments;
+    private Path indexPath;
+    private BufferedWriter writer;
+    private int lines;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (shingleWords <= 0 || numHashes <= 0 || bands <= 0 || numHashes % bands != 0
+                || similarityThreshold <= 0 || reuseThreshold < similarityThreshold || reuseThreshold > 1
+                || maxDifferingPages < 0 || reuseIgnoredPages < 0 || maxEntries <= 0) {
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Invalid near-duplicate configuration",
+                String.format("shingleWords: %d, numHashes: %d, bands: %d, similarityThreshold: %f, "
+                        + "reuseThreshold: %f, maxDifferingPages: %d, reuseIgnoredPages: %d, maxEntries: %d",
+                        shingleWords, numHashes, bands, similarityThreshold, reuseThreshold, maxDifferingPages,
+                        reuseIgnoredPages, maxEntries)
+            );
+        }
+        if (!enabled) {
+            return;
+        }
+
+        SplittableRandom random = new SplittableRandom(HASH_SEED);
+        multipliers = new long[numHashes];
+        increments = new long[numHashes];
+        for (int i = 0; i < numHashes; i++) {
+            multipliers[i] = random.nextLong() | 1;
+            increments[i] = random.nextLong();
+        }
+
+        indexPath = Paths.get(indexFile);
+        if (indexPath.getParent() != null) {
+            Files.createDirectories(indexPath.getParent());
+        }
+
+        if (Files.exists(indexPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(indexPath, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        NearDuplicateEntry entry = objectMapper.readValue(line, NearDuplicateEntry.class);
+                        lines++;
+                        if (entry.getSignature() != null && entry.getSignature().length == numHashes) {
+                            entries.put(entry.getPath(), entry);
+                            indexOrder.remove(entry.getPath());
+                            indexOrder.add(entry.getPath());
+                            if (entries.size() > maxEntries) {
+                                entries.remove(evictEldest());
+                            }
+                        }
+                    } catch (IOException e) {
+                        log.warn("Skipping unreadable near-duplicate index line: {}", e.getMessage());
+                    }
+                }
+            }
+        }
+        entries.values().forEach(this::addToBuckets);
+
+        // Compact the index when it holds superseded or evicted entries, or signatures of another configuration
+        synchronized (this) {
+            if (lines > entries.size()) {
+                compact();
+            }
+            openWriter();
+        }
+        log.info("Loaded near-duplicate index {} with {} entries (max: {})", indexFile, entries.size(), maxEntries);
+    }
+
+    private void openWriter() throws IOException {
+        writer = Files.newBufferedWriter(indexPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Rewrites the index file with the current entries only. The writer must be closed.
+     */
+    private void compact() throws IOException {
+        Path compacted = Files.createTempFile(indexPath.toAbsolutePath().getParent(), "near-duplicates", ".tmp");
+        try (BufferedWriter compactWriter = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (String path : indexOrder) {
+                compactWriter.write(objectMapper.writeValueAsString(entries.get(path)));
+                compactWriter.newLine();
+            }
+        }
+        Files.move(compacted, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Compacted near-duplicate index from {} to {} entries", lines, entries.size());
+        lines = entries.size();
+    }
+
+    /**
+     * Removes the least recently indexed path from the index order.
+     *
+     * @return The evicted path
+     */
+    private String evictEldest() {
+        Iterator<String> eldest = indexOrder.iterator();
+        String path = eldest.next();
+        eldest.remove();
+        return path;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Computes the signature and page hashes of a document from its extracted pages.
+     * Runs in a single pass over the text without creating strings for words or shingles.
+     *
+     * @param pages The text of each page, in page order
+     * @return The sketch, or null if the pages hold fewer words than a shingle, e.g. for scanned documents
+     */
+    public Sketch sketch(List<String> pages) {
+        int[] signature = new int[numHashes];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        long[] pageHashes = new long[pages.size()];
+        long[] window = new long[shingleWords];
+        long words = 0;
+
+        for (int p = 0; p < pages.size(); p++) {
+            String page = pages.get(p);
+            long pageHash = 0;
+            long wordHash = FNV_OFFSET;
+            boolean inWord = false;
+            for (int i = 0, length = page.length(); i <= length; i++) {
+                char c = i < length ? page.charAt(i) : ' ';
+                if (Character.isLetterOrDigit(c)) {
+                    wordHash = (wordHash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                    inWord = true;
+                    continue;
+                }
+                if (!inWord) {
+                    continue;
+                }
+
+                // A word ended: add it to the page hash and to the shingle window
+                pageHash = pageHash * 31 + wordHash;
+                window[(int) (words % shingleWords)] = wordHash;
+                words++;
+                if (words >= shingleWords) {
+                    addShingle(signature, shingleHash(window, words));
+                }
+                wordHash = FNV_OFFSET;
+                inWord = false;
+            }
+            pageHashes[p] = mix(pageHash);
+        }
+
+        return words >= shingleWords ? new Sketch(signature, pageHashes) : null;
+    }
+
+    /**
+     * Finds the most similar document processed with the same prompt.
+     *
+     * @param sketch The sketch of the document
+     * @param prompt The resolved prompt the document is sent with
+     * @return The closest entry at or above {@code similarity-threshold}, or null if there is none
+     */
+    public Match find(Sketch sketch, String prompt) {
+        if (!enabled || sketch == null) {
+            return null;
+        }
+
+        String promptHash = promptHash(prompt);
+        Set<String> candidates = new HashSet<>();
+        int rows = numHashes / bands;
+        for (int band = 0; band < bands; band++) {
+            Set<String> bucket = buckets.get(bandKey(sketch.signature(), band, rows));
+            if (bucket != null) {
+                candidates.addAll(bucket);
+            }
+        }
+
+        NearDuplicateEntry best = null;
+        double bestSimilarity = 0;
+        for (String candidate : candidates) {
+            NearDuplicateEntry entry = entries.get(candidate);
+            if (entry == null || !promptHash.equals(entry.getPromptHash())) {
+                continue;
+            }
+            double similarity = similarity(sketch.signature(), entry.getSignature());
+            if (similarity > bestSimilarity) {
+                best = entry;
+                bestSimilarity = similarity;
+            }
+        }
+        if (best == null || bestSimilarity < similarityThreshold) {
+            return null;
+        }
+
+        Set<Long> knownPages = new HashSet<>();
+        for (long pageHash : best.getPageHashes()) {
+            knownPages.add(pageHash);
+        }
+        List<Integer> differingPages = new ArrayList<>();
+        for (int i = 0; i < sketch.pageHashes().length; i++) {
+            if (!knownPages.contains(sketch.pageHashes()[i])) {
+                differingPages.add(i + 1);
+            }
+        }
+        return new Match(best, bestSimilarity, differingPages);
+    }
+
+    /**
+     * @param match The match of a document
+     * @param pageCount The number of pages of the document
+     * @return True if a match is similar enough for its result to be reused as it is: no pages were
+     *         added or removed, and only the first {@code reuse-ignored-pages} pages differ, if any
+     */
+    public boolean isReusable(Match match, int pageCount) {
+        if (match.similarity() < reuseThreshold || pageCount != match.entry().getPageHashes().length) {
+            return false;
+        }
+        return match.differingPages().stream().allMatch(page -> page <= reuseIgnoredPages && page < pageCount);
+    }
+
+    /**
+     * @return True if the result of a match can be updated from the pages that differ, rather than
+     *         processing the whole document again
+     */
+    public boolean isUpdatable(Match match, int pageCount) {
+        return match.differingPages().size() <= maxDifferingPages && match.differingPages().size() < pageCount;
+    }
+
+    /**
+     * Records the result of a successfully processed document.
+     *
+     * @param pdfDocument The processed document
+     * @param sketch The sketch of the document
+     * @param prompt The resolved prompt the document was sent with
+     * @param response The generated content of the response
+     */
+    public void record(PdfDocument pdfDocument, Sketch sketch, String prompt, String response) {
+        if (!enabled || sketch == null || response == null) {
+            return;
+        }
+
+        String path = indexPath(pdfDocument);
+        NearDuplicateEntry entry = NearDuplicateEntry.builder()
+                .path(path)
+                .fileName(pdfDocument.getFileName())
+                .promptHash(promptHash(prompt))
+                .signature(sketch.signature())
+                .pageHashes(sketch.pageHashes())
+                .response(response)
+                .indexedAt(LocalDateTime.now().format(DATE_FORMATTER))
+                .build();
+
+        try {
+            synchronized (this) {
+                writer.write(objectMapper.writeValueAsString(entry));
+                writer.newLine();
+                writer.flush();
+                lines++;
+
+                NearDuplicateEntry previous = entries.put(path, entry);
+                if (previous != null) {
+                    removeFromBuckets(previous);
+                }
+                indexOrder.remove(path);
+                indexOrder.add(path);
+                addToBuckets(entry);
+                while (entries.size() > maxEntries) {
+                    removeFromBuckets(entries.remove(evictEldest()));
+                }
+
+                if (lines > 2 * entries.size()) {
+                    writer.close();
+                    try {
+                        compact();
+                    } finally {
+                        openWriter();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to record {} in near-duplicate index: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * @return The path of a document as it is recorded in the index
+     */
+    public static String indexPath(PdfDocument pdfDocument) {
+        return pdfDocument.getFilePath() != null
+                ? Paths.get(pdfDocument.getFilePath()).toAbsolutePath().toString()
+                : pdfDocument.getFileName();
+    }
+
+    private void addShingle(int[] signature, long shingle) {
+        for (int i = 0; i < numHashes; i++) {
+            // Multiply-shift hash: the top 31 bits of a*x+b with an odd multiplier
+            int value = (int) ((multipliers[i] * shingle + increments[i]) >>> 33);
+            if (value < signature[i]) {
+                signature[i] = value;
+            }
+        }
+    }
+
+    private long shingleHash(long[] window, long words) {
+        long hash = 0;
+        for (int i = 0; i < shingleWords; i++) {
+            hash = hash * 31 + window[(int) ((words + i) % shingleWords)];
+        }
+        return mix(hash);
+    }
+
+    private void addToBuckets(NearDuplicateEntry entry) {
+        int rows = numHashes / bands;
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfAbsent(bandKey(entry.getSignature(), band, rows), key -> ConcurrentHashMap.newKeySet())
+                    .add(entry.getPath());
+        }
+    }
+
+    private void removeFromBuckets(NearDuplicateEntry entry) {
+        int rows = numHashes / bands;
+        for (int band = 0; band < bands; band++) {
+            long key = bandKey(entry.getSignature(), band, rows);
+            Set<String> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(entry.getPath());
+                if (bucket.isEmpty()) {
+                    buckets.remove(key, bucket);
+                }
+            }
+        }
+    }
+
+    private static long bandKey(int[] signature, int band, int rows) {
+        long hash = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            hash = hash * 0x9E3779B97F4A7C15L + signature[i];
+        }
+        return mix(hash);
+    }
+
+    private static double similarity(int[] signature, int[] other) {
+        int equal = 0;
+        for (int i = 0; i < signature.length; i++) {
+            if (signature[i] == other[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / signature.length;
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreading the bits of a hash.
+     */
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+    private String promptHash(String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(prompt.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * MinHash signature and page hashes of a document.
+     */
+    public record Sketch(int[] signature, long[] pageHashes) {
+    }
+
+    /**
+     * A processed document similar to the one looked up.
+     *
+     * @param entry The entry of the processed document
+     * @param similarity The estimated Jaccard similarity of the two documents
+     * @param differingPages The 1-based pages of the document looked up that do not occur in the processed document
+     */
+    public record Match(NearDuplicateEntry entry, double similarity, List<Integer> differingPages) {
+    }
+}
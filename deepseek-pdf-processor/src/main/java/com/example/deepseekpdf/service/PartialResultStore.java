@@ -0,0 +1,140 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.model.PdfDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Keeps the text of streamed responses on disk while they are generated, so that a stream that
+ * times out or fails does not lose the answer received so far.
+ * <p>
+ * The text of a document is appended to {@code <directory>/<name>_<hash>_partial.txt}, where the hash
+ * is taken from the absolute path of the PDF so that files of the same name in different directories
+ * do not share a partial result. It is flushed every {@code flush-chars} characters. The file is
+ * deleted once the stream completes and kept otherwise.
+ */
+@Component
+@Slf4j
+public class PartialResultStore {
+
+    @Value("${deepseek.streaming.partial-results.enabled:true}")
+    private boolean enabled;
+
+    @Value("${deepseek.streaming.partial-results.directory:output/partial}")
+    private String directory;
+
+    @Value("${deepseek.streaming.partial-results.flush-chars:8192}")
+    private int flushChars;
+
+    /**
+     * Starts the partial result of a streamed response. Nothing is written before the first text arrives.
+     *
+     * @param pdfDocument The document the response belongs to
+     * @return The partial result, or a partial result that does nothing if the store is disabled
+     */
+    public PartialResult open(PdfDocument pdfDocument) {
+        if (!enabled) {
+            return new PartialResult(null, 0);
+        }
+        String source = pdfDocument.getFilePath() != null
+                ? Paths.get(pdfDocument.getFilePath()).toAbsolutePath().normalize().toString()
+                : pdfDocument.getFileName();
+        String name = String.format("%s_%08x_partial.txt",
+                pdfDocument.getFileName().replaceAll("\\.pdf$", ""), source.hashCode());
+        return new PartialResult(Paths.get(directory).resolve(name), flushChars);
+    }
+
+    /**
+     * The partial result of one streamed response. Calls may come from different threads, but
+     * never concurrently for the same text.
+     */
+    public static final class PartialResult {
+
+        private final Path file;
+        private final int flushChars;
+        private Writer writer;
+        private boolean opened;
+        private int unflushed;
+        private long length;
+        private boolean failed;
+
+        private PartialResult(Path file, int flushChars) {
+            this.file = file;
+            this.flushChars = flushChars;
+        }
+
+        /**
+         * Appends text of the response, flushing it to disk every {@code flush-chars} characters.
+         * A write failure disables the partial result instead of failing the stream.
+         */
+        public synchronized void append(CharSequence delta) {
+            if (file == null || failed || delta == null || delta.length() == 0) {
+                return;
+            }
+            try {
+                if (writer == null) {
+                    Files.createDirectories(file.getParent());
+                    opened = true;
+                    writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                }
+                writer.append(delta);
+                length += delta.length();
+                unflushed += delta.length();
+                if (unflushed >= flushChars) {
+                    writer.flush();
+                    unflushed = 0;
+                }
+            } catch (IOException e) {
+                log.warn("Failed to write partial result {}: {}", file, e.getMessage());
+                failed = true;
+                closeQuietly();
+            }
+        }
+
+        /**
+         * Deletes the partial result of a completed response.
+         */
+        public synchronized void discard() {
+            if (!opened) {
+                return;
+            }
+            closeQuietly();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete partial result {}: {}", file, e.getMessage());
+            }
+        }
+
+        /**
+         * Flushes and keeps the partial result of a response that did not complete.
+         */
+        public synchronized void keep() {
+            if (writer == null) {
+                return;
+            }
+            closeQuietly();
+            log.warn("Kept {} characters of the incomplete response in {}", length, file);
+        }
+
+        private void closeQuietly() {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Failed to close partial result {}: {}", file, e.getMessage());
+            }
+            writer = null;
+        }
+    }
+}
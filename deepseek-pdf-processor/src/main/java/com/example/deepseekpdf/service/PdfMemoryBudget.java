@@ -0,0 +1,145 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Global budget for the bytes of PDF documents in flight between reader and writer.
+ * Readers reserve the size of every document before handing it on and block while the budget is
+ * used up; the reservation is released when the result has been written. A document larger than
+ * the whole budget is admitted once nothing else that could be released is in flight, so it
+ * cannot block forever.
+ * Reservations are keyed by document id and releasing is idempotent.
+ */
+@Component
+@Slf4j
+public class PdfMemoryBudget {
+
+    @Value("${deepseek.pdf.max-in-flight-bytes:268435456}")
+    private long maxInFlightBytes;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition released = lock.newCondition();
+    private final Map<String, Long> reservations = new HashMap<>();
+
+    private long inFlightBytes;
+    private long waitingHeldBytes;
+
+    @PostConstruct
+    public void init() {
+        if (maxInFlightBytes < 0) {
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Maximum in-flight bytes must not be negative",
+                String.format("Current value: %d", maxInFlightBytes)
+            );
+        }
+        if (maxInFlightBytes == 0) {
+            log.info("PDF in-flight memory budget is disabled");
+        } else {
+            log.info("Initialized PDF in-flight memory budget of {} bytes", maxInFlightBytes);
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxInFlightBytes > 0;
+    }
+
+    /**
+     * Reserves the size of a document, waiting until enough of the budget is free.
+     * A caller that itself holds reservations only it can release, such as the items of a chunk
+     * that has not been written yet, passes their size as {@code heldByCaller}. The caller then
+     * waits only while bytes held by callers that are not waiting can still be released, so
+     * readers never wait for each other or for themselves.
+     *
+     * @param documentId The id of the document
+     * @param bytes The size of the document
+     * @param heldByCaller The bytes reserved by the caller that only the caller can release
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public void acquire(String documentId, long bytes, long heldByCaller) throws InterruptedException {
+        if (!isEnabled()) {
+            return;
+        }
+
+        long reserved = Math.min(bytes, maxInFlightBytes);
+        lock.lockInterruptibly();
+        try {
+            if (inFlightBytes + reserved > maxInFlightBytes) {
+                log.debug("Waiting for {} bytes of the PDF memory budget, {} bytes in flight", reserved, inFlightBytes);
+                waitingHeldBytes += heldByCaller;
+                if (heldByCaller > 0) {
+                    released.signalAll();
+                }
+                try {
+                    while (inFlightBytes + reserved > maxInFlightBytes && inFlightBytes - waitingHeldBytes > 0) {
+                        released.await();
+                    }
+                } finally {
+                    waitingHeldBytes -= heldByCaller;
+                }
+            }
+            inFlightBytes += reserved;
+            reservations.put(documentId, reserved);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the reservation of a document, if it still holds one.
+     *
+     * @param documentId The id of the document
+     */
+    public void release(String documentId) {
+        if (!isEnabled() || documentId == null) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            Long reserved = reservations.remove(documentId);
+            if (reserved != null) {
+                inFlightBytes -= reserved;
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param documentId The id of the document
+     * @return True if the document still holds a reservation
+     */
+    public boolean isReserved(String documentId) {
+        lock.lock();
+        try {
+            return reservations.containsKey(documentId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getInFlightBytes() {
+        lock.lock();
+        try {
+            return inFlightBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import com.example.deepseekpdf.model.PdfDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Packs small PDF documents into a single chat completion request.
+ * <p>
+ * Short documents spend most of their latency and request overhead on the round trip rather than
+ * on their content. The reader groups consecutive documents of at most {@code small-document-max-bytes}
+ * into a pack of up to {@code max-documents} documents and {@code max-bytes} bytes. The pack travels
+ * through the batch step as one item holding its members in {@link PdfDocument#getPackedDocuments()},
+ * and is sent in as few requests as the {@code max-tokens} budget of the extracted text allows.
+ * The response is split back into one result per member.
+ */
+@Service
+@Slf4j
+public class PdfPackingService {
+
+    @Value("${deepseek.packing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${deepseek.packing.max-documents:8}")
+    private int maxDocuments;
+
+    @Value("${deepseek.packing.small-document-max-bytes:262144}")
+    private long smallDocumentMaxBytes;
+
+    @Value("${deepseek.packing.max-bytes:1048576}")
+    private long maxBytes;
+
+    @Value("${deepseek.packing.max-pages:4}")
+    private int maxPages;
+
+    @Value("${deepseek.packing.max-tokens:16000}")
+    private long maxTokens;
+
+    @Value("${deepseek.large-document.chars-per-token:4}")
+    private int charsPerToken;
+
+    @PostConstruct
+    public void init() {
+        if (maxDocuments < 2 || smallDocumentMaxBytes <= 0 || maxBytes < smallDocumentMaxBytes
+                || maxPages <= 0 || maxTokens <= 0) {
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Invalid packing configuration",
+                String.format("maxDocuments: %d, smallDocumentMaxBytes: %d, maxBytes: %d, maxPages: %d, maxTokens: %d",
+                        maxDocuments, smallDocumentMaxBytes, maxBytes, maxPages, maxTokens)
+            );
+        }
+        if (enabled) {
+            log.info("Packing up to {} PDFs of at most {} bytes ({} bytes in total) per request",
+                    maxDocuments, smallDocumentMaxBytes, maxBytes);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return True if packing is enabled and the document is small enough to share a request
+     */
+    public boolean isPackable(PdfDocument pdfDocument) {
+        return enabled && pdfDocument.getFileSize() <= smallDocumentMaxBytes;
+    }
+
+    /**
+     * Decides whether a document can join a pack.
+     *
+     * @param members The documents of the pack so far
+     * @param pdfDocument The next document read
+     * @return True if the document is packable and the pack stays within its document and byte limits
+     */
+    public boolean fits(List<PdfDocument> members, PdfDocument pdfDocument) {
+        if (!isPackable(pdfDocument) || members.size() >= maxDocuments) {
+            return false;
+        }
+        long bytes = members.stream().mapToLong(PdfDocument::getFileSize).sum();
+        return bytes + pdfDocument.getFileSize() <= maxBytes;
+    }
+
+    /**
+     * Creates the item that carries a pack through the batch step.
+     *
+     * @param members The documents of the pack
+     * @return The only member for a single document, otherwise a pack holding the members
+     */
+    public PdfDocument pack(List<PdfDocument> members) {
+        if (members.size() == 1) {
+            return members.get(0);
+        }
+        log.debug("Packed {} PDFs into one item", members.size());
+        return PdfDocument.builder()
+                .id(UUID.randomUUID().toString())
+                .fileName(String.format("pack of %d PDFs", members.size()))
+                .fileSize(members.stream().mapToLong(PdfDocument::getFileSize).sum())
+                .status("PENDING")
+                .packedDocuments(List.copyOf(members))
+                .build();
+    }
+
+    /**
+     * Groups the members of a pack that are ready to be sent into requests that stay within the
+     * token budget, using their pre-flight estimate or, without one, the length of their text.
+     *
+     * @param members The members with their text extracted in text mode
+     * @return The groups, each sent as one request
+     */
+    public List<List<PdfDocument>> groupByTokens(List<PdfDocument> members) {
+        List<List<PdfDocument>> groups = new ArrayList<>();
+        List<PdfDocument> group = new ArrayList<>();
+        long groupTokens = 0;
+        for (PdfDocument member : members) {
+            long tokens = member.getEstimatedTokens() > 0 ? member.getEstimatedTokens()
+                    : member.getExtractedText() != null ? member.getExtractedText().length() / charsPerToken : 0;
+            if (!group.isEmpty() && (group.size() >= maxDocuments || groupTokens + tokens > maxTokens)) {
+                groups.add(group);
+                group = new ArrayList<>();
+                groupTokens = 0;
+            }
+            group.add(member);
+            groupTokens += tokens;
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * @return True if a member has too many pages to share a request with other documents
+     */
+    public boolean exceedsPageLimit(PdfDocument pdfDocument) {
+        return pdfDocument.getPageCount() > maxPages;
+    }
+
+    /**
+     * Replaces packs by their members.
+     *
+     * @param items Batch items, packed or not
+     * @return The documents of the items, in order
+     */
+    public static List<PdfDocument> unpack(Collection<? extends PdfDocument> items) {
+        List<PdfDocument> documents = new ArrayList<>(items.size());
+        for (PdfDocument item : items) {
+            if (item.getPackedDocuments() != null) {
+                documents.addAll(item.getPackedDocuments());
+            } else {
+                documents.add(item);
+            }
+        }
+        return documents;
+    }
+}
@@ -1,17 +1,29 @@
 package com.example.deepseekpdf.service;
 
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
 import com.example.deepseekpdf.model.DeepseekApiResponse;
+import com.example.deepseekpdf.model.InputMode;
+import com.example.deepseekpdf.model.NearDuplicateEntry;
+import com.example.deepseekpdf.model.PdfContent;
 import com.example.deepseekpdf.model.PdfDocument;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentInformation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuples;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -24,8 +36,31 @@ public class PdfProcessingService {
     @Autowired
     private DeepseekApiService deepseekApiService;
     
+    @Autowired
+    private PdfTextExtractor pdfTextExtractor;
+    
+    @Autowired
+    private LargeDocumentAnalyzer largeDocumentAnalyzer;
+    
+    @Autowired
+    private PdfPackingService pdfPackingService;
+    
+    @Autowired
+    private TokenPreflight tokenPreflight;
+    
+    @Autowired
+    private NearDuplicateIndex nearDuplicateIndex;
+    
+    @Autowired
+    private PdfSlimmer pdfSlimmer;
+    
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+    
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
     
+    private static final NearDuplicateLookup NO_NEAR_DUPLICATE = new NearDuplicateLookup(null, null);
+    
     /**
      * Processes a PDF file and extracts information using the Deepseek API.
      * 
@@ -33,35 +68,86 @@ public class PdfProcessingService {
      * @param fileContent The content of the PDF file
      * @param prompt The prompt to send to Deepseek API
      * @return The processed PDF document with Deepseek API response
+     * @throws DeepseekApiException If the document cannot be processed
      */
     public PdfDocument processPdf(String fileName, byte[] fileContent, String prompt) {
-        log.info("Starting to process PDF: {}", fileName);
-        
+        return processPdf(fileName, fileContent, prompt, InputMode.ATTACHMENT);
+    }
+    
+    /**
+     * Processes a PDF file and extracts information using the Deepseek API.
+     * 
+     * @param fileName The name of the PDF file
+     * @param fileContent The content of the PDF file
+     * @param prompt The prompt to send to Deepseek API
+     * @param inputMode Whether to send the PDF as an attachment or as locally extracted text
+     * @return The processed PDF document with Deepseek API response
+     * @throws DeepseekApiException If the document cannot be processed
+     */
+    public PdfDocument processPdf(String fileName, byte[] fileContent, String prompt, InputMode inputMode) {
         PdfDocument pdfDocument = PdfDocument.builder()
                 .id(UUID.randomUUID().toString())
                 .fileName(fileName)
-                .content(fileContent)
+                .content(PdfContent.ofBytes(fileContent))
                 .fileSize(fileContent.length)
                 .contentType("application/pdf")
-                .status("PROCESSING")
-                .processingStartTime(LocalDateTime.now().format(DATE_FORMATTER))
                 .build();
         
+        return processPdf(pdfDocument, prompt, inputMode);
+    }
+    
+    /**
+     * Processes a PDF document read from the input directory, keeping its id and file path.
+     * A failure is recorded on the document and rethrown, so that the batch step can retry
+     * or skip the document.
+     * 
+     * @param pdfDocument The PDF document to process
+     * @param prompt The prompt to send to Deepseek API
+     * @param inputMode Whether to send the PDF as an attachment or as locally extracted text
+     * @return The processed PDF document with Deepseek API response
+     * @throws DeepseekApiException If the document cannot be processed
+     */
+    public PdfDocument processPdf(PdfDocument pdfDocument, String prompt, InputMode inputMode) {
+        if (pdfDocument.getPackedDocuments() != null) {
+            return processPacked(pdfDocument, prompt, inputMode);
+        }
+        
+        String fileName = pdfDocument.getFileName();
+        log.info("Starting to process PDF: {} in {} mode", fileName, inputMode);
+        
+        pdfDocument.setStatus("PROCESSING");
+        pdfDocument.setErrorCode(null);
+        pdfDocument.setErrorMessage(null);
+        pdfDocument.setProcessingStartTime(LocalDateTime.now().format(DATE_FORMATTER));
+        
         try {
             // Extract metadata from PDF
             extractPdfMetadata(pdfDocument);
             
-            // Process with Deepseek API
-            DeepseekApiResponse apiResponse = deepseekApiService.processPdf(pdfDocument, prompt);
+            // Reuse or update the result of a near-duplicate processed before
+            NearDuplicateLookup nearDuplicate = lookUpNearDuplicate(pdfDocument, prompt, inputMode);
+            DeepseekApiResponse apiResponse = nearDuplicate.response();
+            
+            // Process with Deepseek API, splitting documents that are too large for a single request
+            if (apiResponse == null) {
+                apiResponse = prepare(pdfDocument, prompt, inputMode)
+                        ? largeDocumentAnalyzer.analyze(pdfDocument, prompt)
+                        : deepseekApiService.processPdf(pdfDocument, prompt);
+            }
             
             // Update document with response
             pdfDocument.setDeepseekResponse(apiResponse.getRawResponse());
-            pdfDocument.setStatus(apiResponse.isHasError() ? "ERROR" : "COMPLETED");
+            checkResponse(apiResponse);
+            pdfDocument.setStatus("COMPLETED");
+            recordNearDuplicate(pdfDocument, nearDuplicate, prompt, apiResponse);
             
         } catch (Exception e) {
             log.error("Error processing PDF: {}", e.getMessage(), e);
-            pdfDocument.setStatus("ERROR");
+            DeepseekApiException failure = toApiException(fileName, e);
+            recordFailure(pdfDocument, failure);
+            throw failure;
         } finally {
+            pdfSlimmer.release(pdfDocument);
             pdfDocument.setProcessingEndTime(LocalDateTime.now().format(DATE_FORMATTER));
         }
         
@@ -70,13 +156,176 @@ public class PdfProcessingService {
     }
     
     /**
-     * Extracts metadata from a PDF document.
+     * Processes a pack of small documents created by {@link PdfPackingService}, sending its members
+     * together in as few requests as the token budget allows. Members with too many pages, and
+     * members whose section is missing from the response, are sent on their own. Failures of single
+     * members are recorded on them and leave the pack completed; the writer moves them to the
+     * dead-letter directory. A failed packed request is rethrown, so that the batch step retries or
+     * skips the whole pack. Members completed by an earlier attempt are not sent again.
+     * 
+     * @param pack The pack, holding its members
+     * @param prompt The prompt to send to Deepseek API
+     * @param inputMode Whether to send the PDFs as attachments or as locally extracted text
+     * @return The pack with the results recorded on its members
+     * @throws DeepseekApiException If a packed request fails
+     */
+    public PdfDocument processPacked(PdfDocument pack, String prompt, InputMode inputMode) {
+        List<PdfDocument> members = pack.getPackedDocuments();
+        log.info("Starting to process {} packed PDFs in {} mode", members.size(), inputMode);
+        pack.setStatus("PROCESSING");
+        pack.setProcessingStartTime(LocalDateTime.now().format(DATE_FORMATTER));
+        
+        try {
+            List<PdfDocument> packable = new ArrayList<>(members.size());
+            for (PdfDocument member : members) {
+                if ("COMPLETED".equals(member.getStatus())) {
+                    continue;
+                }
+                member.setStatus("PROCESSING");
+                member.setErrorCode(null);
+                member.setErrorMessage(null);
+                member.setProcessingStartTime(LocalDateTime.now().format(DATE_FORMATTER));
+                try {
+                    extractPdfMetadata(member);
+                    if (pdfPackingService.exceedsPageLimit(member) || prepare(member, prompt, inputMode)) {
+                        processUnpacked(member, prompt, inputMode);
+                        continue;
+                    }
+                    packable.add(member);
+                } catch (Exception e) {
+                    log.error("Error processing packed PDF {}: {}", member.getFileName(), e.getMessage(), e);
+                    recordFailure(member, toApiException(member.getFileName(), e));
+                    member.setProcessingEndTime(LocalDateTime.now().format(DATE_FORMATTER));
+                }
+            }
+            
+            for (List<PdfDocument> group : pdfPackingService.groupByTokens(packable)) {
+                if (group.size() == 1) {
+                    processUnpacked(group.get(0), prompt, inputMode);
+                    continue;
+                }
+                
+                List<DeepseekApiResponse> responses = deepseekApiService.processPacked(group, prompt);
+                for (int i = 0; i < group.size(); i++) {
+                    PdfDocument member = group.get(i);
+                    DeepseekApiResponse apiResponse = responses.get(i);
+                    if (apiResponse == null) {
+                        log.warn("Packed response has no result for PDF {}, sending it on its own", member.getFileName());
+                        processUnpacked(member, prompt, inputMode);
+                        continue;
+                    }
+                    member.setDeepseekResponse(apiResponse.getRawResponse());
+                    member.setStatus("COMPLETED");
+                    member.setProcessingEndTime(LocalDateTime.now().format(DATE_FORMATTER));
+                }
+            }
+            pack.setStatus("COMPLETED");
+            
+        } catch (Exception e) {
+            log.error("Error processing packed PDFs: {}", e.getMessage(), e);
+            DeepseekApiException failure = toApiException(pack.getFileName(), e);
+            for (PdfDocument member : members) {
+                if (!"COMPLETED".equals(member.getStatus())) {
+                    recordFailure(member, failure);
+                }
+            }
+            recordFailure(pack, failure);
+            throw failure;
+        } finally {
+            members.forEach(pdfSlimmer::release);
+            pack.setProcessingEndTime(LocalDateTime.now().format(DATE_FORMATTER));
+        }
+        
+        log.info("Finished processing {} packed PDFs, {} completed", members.size(),
+                members.stream().filter(member -> "COMPLETED".equals(member.getStatus())).count());
+        return pack;
+    }
+    
+    /**
+     * Processes a member of a pack with a request of its own. A failure stays recorded on the member,
+     * unless the circuit breaker is open, which fails the whole pack.
+     */
+    private void processUnpacked(PdfDocument member, String prompt, InputMode inputMode) {
+        try {
+            processPdf(member, prompt, inputMode);
+        } catch (DeepseekApiException e) {
+            if (e.getErrorCode() == ErrorCode.CIRCUIT_OPEN) {
+                throw e;
+            }
+            log.warn("Packed PDF {} failed on its own: {}", member.getFileName(), e.getMessage());
+        }
+    }
+    
+    /**
+     * Processes a PDF document reactively. Metadata extraction runs on the bounded elastic
+     * scheduler, while the API call itself does not hold a thread while waiting for the response.
+     * Failures are recorded on the document instead of terminating the returned Mono.
+     * 
+     * @param pdfDocument The PDF document read from the input directory
+     * @param prompt The prompt to send to Deepseek API, or null for the default prompt
+     * @param inputMode Whether to send the PDF as an attachment or as locally extracted text
+     * @return Mono emitting the processed PDF document
+     */
+    public Mono<PdfDocument> processPdfReactive(PdfDocument pdfDocument, String prompt, InputMode inputMode) {
+        if (pdfDocument.getPackedDocuments() != null) {
+            // Packs wait for their requests on the bounded elastic scheduler; failures stay on the members
+            return Mono.fromCallable(() -> processPacked(pdfDocument, prompt, inputMode))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .onErrorResume(e -> Mono.just(pdfDocument));
+        }
+        
+        return Mono.fromCallable(() -> {
+                    log.info("Starting to process PDF: {}", pdfDocument.getFileName());
+                    pdfDocument.setStatus("PROCESSING");
+                    pdfDocument.setProcessingStartTime(LocalDateTime.now().format(DATE_FORMATTER));
+                    extractPdfMetadata(pdfDocument);
+                    NearDuplicateLookup nearDuplicate = lookUpNearDuplicate(pdfDocument, prompt, inputMode);
+                    return Tuples.of(nearDuplicate,
+                            nearDuplicate.response() == null && prepare(pdfDocument, prompt, inputMode));
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(prepared -> {
+                    NearDuplicateLookup nearDuplicate = prepared.getT1();
+                    Mono<DeepseekApiResponse> response = nearDuplicate.response() != null
+                            ? Mono.just(nearDuplicate.response())
+                            : prepared.getT2()
+                                    ? Mono.fromCallable(() -> largeDocumentAnalyzer.analyze(pdfDocument, prompt))
+                                            .subscribeOn(Schedulers.boundedElastic())
+                                    : deepseekApiService.processPdfReactive(pdfDocument, prompt);
+                    return response.flatMap(apiResponse -> {
+                        pdfDocument.setDeepseekResponse(apiResponse.getRawResponse());
+                        checkResponse(apiResponse);
+                        pdfDocument.setStatus("COMPLETED");
+                        if (nearDuplicate.sketch() == null) {
+                            return Mono.just(pdfDocument);
+                        }
+                        return Mono.fromRunnable(() -> recordNearDuplicate(pdfDocument, nearDuplicate, prompt, apiResponse))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .thenReturn(pdfDocument);
+                    });
+                })
+                .onErrorResume(e -> {
+                    log.error("Error processing PDF: {}", e.getMessage(), e);
+                    recordFailure(pdfDocument, toApiException(pdfDocument.getFileName(), e));
+                    return Mono.just(pdfDocument);
+                })
+                .doOnNext(document -> {
+                    document.setProcessingEndTime(LocalDateTime.now().format(DATE_FORMATTER));
+                    log.info("Finished processing PDF: {} with status: {}", 
+                            document.getFileName(), document.getStatus());
+                })
+                .doFinally(signal -> pdfSlimmer.release(pdfDocument));
+    }
+    
+    /**
+     * Extracts metadata from a PDF document. Package-private for the benchmarks.
      * 
      * @param pdfDocument The PDF document
      * @throws IOException If an error occurs while reading the PDF
      */
-    private void extractPdfMetadata(PdfDocument pdfDocument) throws IOException {
-        try (PDDocument document = PDDocument.load(new ByteArrayInputStream(pdfDocument.getContent()))) {
+    void extractPdfMetadata(PdfDocument pdfDocument) throws IOException {
+        Timer.Sample sample = pipelineMetrics.start();
+        try (PDDocument document = PdfTextExtractor.loadDocument(pdfDocument.getContent())) {
             PDDocumentInformation info = document.getDocumentInformation();
             
             pdfDocument.setPageCount(document.getNumberOfPages());
@@ -85,6 +334,177 @@ public class PdfProcessingService {
             
             log.debug("Extracted metadata from PDF: {}, Pages: {}", 
                     pdfDocument.getFileName(), pdfDocument.getPageCount());
+        } finally {
+            pipelineMetrics.stop(sample, PipelineMetrics.STAGE_METADATA);
+        }
+    }
+    
+    /**
+     * Prepares a document with its metadata extracted for its request: extracts the text layer in
+     * text mode, runs the pre-flight token estimate and slims documents sent as attachments.
+     * 
+     * @return True if the document is analyzed in segments instead of a single request
+     * @throws DeepseekApiException If the pre-flight estimate rejects the document
+     */
+    private boolean prepare(PdfDocument pdfDocument, String prompt, InputMode inputMode) {
+        boolean large = largeDocumentAnalyzer.isLargeDocument(pdfDocument);
+        // Extract the text layer locally when only text is sent
+        if (!large && inputMode == InputMode.TEXT && pdfDocument.getExtractedText() == null) {
+            extractText(pdfDocument);
+        }
+        tokenPreflight.estimate(pdfDocument, deepseekApiService.resolvePrompt(prompt));
+        if (!large && tokenPreflight.exceedsContextWindow(pdfDocument)) {
+            log.info("PDF {} does not fit in the context window (estimated {} tokens), analyzing it in segments",
+                    pdfDocument.getFileName(), pdfDocument.getEstimatedTokens());
+            return true;
+        }
+        if (!large && pdfDocument.getExtractedText() == null) {
+            pdfSlimmer.slim(pdfDocument);
+        }
+        return large;
+    }
+    
+    /**
+     * Looks a document with its metadata extracted up in the near-duplicate index. In text mode the
+     * pages extracted for the sketch become the text of the document, so that they are extracted only once.
+     * 
+     * @return The sketch to record the document with and, for a near-duplicate, the reused or updated
+     *         response of the document
+     */
+    private NearDuplicateLookup lookUpNearDuplicate(PdfDocument pdfDocument, String prompt, InputMode inputMode) {
+        if (!nearDuplicateIndex.isEnabled()) {
+            return NO_NEAR_DUPLICATE;
+        }
+        
+        Timer.Sample sample = pipelineMetrics.start();
+        List<String> pages;
+        try {
+            pages = pdfTextExtractor.extractPages(pdfDocument);
+        } finally {
+            pipelineMetrics.stop(sample, PipelineMetrics.STAGE_TEXT_EXTRACTION);
+        }
+        if (inputMode == InputMode.TEXT && pdfDocument.getExtractedText() == null
+                && !largeDocumentAnalyzer.isLargeDocument(pdfDocument)) {
+            pdfDocument.setExtractedText(pdfTextExtractor.joinPages(pdfDocument, pages));
+        }
+        
+        NearDuplicateIndex.Sketch sketch = nearDuplicateIndex.sketch(pages);
+        String resolvedPrompt = deepseekApiService.resolvePrompt(prompt);
+        NearDuplicateIndex.Match match = nearDuplicateIndex.find(sketch, resolvedPrompt);
+        if (match == null) {
+            return new NearDuplicateLookup(sketch, null);
+        }
+        
+        NearDuplicateEntry entry = match.entry();
+        if (nearDuplicateIndex.isReusable(match, pages.size())) {
+            log.info("PDF {} is {}% similar to {}, reusing its result", pdfDocument.getFileName(),
+                    Math.round(match.similarity() * 100), entry.getFileName());
+            Map<String, Object> choices = new HashMap<>();
+            choices.put("content", entry.getResponse());
+            return new NearDuplicateLookup(sketch, DeepseekApiResponse.builder()
+                    .choices(choices)
+                    .rawResponse(entry.getResponse())
+                    .build());
+        }
+        if (!nearDuplicateIndex.isUpdatable(match, pages.size())) {
+            log.debug("PDF {} is {}% similar to {} but differs in {} pages, processing it in full",
+                    pdfDocument.getFileName(), Math.round(match.similarity() * 100), entry.getFileName(),
+                    match.differingPages().size());
+            return new NearDuplicateLookup(sketch, null);
+        }
+        
+        log.info("PDF {} is {}% similar to {}, sending the {} pages that differ", pdfDocument.getFileName(),
+                Math.round(match.similarity() * 100), entry.getFileName(), match.differingPages().size());
+        StringBuilder content = new StringBuilder()
+                .append("The PDF document \"").append(pdfDocument.getFileName()).append("\" (")
+                .append(pages.size()).append(" pages) is a new version of the document \"")
+                .append(entry.getFileName()).append("\" (").append(entry.getPageHashes().length)
+                .append(" pages), whose analysis is given below. ");
+        if (match.differingPages().isEmpty()) {
+            content.append("Every page of the new version occurs in the previous version, but pages may have been removed. ");
+        } else {
+            content.append("The pages of the new version that differ from the previous version are given after it; ")
+                    .append("the other pages are unchanged. ");
+        }
+        content.append("Update the analysis so that it describes the new version. ")
+                .append("The original instructions, including the required response structure, were:\n\n")
+                .append(resolvedPrompt)
+                .append("\n\nAnalysis of the previous version:\n")
+                .append(entry.getResponse());
+        for (int page : match.differingPages()) {
+            content.append("\n\n[Page ").append(page).append("]\n").append(pages.get(page - 1));
         }
+        return new NearDuplicateLookup(sketch, deepseekApiService.processMessage(
+                pdfDocument.getFileName() + " (near-duplicate update)", content.toString()));
+    }
+    
+    /**
+     * Records a completed document in the near-duplicate index.
+     */
+    private void recordNearDuplicate(PdfDocument pdfDocument, NearDuplicateLookup nearDuplicate, String prompt,
+                                     DeepseekApiResponse apiResponse) {
+        if (nearDuplicate.sketch() != null) {
+            nearDuplicateIndex.record(pdfDocument, nearDuplicate.sketch(), deepseekApiService.resolvePrompt(prompt),
+                    deepseekApiService.extractContent(apiResponse));
+        }
+    }
+    
+    /**
+     * Fails documents whose response the API marked as an error.
+     */
+    private static void checkResponse(DeepseekApiResponse apiResponse) {
+        if (apiResponse.isHasError()) {
+            throw new DeepseekApiException(
+                ErrorCode.INVALID_RESPONSE,
+                "Deepseek API returned an error response",
+                apiResponse.getRawResponse()
+            );
+        }
+    }
+    
+    private static DeepseekApiException toApiException(String fileName, Throwable e) {
+        if (e instanceof DeepseekApiException apiException) {
+            return apiException;
+        }
+        return new DeepseekApiException(
+            ErrorCode.PDF_PROCESSING_ERROR,
+            "Failed to process PDF: " + fileName,
+            e.getMessage(),
+            e
+        );
+    }
+    
+    /**
+     * Marks a document as failed with the error code and message of the failure.
+     */
+    private static void recordFailure(PdfDocument pdfDocument, DeepseekApiException failure) {
+        pdfDocument.setStatus("ERROR");
+        pdfDocument.setErrorCode(failure.getErrorCode() != null ? failure.getErrorCode().name() : null);
+        pdfDocument.setErrorMessage(failure.getDetails() != null
+                ? failure.getMessage() + ": " + failure.getDetails()
+                : failure.getMessage());
+    }
+    
+    /**
+     * Extracts the text layer of a PDF document locally.
+     * 
+     * @param pdfDocument The PDF document with its metadata already extracted
+     */
+    private void extractText(PdfDocument pdfDocument) {
+        Timer.Sample sample = pipelineMetrics.start();
+        try {
+            pdfDocument.setExtractedText(pdfTextExtractor.extractText(pdfDocument));
+        } finally {
+            pipelineMetrics.stop(sample, PipelineMetrics.STAGE_TEXT_EXTRACTION);
+        }
+    }
+    
+    /**
+     * Result of a near-duplicate lookup.
+     * 
+     * @param sketch The sketch of the document, or null if it is not recorded in the index
+     * @param response The response taken from a near-duplicate, or null if the document has to be processed
+     */
+    private record NearDuplicateLookup(NearDuplicateIndex.Sketch sketch, DeepseekApiResponse response) {
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.model.PdfDocument;
+import com.example.deepseekpdf.model.PdfResultEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.Objects;
+
+/**
+ * Publishes the outcome of every written or skipped document, so that clients can follow a job
+ * over Server-Sent Events.
+ * <p>
+ * Events only reach the subscribers that are listening when they are published, and a subscriber
+ * that cannot keep up misses events instead of holding back the writer. Job progress is read from
+ * the job repository, so it stays accurate either way.
+ */
+@Service
+public class PdfResultPublisher {
+
+    private final Sinks.Many<PdfResultEvent> sink = Sinks.many().multicast().directBestEffort();
+
+    /**
+     * Publishes the outcome of a document.
+     *
+     * @param jobExecutionId The job execution the document belongs to, or null if unknown
+     * @param pdfDocument The written or skipped document
+     */
+    public synchronized void publish(Long jobExecutionId, PdfDocument pdfDocument) {
+        if (sink.currentSubscriberCount() == 0) {
+            return;
+        }
+        sink.tryEmitNext(PdfResultEvent.builder()
+                .jobExecutionId(jobExecutionId)
+                .documentId(pdfDocument.getId())
+                .fileName(pdfDocument.getFileName())
+                .status(pdfDocument.getStatus())
+                .processingEndTime(pdfDocument.getProcessingEndTime())
+                .deepseekResponse(pdfDocument.getDeepseekResponse())
+                .errorCode(pdfDocument.getErrorCode())
+                .errorMessage(pdfDocument.getErrorMessage())
+                .build());
+    }
+
+    /**
+     * @param jobExecutionId The job execution to follow
+     * @return The outcomes of the documents of the job execution published from now on
+     */
+    public Flux<PdfResultEvent> results(long jobExecutionId) {
+        return sink.asFlux()
+                .filter(event -> Objects.equals(event.getJobExecutionId(), jobExecutionId));
+    }
+}
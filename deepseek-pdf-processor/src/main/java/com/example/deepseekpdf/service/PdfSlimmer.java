@@ -0,0 +1,444 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import com.example.deepseekpdf.model.PdfContent;
+import com.example.deepseekpdf.model.PdfDocument;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.contentstream.PDContentStream;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceDictionary;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceEntry;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Rewrites PDF attachments before upload without the bytes the model does not need.
+ * <p>
+ * Scanned and OCR'd documents and brochures are mostly embedded images and fonts by size. Documents of at
+ * least {@code min-bytes} are loaded with PDFBox and rewritten to {@code directory}:
+ * <ul>
+ *   <li>images of at least {@code min-image-bytes} are downsampled to at most {@code max-image-dimension}
+ *       pixels per side, or replaced by a transparent pixel with {@code image-mode=remove},</li>
+ *   <li>fonts that no page, form or annotation appearance selects are removed, unless the document has
+ *       interactive form fields,</li>
+ *   <li>XMP metadata streams, thumbnails and application data of pages are removed.</li>
+ * </ul>
+ * The text layer is kept. The slimmed copy is sent as the attachment only if it is at least
+ * {@code min-savings-ratio} smaller; the document itself and its content hash stay unchanged.
+ * Documents are rewritten on a pool of {@code threads} threads, since decoding and encoding images
+ * is CPU- and memory-heavy.
+ * <p>
+ * Slimmed copies are deleted once their request is done. Copies left behind by a process that was
+ * killed are deleted on startup, so the directory must not be shared between running processes.
+ */
+@Service
+@Slf4j
+public class PdfSlimmer {
+
+    private static final COSName THUMB = COSName.getPDFName("Thumb");
+    private static final COSName PIECE_INFO = COSName.getPDFName("PieceInfo");
+
+    @Value("${deepseek.slimming.enabled:false}")
+    private boolean enabled;
+
+    @Value("${deepseek.slimming.directory:output/slim}")
+    private String directory;
+
+    @Value("${deepseek.slimming.threads:2}")
+    private int threads;
+
+    @Value("${deepseek.slimming.min-bytes:1048576}")
+    private long minBytes;
+
+    @Value("${deepseek.slimming.image-mode:downsample}")
+    private String imageMode;
+
+    @Value("${deepseek.slimming.max-image-dimension:1200}")
+    private int maxImageDimension;
+
+    @Value("${deepseek.slimming.min-image-bytes:32768}")
+    private long minImageBytes;
+
+    @Value("${deepseek.slimming.jpeg-quality:0.6}")
+    private float jpegQuality;
+
+    @Value("${deepseek.slimming.min-savings-ratio:0.1}")
+    private double minSavingsRatio;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    private ExecutorService slimmingPool;
+    private boolean removeImages;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!"downsample".equals(imageMode) && !"remove".equals(imageMode)) {
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Invalid slimming image mode",
+                "Expected downsample or remove, got: " + imageMode
+            );
+        }
+        if (threads <= 0 || maxImageDimension <= 0 || jpegQuality <= 0 || jpegQuality > 1
+                || minSavingsRatio < 0 || minSavingsRatio >= 1) {
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Invalid slimming configuration",
+                String.format("threads: %d, maxImageDimension: %d, jpegQuality: %f, minSavingsRatio: %f",
+                        threads, maxImageDimension, jpegQuality, minSavingsRatio)
+            );
+        }
+        if (!enabled) {
+            return;
+        }
+
+        removeImages = "remove".equals(imageMode);
+        Path directoryPath = Paths.get(directory);
+        Files.createDirectories(directoryPath);
+        deleteLeftoverCopies(directoryPath);
+        slimmingPool = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("pdf-slimming-", 0).factory());
+        log.info("Slimming PDFs of at least {} bytes before upload on {} threads, images: {}",
+                minBytes, threads, imageMode);
+    }
+
+    /**
+     * Deletes the slimmed copies of an earlier run that ended before it could release them.
+     */
+    private void deleteLeftoverCopies(Path directoryPath) throws IOException {
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(directoryPath)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file) && file.getFileName().toString().endsWith(".pdf")) {
+                    Files.deleteIfExists(file);
+                    deleted++;
+                }
+            }
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} slimmed copies left in {} by an earlier run", deleted, directory);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (slimmingPool != null) {
+            slimmingPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Slims a document that is sent as an attachment. On success the slimmed copy is set as the upload
+     * content of the document and the bytes saved are recorded; a document that cannot be slimmed, or
+     * barely shrinks, is sent as it is.
+     *
+     * @param pdfDocument The PDF document with its metadata already extracted
+     */
+    public void slim(PdfDocument pdfDocument) {
+        if (!enabled || pdfDocument.getContent() == null || pdfDocument.getFileSize() < minBytes
+                || pdfDocument.getUploadContent() != null) {
+            return;
+        }
+
+        Timer.Sample sample = pipelineMetrics.start();
+        try {
+            Path slimmed = slimmingPool.submit(() -> rewrite(pdfDocument)).get();
+            if (slimmed == null) {
+                return;
+            }
+
+            long size = Files.size(slimmed);
+            long saved = pdfDocument.getFileSize() - size;
+            if (saved < pdfDocument.getFileSize() * minSavingsRatio) {
+                log.debug("Slimming saved only {} of {} bytes of PDF {}, sending the original",
+                        saved, pdfDocument.getFileSize(), pdfDocument.getFileName());
+                Files.deleteIfExists(slimmed);
+                return;
+            }
+
+            pdfDocument.setUploadContent(PdfContent.ofFile(slimmed, size));
+            pdfDocument.setSlimmedBytesSaved(saved);
+            pipelineMetrics.recordSlimming(saved);
+            log.info("Slimmed PDF {} from {} to {} bytes ({}% saved)", pdfDocument.getFileName(),
+                    pdfDocument.getFileSize(), size, saved * 100 / pdfDocument.getFileSize());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeepseekApiException(
+                ErrorCode.PDF_PROCESSING_ERROR,
+                "Interrupted while slimming PDF",
+                pdfDocument.getFileName(),
+                e
+            );
+        } catch (ExecutionException | IOException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            log.warn("Failed to slim PDF {}, sending the original: {}", pdfDocument.getFileName(), cause.getMessage());
+        } finally {
+            pipelineMetrics.stop(sample, PipelineMetrics.STAGE_SLIMMING);
+        }
+    }
+
+    /**
+     * Deletes the slimmed copy of a document once its request is done.
+     *
+     * @param pdfDocument The PDF document, slimmed or not
+     */
+    public void release(PdfDocument pdfDocument) {
+        PdfContent uploadContent = pdfDocument.getUploadContent();
+        if (uploadContent == null) {
+            return;
+        }
+        pdfDocument.setUploadContent(null);
+        try {
+            Files.deleteIfExists(uploadContent.getPath());
+        } catch (IOException e) {
+            log.warn("Failed to delete slimmed copy {}: {}", uploadContent.getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the slimmed copy of a document.
+     *
+     * @return The slimmed copy, or null if the document is encrypted
+     */
+    private Path rewrite(PdfDocument pdfDocument) throws IOException {
+        try (PDDocument document = PdfTextExtractor.loadDocument(pdfDocument.getContent())) {
+            if (document.isEncrypted()) {
+                log.debug("Not slimming encrypted PDF {}", pdfDocument.getFileName());
+                return null;
+            }
+
+            document.getDocumentCatalog().getCOSObject().removeItem(COSName.METADATA);
+            removeUnusedFonts(document);
+
+            Map<COSBase, PDXObject> replacedImages = new IdentityHashMap<>();
+            Set<COSBase> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (PDPage page : document.getPages()) {
+                page.getCOSObject().removeItem(COSName.METADATA);
+                page.getCOSObject().removeItem(THUMB);
+                page.getCOSObject().removeItem(PIECE_INFO);
+                slimImages(document, page.getResources(), replacedImages, visited);
+            }
+
+            String name = pdfDocument.getFileName().replaceAll("\\.pdf$", "");
+            Path slimmed = Files.createTempFile(Paths.get(directory), name + "_", ".pdf");
+            try {
+                document.save(slimmed.toFile());
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(slimmed);
+                throw e;
+            }
+            return slimmed;
+        }
+    }
+
+    /**
+     * Removes the fonts that no page, form or annotation appearance selects with {@code Tf}. Resource
+     * dictionaries can share their font dictionary, so a font is only removed when no content stream
+     * using the font dictionary selects it. Documents with interactive forms keep their fonts, which
+     * their fields may refer to.
+     */
+    private void removeUnusedFonts(PDDocument document) throws IOException {
+        if (document.getDocumentCatalog().getAcroForm() != null) {
+            return;
+        }
+
+        Map<COSDictionary, Set<COSName>> usedFonts = new IdentityHashMap<>();
+        Set<COSBase> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (PDPage page : document.getPages()) {
+            collectUsedFonts(page, page.getResources(), usedFonts, visited);
+
+            // Appearance streams without resources of their own are drawn with those of the page
+            for (PDAnnotation annotation : page.getAnnotations()) {
+                for (PDAppearanceStream appearance : appearanceStreams(annotation)) {
+                    if (visited.add(appearance.getCOSObject())) {
+                        collectUsedFonts(appearance,
+                                appearance.getResources() != null ? appearance.getResources() : page.getResources(),
+                                usedFonts, visited);
+                    }
+                }
+            }
+        }
+
+        int removed = 0;
+        for (Map.Entry<COSDictionary, Set<COSName>> entry : usedFonts.entrySet()) {
+            for (COSName name : new ArrayList<>(entry.getKey().keySet())) {
+                if (!entry.getValue().contains(name)) {
+                    entry.getKey().removeItem(name);
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            log.debug("Removed {} unused fonts", removed);
+        }
+    }
+
+    /**
+     * @return The normal, rollover and down appearance streams of an annotation, for all its states
+     */
+    private static List<PDAppearanceStream> appearanceStreams(PDAnnotation annotation) {
+        List<PDAppearanceStream> streams = new ArrayList<>();
+        PDAppearanceDictionary appearance = annotation.getAppearance();
+        if (appearance == null) {
+            return streams;
+        }
+        for (PDAppearanceEntry entry : Arrays.asList(appearance.getNormalAppearance(),
+                appearance.getRolloverAppearance(), appearance.getDownAppearance())) {
+            if (entry == null) {
+                continue;
+            }
+            if (entry.isStream()) {
+                streams.add(entry.getAppearanceStream());
+            } else if (entry.isSubDictionary()) {
+                streams.addAll(entry.getSubDictionary().values());
+            }
+        }
+        return streams;
+    }
+
+    /**
+     * Collects the fonts a content stream and the forms it can draw select, by font dictionary.
+     * Forms without resources of their own use the resources of the content stream drawing them.
+     */
+    private void collectUsedFonts(PDContentStream contentStream, PDResources resources,
+                                  Map<COSDictionary, Set<COSName>> usedFonts, Set<COSBase> visited) throws IOException {
+        if (resources == null) {
+            return;
+        }
+        Set<COSName> used = resources.getCOSObject().getDictionaryObject(COSName.FONT) instanceof COSDictionary fonts
+                ? usedFonts.computeIfAbsent(fonts, key -> new HashSet<>())
+                : new HashSet<>();
+
+        PDFStreamParser parser = new PDFStreamParser(contentStream);
+        List<Object> operands = new ArrayList<>();
+        Object token;
+        while ((token = parser.parseNextToken()) != null) {
+            if (!(token instanceof Operator operator)) {
+                operands.add(token);
+                continue;
+            }
+            if ("Tf".equals(operator.getName()) && operands.size() >= 2
+                    && operands.get(operands.size() - 2) instanceof COSName font) {
+                used.add(font);
+            }
+            operands.clear();
+        }
+
+        for (COSName name : resources.getXObjectNames()) {
+            if (resources.getXObject(name) instanceof PDFormXObject form && visited.add(form.getCOSObject())) {
+                collectUsedFonts(form, form.getResources() != null ? form.getResources() : resources, usedFonts, visited);
+            }
+        }
+    }
+
+    /**
+     * Downsamples or removes the images of a resource dictionary and of the forms it holds.
+     * Images shared between pages are converted once.
+     */
+    private void slimImages(PDDocument document, PDResources resources, Map<COSBase, PDXObject> replacedImages,
+                            Set<COSBase> visited) throws IOException {
+        if (resources == null || !visited.add(resources.getCOSObject())) {
+            return;
+        }
+        for (COSName name : resources.getXObjectNames()) {
+            PDXObject xObject = resources.getXObject(name);
+            if (xObject instanceof PDFormXObject form) {
+                slimImages(document, form.getResources(), replacedImages, visited);
+                continue;
+            }
+            if (!(xObject instanceof PDImageXObject image)) {
+                continue;
+            }
+
+            COSBase key = image.getCOSObject();
+            if (!replacedImages.containsKey(key)) {
+                image.getCOSObject().removeItem(COSName.METADATA);
+                replacedImages.put(key, slimImage(document, image));
+            }
+            PDXObject replacement = replacedImages.get(key);
+            if (replacement != null) {
+                resources.put(name, replacement);
+            }
+        }
+    }
+
+    /**
+     * @return The replacement of an image, or null to keep it
+     */
+    private PDXObject slimImage(PDDocument document, PDImageXObject image) throws IOException {
+        // Stencil masks and bilevel scans are already compact
+        if (image.isStencil() || image.getBitsPerComponent() == 1
+                || image.getCOSObject().getLength() < minImageBytes) {
+            return null;
+        }
+
+        if (removeImages) {
+            return LosslessFactory.createFromImage(document, new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = (double) maxImageDimension / Math.max(width, height);
+        if (scale >= 1) {
+            return null;
+        }
+
+        // The decoded image has its soft mask applied
+        BufferedImage source = image.getImage();
+        boolean alpha = source.getColorModel().hasAlpha();
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB
+                : source.getColorModel().getNumColorComponents() == 1 ? BufferedImage.TYPE_BYTE_GRAY
+                : BufferedImage.TYPE_INT_RGB;
+        BufferedImage scaled = new BufferedImage(Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale)), type);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(source, 0, 0, scaled.getWidth(), scaled.getHeight(), null);
+        } finally {
+            graphics.dispose();
+        }
+
+        return alpha ? LosslessFactory.createFromImage(document, scaled)
+                : JPEGFactory.createFromImage(document, scaled, jpegQuality);
+    }
+}
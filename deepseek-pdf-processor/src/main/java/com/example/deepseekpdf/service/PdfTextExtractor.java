@@ -0,0 +1,230 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import com.example.deepseekpdf.model.PdfContent;
+import com.example.deepseekpdf.model.PdfDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Extracts the text layer of PDF documents with PDFBox.
+ * Page ranges are extracted in parallel on a dedicated fork-join pool. PDFBox documents are not safe
+ * for concurrent use, so each worker thread loads the document once and reuses it for every page
+ * range it runs; a document is parsed at most {@code parallelism} times instead of once per range.
+ */
+@Service
+@Slf4j
+public class PdfTextExtractor {
+
+    @Value("${deepseek.text-extraction.parallelism:0}")
+    private int parallelism;
+
+    @Value("${deepseek.text-extraction.pages-per-task:8}")
+    private int pagesPerTask;
+
+    @Value("${deepseek.text-extraction.page-markers:true}")
+    private boolean pageMarkers;
+
+    @Value("${deepseek.text-extraction.sort-by-position:false}")
+    private boolean sortByPosition;
+
+    private ForkJoinPool extractionPool;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        extractionPool = new ForkJoinPool(poolSize);
+        log.info("Initialized PDF text extractor with parallelism: {}, pages per task: {}", poolSize, pagesPerTask);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        extractionPool.shutdown();
+    }
+
+    /**
+     * Extracts the text of a PDF document, optionally preceded by a marker for every page.
+     *
+     * @param pdfDocument The PDF document; its page count must already be known
+     * @return The extracted text
+     */
+    public String extractText(PdfDocument pdfDocument) {
+        return joinPages(pdfDocument, extractPages(pdfDocument));
+    }
+
+    /**
+     * Joins pages extracted with {@link #extractPages(PdfDocument)} into the text of the document.
+     *
+     * @param pdfDocument The PDF document the pages belong to
+     * @param pages The text of each page, in page order
+     * @return The text, optionally with a marker before every page
+     */
+    public String joinPages(PdfDocument pdfDocument, List<String> pages) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < pages.size(); i++) {
+            text.append(pageMarker(i + 1)).append(pages.get(i));
+        }
+
+        log.debug("Extracted {} characters of text from PDF: {}", text.length(), pdfDocument.getFileName());
+        return text.toString();
+    }
+
+    /**
+     * Extracts the text of every page of a PDF document.
+     *
+     * @param pdfDocument The PDF document; its page count must already be known
+     * @return The text of each page, in page order
+     */
+    public List<String> extractPages(PdfDocument pdfDocument) {
+        if (pdfDocument.getPageCount() <= 0) {
+            return new ArrayList<>();
+        }
+        try (LoadedDocuments documents = new LoadedDocuments(pdfDocument.getContent())) {
+            return extractionPool.invoke(new PageRangeTask(documents, 1, pdfDocument.getPageCount()));
+        } catch (UncheckedIOException e) {
+            throw new DeepseekApiException(
+                ErrorCode.PDF_PROCESSING_ERROR,
+                "Failed to extract text from PDF",
+                e.getMessage(),
+                e
+            );
+        }
+    }
+
+    /**
+     * @param pageNumber The 1-based page number
+     * @return The line that precedes the text of the page, or an empty string without page markers
+     */
+    public String pageMarker(int pageNumber) {
+        return pageMarkers ? "[Page " + pageNumber + "]\n" : "";
+    }
+
+    /**
+     * @return A description of the extraction settings that change the extracted text, for cache keys
+     */
+    public String settings() {
+        return "pageMarkers=" + pageMarkers + ",sortByPosition=" + sortByPosition;
+    }
+
+    /**
+     * Loads a PDF with PDFBox. File content is parsed directly from the file, which PDFBox reads
+     * with a small buffer instead of copying the whole document onto the heap.
+     *
+     * @param content The PDF content
+     * @return The loaded document, which the caller must close
+     * @throws IOException If the PDF cannot be read or parsed
+     */
+    static PDDocument loadDocument(PdfContent content) throws IOException {
+        if (content.getPath() != null) {
+            return PDDocument.load(content.getPath().toFile());
+        }
+        return PDDocument.load(content.toByteArray());
+    }
+
+    /**
+     * Extracts the text of an inclusive, 1-based page range, splitting it until each
+     * task covers at most {@code pagesPerTask} pages.
+     */
+    private class PageRangeTask extends RecursiveTask<List<String>> {
+
+        private final LoadedDocuments documents;
+        private final int startPage;
+        private final int endPage;
+
+        PageRangeTask(LoadedDocuments documents, int startPage, int endPage) {
+            this.documents = documents;
+            this.startPage = startPage;
+            this.endPage = endPage;
+        }
+
+        @Override
+        protected List<String> compute() {
+            if (endPage - startPage + 1 <= pagesPerTask) {
+                return extractRange();
+            }
+
+            int middle = (startPage + endPage) / 2;
+            PageRangeTask left = new PageRangeTask(documents, startPage, middle);
+            PageRangeTask right = new PageRangeTask(documents, middle + 1, endPage);
+            left.fork();
+            List<String> rightPages;
+            try {
+                rightPages = right.compute();
+            } catch (RuntimeException e) {
+                // Do not let the documents be closed while the other half still reads them
+                left.quietlyJoin();
+                throw e;
+            }
+            List<String> pages = new ArrayList<>(left.join());
+            pages.addAll(rightPages);
+            return pages;
+        }
+
+        private List<String> extractRange() {
+            try {
+                PDDocument document = documents.forCurrentThread();
+                PDFTextStripper stripper = new PDFTextStripper();
+                stripper.setSortByPosition(sortByPosition);
+
+                List<String> pages = new ArrayList<>(endPage - startPage + 1);
+                for (int page = startPage; page <= endPage; page++) {
+                    stripper.setStartPage(page);
+                    stripper.setEndPage(page);
+                    pages.add(stripper.getText(document));
+                }
+                return pages;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * The copies of one PDF loaded by the worker threads of an extraction, closed together once
+     * the extraction has finished.
+     */
+    private static final class LoadedDocuments implements AutoCloseable {
+
+        private final PdfContent content;
+        private final Map<Thread, PDDocument> documents = new ConcurrentHashMap<>();
+
+        LoadedDocuments(PdfContent content) {
+            this.content = content;
+        }
+
+        PDDocument forCurrentThread() throws IOException {
+            PDDocument document = documents.get(Thread.currentThread());
+            if (document == null) {
+                document = loadDocument(content);
+                documents.put(Thread.currentThread(), document);
+            }
+            return document;
+        }
+
+        @Override
+        public void close() {
+            for (PDDocument document : documents.values()) {
+                try {
+                    document.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close PDF after text extraction: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
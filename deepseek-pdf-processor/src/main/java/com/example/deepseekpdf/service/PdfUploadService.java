@@ -0,0 +1,120 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Stores uploaded PDFs in the input directory.
+ * <p>
+ * The request body is copied to disk in fixed-size blocks while it is received, so an upload never
+ * holds more than one buffer on the heap, however large the file is. The file is written under a
+ * temporary name that the scanner and the watch mode ignore, and only moved to its final
+ * {@code .pdf} name once it is complete.
+ */
+@Service
+@Slf4j
+public class PdfUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] PDF_MAGIC = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    @Value("${deepseek.pdf.input-directory}")
+    private String inputDirectory;
+
+    @Value("${deepseek.rest.upload-max-bytes:1073741824}")
+    private long uploadMaxBytes;
+
+    /**
+     * Streams an upload into the input directory, replacing an existing file of the same name.
+     *
+     * @param fileName The name of the uploaded file
+     * @param inputStream The request body
+     * @return The stored file
+     * @throws DeepseekApiException With {@link ErrorCode#PDF_PROCESSING_ERROR} if the name is invalid,
+     *         the upload is too large or it is not a PDF
+     * @throws IOException If the file cannot be written
+     */
+    public Path store(String fileName, InputStream inputStream) throws IOException {
+        Path inputPath = Paths.get(inputDirectory).toAbsolutePath();
+        Path target = resolve(fileName);
+        Files.createDirectories(inputPath);
+        Path partial = inputPath.resolve("." + UUID.randomUUID() + ".upload");
+
+        try {
+            long size = copy(inputStream, partial, fileName);
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Stored uploaded PDF {} ({} bytes)", target.getFileName(), size);
+            return target;
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * Resolves an uploaded file in the input directory.
+     *
+     * @param fileName The name of the uploaded file
+     * @return The path of the file, which may not exist
+     * @throws DeepseekApiException With {@link ErrorCode#PDF_PROCESSING_ERROR} if the name is not a plain PDF file name
+     */
+    public Path resolve(String fileName) {
+        if (fileName == null || !fileName.toLowerCase().endsWith(".pdf")
+                || fileName.contains("/") || fileName.contains("\\") || fileName.startsWith(".")) {
+            throw new DeepseekApiException(
+                ErrorCode.PDF_PROCESSING_ERROR,
+                "Invalid PDF file name",
+                "File name: " + fileName
+            );
+        }
+        return Paths.get(inputDirectory).toAbsolutePath().resolve(fileName);
+    }
+
+    private long copy(InputStream inputStream, Path partial, String fileName) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long size = 0;
+        try (OutputStream outputStream = Files.newOutputStream(partial)) {
+            int read;
+            while ((read = inputStream.readNBytes(buffer, 0, buffer.length)) > 0) {
+                if (size == 0 && (read < PDF_MAGIC.length
+                        || !Arrays.equals(buffer, 0, PDF_MAGIC.length, PDF_MAGIC, 0, PDF_MAGIC.length))) {
+                    throw new DeepseekApiException(
+                        ErrorCode.PDF_PROCESSING_ERROR,
+                        "Uploaded file is not a PDF",
+                        "File name: " + fileName
+                    );
+                }
+                size += read;
+                if (size > uploadMaxBytes) {
+                    throw new DeepseekApiException(
+                        ErrorCode.PDF_PROCESSING_ERROR,
+                        "Uploaded file is too large",
+                        String.format("File name: %s, limit: %d bytes", fileName, uploadMaxBytes)
+                    );
+                }
+                outputStream.write(buffer, 0, read);
+            }
+        }
+        if (size == 0) {
+            throw new DeepseekApiException(
+                ErrorCode.PDF_PROCESSING_ERROR,
+                "Uploaded file is empty",
+                "File name: " + fileName
+            );
+        }
+        return size;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer metrics of the PDF pipeline.
+ * <ul>
+ *   <li>{@code deepseek.pdf.stage}: timer with histogram per pipeline stage,</li>
+ *   <li>{@code deepseek.api.tokens}: prompt and completion tokens reported in the response usage,</li>
+ *   <li>{@code deepseek.api.errors}: failed API calls by {@link DeepseekApiException.ErrorCode},</li>
+ *   <li>{@code deepseek.api.resilience}: retried and hedged API calls,</li>
+ *   <li>{@code deepseek.api.time.to.first.token}: time from sending a streamed request to its first token,</li>
+ *   <li>{@code deepseek.api.tokens.per.second}: generation rate of streamed responses after their first token,</li>
+ *   <li>{@code deepseek.pdf.slimming.saved}: bytes removed from attachments by the slimming stage.</li>
+ * </ul>
+ * Gauges of in-flight requests and queue depths are bound in {@code MetricsConfig}.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String STAGE_DISCOVERY_WAIT = "discovery_wait";
+    public static final String STAGE_READ = "read";
+    public static final String STAGE_MEMORY_BUDGET_WAIT = "memory_budget_wait";
+    public static final String STAGE_METADATA = "metadata";
+    public static final String STAGE_TEXT_EXTRACTION = "text_extraction";
+    public static final String STAGE_SLIMMING = "slimming";
+    public static final String STAGE_MESSAGE_BUILD = "message_build";
+    public static final String STAGE_RATE_LIMIT_WAIT = "rate_limit_wait";
+    public static final String STAGE_API_CALL = "api_call";
+    public static final String STAGE_WRITE = "write";
+
+    public static final String EVENT_RETRY = "retry";
+    public static final String EVENT_HEDGE = "hedge";
+
+    private static final String UNKNOWN_ERROR = "UNKNOWN";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Starts timing a stage.
+     *
+     * @return The sample to pass to {@link #stop(Timer.Sample, String)}
+     */
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Records the time of a stage since the sample was started.
+     *
+     * @param sample The sample returned by {@link #start()}
+     * @param stage The pipeline stage
+     */
+    public void stop(Timer.Sample sample, String stage) {
+        sample.stop(stageTimer(stage));
+    }
+
+    /**
+     * Adds the tokens of a response's {@code usage} map to the token counters.
+     *
+     * @param usage The usage reported by the API, may be null
+     */
+    public void recordUsage(Map<String, Object> usage) {
+        if (usage == null) {
+            return;
+        }
+        incrementTokens("prompt", usage.get("prompt_tokens"));
+        incrementTokens("completion", usage.get("completion_tokens"));
+    }
+
+    /**
+     * Counts a failed API call by its error code.
+     *
+     * @param error The failure
+     */
+    public void recordError(Throwable error) {
+        String code = error instanceof DeepseekApiException apiException && apiException.getErrorCode() != null
+                ? apiException.getErrorCode().name()
+                : UNKNOWN_ERROR;
+        Counter.builder("deepseek.api.errors")
+                .description("Failed Deepseek API calls by error code")
+                .tag("code", code)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Counts a retry or hedged request sent by the resilience layer.
+     *
+     * @param event The kind of extra attempt
+     */
+    public void recordResilienceEvent(String event) {
+        Counter.builder("deepseek.api.resilience")
+                .description("Extra Deepseek API attempts sent as retries or hedged requests")
+                .tag("event", event)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Records the time a streamed request took to return its first token.
+     *
+     * @param nanos The time from sending the request to the first token
+     */
+    public void recordTimeToFirstToken(long nanos) {
+        Timer.builder("deepseek.api.time.to.first.token")
+                .description("Time from sending a streamed Deepseek API request to its first token")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the generation rate of a streamed response.
+     *
+     * @param tokensPerSecond The completion tokens per second after the first token
+     */
+    public void recordTokensPerSecond(double tokensPerSecond) {
+        DistributionSummary.builder("deepseek.api.tokens.per.second")
+                .description("Completion tokens per second of streamed Deepseek API responses")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(tokensPerSecond);
+    }
+
+    /**
+     * Records the bytes the slimming stage removed from a document before upload.
+     *
+     * @param savedBytes The size of the original less the size of the slimmed copy
+     */
+    public void recordSlimming(long savedBytes) {
+        DistributionSummary.builder("deepseek.pdf.slimming.saved")
+                .description("Bytes removed from PDF attachments before upload")
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .record(savedBytes);
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("deepseek.pdf.stage")
+                .description("Time spent in each stage of the PDF pipeline")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void incrementTokens(String type, Object tokens) {
+        if (tokens instanceof Number number) {
+            Counter.builder("deepseek.api.tokens")
+                    .description("Tokens reported in the usage of Deepseek API responses")
+                    .tag("type", type)
+                    .register(meterRegistry)
+                    .increment(number.doubleValue());
+        }
+    }
+}
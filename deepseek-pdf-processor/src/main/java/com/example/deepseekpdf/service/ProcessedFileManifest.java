@@ -0,0 +1,196 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.model.ManifestEntry;
+import com.example.deepseekpdf.model.PdfDocument;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent manifest of successfully processed PDF files.
+ * Each entry records the path, size, modification time and SHA-256 of the file, so that reruns
+ * only pick up new or changed files. Entries are appended to a JSON Lines file; the latest entry
+ * for a path wins, and the file is compacted on startup.
+ */
+@Service
+@Slf4j
+public class ProcessedFileManifest {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    @Value("${deepseek.manifest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${deepseek.manifest.file:output/manifest/processed-files.jsonl}")
+    private String manifestFile;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, ManifestEntry> entries = new ConcurrentHashMap<>();
+
+    private BufferedWriter writer;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            log.info("Processed file manifest is disabled");
+            return;
+        }
+
+        Path manifestPath = Paths.get(manifestFile);
+        if (manifestPath.getParent() != null) {
+            Files.createDirectories(manifestPath.getParent());
+        }
+
+        int lines = 0;
+        if (Files.exists(manifestPath)) {
+            List<String> manifestLines = Files.readAllLines(manifestPath, StandardCharsets.UTF_8);
+            for (String line : manifestLines) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    ManifestEntry entry = objectMapper.readValue(line, ManifestEntry.class);
+                    entries.put(entry.getPath(), entry);
+                    lines++;
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable manifest line: {}", e.getMessage());
+                }
+            }
+        }
+
+        // Compact the manifest when it holds superseded entries
+        if (lines > entries.size()) {
+            Path compacted = Files.createTempFile(manifestPath.toAbsolutePath().getParent(), "manifest", ".tmp");
+            try (BufferedWriter compactWriter = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+                for (ManifestEntry entry : entries.values()) {
+                    compactWriter.write(objectMapper.writeValueAsString(entry));
+                    compactWriter.newLine();
+                }
+            }
+            Files.move(compacted, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Compacted processed file manifest from {} to {} entries", lines, entries.size());
+        }
+
+        writer = Files.newBufferedWriter(manifestPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        log.info("Loaded processed file manifest {} with {} entries", manifestFile, entries.size());
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Checks whether a file has already been processed in its current state.
+     * Size and modification time are compared first; the content hash is only computed when
+     * the size matches but the modification time changed.
+     *
+     * @param path The PDF file
+     * @return True if the file is unchanged since it was last processed
+     */
+    public boolean isProcessed(Path path) {
+        if (!enabled) {
+            return false;
+        }
+
+        ManifestEntry entry = entries.get(path.toAbsolutePath().toString());
+        if (entry == null) {
+            return false;
+        }
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attributes.size() != entry.getSize()) {
+                return false;
+            }
+            if (attributes.lastModifiedTime().toMillis() == entry.getLastModified()) {
+                return true;
+            }
+            return sha256(path).equals(entry.getSha256());
+        } catch (IOException e) {
+            log.warn("Failed to check manifest state of {}: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Records a successfully processed document.
+     *
+     * @param pdfDocument The processed document; its file path must be set
+     */
+    public void record(PdfDocument pdfDocument) {
+        if (!enabled || pdfDocument.getFilePath() == null) {
+            return;
+        }
+
+        Path path = Paths.get(pdfDocument.getFilePath()).toAbsolutePath();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            String hash = sha256(path);
+
+            ManifestEntry entry = ManifestEntry.builder()
+                    .path(path.toString())
+                    .size(attributes.size())
+                    .lastModified(attributes.lastModifiedTime().toMillis())
+                    .sha256(hash)
+                    .processedAt(LocalDateTime.now().format(DATE_FORMATTER))
+                    .build();
+
+            synchronized (this) {
+                writer.write(objectMapper.writeValueAsString(entry));
+                writer.newLine();
+                writer.flush();
+            }
+            entries.put(entry.getPath(), entry);
+        } catch (IOException e) {
+            log.warn("Failed to record {} in manifest: {}", path, e.getMessage());
+        }
+    }
+
+    private String sha256(Path path) throws IOException {
+        MessageDigest digest = sha256Digest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(path), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.deepseekpdf.service;
+
+/**
+ * Limits retries and hedged requests to a share of the original requests, so that retries cannot
+ * multiply the load on an API that is already struggling.
+ * <p>
+ * Within each window of {@code windowNanos}, {@code minRetries} plus {@code ratio} times the number
+ * of original requests may be spent on extra attempts.
+ */
+final class RetryBudget {
+
+    private final double ratio;
+    private final int minRetries;
+    private final long windowNanos;
+
+    private long windowStartNanos = System.nanoTime();
+    private long requests;
+    private long retries;
+
+    RetryBudget(double ratio, int minRetries, long windowNanos) {
+        this.ratio = ratio;
+        this.minRetries = minRetries;
+        this.windowNanos = windowNanos;
+    }
+
+    /**
+     * Records an original request.
+     */
+    synchronized void onRequest() {
+        roll();
+        requests++;
+    }
+
+    /**
+     * @return True if an extra attempt may be sent, in which case it is charged to the budget
+     */
+    synchronized boolean tryAcquire() {
+        roll();
+        if (retries < minRetries + ratio * requests) {
+            retries++;
+            return true;
+        }
+        return false;
+    }
+
+    private void roll() {
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= windowNanos) {
+            windowStartNanos = now;
+            requests = 0;
+            retries = 0;
+        }
+    }
+}
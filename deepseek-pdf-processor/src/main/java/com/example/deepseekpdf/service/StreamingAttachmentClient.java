@@ -0,0 +1,264 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import com.example.deepseekpdf.model.DeepseekApiResponse;
+import com.example.deepseekpdf.model.PdfContent;
+import com.example.deepseekpdf.model.PdfDocument;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.pigmesh.ai.deepseek.core.OpenAiHttpException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends PDF attachments to the chat completions endpoint without building the request in memory.
+ * The JSON body is written around the attachment, and the attachment itself is Base64-encoded
+ * block by block while it is read from the file channel. Neither the encoded PDF nor the request
+ * body ever exists on the heap, and the body has an exact content length so no chunked encoding
+ * is needed. The endpoint is configured with {@code deepseek.base-url}, so it can be pointed at a
+ * local stub of the Deepseek API.
+ */
+@Component
+@Slf4j
+public class StreamingAttachmentClient {
+
+    private static final String COMPLETIONS_PATH = "/chat/completions";
+
+    @Value("${deepseek.base-url:https://api.deepseek.com/v1}")
+    private String baseUrl;
+
+    @Value("${deepseek.api-key:}")
+    private String apiKey;
+
+    @Value("${deepseek.timeout:60000}")
+    private long timeoutMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private HttpClient httpClient;
+    private URI completionsUri;
+
+    @PostConstruct
+    public void init() {
+        completionsUri = URI.create(baseUrl.replaceAll("/+$", "") + COMPLETIONS_PATH);
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(timeoutMillis))
+                .build();
+        log.info("Initialized streaming attachment client for {}", completionsUri);
+    }
+
+    /**
+     * Sends a PDF attachment and waits for the response.
+     *
+     * @param pdfDocument The PDF document
+     * @param prompt The resolved prompt
+     * @param model The model name
+     * @param temperature The sampling temperature
+     * @param maxTokens The maximum number of completion tokens
+     * @return The API response
+     */
+    public DeepseekApiResponse send(PdfDocument pdfDocument, String prompt, String model,
+                                    double temperature, int maxTokens) {
+        try {
+            HttpResponse<String> response = httpClient.send(
+                    createRequest(pdfDocument, prompt, model, temperature, maxTokens),
+                    HttpResponse.BodyHandlers.ofString());
+            return toApiResponse(response);
+        } catch (IOException e) {
+            throw new DeepseekApiException(
+                ErrorCode.API_COMMUNICATION_ERROR,
+                "Failed to send PDF attachment",
+                e.getMessage(),
+                e
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeepseekApiException(
+                ErrorCode.API_COMMUNICATION_ERROR,
+                "Interrupted while sending PDF attachment",
+                e.getMessage(),
+                e
+            );
+        }
+    }
+
+    /**
+     * Sends a PDF attachment without blocking the calling thread.
+     *
+     * @param pdfDocument The PDF document
+     * @param prompt The resolved prompt
+     * @param model The model name
+     * @param temperature The sampling temperature
+     * @param maxTokens The maximum number of completion tokens
+     * @return Future completing with the API response
+     */
+    public CompletableFuture<DeepseekApiResponse> sendAsync(PdfDocument pdfDocument, String prompt, String model,
+                                                            double temperature, int maxTokens) {
+        return httpClient.sendAsync(createRequest(pdfDocument, prompt, model, temperature, maxTokens),
+                        HttpResponse.BodyHandlers.ofString())
+                .thenApply(this::toApiResponse);
+    }
+
+    private HttpRequest createRequest(PdfDocument pdfDocument, String prompt, String model,
+                                      double temperature, int maxTokens) {
+        if (pdfDocument.getContent() == null) {
+            throw new DeepseekApiException(
+                ErrorCode.PDF_PROCESSING_ERROR,
+                "Invalid PDF document",
+                "PDF content is null"
+            );
+        }
+
+        byte[] prefix;
+        byte[] suffix;
+        try {
+            // The attachment is written as an empty string and the body split between its quotes
+            ByteArrayOutputStream envelope = new ByteArrayOutputStream();
+            int split;
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(envelope)) {
+                generator.writeStartObject();
+                generator.writeStringField("model", model);
+                generator.writeArrayFieldStart("messages");
+                generator.writeStartObject();
+                generator.writeStringField("role", "user");
+                generator.writeStringField("content", prompt);
+                generator.writeObjectFieldStart("file_attachment");
+                generator.writeStringField("type", "file_attachment");
+                generator.writeStringField("file_type", "pdf");
+                generator.writeStringField("name", pdfDocument.getFileName());
+                generator.writeStringField("content", "");
+                generator.flush();
+                split = envelope.size() - 1;
+                generator.writeEndObject();
+                generator.writeEndObject();
+                generator.writeEndArray();
+                generator.writeNumberField("temperature", temperature);
+                generator.writeNumberField("max_tokens", maxTokens);
+                generator.writeBooleanField("stream", false);
+                generator.writeEndObject();
+            }
+            byte[] json = envelope.toByteArray();
+            prefix = Arrays.copyOfRange(json, 0, split);
+            suffix = Arrays.copyOfRange(json, split, json.length);
+        } catch (IOException e) {
+            throw new DeepseekApiException(
+                ErrorCode.PDF_PROCESSING_ERROR,
+                "Failed to create request body",
+                e.getMessage(),
+                e
+            );
+        }
+
+        // The slimmed copy is sent if the document has one
+        PdfContent content = pdfDocument.getUploadContent() != null
+                ? pdfDocument.getUploadContent()
+                : pdfDocument.getContent();
+        long contentLength = prefix.length
+                + Base64EncodingInputStream.encodedLength(content.size())
+                + suffix.length;
+        log.debug("Streaming PDF {} as a {} byte request body", pdfDocument.getFileName(), contentLength);
+
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(
+                HttpRequest.BodyPublishers.ofInputStream(() -> openBody(content, prefix, suffix)),
+                contentLength);
+
+        return HttpRequest.newBuilder(completionsUri)
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .header("Authorization", "Bearer " + apiKey)
+                .POST(body)
+                .build();
+    }
+
+    private InputStream openBody(PdfContent content, byte[] prefix, byte[] suffix) {
+        try {
+            List<InputStream> parts = List.of(
+                    new ByteArrayInputStream(prefix),
+                    new Base64EncodingInputStream(content.openChannel()),
+                    new ByteArrayInputStream(suffix));
+            return new SequenceInputStream(Collections.enumeration(parts));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private DeepseekApiResponse toApiResponse(HttpResponse<String> response) {
+        if (response.statusCode() == 429) {
+            throw new DeepseekApiException(
+                ErrorCode.RATE_LIMITED,
+                "Deepseek API returned HTTP 429 Too Many Requests",
+                response.body(),
+                new OpenAiHttpException(response.statusCode(), response.body())
+            );
+        }
+        if (response.statusCode() != 200) {
+            throw new DeepseekApiException(
+                ErrorCode.API_COMMUNICATION_ERROR,
+                "Deepseek API returned HTTP " + response.statusCode(),
+                response.body(),
+                new OpenAiHttpException(response.statusCode(), response.body())
+            );
+        }
+
+        try {
+            JsonNode root = objectMapper.readTree(response.body());
+            JsonNode choice = root.path("choices").path(0);
+            if (choice.isMissingNode()) {
+                throw new DeepseekApiException(
+                    ErrorCode.INVALID_RESPONSE,
+                    "Received null or invalid response from API",
+                    "Response has no choices"
+                );
+            }
+
+            // Same shape as the SDK responses: the message fields plus the finish reason
+            Map<String, Object> choices = new HashMap<>(
+                    objectMapper.convertValue(choice.path("message"), new TypeReference<Map<String, Object>>() { }));
+            choices.put("finish_reason", choice.path("finish_reason").asText(null));
+
+            return DeepseekApiResponse.builder()
+                    .id(root.path("id").asText(null))
+                    .model(root.path("model").asText(null))
+                    .object(root.path("object").asText(null))
+                    .created(root.hasNonNull("created") ? root.get("created").asLong() : null)
+                    .choices(choices)
+                    .usage(root.hasNonNull("usage")
+                            ? objectMapper.convertValue(root.get("usage"), new TypeReference<Map<String, Object>>() { })
+                            : null)
+                    .rawResponse(response.body())
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new DeepseekApiException(
+                ErrorCode.INVALID_RESPONSE,
+                "Failed to parse API response",
+                e.getMessage(),
+                e
+            );
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import com.example.deepseekpdf.model.PdfDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Estimates the input tokens of a document before it is sent, from what the metadata pass already
+ * knows: the length of the extracted text in text mode, otherwise {@code tokens-per-page} per page.
+ * <p>
+ * The estimate decides how the document is sent:
+ * <ul>
+ *   <li>{@code max-tokens} of the request is {@code deepseek.max-tokens}, lowered only as far as needed
+ *       to stay within the context window, but not below {@code min-output-tokens},</li>
+ *   <li>documents whose input and minimum output do not fit in {@code context-window-tokens} are analyzed
+ *       in segments by the {@link LargeDocumentAnalyzer},</li>
+ *   <li>documents above {@code reject-above-tokens} are rejected with {@link ErrorCode#DOCUMENT_TOO_LARGE}
+ *       without calling the API.</li>
+ * </ul>
+ * The rate limiter is charged with the estimate, so attachments no longer count as an average request.
+ */
+@Service
+@Slf4j
+public class TokenPreflight {
+
+    @Value("${deepseek.preflight.enabled:true}")
+    private boolean enabled;
+
+    @Value("${deepseek.preflight.context-window-tokens:65536}")
+    private long contextWindowTokens;
+
+    @Value("${deepseek.preflight.tokens-per-page:800}")
+    private long tokensPerPage;
+
+    @Value("${deepseek.preflight.min-output-tokens:1024}")
+    private int minOutputTokens;
+
+    @Value("${deepseek.preflight.reject-above-tokens:2000000}")
+    private long rejectAboveTokens;
+
+    @Value("${deepseek.max-tokens:4096}")
+    private int maxTokens;
+
+    @Value("${deepseek.large-document.chars-per-token:4}")
+    private int charsPerToken;
+
+    @PostConstruct
+    public void init() {
+        if (contextWindowTokens <= minOutputTokens || tokensPerPage <= 0 || minOutputTokens <= 0
+                || minOutputTokens > maxTokens || rejectAboveTokens <= 0) {
+            throw new DeepseekApiException(
+                ErrorCode.CONFIGURATION_ERROR,
+                "Invalid pre-flight configuration",
+                String.format("contextWindowTokens: %d, tokensPerPage: %d, minOutputTokens: %d, maxTokens: %d, "
+                        + "rejectAboveTokens: %d", contextWindowTokens, tokensPerPage, minOutputTokens, maxTokens,
+                        rejectAboveTokens)
+            );
+        }
+    }
+
+    /**
+     * Estimates the input tokens of a document and chooses the max-tokens of its request.
+     *
+     * @param pdfDocument The PDF document with its metadata, and in text mode its text, already extracted
+     * @param prompt The resolved prompt sent with the document
+     * @throws DeepseekApiException With {@link ErrorCode#DOCUMENT_TOO_LARGE} if the document is rejected
+     */
+    public void estimate(PdfDocument pdfDocument, String prompt) {
+        if (!enabled) {
+            return;
+        }
+        long contentTokens = pdfDocument.getExtractedText() != null
+                ? pdfDocument.getExtractedText().length() / charsPerToken
+                : pdfDocument.getPageCount() * tokensPerPage;
+        long inputTokens = contentTokens + (prompt != null ? prompt.length() / charsPerToken : 0);
+        pdfDocument.setEstimatedTokens(inputTokens);
+
+        if (inputTokens > rejectAboveTokens) {
+            throw new DeepseekApiException(
+                ErrorCode.DOCUMENT_TOO_LARGE,
+                "PDF is too large to process: " + pdfDocument.getFileName(),
+                String.format("Estimated %d input tokens, limit %d", inputTokens, rejectAboveTokens)
+            );
+        }
+
+        long available = Math.max(minOutputTokens, contextWindowTokens - inputTokens);
+        pdfDocument.setMaxOutputTokens((int) Math.min(maxTokens, available));
+
+        log.debug("Estimated {} input tokens for PDF {} ({} pages), max-tokens {}", inputTokens,
+                pdfDocument.getFileName(), pdfDocument.getPageCount(), pdfDocument.getMaxOutputTokens());
+    }
+
+    /**
+     * @param pdfDocument A document estimated with {@link #estimate(PdfDocument, String)}
+     * @return True if the input and the minimum output do not fit in the context window
+     */
+    public boolean exceedsContextWindow(PdfDocument pdfDocument) {
+        return enabled && pdfDocument.getEstimatedTokens() + minOutputTokens > contextWindowTokens;
+    }
+}
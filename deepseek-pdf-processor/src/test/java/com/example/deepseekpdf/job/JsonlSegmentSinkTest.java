@@ -0,0 +1,231 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.model.PdfDocument;
+import com.example.deepseekpdf.model.SegmentIndexEntry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonlSegmentSinkTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    private JsonlSegmentSink sink;
+
+    @BeforeEach
+    void setUp() {
+        sink = sink(1 << 20);
+        sink.open(new ExecutionContext());
+    }
+
+    @AfterEach
+    void tearDown() {
+        sink.close();
+        TransactionSynchronizationManager.clear();
+    }
+
+    @Test
+    void indexesEveryRecordOfTheSegment() throws IOException {
+        List<PdfDocument> documents = documents("first", "a", "b", "c");
+        sink.write(documents);
+
+        assertEquals(1, segments().size());
+        assertIndexed(documents);
+    }
+
+    @Test
+    void appendsChunksToTheSegmentUntilTheCap() throws IOException {
+        sink.close();
+        // Room for two chunks per segment
+        sink = sink(2 * chunkBytes(documents("first", "x0", "y0")) + 8);
+        sink.open(new ExecutionContext());
+
+        List<PdfDocument> documents = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            List<PdfDocument> chunk = documents("first", "a" + i, "b" + i);
+            sink.write(chunk);
+            documents.addAll(chunk);
+        }
+
+        assertEquals(List.of("results-00001.jsonl", "results-00002.jsonl", "results-00003.jsonl"), segmentNames());
+        assertIndexed(documents);
+    }
+
+    @Test
+    void rolledBackChunkIsTruncatedBeforeItsRetry() throws IOException {
+        List<PdfDocument> committed = documents("first", "a", "b");
+        sink.write(committed);
+
+        TransactionSynchronizationManager.initSynchronization();
+        sink.write(documents("first", "c", "d"));
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // The retried chunk is read again, so its documents get new ids
+        List<PdfDocument> retried = documents("retry", "c", "d");
+        sink.write(retried);
+
+        List<PdfDocument> expected = new ArrayList<>(committed);
+        expected.addAll(retried);
+        assertIndexed(expected);
+    }
+
+    @Test
+    void rolledBackChunkRemovesTheSegmentItStarted() throws IOException {
+        sink.close();
+        sink = sink(chunkBytes(documents("first", "a", "b")) + 8);
+        sink.open(new ExecutionContext());
+        List<PdfDocument> committed = documents("first", "a", "b");
+        sink.write(committed);
+
+        TransactionSynchronizationManager.initSynchronization();
+        sink.write(documents("first", "c", "d"));
+        assertEquals(2, segments().size());
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(List.of("results-00001.jsonl"), segmentNames());
+        assertIndexed(committed);
+    }
+
+    @Test
+    void restartTruncatesToTheLastCommitAndIndexesTheRerun() throws IOException {
+        ExecutionContext executionContext = new ExecutionContext();
+        List<PdfDocument> committed = documents("first", "a", "b");
+        sink.write(committed);
+        sink.update(executionContext);
+
+        // Written but never committed before the process died
+        sink.write(documents("crashed", "c", "d"));
+        sink.close();
+
+        sink = sink(1 << 20);
+        sink.open(executionContext);
+        // The rerun reads the files again, with new ids and a different answer
+        List<PdfDocument> rerun = documents("a much longer answer of the rerun", "c", "d");
+        sink.write(rerun);
+
+        assertEquals(1, segments().size());
+        List<PdfDocument> expected = new ArrayList<>(committed);
+        expected.addAll(rerun);
+        assertIndexed(expected);
+    }
+
+    @Test
+    void newStepExecutionStartsItsOwnSegment() throws IOException {
+        List<PdfDocument> documents = documents("first", "a");
+        sink.write(documents);
+
+        JsonlSegmentSink other = sink(1 << 20);
+        other.open(new ExecutionContext());
+        List<PdfDocument> otherDocuments = documents("first", "b");
+        other.write(otherDocuments);
+        other.close();
+
+        assertEquals(List.of("results-00001.jsonl", "results-00002.jsonl"), segmentNames());
+        documents.addAll(otherDocuments);
+        assertIndexed(documents);
+    }
+
+    private JsonlSegmentSink sink(long segmentMaxBytes) {
+        JsonlSegmentSink sink = new JsonlSegmentSink();
+        ReflectionTestUtils.setField(sink, "segmentDirectory", directory.toString());
+        ReflectionTestUtils.setField(sink, "segmentMaxBytes", segmentMaxBytes);
+        return sink;
+    }
+
+    private long chunkBytes(List<PdfDocument> documents) throws IOException {
+        long bytes = 0;
+        for (PdfDocument document : documents) {
+            bytes += objectMapper.writeValueAsBytes(document).length + 1;
+        }
+        return bytes;
+    }
+
+    private static void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    /**
+     * Every document, and nothing else, is indexed, and every index entry resolves to the record of its own id.
+     */
+    private void assertIndexed(List<PdfDocument> documents) throws IOException {
+        List<SegmentIndexEntry> index = index();
+        assertEquals(documents.stream().map(PdfDocument::getId).collect(Collectors.toSet()),
+                index.stream().map(SegmentIndexEntry::getId).collect(Collectors.toSet()));
+        assertEquals(documents.size(), index.size());
+
+        long records = 0;
+        for (Path segment : segments()) {
+            records += Files.readAllLines(segment, StandardCharsets.UTF_8).size();
+        }
+        assertEquals(documents.size(), records);
+
+        for (SegmentIndexEntry entry : index) {
+            byte[] segment = Files.readAllBytes(directory.resolve(entry.getSegment()));
+            assertTrue(entry.getOffset() + entry.getLength() < segment.length);
+            assertEquals('\n', segment[(int) (entry.getOffset() + entry.getLength())]);
+            PdfDocument record = objectMapper.readValue(segment, (int) entry.getOffset(), entry.getLength(),
+                    PdfDocument.class);
+            assertEquals(entry.getId(), record.getId());
+        }
+    }
+
+    private static List<PdfDocument> documents(String answer, String... names) {
+        List<PdfDocument> documents = new ArrayList<>();
+        for (String name : names) {
+            documents.add(PdfDocument.builder()
+                    .id(UUID.randomUUID().toString())
+                    .fileName(name + ".pdf")
+                    .filePath("/input/" + name + ".pdf")
+                    .status("COMPLETED")
+                    .deepseekResponse("Summary of " + name + ": " + answer)
+                    .build());
+        }
+        return documents;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("results-")).sorted().toList();
+        }
+    }
+
+    private List<String> segmentNames() throws IOException {
+        return segments().stream().map(path -> path.getFileName().toString()).toList();
+    }
+
+    private List<SegmentIndexEntry> index() throws IOException {
+        List<SegmentIndexEntry> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().startsWith("index-")).sorted().toList()) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    entries.add(objectMapper.readValue(line, SegmentIndexEntry.class));
+                }
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.deepseekpdf.job;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import com.example.deepseekpdf.model.PdfDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.step.skip.SkipLimitExceededException;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryPolicy;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PdfFailureClassifierTest {
+
+    private PdfFailureClassifier classifier;
+
+    @BeforeEach
+    void setUp() {
+        classifier = new PdfFailureClassifier();
+        ReflectionTestUtils.setField(classifier, "skipLimit", 2L);
+        ReflectionTestUtils.setField(classifier, "retryLimit", 2);
+    }
+
+    @Test
+    void retriesOnlyBrokenStreams() {
+        assertTrue(classifier.isRetryable(error(ErrorCode.STREAM_PROCESSING_ERROR)));
+        assertFalse(classifier.isRetryable(error(ErrorCode.PDF_PROCESSING_ERROR)));
+        assertFalse(classifier.isRetryable(new IOException("unreadable")));
+    }
+
+    @Test
+    void classifiesByTheWrappedErrorCode() {
+        RuntimeException wrapped = new RuntimeException("chunk failed", error(ErrorCode.STREAM_PROCESSING_ERROR));
+
+        assertTrue(classifier.isRetryable(wrapped));
+        assertTrue(classifier.isSkippable(wrapped));
+    }
+
+    @Test
+    void skipsDocumentFailuresButNotFatalOnes() {
+        assertTrue(classifier.isSkippable(error(ErrorCode.PDF_PROCESSING_ERROR)));
+        assertTrue(classifier.isSkippable(error(ErrorCode.INVALID_RESPONSE)));
+        assertTrue(classifier.isSkippable(error(ErrorCode.DOCUMENT_TOO_LARGE)));
+        assertTrue(classifier.isSkippable(new IOException("unreadable")));
+
+        assertFalse(classifier.isSkippable(error(ErrorCode.CONFIGURATION_ERROR)));
+        assertFalse(classifier.isSkippable(error(ErrorCode.PROMPT_NOT_FOUND)));
+        assertFalse(classifier.isSkippable(new IllegalStateException("bug")));
+    }
+
+    @Test
+    void failsTheStepWhileTheApiIsDownOrThrottling() {
+        assertFalse(classifier.isSkippable(error(ErrorCode.CIRCUIT_OPEN)));
+        assertFalse(classifier.isSkippable(error(ErrorCode.RATE_LIMITED)));
+        assertFalse(classifier.isSkippable(error(ErrorCode.API_COMMUNICATION_ERROR)));
+
+        // The step fails at the first such failure instead of skipping documents up to the limit
+        assertFalse(classifier.shouldSkip(error(ErrorCode.RATE_LIMITED), 0));
+        assertFalse(classifier.shouldSkip(error(ErrorCode.API_COMMUNICATION_ERROR), 0));
+    }
+
+    @Test
+    void classifiesFailuresRecordedOnDocuments() {
+        PdfDocument rateLimited = PdfDocument.builder().errorCode(ErrorCode.RATE_LIMITED.name()).build();
+        PdfDocument invalid = PdfDocument.builder().errorCode(ErrorCode.INVALID_RESPONSE.name()).build();
+        PdfDocument unreadable = PdfDocument.builder().build();
+
+        assertFalse(classifier.shouldSkip(classifier.failureOf(rateLimited), 0));
+        assertTrue(classifier.shouldSkip(classifier.failureOf(invalid), 0));
+        assertTrue(classifier.shouldSkip(classifier.failureOf(unreadable), 0));
+        assertThrows(SkipLimitExceededException.class, () -> classifier.shouldSkip(classifier.failureOf(invalid), 2));
+    }
+
+    @Test
+    void stopsSkippingAtTheSkipLimit() {
+        DeepseekApiException error = error(ErrorCode.PDF_PROCESSING_ERROR);
+
+        assertTrue(classifier.shouldSkip(error, 1));
+        assertThrows(SkipLimitExceededException.class, () -> classifier.shouldSkip(error, 2));
+        assertFalse(classifier.shouldSkip(error(ErrorCode.CONFIGURATION_ERROR), 0));
+    }
+
+    @Test
+    void retryPolicyAllowsRetryLimitRetries() {
+        RetryPolicy policy = classifier.retryPolicy();
+        RetryContext context = policy.open(null);
+
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            policy.registerThrowable(context, error(ErrorCode.STREAM_PROCESSING_ERROR));
+            assertTrue(policy.canRetry(context), "attempt " + attempt);
+        }
+        policy.registerThrowable(context, error(ErrorCode.STREAM_PROCESSING_ERROR));
+        assertFalse(policy.canRetry(context));
+    }
+
+    @Test
+    void retryPolicyNeverRetriesOtherFailures() {
+        RetryPolicy policy = classifier.retryPolicy();
+        RetryContext context = policy.open(null);
+
+        policy.registerThrowable(context, error(ErrorCode.PDF_PROCESSING_ERROR));
+
+        assertFalse(policy.canRetry(context));
+    }
+
+    private static DeepseekApiException error(ErrorCode errorCode) {
+        return new DeepseekApiException(errorCode, "failure", "details");
+    }
+}
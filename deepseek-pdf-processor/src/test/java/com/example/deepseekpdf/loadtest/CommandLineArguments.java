@@ -0,0 +1,54 @@
+package com.example.deepseekpdf.loadtest;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses {@code --key=value} arguments. Keys containing a dot, such as
+ * {@code --deepseek.batch.processing-mode=reactive}, are application properties; all other keys
+ * are options of the load test itself.
+ */
+final class CommandLineArguments {
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private final Map<String, String> properties = new LinkedHashMap<>();
+
+    private CommandLineArguments() {
+    }
+
+    static CommandLineArguments parse(String[] args) {
+        CommandLineArguments arguments = new CommandLineArguments();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected --key=value but got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            String key = separator < 0 ? arg.substring(2) : arg.substring(2, separator);
+            String value = separator < 0 ? "true" : arg.substring(separator + 1);
+            (key.contains(".") ? arguments.properties : arguments.options).put(key, value);
+        }
+        return arguments;
+    }
+
+    String get(String key, String defaultValue) {
+        return options.getOrDefault(key, defaultValue);
+    }
+
+    int getInt(String key, int defaultValue) {
+        String value = options.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    double getDouble(String key, double defaultValue) {
+        String value = options.get(key);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    /**
+     * @return The application properties given on the command line
+     */
+    Map<String, String> getProperties() {
+        return Collections.unmodifiableMap(properties);
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.deepseekpdf.loadtest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Deepseek chat completions endpoint, for load tests without an API key.
+ * <p>
+ * Answers {@code POST <base-url>/chat/completions} like the real API, as a single JSON response
+ * or, for requests with {@code "stream": true}, as server-sent chunks ending with {@code [DONE]}.
+ * Each response takes a latency sampled from {@link StubSettings#latency()}; streamed responses
+ * send the first chunk after half of it and spread the rest over the other half. Throttling and
+ * server errors are injected at the configured rates. Request bodies are parsed as a stream, so
+ * attachments of any size are accepted without buffering them.
+ * <p>
+ * Run standalone with {@code DeepseekStubServer [--port=8089] [--latency=...]} and point the
+ * application at it with {@code deepseek.base-url=http://localhost:8089/v1}.
+ */
+public final class DeepseekStubServer implements AutoCloseable {
+
+    private static final String COMPLETIONS_PATH = "/chat/completions";
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final String[] WORDS = {
+        "The", "document", "describes", "quarterly", "results", "and", "outlines", "the", "main",
+        "risks", "of", "the", "strategy", "with", "a", "summary", "of", "key", "findings."
+    };
+
+    private final StubSettings settings;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String responseContent;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong streamingRequests = new AtomicLong();
+    private final AtomicLong throttledResponses = new AtomicLong();
+    private final AtomicLong errorResponses = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+
+    private DeepseekStubServer(StubSettings settings) throws IOException {
+        this.settings = settings;
+        this.responseContent = content(settings.responseChars());
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress("localhost", settings.port()), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public static void main(String[] args) throws IOException {
+        StubSettings settings;
+        try {
+            settings = StubSettings.fromArguments(CommandLineArguments.parse(args), 8089);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: DeepseekStubServer [options]");
+            System.err.println(StubSettings.USAGE);
+            System.exit(1);
+            return;
+        }
+        DeepseekStubServer stub = start(settings);
+        Runtime.getRuntime().addShutdownHook(new Thread(stub::close));
+        System.out.println("Deepseek stub listening on " + stub.getBaseUrl() + " with " + settings);
+    }
+
+    /**
+     * Starts a stub server.
+     *
+     * @param settings The behavior of the server
+     * @return The running server
+     * @throws IOException If the port cannot be bound
+     */
+    public static DeepseekStubServer start(StubSettings settings) throws IOException {
+        DeepseekStubServer stub = new DeepseekStubServer(settings);
+        stub.server.start();
+        return stub;
+    }
+
+    /**
+     * @return The base URL to configure as {@code deepseek.base-url}
+     */
+    public URI getBaseUrl() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/v1");
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getStreamingRequests() {
+        return streamingRequests.get();
+    }
+
+    public long getThrottledResponses() {
+        return throttledResponses.get();
+    }
+
+    public long getErrorResponses() {
+        return errorResponses.get();
+    }
+
+    public long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())
+                    || !exchange.getRequestURI().getPath().endsWith(COMPLETIONS_PATH)) {
+                sendError(exchange, 404, "not_found", "Unknown endpoint: " + exchange.getRequestURI());
+                return;
+            }
+
+            // Read the whole request before answering, like the real API
+            RequestSummary request = readRequest(exchange.getRequestBody());
+            requests.incrementAndGet();
+            requestBytes.addAndGet(request.bytes());
+
+            double outcome = ThreadLocalRandom.current().nextDouble();
+            if (outcome < settings.throttleRate()) {
+                throttledResponses.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", Integer.toString(settings.retryAfterSeconds()));
+                sendError(exchange, 429, "rate_limit_exceeded", "Rate limit reached, please retry later");
+                return;
+            }
+
+            long latencyMillis = Math.max(0, settings.latency().sampleMillis());
+            if (outcome < settings.throttleRate() + settings.errorRate()) {
+                Thread.sleep(latencyMillis);
+                errorResponses.incrementAndGet();
+                sendError(exchange, settings.errorStatus(), "server_error", "Injected server error");
+                return;
+            }
+
+            Map<String, Object> usage = usage(request.bytes());
+            if (request.stream()) {
+                streamingRequests.incrementAndGet();
+                sendStream(exchange, latencyMillis, usage);
+            } else {
+                Thread.sleep(latencyMillis);
+                sendCompletion(exchange, usage);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendCompletion(HttpExchange exchange, Map<String, Object> usage) throws IOException {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("role", "assistant");
+        message.put("content", responseContent);
+
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("index", 0);
+        choice.put("message", message);
+        choice.put("finish_reason", "stop");
+
+        Map<String, Object> body = envelope("chat.completion");
+        body.put("choices", List.of(choice));
+        body.put("usage", usage);
+
+        byte[] json = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, json.length);
+        exchange.getResponseBody().write(json);
+    }
+
+    private void sendStream(HttpExchange exchange, long latencyMillis, Map<String, Object> usage)
+            throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+
+        Map<String, Object> chunk = envelope("chat.completion.chunk");
+        int chunks = settings.streamChunks();
+        long interval = chunks > 1 ? latencyMillis / 2 / (chunks - 1) : 0;
+        Thread.sleep(latencyMillis - interval * (chunks - 1));
+
+        for (int i = 0; i < chunks; i++) {
+            if (i > 0) {
+                Thread.sleep(interval);
+            }
+            int from = (int) ((long) responseContent.length() * i / chunks);
+            int to = (int) ((long) responseContent.length() * (i + 1) / chunks);
+            boolean last = i == chunks - 1;
+
+            Map<String, Object> delta = new LinkedHashMap<>();
+            if (i == 0) {
+                delta.put("role", "assistant");
+            }
+            delta.put("content", responseContent.substring(from, to));
+
+            Map<String, Object> choice = new LinkedHashMap<>();
+            choice.put("index", 0);
+            choice.put("delta", delta);
+            choice.put("finish_reason", last ? "stop" : null);
+
+            chunk.put("choices", List.of(choice));
+            if (last) {
+                chunk.put("usage", usage);
+            }
+            writeEvent(out, objectMapper.writeValueAsString(chunk));
+        }
+        writeEvent(out, "[DONE]");
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void sendError(HttpExchange exchange, int status, String type, String message) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("message", message);
+        error.put("type", type);
+        error.put("code", status);
+
+        byte[] json = objectMapper.writeValueAsBytes(Map.of("error", error));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, json.length);
+        exchange.getResponseBody().write(json);
+    }
+
+    private Map<String, Object> envelope(String object) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", "stub-" + UUID.randomUUID());
+        body.put("object", object);
+        body.put("created", System.currentTimeMillis() / 1000);
+        body.put("model", "deepseek-stub");
+        return body;
+    }
+
+    private Map<String, Object> usage(long requestBytes) {
+        long promptTokens = requestBytes / CHARS_PER_TOKEN;
+        long completionTokens = responseContent.length() / CHARS_PER_TOKEN;
+        Map<String, Object> usage = new LinkedHashMap<>();
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        return usage;
+    }
+
+    /**
+     * Reads the request body with a streaming parser, skipping the values of all fields but
+     * {@code stream}, so that large attachments are never held in memory.
+     */
+    private RequestSummary readRequest(InputStream body) throws IOException {
+        CountingInputStream counting = new CountingInputStream(body);
+        boolean stream = false;
+        try (JsonParser parser = new JsonFactory().createParser(counting)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("stream".equals(field) && value.isBoolean()) {
+                        stream = parser.getBooleanValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        counting.transferTo(OutputStream.nullOutputStream());
+        return new RequestSummary(counting.count, stream);
+    }
+
+    private static String content(int chars) {
+        StringBuilder content = new StringBuilder(chars + 16);
+        for (int i = 0; content.length() < chars; i++) {
+            content.append(WORDS[i % WORDS.length]).append(' ');
+        }
+        return content.substring(0, chars);
+    }
+
+    private record RequestSummary(long bytes, boolean stream) {
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // The exchange closes the request body
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.deepseekpdf.loadtest;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Response latency of the stub server, parsed from a specification such as:
+ * <ul>
+ *   <li>{@code fixed:300}: always 300 ms,</li>
+ *   <li>{@code uniform:100:900}: uniformly distributed between 100 and 900 ms,</li>
+ *   <li>{@code lognormal:800:4000}: log-normally distributed with a median of 800 ms and a p99 of 4000 ms.</li>
+ * </ul>
+ */
+public abstract class LatencyDistribution {
+
+    /** The 99th percentile of the standard normal distribution */
+    private static final double Z_99 = 2.3263;
+
+    /**
+     * @return A latency in milliseconds
+     */
+    public abstract long sampleMillis();
+
+    /**
+     * Parses a latency specification.
+     *
+     * @param spec The specification, e.g. {@code lognormal:800:4000}
+     * @return The distribution
+     * @throws IllegalArgumentException If the specification cannot be parsed
+     */
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    return fixed(Long.parseLong(parts[1]));
+                case "uniform":
+                    return uniform(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                case "lognormal":
+                    return logNormal(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                default:
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid latency specification: " + spec, e);
+        }
+        throw new IllegalArgumentException("Unknown latency distribution: " + spec
+                + " (expected fixed:<ms>, uniform:<min>:<max> or lognormal:<median>:<p99>)");
+    }
+
+    public static LatencyDistribution fixed(long millis) {
+        return new LatencyDistribution() {
+            @Override
+            public long sampleMillis() {
+                return millis;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed:" + millis;
+            }
+        };
+    }
+
+    public static LatencyDistribution uniform(long minMillis, long maxMillis) {
+        if (maxMillis < minMillis) {
+            throw new IllegalArgumentException("Maximum latency " + maxMillis + " is below minimum " + minMillis);
+        }
+        return new LatencyDistribution() {
+            @Override
+            public long sampleMillis() {
+                return ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+            }
+
+            @Override
+            public String toString() {
+                return "uniform:" + minMillis + ":" + maxMillis;
+            }
+        };
+    }
+
+    public static LatencyDistribution logNormal(long medianMillis, long p99Millis) {
+        if (medianMillis <= 0 || p99Millis < medianMillis) {
+            throw new IllegalArgumentException("Log-normal latency needs 0 < median <= p99, got "
+                    + medianMillis + " and " + p99Millis);
+        }
+        double mu = Math.log(medianMillis);
+        double sigma = Math.log((double) p99Millis / medianMillis) / Z_99;
+        return new LatencyDistribution() {
+            @Override
+            public long sampleMillis() {
+                return Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+            }
+
+            @Override
+            public String toString() {
+                return "lognormal:" + medianMillis + ":" + p99Millis;
+            }
+        };
+    }
+}
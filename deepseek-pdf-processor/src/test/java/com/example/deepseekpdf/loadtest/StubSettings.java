@@ -0,0 +1,54 @@
+package com.example.deepseekpdf.loadtest;
+
+/**
+ * Behavior of the {@link DeepseekStubServer}.
+ *
+ * @param port The port to listen on, 0 for an ephemeral port
+ * @param latency The time taken to produce a complete response
+ * @param throttleRate The fraction of requests answered with 429 Too Many Requests
+ * @param errorRate The fraction of requests answered with {@code errorStatus}
+ * @param errorStatus The status of injected server errors
+ * @param retryAfterSeconds The {@code Retry-After} of throttled responses
+ * @param responseChars The length of the generated message content
+ * @param streamChunks The number of chunks a streamed response is split into
+ */
+public record StubSettings(int port,
+                           LatencyDistribution latency,
+                           double throttleRate,
+                           double errorRate,
+                           int errorStatus,
+                           int retryAfterSeconds,
+                           int responseChars,
+                           int streamChunks) {
+
+    public static final String USAGE = String.join(System.lineSeparator(),
+            "  --port=<port>                  port of the stub server (default 8089, 0 for an ephemeral port)",
+            "  --latency=<spec>               fixed:<ms>, uniform:<min>:<max> or lognormal:<median>:<p99> (default lognormal:800:4000)",
+            "  --throttle-rate=<fraction>     fraction of requests answered with 429 (default 0)",
+            "  --error-rate=<fraction>        fraction of requests answered with a server error (default 0)",
+            "  --error-status=<status>        status of injected server errors (default 503)",
+            "  --retry-after-seconds=<s>      Retry-After of throttled responses (default 1)",
+            "  --response-chars=<n>           length of the generated message content (default 2000)",
+            "  --stream-chunks=<n>            chunks per streamed response (default 20)");
+
+    public StubSettings {
+        if (throttleRate < 0 || errorRate < 0 || throttleRate + errorRate > 1) {
+            throw new IllegalArgumentException("Throttle and error rates must be fractions summing to at most 1");
+        }
+        if (responseChars < 0 || streamChunks < 1) {
+            throw new IllegalArgumentException("Response size must not be negative and streams need at least one chunk");
+        }
+    }
+
+    static StubSettings fromArguments(CommandLineArguments arguments, int defaultPort) {
+        return new StubSettings(
+                arguments.getInt("port", defaultPort),
+                LatencyDistribution.parse(arguments.get("latency", "lognormal:800:4000")),
+                arguments.getDouble("throttle-rate", 0),
+                arguments.getDouble("error-rate", 0),
+                arguments.getInt("error-status", 503),
+                arguments.getInt("retry-after-seconds", 1),
+                arguments.getInt("response-chars", 2000),
+                arguments.getInt("stream-chunks", 20));
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.deepseekpdf.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class Base64EncodingInputStreamTest {
+
+    // Around the empty input, the padding cases and the raw block size of 48 KiB
+    private static final int[] SIZES = {0, 1, 2, 3, 4, 49151, 49152, 49153, 200_000};
+
+    @Test
+    void encodesLikeTheJdkEncoder() throws IOException {
+        for (int size : SIZES) {
+            byte[] raw = randomBytes(size);
+            try (InputStream in = new Base64EncodingInputStream(Channels.newChannel(new ByteArrayInputStream(raw)))) {
+                assertArrayEquals(Base64.getEncoder().encode(raw), in.readAllBytes(), "size " + size);
+            }
+        }
+    }
+
+    @Test
+    void encodesByteByByte() throws IOException {
+        byte[] raw = randomBytes(49153);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new Base64EncodingInputStream(Channels.newChannel(new ByteArrayInputStream(raw)))) {
+            int b;
+            while ((b = in.read()) >= 0) {
+                out.write(b);
+            }
+        }
+        assertArrayEquals(Base64.getEncoder().encode(raw), out.toByteArray());
+    }
+
+    @Test
+    void encodesChannelWithShortReads() throws IOException {
+        byte[] raw = randomBytes(100_000);
+        try (InputStream in = new Base64EncodingInputStream(new TrickleChannel(raw, 1000))) {
+            assertArrayEquals(Base64.getEncoder().encode(raw), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void predictsEncodedLength() {
+        for (int size : SIZES) {
+            assertEquals(Base64.getEncoder().encode(new byte[size]).length,
+                    Base64EncodingInputStream.encodedLength(size), "size " + size);
+        }
+    }
+
+    @Test
+    void closesChannel() throws IOException {
+        TrickleChannel channel = new TrickleChannel(new byte[10], 10);
+        new Base64EncodingInputStream(channel).close();
+        assertFalse(channel.isOpen());
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Channel that returns at most a few bytes per read, like a socket or a slow file system.
+     */
+    private static final class TrickleChannel implements ReadableByteChannel {
+
+        private final ByteBuffer data;
+        private final int maxRead;
+        private boolean open = true;
+
+        private TrickleChannel(byte[] data, int maxRead) {
+            this.data = ByteBuffer.wrap(data);
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public int read(ByteBuffer target) {
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(maxRead, Math.min(target.remaining(), data.remaining()));
+            ByteBuffer slice = data.slice(data.position(), count);
+            target.put(slice);
+            data.position(data.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DeepseekRateLimiterTest {
+
+    @Test
+    void rejectsInvalidDecreaseFactor() {
+        DeepseekRateLimiter limiter = limiter(8, 1_000_000);
+        ReflectionTestUtils.setField(limiter, "decreaseFactor", 1.0);
+
+        DeepseekApiException error = assertThrows(DeepseekApiException.class, limiter::init);
+        assertEquals(ErrorCode.CONFIGURATION_ERROR, error.getErrorCode());
+    }
+
+    @Test
+    void halvesConcurrencyLimitWhenThrottled() {
+        DeepseekRateLimiter limiter = initialized(8, 1_000_000);
+
+        limiter.acquire(100).onThrottled();
+
+        assertEquals(4, limiter.getConcurrencyLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void raisesConcurrencyLimitAfterAWindowOfSuccesses() {
+        DeepseekRateLimiter limiter = initialized(8, 1_000_000);
+        limiter.acquire(100).onThrottled();
+
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire(100).onSuccess(Map.of("total_tokens", 100));
+        }
+
+        assertEquals(5, limiter.getConcurrencyLimit());
+    }
+
+    @Test
+    void ignoresFailuresForTheConcurrencyLimit() {
+        DeepseekRateLimiter limiter = initialized(8, 1_000_000);
+
+        limiter.acquire(100).onFailure();
+
+        assertEquals(8, limiter.getConcurrencyLimit());
+    }
+
+    @Test
+    void completesPermitOnlyOnce() {
+        DeepseekRateLimiter limiter = initialized(8, 1_000_000);
+        DeepseekRateLimiter.Permit permit = limiter.acquire(100);
+        limiter.acquire(100);
+
+        permit.onFailure();
+        permit.onFailure();
+        permit.onThrottled();
+
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(8, limiter.getConcurrencyLimit());
+    }
+
+    @Test
+    void waitsForAFreeSlotAtTheConcurrencyLimit() throws Exception {
+        DeepseekRateLimiter limiter = initialized(1, 1_000_000);
+        DeepseekRateLimiter.Permit first = limiter.acquire(100);
+
+        CompletableFuture<DeepseekRateLimiter.Permit> second = CompletableFuture.supplyAsync(() -> limiter.acquire(100));
+        awaitWaiting(limiter, 1);
+        assertFalse(second.isDone());
+
+        first.onSuccess(null);
+        second.get(5, TimeUnit.SECONDS).onSuccess(null);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void waitsForTokensReservedByCallsInFlight() throws Exception {
+        DeepseekRateLimiter limiter = initialized(8, 1_000);
+        DeepseekRateLimiter.Permit first = limiter.acquire(1_000);
+
+        CompletableFuture<DeepseekRateLimiter.Permit> second = CompletableFuture.supplyAsync(() -> limiter.acquire(500));
+        awaitWaiting(limiter, 1);
+
+        // The call used less than it reserved, which returns enough budget for the next one
+        first.onSuccess(Map.of("prompt_tokens", 200, "completion_tokens", 100));
+        second.get(5, TimeUnit.SECONDS).onSuccess(null);
+        assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test
+    void admitsTheSmallerRequestFirstWhileTheTokenBudgetRefills() throws Exception {
+        // 1,000 tokens per second, all of them reserved by the first call
+        DeepseekRateLimiter limiter = initialized(8, 60_000);
+        DeepseekRateLimiter.Permit first = limiter.acquire(60_000);
+        Queue<String> admitted = new ConcurrentLinkedQueue<>();
+
+        CompletableFuture<DeepseekRateLimiter.Permit> large = acquireAsync(limiter, 30_000, "large", admitted);
+        awaitWaiting(limiter, 1);
+        CompletableFuture<DeepseekRateLimiter.Permit> small = acquireAsync(limiter, 100, "small", admitted);
+
+        // The budget refills enough for the small request long before the large one fits
+        small.get(5, TimeUnit.SECONDS).onSuccess(null);
+        assertFalse(large.isDone());
+
+        first.onSuccess(Map.of("total_tokens", 0));
+        large.get(5, TimeUnit.SECONDS).onSuccess(null);
+        assertEquals(List.of("small", "large"), List.copyOf(admitted));
+    }
+
+    @Test
+    void admitsARequestThatWaitedTooLongBeforeSmallerOnes() throws Exception {
+        DeepseekRateLimiter limiter = limiter(8, 60_000);
+        ReflectionTestUtils.setField(limiter, "maxAdmissionWaitMillis", 200L);
+        limiter.init();
+        DeepseekRateLimiter.Permit first = limiter.acquire(60_000);
+        Queue<String> admitted = new ConcurrentLinkedQueue<>();
+
+        CompletableFuture<DeepseekRateLimiter.Permit> large = acquireAsync(limiter, 1_000, "large", admitted);
+        awaitWaiting(limiter, 1);
+        Thread.sleep(300);
+        // Enough budget for the small request has refilled, but it is saved up for the aged one
+        CompletableFuture<DeepseekRateLimiter.Permit> small = acquireAsync(limiter, 100, "small", admitted);
+
+        large.get(5, TimeUnit.SECONDS).onSuccess(null);
+        small.get(5, TimeUnit.SECONDS).onSuccess(null);
+        first.onSuccess(null);
+        assertEquals(List.of("large", "small"), List.copyOf(admitted));
+    }
+
+    private static CompletableFuture<DeepseekRateLimiter.Permit> acquireAsync(DeepseekRateLimiter limiter, long tokens,
+                                                                            String name, Queue<String> admitted) {
+        return CompletableFuture.supplyAsync(() -> {
+            DeepseekRateLimiter.Permit permit = limiter.acquire(tokens);
+            admitted.add(name);
+            return permit;
+        });
+    }
+
+    private static void awaitWaiting(DeepseekRateLimiter limiter, int waiting) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (limiter.getWaiting() < waiting && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(waiting, limiter.getWaiting());
+    }
+
+    private static DeepseekRateLimiter initialized(int maxConcurrency, long tokensPerMinute) {
+        DeepseekRateLimiter limiter = limiter(maxConcurrency, tokensPerMinute);
+        limiter.init();
+        return limiter;
+    }
+
+    private static DeepseekRateLimiter limiter(int maxConcurrency, long tokensPerMinute) {
+        DeepseekRateLimiter limiter = new DeepseekRateLimiter();
+        // Enough requests per minute that the request bucket refills within milliseconds
+        ReflectionTestUtils.setField(limiter, "requestsPerMinute", 600_000);
+        ReflectionTestUtils.setField(limiter, "tokensPerMinute", tokensPerMinute);
+        ReflectionTestUtils.setField(limiter, "minConcurrency", 1);
+        ReflectionTestUtils.setField(limiter, "maxConcurrency", maxConcurrency);
+        ReflectionTestUtils.setField(limiter, "decreaseFactor", 0.5);
+        ReflectionTestUtils.setField(limiter, "initialTokensPerRequest", 4000L);
+        ReflectionTestUtils.setField(limiter, "maxAdmissionWaitMillis", 30_000L);
+        return limiter;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.deepseekpdf.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonEndDetectorTest {
+
+    @Test
+    void closesObjectReceivedInPieces() {
+        JsonEndDetector detector = new JsonEndDetector();
+
+        assertFalse(detector.accept("{\"summary\": [\"a\", "));
+        assertFalse(detector.accept("{\"b\": 1}"));
+        assertTrue(detector.accept("]}"));
+    }
+
+    @Test
+    void staysClosedAfterTheEnd() {
+        JsonEndDetector detector = new JsonEndDetector();
+
+        assertTrue(detector.accept("[1, 2]"));
+        assertTrue(detector.accept(" trailing text"));
+        assertTrue(detector.accept(null));
+    }
+
+    @Test
+    void ignoresBracketsAndEscapedQuotesInStrings() {
+        JsonEndDetector detector = new JsonEndDetector();
+
+        assertFalse(detector.accept("{\"text\": \"}] \\\" {\""));
+        assertTrue(detector.accept("}"));
+    }
+
+    @Test
+    void acceptsLeadingWhitespaceAndCodeFence() {
+        JsonEndDetector detector = new JsonEndDetector();
+
+        assertFalse(detector.accept("\n  ```json\n"));
+        assertTrue(detector.accept("{\"a\": 1}"));
+    }
+
+    @Test
+    void neverClosesAnswerStartingWithProse() {
+        JsonEndDetector detector = new JsonEndDetector();
+
+        assertFalse(detector.accept("See [Page 3] for details"));
+        assertFalse(detector.accept(" and {this}"));
+    }
+
+    @Test
+    void ignoresNullPieces() {
+        JsonEndDetector detector = new JsonEndDetector();
+
+        assertFalse(detector.accept(null));
+        assertTrue(detector.accept("{}"));
+    }
+}
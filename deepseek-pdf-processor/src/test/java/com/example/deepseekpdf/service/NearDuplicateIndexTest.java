@@ -0,0 +1,143 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.model.PdfDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NearDuplicateIndexTest {
+
+    private static final String PROMPT = "Summarize the document";
+
+    @TempDir
+    Path directory;
+
+    private NearDuplicateIndex index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        index = new NearDuplicateIndex();
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "indexFile", directory.resolve("near-duplicates.jsonl").toString());
+        ReflectionTestUtils.setField(index, "shingleWords", 5);
+        ReflectionTestUtils.setField(index, "numHashes", 128);
+        ReflectionTestUtils.setField(index, "bands", 32);
+        ReflectionTestUtils.setField(index, "similarityThreshold", 0.8);
+        ReflectionTestUtils.setField(index, "reuseThreshold", 0.97);
+        ReflectionTestUtils.setField(index, "maxDifferingPages", 3);
+        ReflectionTestUtils.setField(index, "reuseIgnoredPages", 1);
+        ReflectionTestUtils.setField(index, "maxEntries", 100);
+        ReflectionTestUtils.setField(index, "model", "deepseek-chat");
+        index.init();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Test
+    void sketchIgnoresCaseAndPunctuation() {
+        NearDuplicateIndex.Sketch sketch = index.sketch(List.of("The quarterly results, and the main risks!"));
+        NearDuplicateIndex.Sketch other = index.sketch(List.of("the QUARTERLY results and  the main risks"));
+
+        assertNotNull(sketch);
+        assertArrayEquals(sketch.signature(), other.signature());
+        assertArrayEquals(sketch.pageHashes(), other.pageHashes());
+    }
+
+    @Test
+    void sketchNeedsAtLeastOneShingle() {
+        assertNull(index.sketch(List.of("only four words here")));
+        assertNull(index.sketch(List.of("", "")));
+    }
+
+    @Test
+    void findsDocumentWithOneChangedPage() {
+        List<String> pages = pages(5, 0);
+        index.record(document("original.pdf"), index.sketch(pages), PROMPT, "summary");
+
+        List<String> changed = new ArrayList<>(pages);
+        changed.set(1, changed.get(1).replace("w1_17 w1_18", "changed words"));
+        NearDuplicateIndex.Match match = index.find(index.sketch(changed), PROMPT);
+
+        assertNotNull(match);
+        assertEquals("summary", match.entry().getResponse());
+        assertTrue(match.similarity() >= 0.8, "similarity " + match.similarity());
+        assertEquals(List.of(2), match.differingPages());
+    }
+
+    @Test
+    void findsIdenticalDocumentAsReusable() {
+        List<String> pages = pages(5, 0);
+        index.record(document("original.pdf"), index.sketch(pages), PROMPT, "summary");
+
+        NearDuplicateIndex.Match match = index.find(index.sketch(pages), PROMPT);
+
+        assertNotNull(match);
+        assertEquals(1.0, match.similarity());
+        assertTrue(match.differingPages().isEmpty());
+        assertTrue(index.isReusable(match, pages.size()));
+    }
+
+    @Test
+    void doesNotMatchAnotherPrompt() {
+        List<String> pages = pages(5, 0);
+        index.record(document("original.pdf"), index.sketch(pages), PROMPT, "summary");
+
+        assertNull(index.find(index.sketch(pages), "Translate the document"));
+    }
+
+    @Test
+    void doesNotMatchUnrelatedDocument() {
+        index.record(document("original.pdf"), index.sketch(pages(5, 0)), PROMPT, "summary");
+
+        assertNull(index.find(index.sketch(pages(5, 1)), PROMPT));
+    }
+
+    @Test
+    void keepsEntriesAcrossRestarts() throws IOException {
+        List<String> pages = pages(5, 0);
+        index.record(document("original.pdf"), index.sketch(pages), PROMPT, "summary");
+        index.close();
+
+        index.init();
+
+        assertNotNull(index.find(index.sketch(pages), PROMPT));
+    }
+
+    private PdfDocument document(String fileName) {
+        return PdfDocument.builder()
+                .fileName(fileName)
+                .filePath(directory.resolve(fileName).toString())
+                .build();
+    }
+
+    /**
+     * @return Pages of 200 distinct words each, different for every variant
+     */
+    private static List<String> pages(int count, int variant) {
+        List<String> pages = new ArrayList<>();
+        for (int p = 0; p < count; p++) {
+            StringBuilder page = new StringBuilder();
+            for (int w = 0; w < 200; w++) {
+                page.append('w').append(variant * 100 + p).append('_').append(w).append(' ');
+            }
+            pages.add(page.toString());
+        }
+        return pages;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.model.PdfContent;
+import com.example.deepseekpdf.model.PdfDocument;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationText;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceDictionary;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PdfSlimmerTest {
+
+    @TempDir
+    Path directory;
+
+    private PdfSlimmer slimmer;
+
+    @BeforeEach
+    void setUp() {
+        slimmer = new PdfSlimmer();
+        ReflectionTestUtils.setField(slimmer, "enabled", true);
+        ReflectionTestUtils.setField(slimmer, "directory", directory.resolve("slim").toString());
+        ReflectionTestUtils.setField(slimmer, "threads", 1);
+        ReflectionTestUtils.setField(slimmer, "minBytes", 0L);
+        ReflectionTestUtils.setField(slimmer, "imageMode", "downsample");
+        ReflectionTestUtils.setField(slimmer, "maxImageDimension", 1200);
+        ReflectionTestUtils.setField(slimmer, "minImageBytes", 32768L);
+        ReflectionTestUtils.setField(slimmer, "jpegQuality", 0.6f);
+        ReflectionTestUtils.setField(slimmer, "minSavingsRatio", 0.1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        slimmer.shutdown();
+    }
+
+    @Test
+    void deletesLeftoverCopiesOnStartup() throws IOException {
+        Path slim = Files.createDirectories(directory.resolve("slim"));
+        Files.write(slim.resolve("report_123.pdf"), new byte[10]);
+        Files.write(slim.resolve("notes.txt"), new byte[10]);
+
+        slimmer.init();
+
+        assertFalse(Files.exists(slim.resolve("report_123.pdf")));
+        assertTrue(Files.exists(slim.resolve("notes.txt")));
+    }
+
+    @Test
+    void keepsFontsOfAnnotationAppearances() throws IOException {
+        slimmer.init();
+        Path pdf = directory.resolve("annotated.pdf");
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            PDResources resources = new PDResources();
+            page.setResources(resources);
+            COSName bodyFont = resources.add(PDType1Font.HELVETICA);
+            COSName labelFont = resources.add(PDType1Font.COURIER);
+            resources.add(PDType1Font.TIMES_ROMAN);
+
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.beginText();
+                content.setFont(PDType1Font.HELVETICA, 12);
+                content.newLineAtOffset(50, 700);
+                content.showText("Body text");
+                content.endText();
+            }
+
+            // The appearance has no resources of its own and selects a font of the page
+            PDAppearanceStream appearance = new PDAppearanceStream(document);
+            appearance.setBBox(new PDRectangle(100, 20));
+            try (OutputStream out = appearance.getStream().createOutputStream()) {
+                out.write(("BT /" + labelFont.getName() + " 10 Tf 2 5 Td (Label) Tj ET").getBytes(StandardCharsets.US_ASCII));
+            }
+            PDAppearanceDictionary appearances = new PDAppearanceDictionary();
+            appearances.setNormalAppearance(appearance);
+            PDAnnotationText annotation = new PDAnnotationText();
+            annotation.setRectangle(new PDRectangle(50, 600, 100, 20));
+            annotation.setAppearance(appearances);
+            page.setAnnotations(List.of(annotation));
+
+            assertEquals(3, fontNames(page).size());
+            document.save(pdf.toFile());
+        }
+
+        PdfDocument pdfDocument = PdfDocument.builder()
+                .fileName("annotated.pdf")
+                .content(PdfContent.ofFile(pdf, Files.size(pdf)))
+                .build();
+        Path slimmed = ReflectionTestUtils.invokeMethod(slimmer, "rewrite", pdfDocument);
+
+        try (PDDocument document = PDDocument.load(slimmed.toFile())) {
+            assertEquals(Set.of("F1", "F2"), fontNames(document.getPage(0)));
+        }
+    }
+
+    private static Set<String> fontNames(PDPage page) {
+        return StreamSupport.stream(page.getResources().getFontNames().spliterator(), false)
+                .map(COSName::getName)
+                .collect(Collectors.toSet());
+    }
+}
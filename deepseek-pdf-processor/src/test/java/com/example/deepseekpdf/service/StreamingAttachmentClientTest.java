@@ -0,0 +1,147 @@
+package com.example.deepseekpdf.service;
+
+import com.example.deepseekpdf.exception.DeepseekApiException;
+import com.example.deepseekpdf.exception.DeepseekApiException.ErrorCode;
+import com.example.deepseekpdf.loadtest.DeepseekStubServer;
+import com.example.deepseekpdf.loadtest.LatencyDistribution;
+import com.example.deepseekpdf.loadtest.StubSettings;
+import com.example.deepseekpdf.model.DeepseekApiResponse;
+import com.example.deepseekpdf.model.PdfContent;
+import com.example.deepseekpdf.model.PdfDocument;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.pigmesh.ai.deepseek.core.OpenAiHttpException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingAttachmentClientTest {
+
+    private static final String PROMPT = "Summarize \"this\" document:\n";
+    private static final String MODEL = "deepseek-chat";
+
+    @Test
+    void sendsAttachmentAsValidJsonWithExactLength() throws Exception {
+        byte[] pdf = randomBytes(100_000);
+        PdfDocument pdfDocument = document("report \"final\".pdf", pdf);
+
+        try (DeepseekStubServer stub = DeepseekStubServer.start(settings(0, 0))) {
+            DeepseekApiResponse response = client(stub).send(pdfDocument, PROMPT, MODEL, 0.7, 1024);
+
+            assertEquals(200, String.valueOf(response.getChoices().get("content")).length());
+            assertEquals("stop", response.getChoices().get("finish_reason"));
+            assertEquals(1, stub.getRequests());
+            assertEquals(0, stub.getStreamingRequests());
+            // The stub only answers a body it parsed completely, and it must match Jackson's own serialisation
+            assertEquals(expectedBody(pdfDocument, pdf, 0.7, 1024).length, stub.getRequestBytes());
+        }
+    }
+
+    @Test
+    void sendsSlimmedCopyWhenPresent() throws Exception {
+        byte[] original = randomBytes(90_000);
+        byte[] slimmed = randomBytes(30_000);
+        PdfDocument pdfDocument = document("slimmed.pdf", original);
+        pdfDocument.setUploadContent(PdfContent.ofBytes(slimmed));
+
+        try (DeepseekStubServer stub = DeepseekStubServer.start(settings(0, 0))) {
+            client(stub).sendAsync(pdfDocument, PROMPT, MODEL, 0.2, 512).get(10, TimeUnit.SECONDS);
+
+            assertEquals(expectedBody(pdfDocument, slimmed, 0.2, 512).length, stub.getRequestBytes());
+        }
+    }
+
+    @Test
+    void reportsThrottlingAsRateLimited() throws Exception {
+        try (DeepseekStubServer stub = DeepseekStubServer.start(settings(1, 0))) {
+            DeepseekApiException error = assertThrows(DeepseekApiException.class,
+                    () -> client(stub).send(document("a.pdf", randomBytes(10)), PROMPT, MODEL, 0.7, 1024));
+
+            assertEquals(ErrorCode.RATE_LIMITED, error.getErrorCode());
+            assertEquals(429, assertInstanceOf(OpenAiHttpException.class, error.getCause()).code());
+        }
+    }
+
+    @Test
+    void reportsServerErrorsWithTheirStatus() throws Exception {
+        try (DeepseekStubServer stub = DeepseekStubServer.start(settings(0, 1))) {
+            DeepseekApiException error = assertThrows(DeepseekApiException.class,
+                    () -> client(stub).send(document("a.pdf", randomBytes(10)), PROMPT, MODEL, 0.7, 1024));
+
+            assertEquals(ErrorCode.API_COMMUNICATION_ERROR, error.getErrorCode());
+            assertEquals(503, assertInstanceOf(OpenAiHttpException.class, error.getCause()).code());
+        }
+    }
+
+    @Test
+    void rejectsDocumentWithoutContent() {
+        StreamingAttachmentClient client = new StreamingAttachmentClient();
+        ReflectionTestUtils.setField(client, "baseUrl", "http://localhost:1/v1");
+        ReflectionTestUtils.setField(client, "timeoutMillis", 1_000L);
+        client.init();
+        PdfDocument pdfDocument = PdfDocument.builder().fileName("empty.pdf").build();
+
+        DeepseekApiException error = assertThrows(DeepseekApiException.class,
+                () -> client.send(pdfDocument, PROMPT, MODEL, 0.7, 1024));
+        assertEquals(ErrorCode.PDF_PROCESSING_ERROR, error.getErrorCode());
+    }
+
+    private static StreamingAttachmentClient client(DeepseekStubServer stub) {
+        StreamingAttachmentClient client = new StreamingAttachmentClient();
+        ReflectionTestUtils.setField(client, "baseUrl", stub.getBaseUrl() + "/");
+        ReflectionTestUtils.setField(client, "apiKey", "test-key");
+        ReflectionTestUtils.setField(client, "timeoutMillis", 10_000L);
+        client.init();
+        return client;
+    }
+
+    private static StubSettings settings(double throttleRate, double errorRate) {
+        return new StubSettings(0, LatencyDistribution.fixed(0), throttleRate, errorRate, 503, 1, 200, 1);
+    }
+
+    private static PdfDocument document(String fileName, byte[] content) {
+        return PdfDocument.builder()
+                .fileName(fileName)
+                .content(PdfContent.ofBytes(content))
+                .fileSize(content.length)
+                .build();
+    }
+
+    private static byte[] expectedBody(PdfDocument pdfDocument, byte[] uploaded, double temperature, int maxTokens)
+            throws IOException {
+        Map<String, Object> attachment = new LinkedHashMap<>();
+        attachment.put("type", "file_attachment");
+        attachment.put("file_type", "pdf");
+        attachment.put("name", pdfDocument.getFileName());
+        attachment.put("content", Base64.getEncoder().encodeToString(uploaded));
+
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("role", "user");
+        message.put("content", PROMPT);
+        message.put("file_attachment", attachment);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", MODEL);
+        body.put("messages", List.of(message));
+        body.put("temperature", temperature);
+        body.put("max_tokens", maxTokens);
+        body.put("stream", false);
+        return new ObjectMapper().writeValueAsBytes(body);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}